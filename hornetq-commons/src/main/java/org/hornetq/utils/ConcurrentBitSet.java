@@ -0,0 +1,130 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of non negative ints, kept as bits on chunks of atomic longs.
+ * <p/>
+ * Setting and testing a bit are lock free. The chunks are only allocated as the bits on them are
+ * set, so a set growing with its indexes doesn't copy the bits already set.
+ */
+public final class ConcurrentBitSet
+{
+   private static final int CHUNK_SHIFT = 10;
+
+   private static final int CHUNK_BITS = 1 << CHUNK_SHIFT;
+
+   private static final int CHUNK_WORDS = CHUNK_BITS >>> 6;
+
+   private volatile AtomicLongArray[] chunks;
+
+   public ConcurrentBitSet()
+   {
+      this(CHUNK_BITS);
+   }
+
+   /**
+    * @param expectedSize the number of bits expected, the set grows if a larger index is set
+    */
+   public ConcurrentBitSet(final int expectedSize)
+   {
+      chunks = new AtomicLongArray[(int) Math.max(1, (Math.max(0L, expectedSize) + CHUNK_BITS - 1) >>> CHUNK_SHIFT)];
+   }
+
+   /**
+    * @return true if the bit wasn't set before
+    */
+   public boolean set(final int index)
+   {
+      AtomicLongArray chunk = getChunk(index, true);
+
+      int word = (index & (CHUNK_BITS - 1)) >>> 6;
+
+      long mask = 1L << index;
+
+      while (true)
+      {
+         long value = chunk.get(word);
+
+         if ((value & mask) != 0)
+         {
+            return false;
+         }
+
+         if (chunk.compareAndSet(word, value, value | mask))
+         {
+            return true;
+         }
+      }
+   }
+
+   public boolean get(final int index)
+   {
+      AtomicLongArray chunk = getChunk(index, false);
+
+      return chunk != null && (chunk.get((index & (CHUNK_BITS - 1)) >>> 6) & (1L << index)) != 0;
+   }
+
+   /**
+    * Clears every bit. It is not atomic in regard to concurrent sets.
+    */
+   public synchronized void clear()
+   {
+      chunks = new AtomicLongArray[chunks.length];
+   }
+
+   private AtomicLongArray getChunk(final int index, final boolean create)
+   {
+      if (index < 0)
+      {
+         throw new IndexOutOfBoundsException("index < 0: " + index);
+      }
+
+      int chunkIndex = index >>> CHUNK_SHIFT;
+
+      AtomicLongArray[] current = chunks;
+
+      if (chunkIndex < current.length && current[chunkIndex] != null)
+      {
+         return current[chunkIndex];
+      }
+
+      if (!create)
+      {
+         return null;
+      }
+
+      synchronized (this)
+      {
+         current = chunks;
+
+         if (chunkIndex >= current.length)
+         {
+            current = Arrays.copyOf(current, Math.max(chunkIndex + 1, current.length * 2));
+         }
+
+         if (current[chunkIndex] == null)
+         {
+            current[chunkIndex] = new AtomicLongArray(CHUNK_WORDS);
+         }
+
+         // the volatile write publishes the new chunk to the readers
+         chunks = current;
+
+         return current[chunkIndex];
+      }
+   }
+}
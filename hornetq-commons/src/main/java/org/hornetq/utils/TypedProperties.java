@@ -421,6 +421,48 @@ public final class TypedProperties
       throw new HornetQPropertyConversionException("Invalid conversion");
    }
 
+   /**
+    * Returns the type of a property without converting or boxing its value.
+    *
+    * @return one of the {@link DataConstants} type codes, or {@code -1} if there is no such property
+    */
+   public byte getPropertyType(final SimpleString key)
+   {
+      PropertyValue val = doGetPropertyValue(key);
+      return val == null ? -1 : val.getType();
+   }
+
+   /**
+    * Reads a {@code byte}, {@code short}, {@code int} or {@code long} property as a primitive
+    * {@code long}, without boxing it. Check {@link #getPropertyType(SimpleString)} first.
+    *
+    * @throws HornetQPropertyConversionException if the property is missing or not of an integral type
+    */
+   public long getIntegralValue(final SimpleString key) throws HornetQPropertyConversionException
+   {
+      PropertyValue val = doGetPropertyValue(key);
+      if (val instanceof LongValue)
+      {
+         return ((LongValue) val).val;
+      }
+      else if (val instanceof IntValue)
+      {
+         return ((IntValue) val).val;
+      }
+      else if (val instanceof ShortValue)
+      {
+         return ((ShortValue) val).val;
+      }
+      else if (val instanceof ByteValue)
+      {
+         return ((ByteValue) val).val;
+      }
+      else
+      {
+         throw new HornetQPropertyConversionException("Invalid conversion");
+      }
+   }
+
    public Object removeProperty(final SimpleString key)
    {
       return doRemoveProperty(key);
@@ -735,12 +777,24 @@ public final class TypedProperties
       }
    }
 
+   private synchronized PropertyValue doGetPropertyValue(final Object key)
+   {
+      if (size == 0)
+      {
+         return null;
+      }
+
+      return properties.get(key);
+   }
+
    // Inner classes ------------------------------------------------------------------------------
 
    private abstract static class PropertyValue
    {
       abstract Object getValue();
 
+      abstract byte getType();
+
       abstract void write(HornetQBuffer buffer);
 
       abstract int encodeSize();
@@ -764,6 +818,12 @@ public final class TypedProperties
          return null;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.NULL;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -798,6 +858,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.BOOLEAN;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -833,6 +899,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.BYTE;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -869,6 +941,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.BYTES;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -905,6 +983,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.SHORT;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -939,6 +1023,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.INT;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -973,6 +1063,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.LONG;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -1007,6 +1103,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.FLOAT;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -1042,6 +1144,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.DOUBLE;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -1076,6 +1184,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.CHAR;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
@@ -1110,6 +1224,12 @@ public final class TypedProperties
          return val;
       }
 
+      @Override
+      public byte getType()
+      {
+         return DataConstants.STRING;
+      }
+
       @Override
       public void write(final HornetQBuffer buffer)
       {
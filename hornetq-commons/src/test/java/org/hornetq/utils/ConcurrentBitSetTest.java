@@ -0,0 +1,111 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentBitSetTest extends Assert
+{
+   @Test
+   public void testSetGet()
+   {
+      ConcurrentBitSet bits = new ConcurrentBitSet(10);
+
+      assertFalse(bits.get(0));
+      assertFalse(bits.get(1000000));
+
+      assertTrue(bits.set(0));
+      assertFalse(bits.set(0));
+      assertTrue(bits.set(63));
+      assertTrue(bits.set(64));
+      assertTrue(bits.set(100000));
+
+      assertTrue(bits.get(0));
+      assertTrue(bits.get(63));
+      assertTrue(bits.get(64));
+      assertFalse(bits.get(65));
+      assertTrue(bits.get(100000));
+      assertFalse(bits.get(100001));
+
+      bits.clear();
+
+      assertFalse(bits.get(0));
+      assertFalse(bits.get(100000));
+      assertTrue(bits.set(100000));
+   }
+
+   @Test(expected = IndexOutOfBoundsException.class)
+   public void testNegativeIndex()
+   {
+      new ConcurrentBitSet().set(-1);
+   }
+
+   @Test
+   public void testConcurrentSets() throws Exception
+   {
+      final int numberOfThreads = 4;
+      final int numberOfBits = 50000;
+
+      final ConcurrentBitSet bits = new ConcurrentBitSet(1);
+      final AtomicInteger setCount = new AtomicInteger(0);
+      final CountDownLatch start = new CountDownLatch(1);
+
+      Thread[] threads = new Thread[numberOfThreads];
+      for (int i = 0; i < numberOfThreads; i++)
+      {
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+
+               // every thread sets every bit, growing the set while the others are setting it
+               for (int bit = 0; bit < numberOfBits; bit++)
+               {
+                  if (bits.set(bit))
+                  {
+                     setCount.incrementAndGet();
+                  }
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      assertEquals(numberOfBits, setCount.get());
+
+      for (int bit = 0; bit < numberOfBits; bit++)
+      {
+         assertTrue(bits.get(bit));
+      }
+   }
+}
@@ -20,9 +20,9 @@ import org.hornetq.spi.core.remoting.ConsumerContext;
  * <br>
  * Messages can be consumed synchronously by using the <code>receive()</code> methods
  * which will block until a message is received (or a timeout expires) or asynchronously
- * by setting a {@link MessageHandler}.
+ * by setting a {@link MessageHandler} or by using {@link #receiveAsync()}.
  * <br>
- * These 2 types of consumption are exclusive: a ClientConsumer with a MessageHandler set will
+ * These types of consumption are exclusive: a ClientConsumer with a MessageHandler set will
  * throw HornetQException if its <code>receive()</code> methods are called.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
@@ -80,6 +80,24 @@ public interface ClientConsumer extends AutoCloseable
     */
    ClientMessage receiveImmediate() throws HornetQException;
 
+   /**
+    * Receives a message from a queue without blocking.
+    * <p>
+    * The returned future is completed with the next message delivered to this consumer, from the
+    * thread that would call a {@link MessageHandler}. Several calls may be waiting for a message at
+    * the same time, they are completed in the order they were made. The futures still waiting
+    * when the consumer is closed are failed.
+    * <p>
+    * As with {@link #receive()}, the body of a large message must be read before the next message
+    * is delivered.
+    * <p>
+    * Calling this method on a closed consumer, or on a consumer with a MessageHandler set, will
+    * throw a HornetQException.
+    * @return a future completed with the next message
+    * @throws HornetQException if an exception occurs while asking for a message
+    */
+   ClientFuture<ClientMessage> receiveAsync() throws HornetQException;
+
    /**
     * Returns the MessageHandler associated to this consumer.
     * <p>
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.api.core.client;
+
+import java.util.concurrent.Future;
+
+/**
+ * A ClientFuture is the result of an operation sent to the server without waiting for its
+ * response, such as {@link ClientProducer#sendAsync(org.hornetq.api.core.Message)} or {@link ClientSession#commitAsync()}.
+ * <p>
+ * It completes once the server has answered the operation. If the operation failed,
+ * {@link #get()} throws an {@link java.util.concurrent.ExecutionException} whose cause is the
+ * {@link org.hornetq.api.core.HornetQException} sent by the server.
+ * <p>
+ * Listeners are called from the thread completing the future, which is usually the remoting
+ * thread of the connection, so they must not block.
+ *
+ * @param <T> the type of the result
+ */
+public interface ClientFuture<T> extends Future<T>
+{
+   /**
+    * Adds a listener called once the operation completes. If it has already completed the
+    * listener is called right away, from the calling thread.
+    *
+    * @param listener the listener to add
+    */
+   void addListener(ClientFutureListener<? super T> listener);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.api.core.client;
+
+import org.hornetq.api.core.HornetQException;
+
+/**
+ * A ClientFutureListener is notified when the operation of a {@link ClientFuture} completes.
+ *
+ * @param <T> the type of the result
+ */
+public interface ClientFutureListener<T>
+{
+   /**
+    * Notifies the listener that the operation has completed successfully.
+    *
+    * @param result the result of the operation, {@code null} for operations without a result
+    */
+   void completed(T result);
+
+   /**
+    * Notifies the listener that the operation has failed.
+    *
+    * @param exception the exception that caused the failure
+    */
+   void failed(HornetQException exception);
+}
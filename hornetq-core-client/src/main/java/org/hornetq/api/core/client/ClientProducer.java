@@ -112,6 +112,34 @@ public interface ClientProducer extends AutoCloseable
     */
    void send(String address, Message message) throws HornetQException;
 
+   /**
+    * Sends a message to the address specified in {@link ClientSession#createProducer(String)} or
+    * similar methods, without waiting for the server's confirmation. <br>
+    * <br>
+    * The message is sent asking for a confirmation whatever the blocking semantics set on the
+    * {@link ServerLocator}, and the returned future completes when the server has answered, that is
+    * once the message is routed and, if durable, stored. Many messages can be waiting for their
+    * confirmation at the same time on a session.
+    * <p>
+    * Large messages are sent as with {@link #send(Message)} with a blocking send, and the returned
+    * future has already completed.
+    * @param message the message to send
+    * @return a future completed by the server's confirmation
+    * @throws HornetQException if an exception occurs while sending the message
+    */
+   ClientFuture<Void> sendAsync(Message message) throws HornetQException;
+
+   /**
+    * Sends a message to the specified address instead of the ClientProducer's address, without
+    * waiting for the server's confirmation.
+    * @param address the address where the message will be sent
+    * @param message the message to send
+    * @return a future completed by the server's confirmation
+    * @throws HornetQException if an exception occurs while sending the message
+    * @see #sendAsync(Message)
+    */
+   ClientFuture<Void> sendAsync(SimpleString address, Message message) throws HornetQException;
+
    /**
     * Closes the ClientProducer. If already closed nothing is done.
     *
@@ -251,6 +251,18 @@ public interface ClientSession extends XAResource, AutoCloseable
     */
    void createQueue(SimpleString address, SimpleString queueName, SimpleString filter, boolean durable) throws HornetQException;
 
+   /**
+    * Creates a <em>non-temporary</em> queue without waiting for the server to answer.
+    *
+    * @param address   the queue will be bound to this address
+    * @param queueName the name of the queue
+    * @param filter    only messages which match this filter will be put in the queue
+    * @param durable   whether the queue is durable or not
+    * @return a future completed when the queue has been created
+    * @throws HornetQException in an exception occurs while sending the request
+    */
+   ClientFuture<Void> createQueueAsync(SimpleString address, SimpleString queueName, SimpleString filter, boolean durable) throws HornetQException;
+
    /**
     * Creates a <em>non-temporary</em>queue.
     *
@@ -308,6 +320,16 @@ public interface ClientSession extends XAResource, AutoCloseable
     */
    void deleteQueue(SimpleString queueName) throws HornetQException;
 
+   /**
+    * Deletes the queue without waiting for the server to answer.
+    *
+    * @param queueName the name of the queue to delete
+    * @return a future completed when the queue has been deleted, or failed if there is no queue for
+    *         the given name or if the queue has consumers
+    * @throws HornetQException in an exception occurs while sending the request
+    */
+   ClientFuture<Void> deleteQueueAsync(SimpleString queueName) throws HornetQException;
+
    /**
     * Deletes the queue.
     *
@@ -593,6 +615,17 @@ public interface ClientSession extends XAResource, AutoCloseable
     */
    void commit() throws HornetQException;
 
+   /**
+    * Commits the current transaction without waiting for the server to answer.
+    * <p>
+    * The returned future completes once the transaction is committed. Messages sent or acknowledged
+    * after this call belong to the next transaction.
+    *
+    * @return a future completed when the transaction is committed
+    * @throws HornetQException if an exception occurs while sending the commit
+    */
+   ClientFuture<Void> commitAsync() throws HornetQException;
+
    /**
     * Rolls back the current transaction.
     *
@@ -608,6 +641,18 @@ public interface ClientSession extends XAResource, AutoCloseable
     */
    void rollback(boolean considerLastMessageAsDelivered) throws HornetQException;
 
+   /**
+    * Rolls back the current transaction without waiting for the server to answer.
+    * <p>
+    * The messages buffered by the consumers are cancelled, as with {@link #rollback()}, but this
+    * method doesn't wait for message handlers to complete. If the session is started, its consumers
+    * hand out no message until the server has stopped delivering for the rollback.
+    *
+    * @return a future completed when the transaction has been rolled back
+    * @throws HornetQException if an exception occurs while sending the rollback
+    */
+   ClientFuture<Void> rollbackAsync() throws HornetQException;
+
    /**
     * Returns <code>true</code> if the current transaction has been flagged to rollback, <code>false</code> else.
     *
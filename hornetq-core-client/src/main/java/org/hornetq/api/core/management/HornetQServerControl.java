@@ -156,6 +156,21 @@ public interface HornetQServerControl
     */
    int getJournalCompactPercentage();
 
+   /**
+    * Returns the bytes of the journal files freed by compacting since this server was started.
+    */
+   long getJournalCompactedBytes();
+
+   /**
+    * Returns the time (in milliseconds) the journal was locked by compacting since this server was started.
+    */
+   long getJournalCompactStallTime();
+
+   /**
+    * Returns the longest time (in milliseconds) the journal was locked by a single compacting pass.
+    */
+   long getJournalMaxCompactStallTime();
+
    /**
     * Returns whether this server is using persistence and store data.
     */
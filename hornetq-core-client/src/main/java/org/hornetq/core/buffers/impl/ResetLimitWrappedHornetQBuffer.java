@@ -68,10 +68,8 @@ public final class ResetLimitWrappedHornetQBuffer extends ChannelBufferWrapper
 
    public void setBuffer(final HornetQBuffer buffer)
    {
-      if (this.buffer != null)
-      {
-         this.buffer.release();
-      }
+      // the previous buffer isn't released, as it's replaced when it's shared with the deliveries and copies of the
+      // message
       this.buffer = buffer.byteBuf();
    }
 
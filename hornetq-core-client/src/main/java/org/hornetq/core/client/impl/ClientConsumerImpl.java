@@ -15,7 +15,11 @@ package org.hornetq.core.client.impl;
 import java.io.File;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +29,7 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientFuture;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.ClientSessionFactory;
@@ -96,6 +101,9 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
    private final Runner runner = new Runner();
 
+   // The calls to receiveAsync() waiting for a message, guarded by this
+   private final Deque<ClientFutureImpl<ClientMessage>> pendingReceives = new ArrayDeque<ClientFutureImpl<ClientMessage>>();
+
    private LargeMessageControllerImpl currentLargeMessageController;
 
    // When receiving LargeMessages, the user may choose to not read the body, on this case we need to discard the body
@@ -207,6 +215,14 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
          throw HornetQClientMessageBundle.BUNDLE.messageHandlerSet();
       }
 
+      synchronized (this)
+      {
+         if (!pendingReceives.isEmpty())
+         {
+            throw HornetQClientMessageBundle.BUNDLE.inReceive();
+         }
+      }
+
       if (clientWindowSize == 0)
       {
          startSlowConsumer();
@@ -413,6 +429,40 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
       return receive(0, true);
    }
 
+   public ClientFuture<ClientMessage> receiveAsync() throws HornetQException
+   {
+      if (handler != null)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.messageHandlerSet();
+      }
+
+      if (receiverThread != null)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.inReceive();
+      }
+
+      ClientFutureImpl<ClientMessage> future = new ClientFutureImpl<ClientMessage>();
+
+      synchronized (this)
+      {
+         checkClosed();
+
+         pendingReceives.add(future);
+
+         if (!stopped)
+         {
+            queueExecutor();
+         }
+      }
+
+      if (clientWindowSize == 0)
+      {
+         startSlowConsumer();
+      }
+
+      return future;
+   }
+
    public MessageHandler getMessageHandler() throws HornetQException
    {
       checkClosed();
@@ -426,7 +476,7 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
    {
       checkClosed();
 
-      if (receiverThread != null)
+      if (receiverThread != null || !pendingReceives.isEmpty())
       {
          throw HornetQClientMessageBundle.BUNDLE.inReceive();
       }
@@ -613,7 +663,7 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
       // Add it to the buffer
       buffer.addTail(message, message.getPriority());
 
-      if (handler != null)
+      if (handler != null || !pendingReceives.isEmpty())
       {
          // Execute using executor
          if (!stopped)
@@ -1135,6 +1185,90 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
             }
          }
       }
+      else
+      {
+         completePendingReceive();
+      }
+   }
+
+   /**
+    * Hands the next buffered message to the oldest call to receiveAsync(), from the session
+    * executor as for a MessageHandler.
+    */
+   private void completePendingReceive() throws HornetQException
+   {
+      ClientMessageInternal message;
+
+      ClientFutureImpl<ClientMessage> future;
+
+      synchronized (this)
+      {
+         if (pendingReceives.isEmpty())
+         {
+            return;
+         }
+
+         message = buffer.poll();
+
+         if (message == null)
+         {
+            return;
+         }
+
+         future = pendingReceives.poll();
+      }
+
+      if (rateLimiter != null)
+      {
+         rateLimiter.limit();
+      }
+
+      failedOver = false;
+
+      if (message.containsProperty(ClientConsumerImpl.FORCED_DELIVERY_MESSAGE))
+      {
+         //Ignore, this could be a relic from a previous receiveImmediate();
+         returnPendingReceive(future);
+         return;
+      }
+
+      boolean expired = message.isExpired();
+
+      flowControlBeforeConsumption(message);
+
+      if (expired)
+      {
+         session.expire(this, message);
+
+         returnPendingReceive(future);
+
+         // The credit sent for this call was used by the expired message
+         if (clientWindowSize == 0)
+         {
+            startSlowConsumer();
+         }
+
+         return;
+      }
+
+      if (largeMessageReceived != null)
+      {
+         // The body of the previous large message was not read, it needs to be discarded
+         largeMessageReceived.discardBody();
+         largeMessageReceived = null;
+      }
+
+      if (message.isLargeMessage())
+      {
+         largeMessageReceived = message;
+      }
+
+      future.complete(message);
+   }
+
+   private synchronized void returnPendingReceive(final ClientFutureImpl<ClientMessage> future)
+   {
+      pendingReceives.addFirst(future);
    }
 
    /**
@@ -1172,6 +1306,8 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
          closed = true;
 
+         List<ClientFutureImpl<ClientMessage>> failed;
+
          synchronized (this)
          {
             if (receiverThread != null)
@@ -1183,6 +1319,15 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
             handler = null;
 
             receiverThread = null;
+
+            failed = new ArrayList<ClientFutureImpl<ClientMessage>>(pendingReceives);
+
+            pendingReceives.clear();
+         }
+
+         for (ClientFutureImpl<ClientMessage> future : failed)
+         {
+            future.fail(HornetQClientMessageBundle.BUNDLE.consumerClosed());
          }
 
          flushAcks();
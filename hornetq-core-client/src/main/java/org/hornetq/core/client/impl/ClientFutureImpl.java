@@ -0,0 +1,197 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.client.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.client.ClientFuture;
+import org.hornetq.api.core.client.ClientFutureListener;
+import org.hornetq.core.client.HornetQClientLogger;
+
+/**
+ * The {@link ClientFuture} completed by the client once the server has answered an operation.
+ * <p>
+ * Operations sent to the server can't be taken back, so {@link #cancel(boolean)} does nothing.
+ *
+ * @param <T> the type of the result
+ */
+public class ClientFutureImpl<T> implements ClientFuture<T>
+{
+   private final CountDownLatch latch = new CountDownLatch(1);
+
+   private List<ClientFutureListener<? super T>> listeners;
+
+   private boolean done;
+
+   private T result;
+
+   private HornetQException exception;
+
+   public static <T> ClientFutureImpl<T> completed(final T result)
+   {
+      ClientFutureImpl<T> future = new ClientFutureImpl<T>();
+      future.complete(result);
+      return future;
+   }
+
+   /**
+    * Completes the future, unless it has already completed.
+    */
+   public void complete(final T result)
+   {
+      List<ClientFutureListener<? super T>> toCall;
+
+      synchronized (this)
+      {
+         if (done)
+         {
+            return;
+         }
+         this.result = result;
+         done = true;
+         toCall = listeners;
+         listeners = null;
+      }
+
+      latch.countDown();
+
+      if (toCall != null)
+      {
+         for (ClientFutureListener<? super T> listener : toCall)
+         {
+            callListener(listener);
+         }
+      }
+   }
+
+   /**
+    * Fails the future, unless it has already completed.
+    */
+   public void fail(final HornetQException exception)
+   {
+      List<ClientFutureListener<? super T>> toCall;
+
+      synchronized (this)
+      {
+         if (done)
+         {
+            return;
+         }
+         this.exception = exception;
+         done = true;
+         toCall = listeners;
+         listeners = null;
+      }
+
+      latch.countDown();
+
+      if (toCall != null)
+      {
+         for (ClientFutureListener<? super T> listener : toCall)
+         {
+            callListener(listener);
+         }
+      }
+   }
+
+   public void addListener(final ClientFutureListener<? super T> listener)
+   {
+      synchronized (this)
+      {
+         if (!done)
+         {
+            if (listeners == null)
+            {
+               listeners = new ArrayList<ClientFutureListener<? super T>>(1);
+            }
+            listeners.add(listener);
+            return;
+         }
+      }
+
+      callListener(listener);
+   }
+
+   public boolean cancel(final boolean mayInterruptIfRunning)
+   {
+      return false;
+   }
+
+   public boolean isCancelled()
+   {
+      return false;
+   }
+
+   public synchronized boolean isDone()
+   {
+      return done;
+   }
+
+   public T get() throws InterruptedException, ExecutionException
+   {
+      latch.await();
+
+      return getResult();
+   }
+
+   public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+   {
+      if (!latch.await(timeout, unit))
+      {
+         throw new TimeoutException();
+      }
+
+      return getResult();
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      return "ClientFutureImpl[done=" + done + (exception != null ? ", exception=" + exception : "") + "]";
+   }
+
+   private synchronized T getResult() throws ExecutionException
+   {
+      if (exception != null)
+      {
+         throw new ExecutionException(exception);
+      }
+
+      return result;
+   }
+
+   private void callListener(final ClientFutureListener<? super T> listener)
+   {
+      try
+      {
+         if (exception != null)
+         {
+            listener.failed(exception);
+         }
+         else
+         {
+            listener.completed(result);
+         }
+      }
+      catch (Throwable e)
+      {
+         HornetQClientLogger.LOGGER.warn(e.getMessage(), e);
+      }
+   }
+}
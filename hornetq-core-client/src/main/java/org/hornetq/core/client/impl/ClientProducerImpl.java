@@ -22,6 +22,7 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientFuture;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.core.client.HornetQClientMessageBundle;
 import org.hornetq.core.message.BodyEncoder;
@@ -122,14 +123,14 @@ public class ClientProducerImpl implements ClientProducerInternal
    {
       checkClosed();
 
-      doSend(null, msg, null, false);
+      doSend(null, msg, null, false, null);
    }
 
    public void send(final SimpleString address1, final Message msg) throws HornetQException
    {
       checkClosed();
 
-      doSend(address1, msg, null, false);
+      doSend(address1, msg, null, false, null);
    }
 
    public void send(final String address1, final Message message) throws HornetQException
@@ -144,11 +145,11 @@ public class ClientProducerImpl implements ClientProducerInternal
       boolean confirmationWindowEnabled = session.isConfirmationWindowEnabled();
       if (confirmationWindowEnabled)
       {
-         doSend(address1, message, handler, true);
+         doSend(address1, message, handler, true, null);
       }
       else
       {
-         doSend(address1, message, null, true);
+         doSend(address1, message, null, true, null);
          if (handler != null)
          {
             session.scheduleConfirmation(handler, message);
@@ -162,6 +163,22 @@ public class ClientProducerImpl implements ClientProducerInternal
       send(null, message, handler);
    }
 
+   public ClientFuture<Void> sendAsync(final Message msg) throws HornetQException
+   {
+      return sendAsync(null, msg);
+   }
+
+   public ClientFuture<Void> sendAsync(final SimpleString address1, final Message msg) throws HornetQException
+   {
+      checkClosed();
+
+      ClientFutureImpl<Void> future = new ClientFutureImpl<Void>();
+
+      doSend(address1, msg, null, false, future);
+
+      return future;
+   }
+
    public synchronized void close() throws HornetQException
    {
       if (closed)
@@ -222,7 +239,7 @@ public class ClientProducerImpl implements ClientProducerInternal
    }
 
    private void doSend(final SimpleString address1, final Message msg, final SendAcknowledgementHandler handler,
-                       final boolean forceAsync) throws HornetQException
+                       final boolean forceAsync, final ClientFutureImpl<Void> future) throws HornetQException
    {
       session.startCall();
 
@@ -294,11 +311,17 @@ public class ClientProducerImpl implements ClientProducerInternal
 
          if (isLarge)
          {
-            largeMessageSend(sendBlocking, msgI, theCredits, handler);
+            // The chunks of a large message are not pipelined, the last one is sent blocking instead
+            largeMessageSend(sendBlocking || future != null, msgI, theCredits, handler);
+
+            if (future != null)
+            {
+               future.complete(null);
+            }
          }
          else
          {
-            sendRegularMessage(msgI, sendBlocking, theCredits, handler);
+            sendRegularMessage(msgI, sendBlocking, theCredits, handler, future);
          }
       }
       finally
@@ -307,7 +330,8 @@ public class ClientProducerImpl implements ClientProducerInternal
       }
    }
 
-   private void sendRegularMessage(final MessageInternal msgI, final boolean sendBlocking, final ClientProducerCredits theCredits, final SendAcknowledgementHandler handler) throws HornetQException
+   private void sendRegularMessage(final MessageInternal msgI, final boolean sendBlocking, final ClientProducerCredits theCredits, final SendAcknowledgementHandler handler,
+                                   final ClientFutureImpl<Void> future) throws HornetQException
    {
       try
       {
@@ -326,7 +350,14 @@ public class ClientProducerImpl implements ClientProducerInternal
          throw new HornetQInterruptedException(e);
       }
 
-      sessionContext.sendFullMessage(msgI, sendBlocking, handler, address);
+      if (future != null)
+      {
+         sessionContext.sendFullMessageAsync(msgI, future);
+      }
+      else
+      {
+         sessionContext.sendFullMessage(msgI, sendBlocking, handler, address);
+      }
    }
 
    private void checkClosed() throws HornetQException
@@ -553,7 +584,7 @@ public class ClientProducerImpl implements ClientProducerInternal
                msgI.putLongProperty(Message.HDR_LARGE_BODY_SIZE, deflaterReader.getTotalSize());
 
                msgI.getBodyBuffer().writeBytes(buff, 0, pos);
-               sendRegularMessage(msgI, sendBlocking, credits, handler);
+               sendRegularMessage(msgI, sendBlocking, credits, handler, null);
                return;
             }
             else
@@ -30,6 +30,8 @@ import org.hornetq.api.core.HornetQExceptionType;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientFuture;
+import org.hornetq.api.core.client.ClientFutureListener;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSessionFactory;
@@ -285,6 +287,28 @@ public final class ClientSessionImpl implements ClientSessionInternal, FailureLi
       internalCreateQueue(address, queueName, filterString, durable, false);
    }
 
+   public ClientFuture<Void> createQueueAsync(final SimpleString address,
+                                              final SimpleString queueName,
+                                              final SimpleString filterString,
+                                              final boolean durable) throws HornetQException
+   {
+      checkClosed();
+
+      ClientFutureImpl<Void> future = new ClientFutureImpl<Void>();
+
+      startCall();
+      try
+      {
+         sessionContext.createQueueAsync(address, queueName, filterString, durable, false, future);
+      }
+      finally
+      {
+         endCall();
+      }
+
+      return future;
+   }
+
    public void createQueue(final String address,
                            final String queueName,
                            final String filterString,
@@ -321,6 +345,25 @@ public final class ClientSessionImpl implements ClientSessionInternal, FailureLi
                           true);
    }
 
+   public ClientFuture<Void> deleteQueueAsync(final SimpleString queueName) throws HornetQException
+   {
+      checkClosed();
+
+      ClientFutureImpl<Void> future = new ClientFutureImpl<Void>();
+
+      startCall();
+      try
+      {
+         sessionContext.deleteQueueAsync(queueName, future);
+      }
+      finally
+      {
+         endCall();
+      }
+
+      return future;
+   }
+
    public void deleteQueue(final SimpleString queueName) throws HornetQException
    {
       checkClosed();
@@ -553,6 +596,63 @@ public final class ClientSessionImpl implements ClientSessionInternal, FailureLi
       workDone = false;
    }
 
+   public ClientFuture<Void> commitAsync() throws HornetQException
+   {
+      checkClosed();
+
+      if (HornetQClientLogger.LOGGER.isTraceEnabled())
+      {
+         HornetQClientLogger.LOGGER.trace("Sending commit asynchronously");
+      }
+
+      if (rollbackOnly)
+      {
+         rollbackOnFailover(true);
+      }
+
+      flushAcks();
+
+      if (rollbackOnly)
+      {
+         rollbackOnFailover(true);
+      }
+
+      final ClientFutureImpl<Void> result = new ClientFutureImpl<Void>();
+
+      ClientFutureImpl<Void> commit = new ClientFutureImpl<Void>();
+
+      commit.addListener(new ClientFutureListener<Void>()
+      {
+         public void completed(final Void nothing)
+         {
+            result.complete(null);
+         }
+
+         public void failed(final HornetQException e)
+         {
+            if (e.getType() == HornetQExceptionType.UNBLOCKED)
+            {
+               // The call to commit was unlocked on failover, we can't rollback from the remoting thread
+               // so the session is left rollbackOnly and the next commit or rollback will do it
+               rollbackOnly = true;
+
+               result.fail(HornetQClientMessageBundle.BUNDLE.txOutcomeUnknown());
+            }
+            else
+            {
+               result.fail(e);
+            }
+         }
+      });
+
+      // Any work done from now on belongs to the next transaction
+      workDone = false;
+
+      sessionContext.simpleCommitAsync(commit);
+
+      return result;
+   }
+
    public boolean isRollbackOnly()
    {
       return rollbackOnly;
@@ -603,6 +703,68 @@ public final class ClientSessionImpl implements ClientSessionInternal, FailureLi
       rollbackOnly = false;
    }
 
+   public ClientFuture<Void> rollbackAsync() throws HornetQException
+   {
+      if (HornetQClientLogger.LOGGER.isTraceEnabled())
+      {
+         HornetQClientLogger.LOGGER.trace("calling rollbackAsync()");
+      }
+      checkClosed();
+
+      final boolean wasStarted = started;
+
+      final Set<ClientConsumerInternal> consumersClone = cloneConsumers();
+
+      // Same as rollback, but the consumers don't wait for onMessage and the server isn't waited for
+      // to stop. The consumers hand out no message until the server has stopped, when the messages it
+      // sent before are all in their buffers and can be cleared
+      for (ClientConsumerInternal consumer : consumersClone)
+      {
+         if (wasStarted)
+         {
+            consumer.stop(false);
+         }
+
+         consumer.clear(false);
+      }
+
+      flushAcks();
+
+      if (wasStarted)
+      {
+         ClientFutureImpl<Void> stopped = new ClientFutureImpl<Void>();
+
+         stopped.addListener(new ClientFutureListener<Void>()
+         {
+            public void completed(final Void nothing)
+            {
+               clearAndStart(consumersClone);
+            }
+
+            public void failed(final HornetQException e)
+            {
+               clearAndStart(consumersClone);
+            }
+         });
+
+         sessionContext.sessionStopAsync(stopped);
+      }
+
+      ClientFutureImpl<Void> future = new ClientFutureImpl<Void>();
+
+      sessionContext.simpleRollbackAsync(false, future);
+
+      // The server handles the start after the rollback, so the cancelled messages are redelivered first
+      if (wasStarted)
+      {
+         sessionContext.sessionStart();
+      }
+
+      rollbackOnly = false;
+
+      return future;
+   }
+
    public ClientMessage createMessage(final byte type,
                                       final boolean durable,
                                       final long expiration,
@@ -1862,6 +2024,27 @@ public final class ClientSessionImpl implements ClientSessionInternal, FailureLi
       }
    }
 
+   /**
+    * Called once the server has stopped delivering, on the remoting thread, so no message can be
+    * handed to the consumers in between.
+    */
+   private void clearAndStart(final Set<ClientConsumerInternal> consumersClone)
+   {
+      for (ClientConsumerInternal consumer : consumersClone)
+      {
+         try
+         {
+            consumer.clear(false);
+         }
+         catch (HornetQException e)
+         {
+            HornetQClientLogger.LOGGER.errorClearingMessages(e);
+         }
+
+         consumer.start();
+      }
+   }
+
    private void flushAcks() throws HornetQException
    {
       for (ClientConsumerInternal consumer : cloneConsumers())
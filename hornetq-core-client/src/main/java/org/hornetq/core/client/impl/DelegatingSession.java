@@ -21,6 +21,7 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientFuture;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSessionFactory;
@@ -158,6 +159,11 @@ public class DelegatingSession implements ClientSessionInternal
       session.commit();
    }
 
+   public ClientFuture<Void> commitAsync() throws HornetQException
+   {
+      return session.commitAsync();
+   }
+
    public void commit(final Xid xid, final boolean onePhase) throws XAException
    {
       session.commit(xid, onePhase);
@@ -297,6 +303,14 @@ public class DelegatingSession implements ClientSessionInternal
       session.createQueue(address, queueName, filterString, durable);
    }
 
+   public ClientFuture<Void> createQueueAsync(final SimpleString address,
+                                              final SimpleString queueName,
+                                              final SimpleString filterString,
+                                              final boolean durable) throws HornetQException
+   {
+      return session.createQueueAsync(address, queueName, filterString, durable);
+   }
+
    public void createQueue(final String address, final String queueName, final boolean durable) throws HornetQException
    {
       session.createQueue(address, queueName, durable);
@@ -335,6 +349,11 @@ public class DelegatingSession implements ClientSessionInternal
       session.deleteQueue(queueName);
    }
 
+   public ClientFuture<Void> deleteQueueAsync(final SimpleString queueName) throws HornetQException
+   {
+      return session.deleteQueueAsync(queueName);
+   }
+
    public void deleteQueue(final String queueName) throws HornetQException
    {
       session.deleteQueue(queueName);
@@ -504,6 +523,11 @@ public class DelegatingSession implements ClientSessionInternal
       session.rollback(considerLastMessageAsDelivered);
    }
 
+   public ClientFuture<Void> rollbackAsync() throws HornetQException
+   {
+      return session.rollbackAsync();
+   }
+
    public void rollback(final Xid xid) throws XAException
    {
       session.rollback(xid);
@@ -17,12 +17,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQPropertyConversionException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.buffers.impl.ResetLimitWrappedHornetQBuffer;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
@@ -168,11 +171,16 @@ public abstract class MessageImpl implements MessageInternal
          {
             other.bufferUsed = true;
 
-            // We need to copy the underlying buffer too, since the different messsages thereafter might have different
-            // properties set on them, making their encoding different
-            buffer = other.buffer.copy(0, other.buffer.writerIndex());
+            // The underlying buffer is shared until one of the messages changes it, since the different messages
+            // thereafter might have different properties set on them, making their encoding different. A new encoding
+            // copies the buffer as it is used, and a change on the body copies it as it isn't copied yet
+            other.copied = false;
 
-            buffer.setIndex(other.buffer.readerIndex(), buffer.capacity());
+            buffer = other.buffer.duplicate();
+
+            bufferUsed = true;
+
+            copied = false;
          }
       }
    }
@@ -265,6 +273,9 @@ public abstract class MessageImpl implements MessageInternal
    {
       if (bodyBuffer == null)
       {
+         // the body buffer moves the indexes of the underlying buffer, which can't be shared with another message
+         checkCopy();
+
          bodyBuffer = new ResetLimitWrappedHornetQBuffer(BODY_OFFSET, buffer, this);
       }
 
@@ -535,11 +546,18 @@ public abstract class MessageImpl implements MessageInternal
 
       if (bufferUsed)
       {
-         HornetQBuffer copied = buff.copy(0, buff.capacity());
+         // The buffer might still be written by another delivery, but only the packet headers and what is written
+         // after the end of the message differ, so the encoded message is shared instead of copied
+         CompositeByteBuf composite = Unpooled.compositeBuffer();
+
+         composite.addComponent(Unpooled.wrappedBuffer(new byte[BUFFER_HEADER_SPACE]));
+
+         composite.addComponent(Unpooled.unmodifiableBuffer(buff.byteBuf().slice(BUFFER_HEADER_SPACE,
+                                                                                 endOfMessagePosition - BUFFER_HEADER_SPACE)));
 
-         copied.setIndex(0, endOfMessagePosition);
+         composite.setIndex(0, endOfMessagePosition);
 
-         return copied;
+         return new ChannelBufferWrapper(composite);
       }
       else
       {
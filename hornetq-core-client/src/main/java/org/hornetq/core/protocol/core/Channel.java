@@ -12,6 +12,7 @@
  */
 package org.hornetq.core.protocol.core;
 
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 
 import org.hornetq.api.core.HornetQException;
@@ -63,6 +64,14 @@ public interface Channel
     */
    boolean sendAndFlush(Packet packet);
 
+   /**
+    * Sends several packets on this channel in one write to the connection, flushed after the last one.
+    * @param packets the packets to send, in order
+    * @return the total size of the packets sent, the packets rejected by an outgoing interceptor are
+    *         not sent
+    */
+   int send(List<? extends Packet> packets);
+
    /**
     * Sends a packet on this channel and then blocks until a response is received or a timeout
     * occurs.
@@ -73,6 +82,19 @@ public interface Channel
     */
    Packet sendBlocking(Packet packet, byte expectedPacket) throws HornetQException;
 
+   /**
+    * Sends a packet on this channel without waiting for its response. The handler is called once
+    * the response is received.
+    * <p>
+    * Any number of calls may be outstanding on a channel. The server answers them in the order they
+    * were sent, so responses are matched to the outstanding calls in that order.
+    * @param packet the packet to send
+    * @param expectedPacket the packet being expected.
+    * @param handler the handler called with the response
+    * @throws HornetQException if an error occurs during the send
+    */
+   void sendPipelined(Packet packet, byte expectedPacket, ResponseHandler handler) throws HornetQException;
+
    /**
     * Sets the {@link org.hornetq.core.protocol.core.ChannelHandler} that this channel should
     * forward received packets to.
@@ -131,12 +153,14 @@ public interface Channel
    void unlock();
 
    /**
-    * forces any {@link org.hornetq.core.protocol.core.Channel#sendBlocking(Packet, byte)} request to return with an exception.
+    * forces any {@link org.hornetq.core.protocol.core.Channel#sendBlocking(Packet, byte)} or
+    * {@link org.hornetq.core.protocol.core.Channel#sendPipelined(Packet, byte, ResponseHandler)} request to return with an exception.
     */
    void returnBlocking();
 
    /**
-    * forces any {@link org.hornetq.core.protocol.core.Channel#sendBlocking(Packet, byte)} request to return with an exception.
+    * forces any {@link org.hornetq.core.protocol.core.Channel#sendBlocking(Packet, byte)} or
+    * {@link org.hornetq.core.protocol.core.Channel#sendPipelined(Packet, byte, ResponseHandler)} request to return with an exception.
     */
    void returnBlocking(Throwable cause);
 
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core;
+
+import org.hornetq.api.core.HornetQException;
+
+/**
+ * A ResponseHandler is called by the channel with the response to a packet sent through
+ * {@link Channel#sendPipelined(Packet, byte, ResponseHandler)}.
+ * <p>
+ * It is called from the remoting thread, so it must not block.
+ */
+public interface ResponseHandler
+{
+   /**
+    * called by channel once the expected response has been received.
+    *
+    * @param response the response
+    */
+   void handleResponse(Packet response);
+
+   /**
+    * called by channel if the server answered with an exception, or if the call was unblocked
+    * because the connection failed or the channel was closed.
+    *
+    * @param exception the exception
+    */
+   void handleException(HornetQException exception);
+}
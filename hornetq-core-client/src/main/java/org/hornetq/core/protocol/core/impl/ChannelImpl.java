@@ -12,6 +12,9 @@
  */
 package org.hornetq.core.protocol.core.impl;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -32,6 +35,7 @@ import org.hornetq.core.protocol.core.ChannelHandler;
 import org.hornetq.core.protocol.core.CommandConfirmationHandler;
 import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.ResponseHandler;
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.PacketsConfirmedMessage;
 import org.hornetq.spi.core.protocol.RemotingConnection;
@@ -89,7 +93,17 @@ public final class ChannelImpl implements Channel
 
    private ChannelHandler handler;
 
-   private Packet response;
+   /**
+    * Calls waiting for a response, in the order they were sent. The server answers the calls on a
+    * channel in that same order, which is what we use to match the responses. Guarded by lock.
+    */
+   private final java.util.Queue<PendingCall> pendingCalls = new ArrayDeque<PendingCall>();
+
+   /**
+    * Responses still to come for calls that were failed when a call was abandoned, to be dropped
+    * before the next response is matched to a call. Guarded by lock.
+    */
+   private int discardedResponses;
 
    private final java.util.Queue<Packet> resendCache;
 
@@ -103,14 +117,10 @@ public final class ChannelImpl implements Channel
 
    private final Lock lock = new ReentrantLock();
 
-   private final Condition sendCondition = lock.newCondition();
-
    private final Condition failoverCondition = lock.newCondition();
 
    private final Object sendLock = new Object();
 
-   private final Object sendBlockingLock = new Object();
-
    private boolean failingOver;
 
    private final int confWindowSize;
@@ -189,18 +199,7 @@ public final class ChannelImpl implements Channel
 
    public void returnBlocking(Throwable cause)
    {
-      lock.lock();
-
-      try
-      {
-         response = new HornetQExceptionMessage(HornetQClientMessageBundle.BUNDLE.unblockingACall(cause));
-
-         sendCondition.signal();
-      }
-      finally
-      {
-         lock.unlock();
-      }
+      failPendingCalls(HornetQClientMessageBundle.BUNDLE.unblockingACall(cause));
    }
 
    public boolean sendAndFlush(final Packet packet)
@@ -289,118 +288,139 @@ public final class ChannelImpl implements Channel
       }
    }
 
-   /**
-    * Due to networking issues or server issues the server may take longer to answer than expected.. the client may timeout the call throwing an exception
-    * and the client could eventually retry another call, but the server could then answer a previous command issuing a class-cast-exception.
-    * The expectedPacket will be used to filter out undesirable packets that would belong to previous calls.
-    */
-   public Packet sendBlocking(final Packet packet, byte expectedPacket) throws HornetQException
+   // This must never called by more than one thread concurrently
+   public int send(final List<? extends Packet> packets)
    {
-      String interceptionResult = invokeInterceptors(packet, interceptors, connection);
+      List<Packet> accepted = new ArrayList<Packet>(packets.size());
 
-      if (interceptionResult != null)
+      for (Packet packet : packets)
       {
-         // if we don't throw an exception here the client might not unblock
-         throw HornetQClientMessageBundle.BUNDLE.interceptorRejectedPacket(interceptionResult);
+         if (invokeInterceptors(packet, interceptors, connection) == null)
+         {
+            accepted.add(packet);
+         }
       }
 
-      if (closed)
+      if (accepted.isEmpty())
       {
-         throw HornetQClientMessageBundle.BUNDLE.connectionDestroyed();
+         return 0;
       }
 
-      if (connection.getBlockingCallTimeout() == -1)
+      synchronized (sendLock)
       {
-         throw new IllegalStateException("Cannot do a blocking call timeout on a server side connection");
-      }
+         List<HornetQBuffer> buffers = new ArrayList<HornetQBuffer>(accepted.size());
 
-      // Synchronized since can't be called concurrently by more than one thread and this can occur
-      // E.g. blocking acknowledge() from inside a message handler at some time as other operation on main thread
-      synchronized (sendBlockingLock)
-      {
-         packet.setChannelID(id);
+         int size = 0;
 
-         final HornetQBuffer buffer = packet.encode(connection);
+         for (Packet packet : accepted)
+         {
+            packet.setChannelID(id);
+
+            if (isTrace)
+            {
+               HornetQClientLogger.LOGGER.trace("Sending packet nonblocking " + packet + " on channeID=" + id);
+            }
+
+            buffers.add(packet.encode(connection));
+
+            size += packet.getPacketSize();
+         }
 
          lock.lock();
 
          try
          {
-            if (failingOver)
+            awaitFailover();
+
+            // Sanity check
+            if (transferring)
             {
-               try
+               throw new IllegalStateException("Cannot send a packet while channel is doing failover");
+            }
+
+            if (resendCache != null)
+            {
+               for (Packet packet : accepted)
                {
-                  if (connection.getBlockingCallFailoverTimeout() < 0)
+                  if (packet.isRequiresConfirmations())
                   {
-                     while (failingOver)
-                     {
-                        failoverCondition.await();
-                     }
-                  }
-                  else
-                  {
-                     if (!failoverCondition.await(connection.getBlockingCallFailoverTimeout(), TimeUnit.MILLISECONDS))
-                     {
-                        HornetQClientLogger.LOGGER.debug("timed-out waiting for failover condition");
-                     }
+                     resendCache.add(packet);
                   }
                }
-               catch (InterruptedException e)
-               {
-                  throw new HornetQInterruptedException(e);
-               }
             }
+         }
+         finally
+         {
+            lock.unlock();
+         }
 
-            response = null;
+         if (isTrace)
+         {
+            HornetQClientLogger.LOGGER.trace("Writing " + buffers.size() + " buffers for channelID=" + id);
+         }
 
-            if (resendCache != null && packet.isRequiresConfirmations())
-            {
-               resendCache.add(packet);
-            }
+         // Outside the lock, the same as a single send
+         connection.getTransportConnection().write(buffers);
 
-            connection.getTransportConnection().write(buffer, false, false);
+         return size;
+      }
+   }
 
-            long toWait = connection.getBlockingCallTimeout();
+   /**
+    * Due to networking issues or server issues the server may take longer to answer than expected.. the client may timeout the call throwing an exception
+    * and the client could eventually retry another call, but the server could then answer a previous command issuing a class-cast-exception.
+    * The expectedPacket will be used to filter out undesirable packets that would belong to previous calls.
+    */
+   public Packet sendBlocking(final Packet packet, byte expectedPacket) throws HornetQException
+   {
+      final PendingCall call = new PendingCall(expectedPacket, null, lock.newCondition());
 
-            long start = System.currentTimeMillis();
+      writeCall(packet, call);
 
-            while (!closed && (response == null || (response.getType() != PacketImpl.EXCEPTION &&
-               response.getType() != expectedPacket)) && toWait > 0)
-            {
-               try
-               {
-                  sendCondition.await(toWait, TimeUnit.MILLISECONDS);
-               }
-               catch (InterruptedException e)
-               {
-                  throw new HornetQInterruptedException(e);
-               }
+      RuntimeException interrupted = null;
 
-               if (response != null && response.getType() != PacketImpl.EXCEPTION && response.getType() != expectedPacket)
-               {
-                  HornetQClientLogger.LOGGER.packetOutOfOrder(response, new Exception("trace"));
-               }
+      HornetQException timedOut = null;
 
-               if (closed)
-               {
-                  break;
-               }
+      List<PendingCall> failed;
 
-               final long now = System.currentTimeMillis();
+      lock.lock();
 
-               toWait -= now - start;
+      try
+      {
+         long toWait = connection.getBlockingCallTimeout();
+
+         long start = System.currentTimeMillis();
+
+         while (!closed && call.response == null && toWait > 0)
+         {
+            try
+            {
+               call.condition.await(toWait, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+               interrupted = new HornetQInterruptedException(e);
 
-               start = now;
+               break;
             }
 
-            if (response == null)
+            if (closed)
             {
-               throw HornetQClientMessageBundle.BUNDLE.timedOutSendingPacket(packet.getType());
+               break;
             }
 
-            if (response.getType() == PacketImpl.EXCEPTION)
+            final long now = System.currentTimeMillis();
+
+            toWait -= now - start;
+
+            start = now;
+         }
+
+         if (call.response != null)
+         {
+            if (call.response.getType() == PacketImpl.EXCEPTION)
             {
-               final HornetQExceptionMessage mem = (HornetQExceptionMessage) response;
+               final HornetQExceptionMessage mem = (HornetQExceptionMessage) call.response;
 
                HornetQException e = mem.getException();
 
@@ -408,13 +428,114 @@ public final class ChannelImpl implements Channel
 
                throw e;
             }
+
+            return call.response;
          }
-         finally
+
+         // The response may still come, and the calls sent after this one would be handed the wrong
+         // responses from then on, so they are all failed and their responses dropped when they come
+         if (interrupted == null)
          {
-            lock.unlock();
+            timedOut = HornetQClientMessageBundle.BUNDLE.timedOutSendingPacket(packet.getType());
          }
 
-         return response;
+         failed = completePendingCalls(HornetQClientMessageBundle.BUNDLE.unblockingACall(interrupted != null ? interrupted : timedOut), !closed);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+
+      callHandlers(failed);
+
+      if (interrupted != null)
+      {
+         throw interrupted;
+      }
+
+      throw timedOut;
+   }
+
+   public void sendPipelined(final Packet packet, final byte expectedPacket, final ResponseHandler responseHandler) throws HornetQException
+   {
+      writeCall(packet, new PendingCall(expectedPacket, responseHandler, null));
+   }
+
+   private void writeCall(final Packet packet, final PendingCall call) throws HornetQException
+   {
+      String interceptionResult = invokeInterceptors(packet, interceptors, connection);
+
+      if (interceptionResult != null)
+      {
+         // if we don't throw an exception here the client might not unblock
+         throw HornetQClientMessageBundle.BUNDLE.interceptorRejectedPacket(interceptionResult);
+      }
+
+      if (closed)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.connectionDestroyed();
+      }
+
+      if (connection.getBlockingCallTimeout() == -1)
+      {
+         throw new IllegalStateException("Cannot do a blocking call timeout on a server side connection");
+      }
+
+      packet.setChannelID(id);
+
+      final HornetQBuffer buffer = packet.encode(connection);
+
+      lock.lock();
+
+      try
+      {
+         awaitFailover();
+
+         // The call is queued and written under the lock, so the calls are queued in the order the
+         // server will see them
+         pendingCalls.add(call);
+
+         if (resendCache != null && packet.isRequiresConfirmations())
+         {
+            resendCache.add(packet);
+         }
+
+         connection.getTransportConnection().write(buffer, false, false);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Waits for a failover in progress, as long as the blocking calls do. Must be called holding the lock.
+    */
+   private void awaitFailover()
+   {
+      if (failingOver)
+      {
+         try
+         {
+            if (connection.getBlockingCallFailoverTimeout() < 0)
+            {
+               while (failingOver)
+               {
+                  failoverCondition.await();
+               }
+            }
+            else
+            {
+               if (!failoverCondition.await(connection.getBlockingCallFailoverTimeout(), TimeUnit.MILLISECONDS))
+               {
+                  HornetQClientLogger.LOGGER.debug("timed-out waiting for failover condition");
+               }
+            }
+         }
+         catch (InterruptedException e)
+         {
+            throw new HornetQInterruptedException(e);
+         }
       }
    }
 
@@ -496,6 +617,8 @@ public final class ChannelImpl implements Channel
          unlock();
       }
       closed = true;
+
+      failPendingCalls(HornetQClientMessageBundle.BUNDLE.connectionDestroyed());
    }
 
    public void transferConnection(final CoreRemotingConnection newConnection)
@@ -632,17 +755,23 @@ public final class ChannelImpl implements Channel
          {
             confirm(packet);
 
+            PendingCall call;
+
             lock.lock();
 
             try
             {
-               response = packet;
-               sendCondition.signal();
+               call = matchResponse(packet);
             }
             finally
             {
                lock.unlock();
             }
+
+            if (call != null)
+            {
+               call.callHandler();
+            }
          }
          else if (handler != null)
          {
@@ -651,6 +780,108 @@ public final class ChannelImpl implements Channel
       }
    }
 
+   /**
+    * Must be called with the lock held.
+    *
+    * @return the call, if its handler needs to be called
+    */
+   private PendingCall matchResponse(final Packet packet)
+   {
+      if (discardedResponses > 0)
+      {
+         discardedResponses--;
+
+         if (isTrace)
+         {
+            HornetQClientLogger.LOGGER.trace("Discarding response " + packet + " to a failed call on channelID=" + id);
+         }
+
+         return null;
+      }
+
+      PendingCall call = pendingCalls.peek();
+
+      if (call == null)
+      {
+         if (isTrace)
+         {
+            HornetQClientLogger.LOGGER.trace("Discarding response " + packet + " with no call waiting for it on channelID=" + id);
+         }
+
+         return null;
+      }
+
+      if (!call.isExpected(packet))
+      {
+         HornetQClientLogger.LOGGER.packetOutOfOrder(packet, new Exception("trace"));
+
+         return null;
+      }
+
+      pendingCalls.poll();
+
+      return call.complete(packet) ? call : null;
+   }
+
+   private void failPendingCalls(final HornetQException cause)
+   {
+      List<PendingCall> failed;
+
+      lock.lock();
+
+      try
+      {
+         failed = completePendingCalls(cause, false);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+
+      callHandlers(failed);
+   }
+
+   /**
+    * Must be called with the lock held, the handlers of the calls returned must be called once it
+    * is released.
+    *
+    * @param responsesToCome true if the server is still to answer the calls, false if the
+    *                        connection is gone and so are their responses
+    */
+   private List<PendingCall> completePendingCalls(final HornetQException cause, final boolean responsesToCome)
+   {
+      discardedResponses = responsesToCome ? discardedResponses + pendingCalls.size() : 0;
+
+      if (pendingCalls.isEmpty())
+      {
+         return Collections.emptyList();
+      }
+
+      final Packet response = new HornetQExceptionMessage(cause);
+
+      List<PendingCall> failed = new ArrayList<PendingCall>(pendingCalls.size());
+
+      PendingCall call;
+
+      while ((call = pendingCalls.poll()) != null)
+      {
+         if (call.complete(response))
+         {
+            failed.add(call);
+         }
+      }
+
+      return failed;
+   }
+
+   private static void callHandlers(final List<PendingCall> calls)
+   {
+      for (PendingCall call : calls)
+      {
+         call.callHandler();
+      }
+   }
+
    private void doWrite(final Packet packet)
    {
       final HornetQBuffer buffer = packet.encode(connection);
@@ -702,4 +933,66 @@ public final class ChannelImpl implements Channel
    {
       return "Channel[id=" + CHANNEL_ID.idToString(id) + ", handler=" + handler + "]";
    }
+
+   /**
+    * A call sent through {@link #sendBlocking(Packet, byte)} or
+    * {@link #sendPipelined(Packet, byte, ResponseHandler)}, waiting for its response.
+    * The fields are guarded by the channel lock.
+    */
+   private static final class PendingCall
+   {
+      private final byte expectedPacket;
+
+      private final ResponseHandler responseHandler;
+
+      private final Condition condition;
+
+      private Packet response;
+
+      private PendingCall(final byte expectedPacket, final ResponseHandler responseHandler, final Condition condition)
+      {
+         this.expectedPacket = expectedPacket;
+         this.responseHandler = responseHandler;
+         this.condition = condition;
+      }
+
+      private boolean isExpected(final Packet packet)
+      {
+         return packet.getType() == PacketImpl.EXCEPTION || packet.getType() == expectedPacket;
+      }
+
+      /**
+       * @return true if the response handler needs to be called, which must be done outside the lock
+       */
+      private boolean complete(final Packet packet)
+      {
+         response = packet;
+
+         if (condition != null)
+         {
+            condition.signal();
+         }
+
+         return responseHandler != null;
+      }
+
+      private void callHandler()
+      {
+         try
+         {
+            if (response.getType() == PacketImpl.EXCEPTION)
+            {
+               responseHandler.handleException(((HornetQExceptionMessage) response).getException());
+            }
+            else
+            {
+               responseHandler.handleResponse(response);
+            }
+         }
+         catch (Throwable e)
+         {
+            HornetQClientLogger.LOGGER.warn(e.getMessage(), e);
+         }
+      }
+   }
 }
@@ -36,6 +36,7 @@ import org.hornetq.core.client.HornetQClientMessageBundle;
 import org.hornetq.core.client.impl.AddressQueryImpl;
 import org.hornetq.core.client.impl.ClientConsumerImpl;
 import org.hornetq.core.client.impl.ClientConsumerInternal;
+import org.hornetq.core.client.impl.ClientFutureImpl;
 import org.hornetq.core.client.impl.ClientLargeMessageInternal;
 import org.hornetq.core.client.impl.ClientMessageInternal;
 import org.hornetq.core.client.impl.ClientProducerCreditsImpl;
@@ -46,6 +47,7 @@ import org.hornetq.core.protocol.core.ChannelHandler;
 import org.hornetq.core.protocol.core.CommandConfirmationHandler;
 import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.ResponseHandler;
 import org.hornetq.core.protocol.core.impl.wireformat.CreateQueueMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.CreateSessionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.CreateSharedQueueMessage;
@@ -226,6 +228,11 @@ public class HornetQSessionContext extends SessionContext
       sessionChannel.sendBlocking(new SessionDeleteQueueMessage(queueName), PacketImpl.NULL_RESPONSE);
    }
 
+   public void deleteQueueAsync(final SimpleString queueName, final ClientFutureImpl<Void> future) throws HornetQException
+   {
+      sessionChannel.sendPipelined(new SessionDeleteQueueMessage(queueName), PacketImpl.NULL_RESPONSE, new NullResponseHandler(future));
+   }
+
    public ClientSession.QueueQuery queueQuery(final SimpleString queueName) throws HornetQException
    {
       SessionQueueQueryMessage request = new SessionQueueQueryMessage(queueName);
@@ -310,11 +317,21 @@ public class HornetQSessionContext extends SessionContext
       sessionChannel.sendBlocking(new PacketImpl(PacketImpl.SESS_COMMIT), PacketImpl.NULL_RESPONSE);
    }
 
+   public void simpleCommitAsync(final ClientFutureImpl<Void> future) throws HornetQException
+   {
+      sessionChannel.sendPipelined(new PacketImpl(PacketImpl.SESS_COMMIT), PacketImpl.NULL_RESPONSE, new NullResponseHandler(future));
+   }
+
    public void simpleRollback(boolean lastMessageAsDelivered) throws HornetQException
    {
       sessionChannel.sendBlocking(new RollbackMessage(lastMessageAsDelivered), PacketImpl.NULL_RESPONSE);
    }
 
+   public void simpleRollbackAsync(boolean lastMessageAsDelivered, final ClientFutureImpl<Void> future) throws HornetQException
+   {
+      sessionChannel.sendPipelined(new RollbackMessage(lastMessageAsDelivered), PacketImpl.NULL_RESPONSE, new NullResponseHandler(future));
+   }
+
    public void sessionStart() throws HornetQException
    {
       sessionChannel.send(new PacketImpl(PacketImpl.SESS_START));
@@ -325,6 +342,11 @@ public class HornetQSessionContext extends SessionContext
       sessionChannel.sendBlocking(new PacketImpl(PacketImpl.SESS_STOP), PacketImpl.NULL_RESPONSE);
    }
 
+   public void sessionStopAsync(final ClientFutureImpl<Void> future) throws HornetQException
+   {
+      sessionChannel.sendPipelined(new PacketImpl(PacketImpl.SESS_STOP), PacketImpl.NULL_RESPONSE, new NullResponseHandler(future));
+   }
+
    public void addSessionMetadata(String key, String data) throws HornetQException
    {
       sessionChannel.sendBlocking(new SessionAddMetaDataMessageV2(key, data), PacketImpl.NULL_RESPONSE);
@@ -416,6 +438,13 @@ public class HornetQSessionContext extends SessionContext
       }
    }
 
+   public void sendFullMessageAsync(MessageInternal msgI, ClientFutureImpl<Void> future) throws HornetQException
+   {
+      SessionSendMessage packet = new SessionSendMessage(msgI, true, null);
+
+      sessionChannel.sendPipelined(packet, PacketImpl.NULL_RESPONSE, new NullResponseHandler(future));
+   }
+
    @Override
    public int sendInitialChunkOnLargeMessage(MessageInternal msgI) throws HornetQException
    {
@@ -581,6 +610,12 @@ public class HornetQSessionContext extends SessionContext
       sessionChannel.sendBlocking(request, PacketImpl.NULL_RESPONSE);
    }
 
+   public void createQueueAsync(SimpleString address, SimpleString queueName, SimpleString filterString, boolean durable, boolean temp, ClientFutureImpl<Void> future) throws HornetQException
+   {
+      CreateQueueMessage request = new CreateQueueMessage(address, queueName, filterString, durable, temp, true);
+      sessionChannel.sendPipelined(request, PacketImpl.NULL_RESPONSE, new NullResponseHandler(future));
+   }
+
    @Override
    public boolean reattachOnNewConnection(RemotingConnection newConnection) throws HornetQException
    {
@@ -937,5 +972,26 @@ public class HornetQSessionContext extends SessionContext
       conn.write(buffer, false, false);
    }
 
+   /**
+    * Completes the future of an operation answered with a NullResponse.
+    */
+   private static final class NullResponseHandler implements ResponseHandler
+   {
+      private final ClientFutureImpl<Void> future;
+
+      NullResponseHandler(final ClientFutureImpl<Void> future)
+      {
+         this.future = future;
+      }
+
+      public void handleResponse(final Packet response)
+      {
+         future.complete(null);
+      }
 
+      public void handleException(final HornetQException exception)
+      {
+         future.fail(exception);
+      }
+   }
 }
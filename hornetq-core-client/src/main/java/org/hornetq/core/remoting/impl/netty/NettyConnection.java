@@ -13,6 +13,8 @@
 package org.hornetq.core.remoting.impl.netty;
 
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
@@ -343,6 +345,70 @@ public class NettyConnection implements Connection
       }
    }
 
+   public void write(final List<HornetQBuffer> buffers)
+   {
+      try
+      {
+         writeLock.acquire();
+
+         try
+         {
+            final List<ByteBuf> bufs = new ArrayList<ByteBuf>(buffers.size() + 1);
+
+            if (batchBuffer != null)
+            {
+               // whatever was batched before goes first, the same as a flushed write
+               if (batchBuffer.readable())
+               {
+                  bufs.add(batchBuffer.byteBuf());
+               }
+
+               batchBuffer = null;
+            }
+
+            for (HornetQBuffer buffer : buffers)
+            {
+               bufs.add(buffer.byteBuf());
+            }
+
+            // the buffers are written one after the other and flushed together, so the batch goes out
+            // in as few writes to the socket as possible
+            final Runnable task = new Runnable()
+            {
+               @Override
+               public void run()
+               {
+                  for (ByteBuf buf : bufs)
+                  {
+                     channel.write(buf, channel.voidPromise());
+                  }
+
+                  channel.flush();
+               }
+            };
+
+            EventLoop eventLoop = channel.eventLoop();
+            if (eventLoop.inEventLoop())
+            {
+               // the same as a single write, this keeps the order with the writes already queued on the eventloop
+               eventLoop.execute(task);
+            }
+            else
+            {
+               task.run();
+            }
+         }
+         finally
+         {
+            writeLock.release();
+         }
+      }
+      catch (InterruptedException e)
+      {
+         throw new HornetQInterruptedException(e);
+      }
+   }
+
    public String getRemoteAddress()
    {
       SocketAddress address = channel.remoteAddress();
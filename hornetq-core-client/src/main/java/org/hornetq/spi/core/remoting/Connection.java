@@ -12,6 +12,8 @@
  */
 package org.hornetq.spi.core.remoting;
 
+import java.util.List;
+
 import io.netty.channel.ChannelFutureListener;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.TransportConfiguration;
@@ -71,6 +73,13 @@ public interface Connection
     */
    void write(HornetQBuffer buffer);
 
+   /**
+    * writes the buffers to the connection in order, flushing them onto the wire once after the last one.
+    *
+    * @param buffers the buffers to write, each holding whole packets
+    */
+   void write(List<HornetQBuffer> buffers);
+
 
    /**
     * This should close the internal channel without calling any listeners.
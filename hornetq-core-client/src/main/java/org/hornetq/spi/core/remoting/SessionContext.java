@@ -25,6 +25,7 @@ import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.core.client.impl.ClientConsumerInternal;
+import org.hornetq.core.client.impl.ClientFutureImpl;
 import org.hornetq.core.client.impl.ClientLargeMessageInternal;
 import org.hornetq.core.client.impl.ClientMessageInternal;
 import org.hornetq.core.client.impl.ClientProducerCreditsImpl;
@@ -138,6 +139,12 @@ public abstract class SessionContext
 
    public abstract void sendFullMessage(MessageInternal msgI, boolean sendBlocking, SendAcknowledgementHandler handler, SimpleString defaultAddress) throws HornetQException;
 
+   /**
+    * Sends the message asking for a response, without waiting for it. The future is completed
+    * once the server has answered.
+    */
+   public abstract void sendFullMessageAsync(MessageInternal msgI, ClientFutureImpl<Void> future) throws HornetQException;
+
    /**
     * it should return the number of credits (or bytes) used to send this packet
     *
@@ -160,8 +167,12 @@ public abstract class SessionContext
 
    public abstract void deleteQueue(SimpleString queueName) throws HornetQException;
 
+   public abstract void deleteQueueAsync(SimpleString queueName, ClientFutureImpl<Void> future) throws HornetQException;
+
    public abstract void createQueue(SimpleString address, SimpleString queueName, SimpleString filterString, boolean durable, boolean temp) throws HornetQException;
 
+   public abstract void createQueueAsync(SimpleString address, SimpleString queueName, SimpleString filterString, boolean durable, boolean temp, ClientFutureImpl<Void> future) throws HornetQException;
+
    public abstract ClientSession.QueueQuery queueQuery(SimpleString queueName) throws HornetQException;
 
    public abstract void forceDelivery(ClientConsumer consumer, long sequence) throws HornetQException;
@@ -170,6 +181,8 @@ public abstract class SessionContext
 
    public abstract void simpleCommit() throws HornetQException;
 
+   public abstract void simpleCommitAsync(ClientFutureImpl<Void> future) throws HornetQException;
+
 
    /**
     * If we are doing a simple rollback on the RA, we need to ack the last message sent to the consumer,
@@ -182,10 +195,14 @@ public abstract class SessionContext
     */
    public abstract void simpleRollback(boolean lastMessageAsDelivered) throws HornetQException;
 
+   public abstract void simpleRollbackAsync(boolean lastMessageAsDelivered, ClientFutureImpl<Void> future) throws HornetQException;
+
    public abstract void sessionStart() throws HornetQException;
 
    public abstract void sessionStop() throws HornetQException;
 
+   public abstract void sessionStopAsync(ClientFutureImpl<Void> future) throws HornetQException;
+
    public abstract void sendACK(boolean individual, boolean block, final ClientConsumer consumer, final Message message) throws HornetQException;
 
    public abstract void expireMessage(final ClientConsumer consumer, Message message) throws HornetQException;
@@ -209,6 +209,21 @@ public interface Journal extends HornetQComponent
     */
    void scheduleCompactAndBlock(int timeout) throws Exception;
 
+   /**
+    * @return the bytes of the data files freed by compacting since the journal was created
+    */
+   long getCompactedBytes();
+
+   /**
+    * @return the time, in milliseconds, the journal was locked by compacting since it was created
+    */
+   long getCompactStallTime();
+
+   /**
+    * @return the longest time, in milliseconds, the journal was locked by a single compacting pass
+    */
+   long getMaxCompactStallTime();
+
    /**
     * Stops any operation that may delete or modify old (stale) data.
     * <p>
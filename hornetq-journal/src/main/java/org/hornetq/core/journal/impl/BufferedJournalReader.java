@@ -0,0 +1,299 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.journal.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.SequentialFileFactory;
+
+/**
+ * Reads and parses a journal file ahead of its replay, so several files can be read at the same
+ * time while loading.
+ * <p>
+ * The callbacks are kept in the order they were read and {@link #replay(JournalReaderCallback) replayed}
+ * later on the loading thread, which is the only one changing the state of the journal.
+ */
+final class BufferedJournalReader implements JournalReaderCallback, Callable<BufferedJournalReader>
+{
+   private static final byte ADD = 0;
+
+   private static final byte UPDATE = 1;
+
+   private static final byte DELETE = 2;
+
+   private static final byte ADD_TX = 3;
+
+   private static final byte UPDATE_TX = 4;
+
+   private static final byte DELETE_TX = 5;
+
+   private static final byte PREPARE = 6;
+
+   private static final byte COMMIT = 7;
+
+   private static final byte ROLLBACK = 8;
+
+   private static final byte DATA_FILE = 9;
+
+   private final SequentialFileFactory fileFactory;
+
+   private final JournalFile file;
+
+   private final List<Entry> entries = new ArrayList<Entry>();
+
+   private int lastDataPos;
+
+   BufferedJournalReader(final SequentialFileFactory fileFactory, final JournalFile file)
+   {
+      this.fileFactory = fileFactory;
+      this.file = file;
+   }
+
+   public BufferedJournalReader call() throws Exception
+   {
+      lastDataPos = JournalImpl.readJournalFile(fileFactory, file, this);
+      return this;
+   }
+
+   /**
+    * @return the position after the last valid record, as returned by
+    * {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}
+    */
+   int replay(final JournalReaderCallback reader) throws Exception
+   {
+      for (Entry entry : entries)
+      {
+         switch (entry.type)
+         {
+            case ADD:
+               reader.onReadAddRecord(entry.info);
+               break;
+            case UPDATE:
+               reader.onReadUpdateRecord(entry.info);
+               break;
+            case DELETE:
+               reader.onReadDeleteRecord(entry.id);
+               break;
+            case ADD_TX:
+               reader.onReadAddRecordTX(entry.id, entry.info);
+               break;
+            case UPDATE_TX:
+               reader.onReadUpdateRecordTX(entry.id, entry.info);
+               break;
+            case DELETE_TX:
+               reader.onReadDeleteRecordTX(entry.id, entry.info);
+               break;
+            case PREPARE:
+               reader.onReadPrepareRecord(entry.id, entry.extraData, entry.numberOfRecords);
+               break;
+            case COMMIT:
+               reader.onReadCommitRecord(entry.id, entry.numberOfRecords);
+               break;
+            case ROLLBACK:
+               reader.onReadRollbackRecord(entry.id);
+               break;
+            default:
+               reader.markAsDataFile(file);
+         }
+      }
+      entries.clear();
+      return lastDataPos;
+   }
+
+   public void onReadAddRecord(final RecordInfo info) throws Exception
+   {
+      entries.add(new Entry(ADD, 0, info));
+   }
+
+   public void onReadUpdateRecord(final RecordInfo recordInfo) throws Exception
+   {
+      entries.add(new Entry(UPDATE, 0, recordInfo));
+   }
+
+   public void onReadDeleteRecord(final long recordID) throws Exception
+   {
+      entries.add(new Entry(DELETE, recordID, null));
+   }
+
+   public void onReadAddRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+   {
+      entries.add(new Entry(ADD_TX, transactionID, recordInfo));
+   }
+
+   public void onReadUpdateRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+   {
+      entries.add(new Entry(UPDATE_TX, transactionID, recordInfo));
+   }
+
+   public void onReadDeleteRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+   {
+      entries.add(new Entry(DELETE_TX, transactionID, recordInfo));
+   }
+
+   public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+   {
+      Entry entry = new Entry(PREPARE, transactionID, null);
+      entry.extraData = extraData;
+      entry.numberOfRecords = numberOfRecords;
+      entries.add(entry);
+   }
+
+   public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+   {
+      Entry entry = new Entry(COMMIT, transactionID, null);
+      entry.numberOfRecords = numberOfRecords;
+      entries.add(entry);
+   }
+
+   public void onReadRollbackRecord(final long transactionID) throws Exception
+   {
+      entries.add(new Entry(ROLLBACK, transactionID, null));
+   }
+
+   public void markAsDataFile(final JournalFile file)
+   {
+      entries.add(new Entry(DATA_FILE, 0, null));
+   }
+
+   /**
+    * Reads a list of files in order, parsing up to {@code threads} of them ahead of the one being
+    * read. The callbacks of every file are called on the thread reading it.
+    */
+   static final class ReadAhead
+   {
+      private final SequentialFileFactory fileFactory;
+
+      private final List<JournalFile> files;
+
+      private final int threads;
+
+      private final ThreadPoolExecutor executor;
+
+      private final LinkedList<Future<BufferedJournalReader>> pending = new LinkedList<Future<BufferedJournalReader>>();
+
+      private int nextRead;
+
+      ReadAhead(final SequentialFileFactory fileFactory, final List<JournalFile> files, final int threads)
+      {
+         this.fileFactory = fileFactory;
+         this.files = files;
+         this.threads = threads;
+
+         if (threads > 1 && files.size() > 1)
+         {
+            ThreadFactory factory = new ThreadFactory()
+            {
+               public Thread newThread(final Runnable r)
+               {
+                  Thread thread = new Thread(r, "JournalImpl::ReadAheadExecutor");
+                  thread.setDaemon(true);
+                  return thread;
+               }
+            };
+            int poolSize = Math.min(threads, files.size());
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 1, TimeUnit.SECONDS,
+                                              new LinkedBlockingQueue<Runnable>(), factory);
+            // an exception in the middle of the files leaves no thread behind
+            executor.allowCoreThreadTimeOut(true);
+         }
+         else
+         {
+            executor = null;
+         }
+      }
+
+      /**
+       * Reads the next file of the list into the reader.
+       *
+       * @return the position after the last valid record of the file
+       */
+      int read(final JournalFile file, final JournalReaderCallback reader) throws Exception
+      {
+         if (executor == null)
+         {
+            return JournalImpl.readJournalFile(fileFactory, file, reader);
+         }
+
+         try
+         {
+            while (nextRead < files.size() && pending.size() < threads)
+            {
+               pending.add(executor.submit(new BufferedJournalReader(fileFactory, files.get(nextRead++))));
+            }
+
+            BufferedJournalReader bufferedFile;
+            try
+            {
+               bufferedFile = pending.removeFirst().get();
+            }
+            catch (ExecutionException e)
+            {
+               throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+
+            return bufferedFile.replay(reader);
+         }
+         catch (Exception e)
+         {
+            close();
+            throw e;
+         }
+      }
+
+      void close()
+      {
+         if (executor != null)
+         {
+            for (Future<BufferedJournalReader> future : pending)
+            {
+               future.cancel(false);
+            }
+            pending.clear();
+            executor.shutdown();
+         }
+      }
+   }
+
+   private static final class Entry
+   {
+      final byte type;
+
+      /**
+       * the record ID or the transaction ID, depending on the type
+       */
+      final long id;
+
+      final RecordInfo info;
+
+      byte[] extraData;
+
+      int numberOfRecords;
+
+      Entry(final byte type, final long id, final RecordInfo info)
+      {
+         this.type = type;
+         this.id = id;
+         this.info = info;
+      }
+   }
+}
@@ -323,6 +323,24 @@ public final class FileWrapperJournal extends JournalBase
       throw new UnsupportedOperationException();
    }
 
+   @Override
+   public long getCompactedBytes()
+   {
+      return 0;
+   }
+
+   @Override
+   public long getCompactStallTime()
+   {
+      return 0;
+   }
+
+   @Override
+   public long getMaxCompactStallTime()
+   {
+      return 0;
+   }
+
    @Override
    public void replicationSyncPreserveOldFiles()
    {
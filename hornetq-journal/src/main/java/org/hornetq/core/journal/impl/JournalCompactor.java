@@ -62,6 +62,11 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
     *  we cache those updates. As soon as we are done we take the right account. */
    private final LinkedList<CompactCommand> pendingCommands = new LinkedList<CompactCommand>();
 
+   /** When only some of the files are compacted, the new files can't take the ID of the files after them */
+   private long maxOrderingID = Long.MAX_VALUE;
+
+   private boolean outOfFileIDs;
+
    public static SequentialFile readControlFile(final SequentialFileFactory fileFactory,
                                                 final List<String> dataFiles,
                                                 final List<String> newFiles,
@@ -148,6 +153,19 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       super(fileFactory, journal, filesRepository, recordsSnapshot, firstFileID);
    }
 
+   public void setMaxOrderingID(final long maxOrderingID)
+   {
+      this.maxOrderingID = maxOrderingID;
+   }
+
+   /**
+    * @return whether the compacted records didn't fit on the file IDs available to the compactor
+    */
+   public boolean isOutOfFileIDs()
+   {
+      return outOfFileIDs;
+   }
+
    /** This methods informs the Compactor about the existence of a pending (non committed) transaction */
    public void addPendingTransaction(final long transactionID, final long[] ids)
    {
@@ -271,6 +289,20 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       }
    }
 
+   @Override
+   protected void openFile() throws Exception
+   {
+      if (nextOrderingID > maxOrderingID)
+      {
+         flush();
+         outOfFileIDs = true;
+         throw new IllegalStateException("Compacted files would take the ID " + nextOrderingID +
+                                            " of a file which is not being compacted");
+      }
+
+      super.openFile();
+   }
+
    /**
     * Replay pending counts that happened during compacting
     */
@@ -159,10 +159,27 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    protected static final byte FILL_CHARACTER = (byte) 'J';
 
+   /**
+    * Files read at the same time while loading or compacting, they are all kept in memory until replayed
+    */
+   private static final int DEFAULT_LOAD_THREADS = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
    // Attributes ----------------------------------------------------
 
    private volatile boolean autoReclaim = true;
 
+   private volatile int loadThreads = DEFAULT_LOAD_THREADS;
+
+   // 0 compacts all the data files on every pass
+   private volatile int compactMaxFiles;
+
+   private volatile long compactedBytes;
+
+   // in nanoseconds, the time the journal was locked by compacting
+   private volatile long compactStallTime;
+
+   private volatile long maxCompactStallTime;
+
    private final int userVersion;
 
    private final int minFiles;
@@ -1458,6 +1475,18 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          throw new IllegalStateException("There is pending compacting operation");
       }
 
+      int maxFiles = compactMaxFiles;
+
+      if (maxFiles > 0 && compactOldestFiles(maxFiles))
+      {
+         return;
+      }
+
+      compactAllFiles();
+   }
+
+   private void compactAllFiles() throws Exception
+   {
       compactorLock.writeLock().lock();
       try
       {
@@ -1465,6 +1494,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
          boolean previousReclaimValue = isAutoReclaim();
 
+         long stallTime = 0;
+
          try
          {
             HornetQJournalLogger.LOGGER.debug("Starting compacting operation on journal");
@@ -1474,6 +1505,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             // We need to guarantee that the journal is frozen for this short time
             // We don't freeze the journal as we compact, only for the short time where we replace records
             journalLock.writeLock().lock();
+            long lockTime = System.nanoTime();
             try
             {
                if (state != JournalState.LOADED)
@@ -1518,6 +1550,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             }
             finally
             {
+               stallTime += System.nanoTime() - lockTime;
                journalLock.writeLock().unlock();
             }
 
@@ -1528,18 +1561,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             // Read the files, and use the JournalCompactor class to create the new outputFiles, and the new collections as
             // well
-            for (final JournalFile file : dataFilesToProcess)
-            {
-               try
-               {
-                  JournalImpl.readJournalFile(fileFactory, file, compactor);
-               }
-               catch (Throwable e)
-               {
-                  HornetQJournalLogger.LOGGER.compactReadError(file);
-                  throw new Exception("Error on reading compacting for " + file, e);
-               }
-            }
+            readFilesToCompact(dataFilesToProcess, compactor);
 
             compactor.flush();
 
@@ -1555,6 +1577,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             SequentialFile controlFile = createControlFile(dataFilesToProcess, compactor.getNewDataFiles(), null);
 
             journalLock.writeLock().lock();
+            lockTime = System.nanoTime();
             try
             {
                // Need to clear the compactor here, or the replay commands will send commands back (infinite loop)
@@ -1598,39 +1621,210 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                // Merge transactions back after compacting.
                // This has to be done after the replay pending commands, as we need to delete commits
                // that happened during the compacting
+               mergeTransactions(localCompactor);
+            }
+            finally
+            {
+               stallTime += System.nanoTime() - lockTime;
+               journalLock.writeLock().unlock();
+            }
 
-               for (JournalTransaction newTransaction : localCompactor.getNewTransactions().values())
+            // At this point the journal is unlocked. We keep renaming files while the journal is already operational
+            renameFiles(dataFilesToProcess, newDatafiles);
+            deleteControlFile(controlFile);
+
+            compacted(dataFilesToProcess.size() - newDatafiles.size(), stallTime);
+
+         }
+         finally
+         {
+            // An Exception was probably thrown, and the compactor was not cleared
+            if (compactor != null)
+            {
+               try
                {
-                  if (JournalImpl.trace)
-                  {
-                     JournalImpl.trace("Merging pending transaction " + newTransaction + " after compacting the journal");
-                  }
-                  JournalTransaction liveTransaction = transactions.get(newTransaction.getId());
-                  if (liveTransaction != null)
+                  compactor.flush();
+               }
+               catch (Throwable ignored)
+               {
+               }
+
+               compactor = null;
+            }
+            setAutoReclaim(previousReclaimValue);
+         }
+      }
+      finally
+      {
+         compactorLock.writeLock().unlock();
+      }
+
+   }
+
+   /**
+    * Compacts the oldest data files, up to {@code maxFiles} of them, while the other files are left
+    * as they are. The journal is locked only to take the records of the compacted files and to put
+    * them back, so the pause depends on the files compacted and not on the size of the journal.
+    * <p/>
+    * Only the oldest files can be compacted this way, as the deletes on them can only refer to
+    * records on them, and a pass stops on a file after which no transaction of the compacted files
+    * is still open. The pass takes the number of files which frees the most of them.
+    *
+    * @return {@code false} if no pass could be done on the oldest files, so all of them should be compacted
+    */
+   private boolean compactOldestFiles(final int maxFiles) throws Exception
+   {
+      compactorLock.writeLock().lock();
+      try
+      {
+         List<JournalFile> filesToProcess = selectFilesToCompact(maxFiles);
+
+         if (filesToProcess == null)
+         {
+            return false;
+         }
+
+         Set<JournalFile> compactedFiles = new HashSet<JournalFile>(filesToProcess);
+
+         Map<Long, JournalRecord> compactedRecords = new HashMap<Long, JournalRecord>();
+
+         boolean previousReclaimValue = isAutoReclaim();
+
+         long stallTime = 0;
+
+         try
+         {
+            HornetQJournalLogger.LOGGER.debug("Starting compacting operation on " + filesToProcess.size() + " files of the journal");
+
+            onCompactStart();
+
+            journalLock.writeLock().lock();
+            long lockTime = System.nanoTime();
+            try
+            {
+               if (state != JournalState.LOADED)
+               {
+                  return true;
+               }
+
+               onCompactLockingTheJournal();
+
+               setAutoReclaim(false);
+
+               // The records of the compacted files are taken out of the journal, as their positions will change.
+               // Updates and deletes on them are kept by the compactor until it is done
+               Iterator<Map.Entry<Long, JournalRecord>> iterator = records.entrySet().iterator();
+               while (iterator.hasNext())
+               {
+                  Map.Entry<Long, JournalRecord> entry = iterator.next();
+                  if (compactedFiles.contains(entry.getValue().getAddFile()))
                   {
-                     liveTransaction.merge(newTransaction);
+                     compactedRecords.put(entry.getKey(), entry.getValue());
+                     iterator.remove();
                   }
-                  else
+               }
+
+               compactor = new JournalCompactor(fileFactory,
+                                                this,
+                                                filesRepository,
+                                                compactedRecords.keySet(),
+                                                filesToProcess.get(0).getFileID());
+
+               compactor.setMaxOrderingID(nextFileID(filesToProcess.get(filesToProcess.size() - 1)) - 1);
+            }
+            finally
+            {
+               stallTime += System.nanoTime() - lockTime;
+               journalLock.writeLock().unlock();
+            }
+
+            JournalCompactor localCompactor = compactor;
+
+            try
+            {
+               readFilesToCompact(filesToProcess, localCompactor);
+
+               localCompactor.flush();
+            }
+            catch (Exception e)
+            {
+               if (!localCompactor.isOutOfFileIDs())
+               {
+                  throw e;
+               }
+
+               HornetQJournalLogger.LOGGER.debug("The compacted records don't fit before the next file of the journal", e);
+
+               stallTime += cancelCompact(localCompactor, compactedRecords);
+
+               return false;
+            }
+
+            onCompactDone();
+
+            List<JournalFile> newDatafiles = localCompactor.getNewDataFiles();
+
+            SequentialFile controlFile = createControlFile(filesToProcess, newDatafiles, null);
+
+            journalLock.writeLock().lock();
+            lockTime = System.nanoTime();
+            try
+            {
+               // Need to clear the compactor here, or the replay commands will send commands back (infinite loop)
+               compactor = null;
+
+               onCompactLockingTheJournal();
+
+               for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
+               {
+                  JournalRecord oldRecord = compactedRecords.remove(newRecordEntry.getKey());
+                  if (oldRecord != null)
                   {
-                     HornetQJournalLogger.LOGGER.compactMergeError(newTransaction.getId());
+                     newRecordEntry.getValue().keepUpdates(oldRecord, compactedFiles);
                   }
+                  records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
+               }
+
+               for (Map.Entry<Long, JournalRecord> lostRecord : compactedRecords.entrySet())
+               {
+                  HornetQJournalLogger.LOGGER.compactingWithNoAddRecord(lostRecord.getKey());
+                  records.put(lostRecord.getKey(), lostRecord.getValue());
+               }
+
+               for (JournalFile file : filesToProcess)
+               {
+                  filesRepository.removeDataFile(file);
+               }
+
+               for (int i = newDatafiles.size() - 1; i >= 0; i--)
+               {
+                  filesRepository.addDataFileOnTop(newDatafiles.get(i));
+               }
+
+               for (JournalTransaction newTransaction : localCompactor.getNewTransactions().values())
+               {
+                  newTransaction.replaceRecordProvider(this);
                }
+
+               localCompactor.replayPendingCommands();
+
+               mergeTransactions(localCompactor);
             }
             finally
             {
+               stallTime += System.nanoTime() - lockTime;
                journalLock.writeLock().unlock();
             }
 
-            // At this point the journal is unlocked. We keep renaming files while the journal is already operational
-            renameFiles(dataFilesToProcess, newDatafiles);
+            renameFiles(filesToProcess, newDatafiles);
             deleteControlFile(controlFile);
 
-            HornetQJournalLogger.LOGGER.debug("Finished compacting on journal");
+            compacted(filesToProcess.size() - newDatafiles.size(), stallTime);
 
+            return true;
          }
          finally
          {
-            // An Exception was probably thrown, and the compactor was not cleared
             if (compactor != null)
             {
                try
@@ -1650,7 +1844,196 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       {
          compactorLock.writeLock().unlock();
       }
+   }
+
+   /**
+    * @return the oldest data files to compact, or {@code null} if compacting them wouldn't free any
+    * file
+    */
+   private List<JournalFile> selectFilesToCompact(final int maxFiles) throws Exception
+   {
+      List<JournalFile> dataFiles = new ArrayList<JournalFile>(filesRepository.getDataFiles());
+
+      if (dataFiles.isEmpty())
+      {
+         return null;
+      }
+
+      Collections.sort(dataFiles, new JournalFileComparator());
+
+      List<JournalFile> candidates = dataFiles.subList(0, Math.min(maxFiles, dataFiles.size()));
+
+      List<TransactionScan> scans = new ArrayList<TransactionScan>(candidates.size());
+      for (int i = 0; i < candidates.size(); i++)
+      {
+         scans.add(new TransactionScan());
+      }
+
+      BufferedJournalReader.ReadAhead readAhead = new BufferedJournalReader.ReadAhead(fileFactory, candidates, loadThreads);
+      try
+      {
+         for (int i = 0; i < candidates.size(); i++)
+         {
+            readAhead.read(candidates.get(i), scans.get(i));
+         }
+      }
+      finally
+      {
+         readAhead.close();
+      }
+
+      long firstFileID = candidates.get(0).getFileID();
+      long usableFileSize = fileSize - JournalImpl.SIZE_HEADER;
+
+      Set<Long> openTransactions = new HashSet<Long>();
+      long liveSize = 0;
+      int bestCount = 0;
+      long bestGain = 0;
+
+      for (int i = 0; i < candidates.size(); i++)
+      {
+         openTransactions.addAll(scans.get(i).transactions);
+         openTransactions.removeAll(scans.get(i).completed);
+
+         liveSize += candidates.get(i).getLiveSize();
+
+         if (!openTransactions.isEmpty())
+         {
+            continue;
+         }
+
+         long neededFiles = (liveSize + usableFileSize - 1) / usableFileSize;
+         long availableIDs = nextFileID(candidates.get(i)) - firstFileID;
+
+         // one more file than the live size takes, as records are not split between files
+         if (neededFiles + 1 <= availableIDs && i + 1 - neededFiles > bestGain)
+         {
+            bestGain = i + 1 - neededFiles;
+            bestCount = i + 1;
+         }
+      }
+
+      if (bestCount == 0)
+      {
+         return null;
+      }
+
+      return new ArrayList<JournalFile>(candidates.subList(0, bestCount));
+   }
+
+   /**
+    * @return the ID of the file written after the given data file
+    */
+   private long nextFileID(final JournalFile file)
+   {
+      long next = currentFile.getFileID();
+      for (JournalFile dataFile : filesRepository.getDataFiles())
+      {
+         if (dataFile.getFileID() > file.getFileID() && dataFile.getFileID() < next)
+         {
+            next = dataFile.getFileID();
+         }
+      }
+      return next;
+   }
+
+   /**
+    * Puts back the records taken by a compactor which couldn't finish.
+    *
+    * @return the time the journal was locked, in nanoseconds
+    */
+   private long cancelCompact(final JournalCompactor localCompactor, final Map<Long, JournalRecord> compactedRecords) throws Exception
+   {
+      long stallTime;
+
+      journalLock.writeLock().lock();
+      long lockTime = System.nanoTime();
+      try
+      {
+         compactor = null;
+
+         records.putAll(compactedRecords);
+
+         localCompactor.replayPendingCommands();
+      }
+      finally
+      {
+         stallTime = System.nanoTime() - lockTime;
+         journalLock.writeLock().unlock();
+      }
+
+      for (JournalFile file : localCompactor.getNewDataFiles())
+      {
+         file.getFile().delete();
+      }
+
+      return stallTime;
+   }
+
+   private void mergeTransactions(final JournalCompactor localCompactor)
+   {
+      for (JournalTransaction newTransaction : localCompactor.getNewTransactions().values())
+      {
+         if (JournalImpl.trace)
+         {
+            JournalImpl.trace("Merging pending transaction " + newTransaction + " after compacting the journal");
+         }
+         JournalTransaction liveTransaction = transactions.get(newTransaction.getId());
+         if (liveTransaction != null)
+         {
+            liveTransaction.merge(newTransaction);
+         }
+         else
+         {
+            HornetQJournalLogger.LOGGER.compactMergeError(newTransaction.getId());
+         }
+      }
+   }
+
+   private synchronized void compacted(final int freedFiles, final long stallTime)
+   {
+      compactedBytes += Math.max(0, freedFiles) * (long) fileSize;
+      compactStallTime += stallTime;
+      maxCompactStallTime = Math.max(maxCompactStallTime, stallTime);
+
+      if (HornetQJournalLogger.LOGGER.isDebugEnabled())
+      {
+         HornetQJournalLogger.LOGGER.debug("Finished compacting on journal, " + freedFiles + " files freed, journal locked for " +
+                                              TimeUnit.NANOSECONDS.toMicros(stallTime) + " microseconds");
+      }
+   }
 
+   /**
+    * Reads the files to compact into the compactor, up to {@link #setLoadThreads(int) loadThreads} of
+    * them being read ahead.
+    */
+   private void readFilesToCompact(final List<JournalFile> files, final JournalCompactor compactor) throws Exception
+   {
+      BufferedJournalReader.ReadAhead readAhead = new BufferedJournalReader.ReadAhead(fileFactory, files, loadThreads);
+
+      try
+      {
+         for (JournalFile file : files)
+         {
+            try
+            {
+               readAhead.read(file, compactor);
+            }
+            catch (Exception e)
+            {
+               if (compactor.isOutOfFileIDs())
+               {
+                  throw e;
+               }
+               HornetQJournalLogger.LOGGER.compactReadError(file);
+               throw new Exception("Error on reading compacting for " + file, e);
+            }
+         }
+      }
+      finally
+      {
+         readAhead.close();
+      }
    }
 
    /**
@@ -1734,13 +2117,16 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       // AtomicLong is used only as a reference, not as an Atomic value
       final AtomicLong maxID = new AtomicLong(-1);
 
+      // The files are read and parsed ahead on their own threads, but replayed here in order
+      final BufferedJournalReader.ReadAhead readAhead = new BufferedJournalReader.ReadAhead(fileFactory, orderedFiles, loadThreads);
+
       for (final JournalFile file : orderedFiles)
       {
          JournalImpl.trace("Loading file " + file.getFile().getFileName());
 
          final AtomicBoolean hasData = new AtomicBoolean(false);
 
-         int resultLastPost = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+         int resultLastPost = readAhead.read(file, new JournalReaderCallback()
          {
 
             private void checkID(final long id)
@@ -2003,6 +2389,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          }
       }
 
+      readAhead.close();
+
       if (replicationSync == JournalState.SYNCING)
       {
          assert filesRepository.getDataFiles().isEmpty();
@@ -2174,6 +2562,50 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       });
    }
 
+   /**
+    * Sets how many files are read at the same time while loading, {@code 1} reads them on the
+    * loading thread.
+    */
+   public void setLoadThreads(final int loadThreads)
+   {
+      if (loadThreads < 1)
+      {
+         throw new IllegalArgumentException("loadThreads must be at least 1");
+      }
+      this.loadThreads = loadThreads;
+   }
+
+   /**
+    * Sets how many of the oldest data files are compacted on each pass, {@code 0} compacts all of
+    * them.
+    */
+   public void setCompactMaxFiles(final int compactMaxFiles)
+   {
+      if (compactMaxFiles < 0)
+      {
+         throw new IllegalArgumentException("compactMaxFiles can't be negative");
+      }
+      this.compactMaxFiles = compactMaxFiles;
+   }
+
+   @Override
+   public long getCompactedBytes()
+   {
+      return compactedBytes;
+   }
+
+   @Override
+   public long getCompactStallTime()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(compactStallTime);
+   }
+
+   @Override
+   public long getMaxCompactStallTime()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(maxCompactStallTime);
+   }
+
    // TestableJournal implementation
    // --------------------------------------------------------------
 
@@ -2989,6 +3421,50 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    }
 
+   // Used to choose the files compacted on a pass
+   private static final class TransactionScan extends JournalReaderCallbackAbstract
+   {
+      final Set<Long> transactions = new HashSet<Long>();
+
+      final Set<Long> completed = new HashSet<Long>();
+
+      @Override
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+      {
+         transactions.add(transactionID);
+      }
+
+      @Override
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+      {
+         transactions.add(transactionID);
+      }
+
+      @Override
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+      {
+         transactions.add(transactionID);
+      }
+
+      @Override
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+      {
+         transactions.add(transactionID);
+      }
+
+      @Override
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+      {
+         completed.add(transactionID);
+      }
+
+      @Override
+      public void onReadRollbackRecord(final long transactionID) throws Exception
+      {
+         completed.add(transactionID);
+      }
+   }
+
    private static final class JournalFileComparator implements Comparator<JournalFile>, Serializable
    {
       private static final long serialVersionUID = -6264728973604070321L;
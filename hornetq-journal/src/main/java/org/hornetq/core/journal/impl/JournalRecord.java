@@ -14,6 +14,7 @@ package org.hornetq.core.journal.impl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.hornetq.api.core.Pair;
 
@@ -58,6 +59,34 @@ public class JournalRecord
       updateFile.addSize(size);
    }
 
+   JournalFile getAddFile()
+   {
+      return addFile;
+   }
+
+   /**
+    * Takes the updates the record had outside of the compacted files, which are already counted on
+    * their files.
+    */
+   void keepUpdates(final JournalRecord oldRecord, final Set<JournalFile> compactedFiles)
+   {
+      if (oldRecord.updateFiles != null)
+      {
+         for (Pair<JournalFile, Integer> updFile : oldRecord.updateFiles)
+         {
+            if (!compactedFiles.contains(updFile.getA()))
+            {
+               if (updateFiles == null)
+               {
+                  updateFiles = new ArrayList<Pair<JournalFile, Integer>>();
+               }
+
+               updateFiles.add(updFile);
+            }
+         }
+      }
+   }
+
    void delete(final JournalFile file)
    {
       file.incNegCount(addFile);
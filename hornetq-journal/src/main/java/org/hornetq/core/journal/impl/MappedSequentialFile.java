@@ -0,0 +1,625 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.HornetQIOErrorException;
+import org.hornetq.api.core.HornetQIllegalStateException;
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.journal.HornetQJournalBundle;
+import org.hornetq.journal.HornetQJournalLogger;
+
+/**
+ * A SequentialFile writing and reading through a {@link MappedByteBuffer}.
+ * <p>
+ * Writes are copied into the mapping by the caller, so they are visible to readers and ordered
+ * as soon as they return. Only syncs ({@link MappedByteBuffer#force()}) and the completion of the
+ * callbacks are handed to the writer executor, the same way {@link NIOSequentialFile} hands its
+ * writes over, so the callbacks are still completed in the order the writes were made.
+ * <p>
+ * Files that are appended to (such as page files) are mapped in growing regions, and truncated
+ * back to the data written when closed. A file that isn't closed, after a crash, keeps the zeros
+ * at the end of its last region, which the page files skip and write over once reopened.
+ */
+public final class MappedSequentialFile extends AbstractSequentialFile
+{
+   private static final int MIN_REGION_SIZE = 1024 * 1024;
+
+   private static final int FILL_BLOCK_SIZE = 64 * 1024;
+
+   /**
+    * Releases the memory of a mapping, resolved once as it depends on the VM: {@code Unsafe.invokeCleaner} from Java 9
+    * on, the cleaner of {@code sun.nio.ch.DirectBuffer} before it. Null if neither is available.
+    */
+   private static final Unmapper UNMAPPER = createUnmapper();
+
+   private volatile FileChannel channel;
+
+   private RandomAccessFile rfile;
+
+   /**
+    * Held to read or write the mapping, and exclusively to remap or unmap it
+    */
+   private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+
+   private MappedByteBuffer mapped;
+
+   /**
+    * The position of the next read or write, what the channel position is to a NIO file
+    */
+   private long filePosition;
+
+   /**
+    * The size of the data on the file, the mapping may be bigger while the file is open
+    */
+   private long dataSize;
+
+   private volatile boolean grown;
+
+   private boolean useExecutor;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final Executor writerExecutor)
+   {
+      super(directory, new File(directory + "/" + fileName), factory, writerExecutor);
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory, final File file, final Executor writerExecutor)
+   {
+      super(file.getParent(), new File(file.getPath()), factory, writerExecutor);
+   }
+
+   public int getAlignment()
+   {
+      return 1;
+   }
+
+   public int calculateBlockStart(final int position)
+   {
+      return position;
+   }
+
+   public synchronized boolean isOpen()
+   {
+      return channel != null;
+   }
+
+   public synchronized void open() throws IOException
+   {
+      open(1, true);
+   }
+
+   public synchronized void open(final int maxIO, final boolean useExecutor) throws IOException
+   {
+      try
+      {
+         rfile = new RandomAccessFile(getFile(), "rw");
+
+         channel = rfile.getChannel();
+
+         dataSize = channel.size();
+
+         fileSize = dataSize;
+
+         filePosition = 0;
+
+         grown = false;
+
+         if (dataSize > 0)
+         {
+            map(dataSize);
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      this.useExecutor = writerExecutor != null && useExecutor;
+   }
+
+   public synchronized void fill(final int position, final int size, final byte fillCharacter) throws IOException
+   {
+      try
+      {
+         ensureMapped(position + size);
+
+         mappingLock.readLock().lock();
+         try
+         {
+            byte[] block = new byte[Math.min(size, FILL_BLOCK_SIZE)];
+            Arrays.fill(block, fillCharacter);
+
+            ByteBuffer target = mapped.duplicate();
+            target.position(position);
+            for (int remaining = size; remaining > 0; remaining -= block.length)
+            {
+               target.put(block, 0, Math.min(remaining, block.length));
+            }
+            mapped.force();
+         }
+         finally
+         {
+            mappingLock.readLock().unlock();
+         }
+
+         dataSize = Math.max(dataSize, position + size);
+         channel.force(false);
+         grown = false;
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      fileSize = dataSize;
+      filePosition = 0;
+   }
+
+   public synchronized void waitForClose() throws InterruptedException
+   {
+      while (isOpen())
+      {
+         wait();
+      }
+   }
+
+   @Override
+   public synchronized void close() throws IOException, InterruptedException, HornetQException
+   {
+      // waits the pending syncs on the writer executor
+      super.close();
+
+      try
+      {
+         unmap();
+
+         if (channel != null)
+         {
+            if (channel.size() > dataSize)
+            {
+               channel.truncate(dataSize);
+            }
+            channel.close();
+         }
+
+         if (rfile != null)
+         {
+            rfile.close();
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+      channel = null;
+
+      rfile = null;
+
+      notifyAll();
+   }
+
+   public int read(final ByteBuffer bytes) throws Exception
+   {
+      return read(bytes, null);
+   }
+
+   public synchronized int read(final ByteBuffer bytes, final IOAsyncTask callback) throws IOException,
+      HornetQIllegalStateException
+   {
+      if (channel == null)
+      {
+         throw new HornetQIllegalStateException("File " + this.getFileName() + " has a null channel");
+      }
+
+      int bytesRead = (int)Math.min(bytes.remaining(), dataSize - filePosition);
+
+      if (bytesRead > 0)
+      {
+         mappingLock.readLock().lock();
+         try
+         {
+            ByteBuffer source = mapped.duplicate();
+            source.position((int)filePosition);
+            source.limit((int)filePosition + bytesRead);
+            bytes.put(source);
+         }
+         finally
+         {
+            mappingLock.readLock().unlock();
+         }
+         filePosition += bytesRead;
+      }
+      else
+      {
+         bytesRead = -1;
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+
+      bytes.flip();
+
+      return bytesRead;
+   }
+
+   public void sync() throws IOException
+   {
+      mappingLock.readLock().lock();
+      try
+      {
+         if (mapped != null)
+         {
+            mapped.force();
+         }
+      }
+      finally
+      {
+         mappingLock.readLock().unlock();
+      }
+
+      // not taking the file monitor, close() holds it while waiting the syncs on the writer executor
+      FileChannel sizeChannel = channel;
+      if (grown && sizeChannel != null)
+      {
+         grown = false;
+         try
+         {
+            // the size of the file is only stored by the channel
+            sizeChannel.force(false);
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            throw e;
+         }
+      }
+   }
+
+   public synchronized long size() throws IOException
+   {
+      if (channel == null)
+      {
+         return getFile().length();
+      }
+
+      return dataSize;
+   }
+
+   @Override
+   public synchronized void position(final long pos) throws IOException
+   {
+      super.position(pos);
+      filePosition = pos;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), writerExecutor);
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (callback == null)
+      {
+         throw new NullPointerException("callback parameter need to be set");
+      }
+
+      try
+      {
+         internalWrite(bytes, sync, callback);
+      }
+      catch (Exception e)
+      {
+         callback.onError(HornetQExceptionType.GENERIC_EXCEPTION.getCode(), e.getMessage());
+      }
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
+   {
+      internalWrite(bytes, sync, null);
+   }
+
+   public void writeInternal(final ByteBuffer bytes) throws Exception
+   {
+      internalWrite(bytes, true, null);
+   }
+
+   @Override
+   protected ByteBuffer newBuffer(int size, final int limit)
+   {
+      // The buffer is copied into the mapping, no need to allocate the entire size of the timed buffer
+
+      size = limit;
+
+      return super.newBuffer(size, limit);
+   }
+
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException, HornetQIOErrorException
+   {
+      final boolean executor;
+
+      synchronized (this)
+      {
+         if (!isOpen())
+         {
+            if (callback != null)
+            {
+               callback.onError(HornetQExceptionType.IO_ERROR.getCode(), "File not opened");
+            }
+            else
+            {
+               throw HornetQJournalBundle.BUNDLE.fileNotOpened();
+            }
+            return;
+         }
+
+         position.addAndGet(bytes.limit());
+
+         try
+         {
+            copy(bytes);
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            if (callback == null)
+            {
+               throw e;
+            }
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+            return;
+         }
+
+         executor = useExecutor && callback != null;
+      }
+
+      if (!executor)
+      {
+         try
+         {
+            complete(sync, callback);
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         }
+      }
+      else
+      {
+         writerExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  complete(sync, callback);
+               }
+               catch (IOException e)
+               {
+                  HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                  factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), MappedSequentialFile.this);
+                  callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               }
+               catch (Throwable e)
+               {
+                  HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                  callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               }
+            }
+         });
+      }
+   }
+
+   private void complete(final boolean sync, final IOAsyncTask callback) throws IOException
+   {
+      if (sync)
+      {
+         sync();
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+   }
+
+   /**
+    * Has to be called holding the file monitor
+    */
+   private void copy(final ByteBuffer bytes) throws IOException
+   {
+      int size = bytes.remaining();
+
+      ensureMapped(filePosition + size);
+
+      mappingLock.readLock().lock();
+      try
+      {
+         ByteBuffer target = mapped.duplicate();
+         target.position((int)filePosition);
+         target.put(bytes);
+      }
+      finally
+      {
+         mappingLock.readLock().unlock();
+      }
+
+      filePosition += size;
+
+      if (filePosition > dataSize)
+      {
+         dataSize = filePosition;
+         grown = true;
+      }
+   }
+
+   /**
+    * Has to be called holding the file monitor
+    */
+   private void ensureMapped(final long size) throws IOException
+   {
+      if (mapped != null && mapped.capacity() >= size)
+      {
+         return;
+      }
+
+      long regionSize = Math.max(size, mapped == null ? MIN_REGION_SIZE : mapped.capacity() * 2L);
+      regionSize = Math.max(Math.min(regionSize, Integer.MAX_VALUE), size);
+
+      if (regionSize > Integer.MAX_VALUE)
+      {
+         throw new IOException("File " + getFileName() + " can't be mapped beyond " + Integer.MAX_VALUE + " bytes");
+      }
+
+      map(regionSize);
+   }
+
+   private void map(final long size) throws IOException
+   {
+      mappingLock.writeLock().lock();
+      try
+      {
+         MappedByteBuffer previous = mapped;
+         // mapping beyond the end of the file grows it
+         mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+         if (previous != null)
+         {
+            unmap(previous);
+         }
+      }
+      finally
+      {
+         mappingLock.writeLock().unlock();
+      }
+   }
+
+   private void unmap()
+   {
+      mappingLock.writeLock().lock();
+      try
+      {
+         if (mapped != null)
+         {
+            unmap(mapped);
+            mapped = null;
+         }
+      }
+      finally
+      {
+         mappingLock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * Releases the mapping now instead of when the buffer is collected, or the file would stay
+    * mapped (and its size couldn't be changed on some platforms) until the next GC.
+    */
+   private static void unmap(final MappedByteBuffer buffer)
+   {
+      if (UNMAPPER == null)
+      {
+         // already logged, the GC will release it
+         return;
+      }
+
+      try
+      {
+         UNMAPPER.unmap(buffer);
+      }
+      catch (Throwable e)
+      {
+         HornetQJournalLogger.LOGGER.errorUnmappingFile(e);
+      }
+   }
+
+   private static Unmapper createUnmapper()
+   {
+      try
+      {
+         // Java 9 and later, where the cleaner isn't accessible anymore
+         Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+         final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+         Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+         theUnsafe.setAccessible(true);
+         final Object unsafe = theUnsafe.get(null);
+         return new Unmapper()
+         {
+            public void unmap(final MappedByteBuffer buffer) throws Exception
+            {
+               invokeCleaner.invoke(unsafe, buffer);
+            }
+         };
+      }
+      catch (Exception e)
+      {
+         // not Java 9, trying the cleaner below
+      }
+
+      try
+      {
+         final Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+         final Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+         return new Unmapper()
+         {
+            public void unmap(final MappedByteBuffer buffer) throws Exception
+            {
+               Object cleaner = cleanerMethod.invoke(buffer);
+               if (cleaner != null)
+               {
+                  cleanMethod.invoke(cleaner);
+               }
+            }
+         };
+      }
+      catch (Exception e)
+      {
+         HornetQJournalLogger.LOGGER.errorUnmappingFile(e);
+         return null;
+      }
+   }
+
+   private interface Unmapper
+   {
+      void unmap(MappedByteBuffer buffer) throws Exception;
+   }
+}
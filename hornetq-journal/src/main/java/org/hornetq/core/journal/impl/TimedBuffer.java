@@ -18,11 +18,15 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.HornetQExceptionType;
 import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.core.journal.EncodingSupport;
 import org.hornetq.core.journal.IOAsyncTask;
@@ -31,6 +35,15 @@ import org.hornetq.journal.HornetQJournalLogger;
 
 /**
  * A TimedBuffer
+ * <p>
+ * Records are added to one of two buffers while the other one is being flushed. A flush swaps the
+ * buffers and leaves handing the records over to the observer (which may wait for the previous
+ * write or sync to finish) to a flush thread, so the next group of records is collected meanwhile.
+ * An appending thread only waits when the buffer it fills is full and the other one is still being
+ * handed over.
+ * <p>
+ * The callbacks are called by the observer, possibly on the flush thread, and must not add records
+ * to this buffer or flush it.
  *
  * @author <a href="mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
@@ -55,7 +68,23 @@ public class TimedBuffer
 
    private final int bufferSize;
 
-   private final HornetQBuffer buffer;
+   private HornetQBuffer buffer;
+
+   /**
+    * The buffer not being written to, null while it is being handed over to the observer
+    */
+   private HornetQBuffer spareBuffer;
+
+   /**
+    * Hands the buffers over to the observer in the order they were swapped
+    */
+   private ExecutorService flushExecutor;
+
+   // the number of buffers swapped and not yet handed over to the observer
+   private int flushesInFlight;
+
+   // the bytes left on the file once the buffers in flight are written, only valid while flushesInFlight > 0
+   private int remainingInFile;
 
    private int bufferLimit = 0;
 
@@ -114,6 +143,8 @@ public class TimedBuffer
 
       buffer.clear();
 
+      spareBuffer = HornetQBuffers.fixedBuffer(bufferSize);
+
       bufferLimit = 0;
 
       callbacks = new ArrayList<IOAsyncTask>();
@@ -155,6 +186,14 @@ public class TimedBuffer
 
       timerThread.start();
 
+      flushExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+      {
+         public Thread newThread(final Runnable r)
+         {
+            return new Thread(r, "hornetq-buffer-flush");
+         }
+      });
+
       if (logRates)
       {
          logRatesTimerTask = new LogRatesTimerTask();
@@ -197,6 +236,8 @@ public class TimedBuffer
          }
       }
 
+      flushExecutor.shutdown();
+
       started = false;
    }
 
@@ -231,13 +272,17 @@ public class TimedBuffer
       if (bufferLimit == 0 || buffer.writerIndex() + sizeChecked > bufferLimit)
       {
          // Either there is not enough space left in the buffer for the sized record
-         // Or a flush has just been performed and we need to re-calcualate bufferLimit
+         // Or the buffer is being used for the first time on a file and we need to re-calculate bufferLimit
 
-         flush();
+         if (buffer.writerIndex() > 0)
+         {
+            // This only waits if the other buffer is still being handed over
+            swapBuffers();
+         }
 
          delayFlush = true;
 
-         final int remainingInFile = bufferObserver.getRemainingBytes();
+         final int remainingInFile = getRemainingBytes();
 
          if (sizeChecked > remainingInFile)
          {
@@ -297,6 +342,9 @@ public class TimedBuffer
    /**
     * force means the Journal is moving to a new file. Any pending write need to be done immediately
     * or data could be lost
+    * <p>
+    * This returns once every record added so far (except the ones of a delayed flush) was handed over
+    * to the observer.
     */
    public void flush(final boolean force)
    {
@@ -309,44 +357,158 @@ public class TimedBuffer
 
          if ((force || !delayFlush) && buffer.writerIndex() > 0)
          {
-            int pos = buffer.writerIndex();
+            swapBuffers();
+         }
 
-            if (logRates)
-            {
-               bytesFlushed.addAndGet(pos);
-            }
+         while (flushesInFlight > 0)
+         {
+            waitForFlush();
+         }
+      }
+   }
 
-            ByteBuffer bufferToFlush = bufferObserver.newBuffer(bufferSize, pos);
+   // Package protected ---------------------------------------------
+
+   // Protected -----------------------------------------------------
 
-            // Putting a byteArray on a native buffer is much faster, since it will do in a single native call.
-            // Using bufferToFlush.put(buffer) would make several append calls for each byte
-            // We also transfer the content of this buffer to the native file's buffer
+   // Private -------------------------------------------------------
+
+   /**
+    * The bytes left on the file, counting the buffers not handed over to the observer yet
+    */
+   private int getRemainingBytes()
+   {
+      return flushesInFlight > 0 ? remainingInFile : bufferObserver.getRemainingBytes();
+   }
 
-            bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
+   /**
+    * Makes the spare buffer the one records are added to, and hands the current one over to the
+    * observer on the flush thread. The caller must hold the monitor.
+    */
+   private void swapBuffers()
+   {
+      while (spareBuffer == null)
+      {
+         // both buffers are in flight
+         waitForFlush();
+      }
+
+      final int pos = buffer.writerIndex();
+
+      if (pos == 0)
+      {
+         // someone else flushed it meanwhile
+         return;
+      }
+
+      if (logRates)
+      {
+         bytesFlushed.addAndGet(pos);
+      }
 
-            bufferObserver.flushBuffer(bufferToFlush, pendingSync, callbacks);
+      final TimedBufferObserver observer = bufferObserver;
+      final HornetQBuffer flushedBuffer = buffer;
+      final List<IOAsyncTask> flushedCallbacks = callbacks;
+      final boolean flushedSync = pendingSync;
 
-            stopSpin();
+      // the buffer may be bigger than the records on it (e.g. aligned for AIO), that is what the file will take
+      final ByteBuffer bufferToFlush = observer.newBuffer(bufferSize, pos);
 
-            pendingSync = false;
+      remainingInFile = getRemainingBytes() - bufferToFlush.limit();
 
-            // swap the instance as the previous callback list is being used asynchronously
-            callbacks = new LinkedList<IOAsyncTask>();
+      flushesInFlight++;
 
-            buffer.clear();
+      // the records added from now on go to the other buffer
+      buffer = spareBuffer;
+      spareBuffer = null;
 
-            bufferLimit = 0;
+      bufferLimit = Math.min(Math.max(remainingInFile, 0), bufferSize);
 
-            flushesDone.incrementAndGet();
+      stopSpin();
+
+      pendingSync = false;
+
+      // swap the instance as the previous callback list is being used asynchronously
+      callbacks = new LinkedList<IOAsyncTask>();
+
+      flushExecutor.execute(new Runnable()
+      {
+         public void run()
+         {
+            handOver(observer, flushedBuffer, bufferToFlush, flushedSync, flushedCallbacks);
          }
-      }
+      });
    }
 
-   // Package protected ---------------------------------------------
+   private void handOver(final TimedBufferObserver observer,
+                         final HornetQBuffer flushedBuffer,
+                         final ByteBuffer bufferToFlush,
+                         final boolean flushedSync,
+                         final List<IOAsyncTask> flushedCallbacks)
+   {
+      boolean copied = false;
 
-   // Protected -----------------------------------------------------
+      try
+      {
+         // Putting a byteArray on a native buffer is much faster, since it will do in a single native call.
+         // Using bufferToFlush.put(buffer) would make several append calls for each byte
+         // We also transfer the content of this buffer to the native file's buffer
 
-   // Private -------------------------------------------------------
+         bufferToFlush.put(flushedBuffer.toByteBuffer().array(), 0, flushedBuffer.writerIndex());
+
+         synchronized (this)
+         {
+            flushedBuffer.clear();
+
+            spareBuffer = flushedBuffer;
+
+            copied = true;
+
+            notifyAll();
+         }
+
+         observer.flushBuffer(bufferToFlush, flushedSync, flushedCallbacks);
+
+         flushesDone.incrementAndGet();
+      }
+      catch (Throwable e)
+      {
+         HornetQJournalLogger.LOGGER.errorFlushingBuffer(e);
+
+         for (IOAsyncTask callback : flushedCallbacks)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+         }
+      }
+      finally
+      {
+         synchronized (this)
+         {
+            if (!copied)
+            {
+               flushedBuffer.clear();
+
+               spareBuffer = flushedBuffer;
+            }
+
+            flushesInFlight--;
+
+            notifyAll();
+         }
+      }
+   }
+
+   private void waitForFlush()
+   {
+      try
+      {
+         wait();
+      }
+      catch (InterruptedException e)
+      {
+         throw new HornetQInterruptedException(e);
+      }
+   }
 
    // Inner classes -------------------------------------------------
 
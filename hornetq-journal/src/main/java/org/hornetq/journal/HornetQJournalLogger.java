@@ -240,6 +240,14 @@ public interface HornetQJournalLogger extends BasicLogger
    @Message(id = 142034, value = "Exception on submitting write", format = Message.Format.MESSAGE_FORMAT)
    void errorSubmittingWrite(@Cause Throwable e);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 142035, value = "Could not unmap a journal file, its mapping is only released once the buffer is garbage collected", format = Message.Format.MESSAGE_FORMAT)
+   void errorUnmappingFile(@Cause Throwable e);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 142036, value = "Could not hand the buffered records over to the journal file", format = Message.Format.MESSAGE_FORMAT)
+   void errorFlushingBuffer(@Cause Throwable e);
+
    @LogMessage(level = Logger.Level.ERROR)
    @Message(id = 144000, value = "Failed to delete file {0}", format = Message.Format.MESSAGE_FORMAT)
    void errorDeletingFile(Object e);
@@ -14,6 +14,7 @@
 package org.hornetq.core.protocol.proton.plug;
 
 
+
 import io.netty.buffer.ByteBuf;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.transport.AmqpError;
@@ -31,7 +32,7 @@ import org.hornetq.core.server.QueueQueryResult;
 import org.hornetq.core.server.ServerConsumer;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.ServerSession;
-import org.hornetq.spi.core.protocol.SessionCallback;
+import org.hornetq.spi.core.protocol.AbstractSessionCallback;
 import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.ByteUtil;
 import org.hornetq.utils.IDGenerator;
@@ -48,7 +49,7 @@ import org.proton.plug.sasl.PlainSASLResult;
  * @author Clebert Suconic
  */
 
-public class ProtonSessionIntegrationCallback implements AMQPSessionCallback, SessionCallback
+public class ProtonSessionIntegrationCallback extends AbstractSessionCallback implements AMQPSessionCallback
 {
    protected final IDGenerator consumerIDGenerator = new SimpleIDGenerator(0);
 
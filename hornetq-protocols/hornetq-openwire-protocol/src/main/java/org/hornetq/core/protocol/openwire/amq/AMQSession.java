@@ -56,10 +56,10 @@ import org.hornetq.core.server.ServerConsumer;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.core.transaction.impl.XidImpl;
-import org.hornetq.spi.core.protocol.SessionCallback;
+import org.hornetq.spi.core.protocol.AbstractSessionCallback;
 import org.hornetq.spi.core.remoting.ReadyListener;
 
-public class AMQSession implements SessionCallback
+public class AMQSession extends AbstractSessionCallback
 {
    private AMQServerSession coreSession;
    private ConnectionInfo connInfo;
@@ -35,8 +35,8 @@ import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.ServerSession;
 import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.core.server.impl.ServerSessionImpl;
+import org.hornetq.spi.core.protocol.AbstractSessionCallback;
 import org.hornetq.spi.core.protocol.RemotingConnection;
-import org.hornetq.spi.core.protocol.SessionCallback;
 import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.ConfigurationHelper;
 import org.hornetq.utils.UUIDGenerator;
@@ -48,7 +48,7 @@ import static org.hornetq.core.protocol.stomp.HornetQStompProtocolMessageBundle.
  *
  * @author <a href="mailto:jmesnil@redhat.com">Jeff Mesnil</a>
  */
-public class StompSession implements SessionCallback
+public class StompSession extends AbstractSessionCallback
 {
    private final StompProtocolManager manager;
 
@@ -25,6 +25,10 @@ import org.hornetq.selector.hyphenated.HyphenatedParser;
 import org.hornetq.selector.strict.StrictParser;
 
 /**
+ * Parses selectors into {@link BooleanExpression} trees.
+ * <p>
+ * Parsed trees are cached and shared between every caller using the same selector string, so expression nodes
+ * must not hold any per-evaluation state: a tree may be evaluated by many threads at the same time.
  */
 public class SelectorParser
 {
@@ -37,7 +41,11 @@ public class SelectorParser
 
    public static BooleanExpression parse(String sql) throws FilterException
    {
-      Object result = cache.get(sql);
+      Object result;
+      synchronized (cache)
+      {
+         result = cache.get(sql);
+      }
       if (result instanceof FilterException)
       {
          throw (FilterException) result;
@@ -97,13 +105,19 @@ public class SelectorParser
                StrictParser parser = new StrictParser(new StringReader(actual));
                e = parser.JmsSelector();
             }
-            cache.put(sql, e);
+            synchronized (cache)
+            {
+               cache.put(sql, e);
+            }
             return e;
          }
          catch (Throwable e)
          {
             FilterException fe = new FilterException(actual, e);
-            cache.put(sql, fe);
+            synchronized (cache)
+            {
+               cache.put(sql, fe);
+            }
             throw fe;
          }
          finally
@@ -118,6 +132,9 @@ public class SelectorParser
 
    public static void clearCache()
    {
-      cache.clear();
+      synchronized (cache)
+      {
+         cache.clear();
+      }
    }
 }
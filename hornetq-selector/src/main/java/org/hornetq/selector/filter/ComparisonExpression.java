@@ -82,7 +82,7 @@ public abstract class ComparisonExpression extends BinaryExpression implements B
    static class LikeExpression extends UnaryExpression implements BooleanExpression
    {
 
-      Pattern likePattern;
+      private final Pattern likePattern;
 
       /**
        */
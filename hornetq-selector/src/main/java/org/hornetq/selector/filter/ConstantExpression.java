@@ -45,7 +45,7 @@ public class ConstantExpression implements Expression
    public static final BooleanConstantExpression TRUE = new BooleanConstantExpression(Boolean.TRUE);
    public static final BooleanConstantExpression FALSE = new BooleanConstantExpression(Boolean.FALSE);
 
-   private Object value;
+   private final Object value;
 
    public ConstantExpression(Object value)
    {
@@ -81,70 +81,102 @@ public abstract class UnaryExpression implements Expression
       {
          t = new HashSet<Object>(elements);
       }
-      final Collection<Object> inList = t;
+      return new InExpression(right, t, not);
+   }
+
+   /**
+    * {@code IN} / {@code NOT IN} test of a property against a list of string literals.
+    */
+   public static final class InExpression extends BooleanUnaryExpression
+   {
+      private final Collection<Object> inList;
+
+      private final boolean not;
 
-      return new BooleanUnaryExpression(right)
+      InExpression(final PropertyExpression right, final Collection<Object> inList, final boolean not)
       {
-         public Object evaluate(Filterable message) throws FilterException
-         {
+         super(right);
+         this.inList = inList;
+         this.not = not;
+      }
 
-            Object rvalue = right.evaluate(message);
-            if (rvalue == null)
-            {
-               return null;
-            }
-            if (rvalue.getClass() != String.class)
-            {
-               return null;
-            }
+      public PropertyExpression getProperty()
+      {
+         return (PropertyExpression) right;
+      }
 
-            if ((inList != null && inList.contains(rvalue)) ^ not)
-            {
-               return Boolean.TRUE;
-            }
-            else
-            {
-               return Boolean.FALSE;
-            }
+      /**
+       * @return the literals of the list, or {@code null} if the list is empty
+       */
+      public Collection<Object> getInList()
+      {
+         return inList;
+      }
 
-         }
+      public boolean isNot()
+      {
+         return not;
+      }
 
-         public String toString()
+      public Object evaluate(Filterable message) throws FilterException
+      {
+
+         Object rvalue = right.evaluate(message);
+         if (rvalue == null)
          {
-            StringBuffer answer = new StringBuffer();
-            answer.append(right);
-            answer.append(" ");
-            answer.append(getExpressionSymbol());
-            answer.append(" ( ");
-
-            int count = 0;
-            for (Iterator<Object> i = inList.iterator(); i.hasNext(); )
-            {
-               Object o = (Object) i.next();
-               if (count != 0)
-               {
-                  answer.append(", ");
-               }
-               answer.append(o);
-               count++;
-            }
+            return null;
+         }
+         if (rvalue.getClass() != String.class)
+         {
+            return null;
+         }
 
-            answer.append(" )");
-            return answer.toString();
+         if ((inList != null && inList.contains(rvalue)) ^ not)
+         {
+            return Boolean.TRUE;
+         }
+         else
+         {
+            return Boolean.FALSE;
          }
 
-         public String getExpressionSymbol()
+      }
+
+      public String toString()
+      {
+         StringBuffer answer = new StringBuffer();
+         answer.append(right);
+         answer.append(" ");
+         answer.append(getExpressionSymbol());
+         answer.append(" ( ");
+
+         int count = 0;
+         for (Iterator<Object> i = inList.iterator(); i.hasNext(); )
          {
-            if (not)
-            {
-               return "NOT IN";
-            }
-            else
+            Object o = (Object) i.next();
+            if (count != 0)
             {
-               return "IN";
+               answer.append(", ");
             }
+            answer.append(o);
+            count++;
          }
-      };
+
+         answer.append(" )");
+         return answer.toString();
+      }
+
+      public String getExpressionSymbol()
+      {
+         if (not)
+         {
+            return "NOT IN";
+         }
+         else
+         {
+            return "IN";
+         }
+      }
    }
 
    abstract static class BooleanUnaryExpression extends UnaryExpression implements BooleanExpression
@@ -510,6 +510,19 @@ public interface Configuration extends Serializable
     */
    Configuration setPersistIDCache(boolean persist);
 
+   /**
+    * Returns whether the persisted duplicate IDs of non transactional sends are kept on a memory
+    * mapped file per address instead of the journal. <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_ID_CACHE_MAPPED_STORE}.
+    */
+   boolean isIDCacheMappedStore();
+
+   /**
+    * Sets whether the persisted duplicate IDs of non transactional sends are kept on a memory
+    * mapped file per address instead of the journal.
+    */
+   Configuration setIDCacheMappedStore(boolean mappedStore);
+
    // Journal related attributes ------------------------------------------------------------
 
    /**
@@ -615,6 +628,41 @@ public interface Configuration extends Serializable
     */
    Configuration setJournalCompactPercentage(int percentage);
 
+   /**
+    * Returns the maximal number of the oldest journal files compacted on each pass, {@code 0}
+    * compacts all of them. <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_COMPACT_MAX_FILES}.
+    */
+   int getJournalCompactMaxFiles();
+
+   /**
+    * Sets the maximal number of the oldest journal files compacted on each pass.
+    */
+   Configuration setJournalCompactMaxFiles(int maxFiles);
+
+   /**
+    * Returns the maximal number of threads loading the journal: reading its files, and adding the
+    * loaded messages to their queues. <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_LOAD_THREADS}.
+    */
+   int getJournalLoadThreads();
+
+   /**
+    * Sets the maximal number of threads loading the journal.
+    */
+   Configuration setJournalLoadThreads(int loadThreads);
+
+   /**
+    * Returns the number of journals the messages are spread on. <br>
+    * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_SHARDS}.
+    */
+   int getJournalShards();
+
+   /**
+    * Sets the number of journals the messages are spread on.
+    */
+   Configuration setJournalShards(int shards);
+
    /**
     * Returns the number of journal files to pre-create. <br>
     * Default value is {@value org.hornetq.api.config.HornetQDefaultConfiguration#DEFAULT_JOURNAL_MIN_FILES}.
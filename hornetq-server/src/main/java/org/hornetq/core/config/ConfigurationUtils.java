@@ -67,7 +67,10 @@ public final class ConfigurationUtils
          case REPLICATED:
          {
             ReplicatedPolicyConfiguration pc = (ReplicatedPolicyConfiguration) conf;
-            return new ReplicatedPolicy(pc.isCheckForLiveServer(), pc.getGroupName(), pc.getClusterName());
+            ReplicatedPolicy replicatedPolicy = new ReplicatedPolicy(pc.isCheckForLiveServer(), pc.getGroupName(), pc.getClusterName());
+            replicatedPolicy.setReplicationBatchSize(pc.getReplicationBatchSize());
+            replicatedPolicy.setReplicationBatchTimeout(pc.getReplicationBatchTimeout());
+            return replicatedPolicy;
          }
          case REPLICA:
          {
@@ -23,6 +23,10 @@ public class ReplicatedPolicyConfiguration implements HAPolicyConfiguration
 
    private String clusterName = null;
 
+   private int replicationBatchSize = HornetQDefaultConfiguration.getDefaultReplicationBatchSize();
+
+   private long replicationBatchTimeout = HornetQDefaultConfiguration.getDefaultReplicationBatchTimeout();
+
    public ReplicatedPolicyConfiguration()
    {
    }
@@ -65,4 +69,26 @@ public class ReplicatedPolicyConfiguration implements HAPolicyConfiguration
       this.clusterName = clusterName;
       return this;
    }
+
+   public int getReplicationBatchSize()
+   {
+      return replicationBatchSize;
+   }
+
+   public ReplicatedPolicyConfiguration setReplicationBatchSize(int replicationBatchSize)
+   {
+      this.replicationBatchSize = replicationBatchSize;
+      return this;
+   }
+
+   public long getReplicationBatchTimeout()
+   {
+      return replicationBatchTimeout;
+   }
+
+   public ReplicatedPolicyConfiguration setReplicationBatchTimeout(long replicationBatchTimeout)
+   {
+      this.replicationBatchTimeout = replicationBatchTimeout;
+      return this;
+   }
 }
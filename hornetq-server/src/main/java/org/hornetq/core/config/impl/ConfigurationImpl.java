@@ -94,6 +94,8 @@ public class ConfigurationImpl implements Configuration
 
    private boolean persistIDCache = HornetQDefaultConfiguration.isDefaultPersistIdCache();
 
+   private boolean idCacheMappedStore = HornetQDefaultConfiguration.isDefaultIdCacheMappedStore();
+
    private List<String> incomingInterceptorClassNames = new ArrayList<String>();
 
    private List<String> outgoingInterceptorClassNames = new ArrayList<String>();
@@ -142,6 +144,12 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalCompactPercentage = HornetQDefaultConfiguration.getDefaultJournalCompactPercentage();
 
+   protected int journalCompactMaxFiles = HornetQDefaultConfiguration.getDefaultJournalCompactMaxFiles();
+
+   protected int journalShards = HornetQDefaultConfiguration.getDefaultJournalShards();
+
+   protected int journalLoadThreads = HornetQDefaultConfiguration.getDefaultJournalLoadThreads();
+
    protected int journalFileSize = HornetQDefaultConfiguration.getDefaultJournalFileSize();
 
    protected int journalMinFiles = HornetQDefaultConfiguration.getDefaultJournalMinFiles();
@@ -540,6 +548,17 @@ public class ConfigurationImpl implements Configuration
       return this;
    }
 
+   public boolean isIDCacheMappedStore()
+   {
+      return idCacheMappedStore;
+   }
+
+   public ConfigurationImpl setIDCacheMappedStore(final boolean mappedStore)
+   {
+      idCacheMappedStore = mappedStore;
+      return this;
+   }
+
    public String getBindingsDirectory()
    {
       return bindingsDirectory;
@@ -907,6 +926,39 @@ public class ConfigurationImpl implements Configuration
       return this;
    }
 
+   public int getJournalCompactMaxFiles()
+   {
+      return journalCompactMaxFiles;
+   }
+
+   public ConfigurationImpl setJournalCompactMaxFiles(final int maxFiles)
+   {
+      journalCompactMaxFiles = maxFiles;
+      return this;
+   }
+
+   public int getJournalLoadThreads()
+   {
+      return journalLoadThreads;
+   }
+
+   public ConfigurationImpl setJournalLoadThreads(final int loadThreads)
+   {
+      journalLoadThreads = loadThreads;
+      return this;
+   }
+
+   public int getJournalShards()
+   {
+      return journalShards;
+   }
+
+   public ConfigurationImpl setJournalShards(final int shards)
+   {
+      journalShards = shards;
+      return this;
+   }
+
    public long getServerDumpInterval()
    {
       return serverDumpInterval;
@@ -1371,6 +1423,8 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + journalBufferTimeout_NIO;
       result = prime * result + journalCompactMinFiles;
       result = prime * result + journalCompactPercentage;
+      result = prime * result + journalCompactMaxFiles;
+      result = prime * result + journalShards;
       result = prime * result + ((journalDirectory == null) ? 0 : journalDirectory.hashCode());
       result = prime * result + journalFileSize;
       result = prime * result + journalMaxIO_AIO;
@@ -1402,6 +1456,7 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + ((pagingDirectory == null) ? 0 : pagingDirectory.hashCode());
       result = prime * result + (persistDeliveryCountBeforeDelivery ? 1231 : 1237);
       result = prime * result + (persistIDCache ? 1231 : 1237);
+      result = prime * result + (idCacheMappedStore ? 1231 : 1237);
       result = prime * result + (persistenceEnabled ? 1231 : 1237);
       result = prime * result + ((queueConfigurations == null) ? 0 : queueConfigurations.hashCode());
       result = prime * result + (runSyncSpeedTest ? 1231 : 1237);
@@ -1565,6 +1620,10 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalCompactPercentage != other.journalCompactPercentage)
          return false;
+      if (journalCompactMaxFiles != other.journalCompactMaxFiles)
+         return false;
+      if (journalShards != other.journalShards)
+         return false;
       if (journalDirectory == null)
       {
          if (other.journalDirectory != null)
@@ -1655,6 +1714,8 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (persistIDCache != other.persistIDCache)
          return false;
+      if (idCacheMappedStore != other.idCacheMappedStore)
+         return false;
       if (persistenceEnabled != other.persistenceEnabled)
          return false;
       if (queueConfigurations == null)
@@ -134,10 +134,16 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
    private static final String PAGE_MAX_CACHE_SIZE_NODE_NAME = "page-max-cache-size";
 
+   private static final String PAGE_PREFETCH_SIZE_NODE_NAME = "page-prefetch-size";
+
+   private static final String PAGE_COMPRESSION_NODE_NAME = "page-compression";
+
    private static final String MESSAGE_COUNTER_HISTORY_DAY_LIMIT_NODE_NAME = "message-counter-history-day-limit";
 
    private static final String LVQ_NODE_NAME = "last-value-queue";
 
+   private static final String DELIVERY_LANES_NODE_NAME = "delivery-lanes";
+
    private static final String REDISTRIBUTION_DELAY_NODE_NAME = "redistribution-delay";
 
    private static final String SEND_TO_DLA_ON_NO_ROUTE = "send-to-dla-on-no-route";
@@ -510,6 +516,8 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
       config.setPersistIDCache(getBoolean(e, "persist-id-cache", config.isPersistIDCache()));
 
+      config.setIDCacheMappedStore(getBoolean(e, "id-cache-mapped-store", config.isIDCacheMappedStore()));
+
       config.setManagementAddress(new SimpleString(getString(e,
                                                              "management-address",
                                                              config.getManagementAddress()
@@ -740,6 +748,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       {
          config.setJournalType(JournalType.NIO);
       }
+      else if (s.equals(JournalType.MAPPED.toString()))
+      {
+         config.setJournalType(JournalType.MAPPED);
+      }
       else if (s.equals(JournalType.ASYNCIO.toString()))
       {
          // https://jira.jboss.org/jira/browse/HORNETQ-295
@@ -817,6 +829,13 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                     config.getJournalCompactPercentage(),
                                                     Validators.PERCENTAGE));
 
+      config.setJournalCompactMaxFiles(getInteger(e, "journal-compact-max-files", config.getJournalCompactMaxFiles(),
+                                                  Validators.GE_ZERO));
+
+      config.setJournalShards(getInteger(e, "journal-shards", config.getJournalShards(), Validators.GT_ZERO));
+
+      config.setJournalLoadThreads(getInteger(e, "journal-load-threads", config.getJournalLoadThreads(), Validators.GT_ZERO));
+
       config.setLogJournalWriteRate(getBoolean(e,
                                                "log-journal-write-rate",
                                                HornetQDefaultConfiguration.isDefaultJournalLogWriteRate()));
@@ -1085,6 +1104,14 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          {
             addressSettings.setPageCacheMaxSize(XMLUtil.parseInt(child));
          }
+         else if (PAGE_PREFETCH_SIZE_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPagePrefetchSize(XMLUtil.parseInt(child));
+         }
+         else if (PAGE_COMPRESSION_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageCompression(XMLUtil.parseBoolean(child));
+         }
          else if (MESSAGE_COUNTER_HISTORY_DAY_LIMIT_NODE_NAME.equalsIgnoreCase(name))
          {
             addressSettings.setMessageCounterHistoryDayLimit(XMLUtil.parseInt(child));
@@ -1101,6 +1128,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          {
             addressSettings.setLastValueQueue(XMLUtil.parseBoolean(child));
          }
+         else if (DELIVERY_LANES_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setDeliveryLanes(XMLUtil.parseInt(child));
+         }
          else if (MAX_DELIVERY_ATTEMPTS.equalsIgnoreCase(name))
          {
             addressSettings.setMaxDeliveryAttempts(XMLUtil.parseInt(child));
@@ -1309,6 +1340,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
       configuration.setClusterName(getString(policyNode, "cluster-name", configuration.getClusterName(), Validators.NO_CHECK));
 
+      configuration.setReplicationBatchSize(getInteger(policyNode, "replication-batch-size", configuration.getReplicationBatchSize(), Validators.GE_ZERO));
+
+      configuration.setReplicationBatchTimeout(getLong(policyNode, "replication-batch-timeout", configuration.getReplicationBatchTimeout(), Validators.GE_ZERO));
+
       return configuration;
    }
 
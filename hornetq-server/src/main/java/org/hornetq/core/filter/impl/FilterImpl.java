@@ -12,12 +12,17 @@
  */
 package org.hornetq.core.filter.impl;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.hornetq.selector.filter.BooleanExpression;
 import org.hornetq.selector.filter.FilterException;
 import org.hornetq.selector.filter.Filterable;
 import org.hornetq.selector.SelectorParser;
 import org.hornetq.api.core.FilterConstants;
 import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.Pair;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.server.HornetQMessageBundle;
@@ -42,6 +47,10 @@ import org.hornetq.core.server.ServerMessage;
 * HQUserID - the user specified ID string (if any)
 * Any other identifiers that appear in a filter expression represent header values for the message
 *
+* A filter instance is shared by every queue, diverter, bridge and consumer created with it and
+* {@link #match(ServerMessage)} may be called concurrently: the compiled expression is immutable and
+* all per-evaluation state lives on the calling thread.
+*
 * String values must be set as <code>SimpleString</code>, not <code>java.lang.String</code> (see JBMESSAGING-1307).
 * Derived from JBoss MQ version by
 *
@@ -64,6 +73,19 @@ public class FilterImpl implements Filter
 
    private final BooleanExpression booleanExpression;
 
+   /**
+    * The compiled form of {@link #booleanExpression}, or {@code null} when it has to be interpreted.
+    */
+   private final SelectorCompiler.Predicate predicate;
+
+   private final Pair<SimpleString, Set<SimpleString>> requiredProperty;
+
+   /**
+    * Identifiers used by the expression, converted once to their SimpleString form so property
+    * lookups don't allocate on every evaluation. Bounded by the identifiers of this filter.
+    */
+   private final ConcurrentMap<String, SimpleString> identifiers = new ConcurrentHashMap<String, SimpleString>();
+
    // Static ---------------------------------------------------------
 
    /**
@@ -80,6 +102,18 @@ public class FilterImpl implements Filter
     * @throws HornetQException if the string does not correspond to a valid filter
     */
    public static Filter createFilter(final SimpleString filterStr) throws HornetQException
+   {
+      return FilterImpl.createFilter(filterStr, true);
+   }
+
+   /**
+    * @param compile whether common selector shapes should be compiled into specialized predicates
+    *                (see {@link SelectorCompiler}), or the whole expression tree interpreted. This is
+    *                mainly useful for testing and benchmarking.
+    * @return null if <code>filterStr</code> is null or an empty String and a valid filter else
+    * @throws HornetQException if the string does not correspond to a valid filter
+    */
+   public static Filter createFilter(final SimpleString filterStr, final boolean compile) throws HornetQException
    {
       if (filterStr == null || filterStr.length() == 0)
       {
@@ -96,15 +130,17 @@ public class FilterImpl implements Filter
          HornetQServerLogger.LOGGER.invalidFilter(e, filterStr);
          throw HornetQMessageBundle.BUNDLE.invalidFilter(e, filterStr);
       }
-      return new FilterImpl(filterStr, booleanExpression);
+      return new FilterImpl(filterStr, booleanExpression, compile ? SelectorCompiler.compile(booleanExpression) : null);
    }
 
    // Constructors ---------------------------------------------------
 
-   private FilterImpl(final SimpleString str, final BooleanExpression expression)
+   private FilterImpl(final SimpleString str, final BooleanExpression expression, final SelectorCompiler.Predicate predicate)
    {
       sfilterString = str;
       this.booleanExpression = expression;
+      this.predicate = predicate;
+      this.requiredProperty = predicate == null ? null : SelectorCompiler.findRequiredProperty(predicate);
    }
 
    // Filter implementation ---------------------------------------------------------------------
@@ -114,12 +150,28 @@ public class FilterImpl implements Filter
       return sfilterString;
    }
 
-   public synchronized boolean match(final ServerMessage message)
+   /**
+    * A property this filter requires to be a string equal to one of a few literals, taken from a
+    * {@code prop = 'literal'} or {@code prop IN (...)} test that is the whole selector or an operand
+    * of its top-level {@code AND}. A message with no such property, or whose property is a string
+    * not in the set, can never match; a property of another type may still match.
+    *
+    * @return the property and its accepted values, or {@code null} if the selector has no such test
+    */
+   public Pair<SimpleString, Set<SimpleString>> getRequiredProperty()
+   {
+      return requiredProperty;
+   }
+
+   public boolean match(final ServerMessage message)
    {
       try
       {
-         boolean result = booleanExpression.matches(new FilterableServerMessage(message));
-         return result;
+         if (predicate != null)
+         {
+            return predicate.matches(message, new FilterableServerMessage(message));
+         }
+         return booleanExpression.matches(new FilterableServerMessage(message));
       }
       catch (Exception e)
       {
@@ -198,7 +250,25 @@ public class FilterImpl implements Filter
       }
    }
 
-   private static class FilterableServerMessage implements Filterable
+   private SimpleString toIdentifier(final String id)
+   {
+      SimpleString identifier = identifiers.get(id);
+      if (identifier == null)
+      {
+         identifier = new SimpleString(id);
+         SimpleString existing = identifiers.putIfAbsent(id, identifier);
+         if (existing != null)
+         {
+            identifier = existing;
+         }
+      }
+      return identifier;
+   }
+
+   /**
+    * A short-lived view of a message created for a single evaluation, so it is never shared between threads.
+    */
+   private final class FilterableServerMessage implements Filterable
    {
       private final ServerMessage message;
 
@@ -210,14 +280,15 @@ public class FilterImpl implements Filter
       @Override
       public Object getProperty(String id)
       {
+         SimpleString identifier = toIdentifier(id);
          Object result = null;
-         if (id.startsWith(FilterConstants.HORNETQ_PREFIX.toString()))
+         if (identifier.startsWith(FilterConstants.HORNETQ_PREFIX))
          {
-            result = getHeaderFieldValue(message, new SimpleString(id));
+            result = getHeaderFieldValue(message, identifier);
          }
          if (result == null)
          {
-            result = message.getObjectProperty(new SimpleString(id));
+            result = message.getObjectProperty(identifier);
          }
          if (result != null)
          {
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.filter.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.selector.filter.BooleanExpression;
+import org.hornetq.selector.filter.ComparisonExpression;
+import org.hornetq.selector.filter.ConstantExpression;
+import org.hornetq.selector.filter.Expression;
+import org.hornetq.selector.filter.FilterException;
+import org.hornetq.selector.filter.Filterable;
+import org.hornetq.selector.filter.LogicExpression;
+import org.hornetq.selector.filter.PropertyExpression;
+import org.hornetq.selector.filter.UnaryExpression;
+import org.hornetq.utils.DataConstants;
+import org.hornetq.utils.TypedProperties;
+
+/**
+ * Turns the common shapes of a parsed selector into specialized predicates reading the message
+ * properties directly, instead of walking the interpreted expression tree.
+ * <p>
+ * The following shapes are compiled:
+ * <ul>
+ * <li>{@code prop = 'literal'} and {@code prop IN ('a', 'b', ...)}, compared on the SimpleString
+ * value of the property</li>
+ * <li>{@code prop = n}, {@code prop > n}, {@code prop >= n}, {@code prop < n}, {@code prop <= n}
+ * (and {@code BETWEEN}) with an integer literal, compared on the primitive value of byte, short,
+ * int and long properties</li>
+ * <li>{@code AND} and {@code OR} chains of the above</li>
+ * </ul>
+ * Anything else, including {@code NOT}, header identifiers and property values of an unexpected
+ * type, is delegated to the interpreted expression so the result is always the same as
+ * {@link BooleanExpression#matches(Filterable)}.
+ * <p>
+ * The selector three-valued logic only needs to be kept below {@code NOT}, which is never
+ * compiled: for {@code AND} / {@code OR} a result is TRUE only if enough operands are TRUE, so
+ * UNKNOWN and FALSE can both be represented as {@code false}.
+ */
+final class SelectorCompiler
+{
+   private static final int EQUAL = 0;
+
+   private static final int GREATER_THAN = 1;
+
+   private static final int GREATER_THAN_EQUAL = 2;
+
+   private static final int LESS_THAN = 3;
+
+   private static final int LESS_THAN_EQUAL = 4;
+
+   private SelectorCompiler()
+   {
+   }
+
+   /**
+    * A compiled selector. Implementations are immutable and can be evaluated concurrently.
+    */
+   abstract static class Predicate
+   {
+      /**
+       * @param message the message to evaluate
+       * @param filterable the view of the same message, used by the parts that are interpreted
+       */
+      abstract boolean matches(ServerMessage message, Filterable filterable) throws FilterException;
+   }
+
+   /**
+    * @return the compiled predicate or {@code null} if no part of the expression can be compiled
+    */
+   static Predicate compile(final BooleanExpression expression)
+   {
+      Predicate predicate = compileNode(expression);
+      if (predicate instanceof Interpreted)
+      {
+         return null;
+      }
+      return predicate;
+   }
+
+   /**
+    * Looks for a property the predicate requires to be equal to one of a set of string literals,
+    * i.e. the predicate itself or an operand of its top-level {@code AND} is of the form
+    * {@code prop = 'literal'} or {@code prop IN ('a', 'b', ...)}.
+    * <p>
+    * The predicate can only match a message whose property is either a string from that set or a
+    * value of another type (which the interpreter may convert): a missing property or a string
+    * outside of the set never matches.
+    *
+    * @return the property and its accepted values, or {@code null}
+    */
+   static Pair<SimpleString, Set<SimpleString>> findRequiredProperty(final Predicate predicate)
+   {
+      Predicate[] operands = predicate instanceof And ? ((And) predicate).operands : new Predicate[]{predicate};
+      for (Predicate operand : operands)
+      {
+         if (operand instanceof StringEquals)
+         {
+            StringEquals equals = (StringEquals) operand;
+            return new Pair<SimpleString, Set<SimpleString>>(equals.key, Collections.singleton(equals.value));
+         }
+         else if (operand instanceof StringIn)
+         {
+            StringIn in = (StringIn) operand;
+            return new Pair<SimpleString, Set<SimpleString>>(in.key, Collections.unmodifiableSet(in.values));
+         }
+      }
+      return null;
+   }
+
+   private static Predicate compileNode(final BooleanExpression expression)
+   {
+      if (expression instanceof LogicExpression)
+      {
+         LogicExpression logic = (LogicExpression) expression;
+         String symbol = logic.getExpressionSymbol();
+         if ("AND".equals(symbol) || "OR".equals(symbol))
+         {
+            List<Predicate> operands = new ArrayList<Predicate>();
+            flatten(symbol, logic, operands);
+            Predicate[] array = operands.toArray(new Predicate[operands.size()]);
+            return "AND".equals(symbol) ? new And(array) : new Or(array);
+         }
+      }
+      else if (expression instanceof ComparisonExpression)
+      {
+         Predicate predicate = compileComparison((ComparisonExpression) expression);
+         if (predicate != null)
+         {
+            return predicate;
+         }
+      }
+      else if (expression instanceof UnaryExpression.InExpression)
+      {
+         Predicate predicate = compileIn((UnaryExpression.InExpression) expression);
+         if (predicate != null)
+         {
+            return predicate;
+         }
+      }
+      return new Interpreted(expression);
+   }
+
+   private static void flatten(final String symbol, final LogicExpression logic, final List<Predicate> operands)
+   {
+      for (Expression operand : new Expression[]{logic.getLeft(), logic.getRight()})
+      {
+         if (operand instanceof LogicExpression && symbol.equals(((LogicExpression) operand).getExpressionSymbol()))
+         {
+            flatten(symbol, (LogicExpression) operand, operands);
+         }
+         else
+         {
+            operands.add(compileNode((BooleanExpression) operand));
+         }
+      }
+   }
+
+   private static Predicate compileComparison(final ComparisonExpression comparison)
+   {
+      int operator = toOperator(comparison.getExpressionSymbol());
+      if (operator < 0)
+      {
+         return null;
+      }
+
+      PropertyExpression property;
+      ConstantExpression constant;
+      if (comparison.getLeft() instanceof PropertyExpression && comparison.getRight() instanceof ConstantExpression)
+      {
+         property = (PropertyExpression) comparison.getLeft();
+         constant = (ConstantExpression) comparison.getRight();
+      }
+      else if (comparison.getLeft() instanceof ConstantExpression && comparison.getRight() instanceof PropertyExpression)
+      {
+         property = (PropertyExpression) comparison.getRight();
+         constant = (ConstantExpression) comparison.getLeft();
+         operator = reverse(operator);
+      }
+      else
+      {
+         return null;
+      }
+
+      SimpleString key = toKey(property);
+      if (key == null)
+      {
+         return null;
+      }
+
+      Object value = constant.getValue();
+      if (value instanceof String && operator == EQUAL)
+      {
+         return new StringEquals(key, new SimpleString((String) value), comparison);
+      }
+      else if (value instanceof Integer || value instanceof Long)
+      {
+         return new IntegralComparison(key, operator, ((Number) value).longValue(), comparison);
+      }
+      return null;
+   }
+
+   private static Predicate compileIn(final UnaryExpression.InExpression in)
+   {
+      SimpleString key = toKey(in.getProperty());
+      if (key == null || in.isNot())
+      {
+         return null;
+      }
+
+      Set<SimpleString> values = new HashSet<SimpleString>();
+      Collection<Object> list = in.getInList();
+      if (list != null)
+      {
+         for (Object value : list)
+         {
+            if (!(value instanceof String))
+            {
+               return null;
+            }
+            values.add(new SimpleString((String) value));
+         }
+      }
+      return new StringIn(key, values);
+   }
+
+   /**
+    * Header identifiers are resolved by FilterImpl itself and are left to the interpreter.
+    */
+   private static SimpleString toKey(final PropertyExpression property)
+   {
+      SimpleString key = new SimpleString(property.getName());
+      if (key.startsWith(FilterConstants.HORNETQ_PREFIX))
+      {
+         return null;
+      }
+      return key;
+   }
+
+   private static int toOperator(final String symbol)
+   {
+      if ("=".equals(symbol))
+      {
+         return EQUAL;
+      }
+      else if (">".equals(symbol))
+      {
+         return GREATER_THAN;
+      }
+      else if (">=".equals(symbol))
+      {
+         return GREATER_THAN_EQUAL;
+      }
+      else if ("<".equals(symbol))
+      {
+         return LESS_THAN;
+      }
+      else if ("<=".equals(symbol))
+      {
+         return LESS_THAN_EQUAL;
+      }
+      return -1;
+   }
+
+   private static int reverse(final int operator)
+   {
+      switch (operator)
+      {
+         case GREATER_THAN:
+            return LESS_THAN;
+         case GREATER_THAN_EQUAL:
+            return LESS_THAN_EQUAL;
+         case LESS_THAN:
+            return GREATER_THAN;
+         case LESS_THAN_EQUAL:
+            return GREATER_THAN_EQUAL;
+         default:
+            return operator;
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class Interpreted extends Predicate
+   {
+      private final BooleanExpression expression;
+
+      Interpreted(final BooleanExpression expression)
+      {
+         this.expression = expression;
+      }
+
+      @Override
+      boolean matches(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         return expression.matches(filterable);
+      }
+   }
+
+   private static final class And extends Predicate
+   {
+      private final Predicate[] operands;
+
+      And(final Predicate[] operands)
+      {
+         this.operands = operands;
+      }
+
+      @Override
+      boolean matches(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         for (Predicate operand : operands)
+         {
+            if (!operand.matches(message, filterable))
+            {
+               return false;
+            }
+         }
+         return true;
+      }
+   }
+
+   private static final class Or extends Predicate
+   {
+      private final Predicate[] operands;
+
+      Or(final Predicate[] operands)
+      {
+         this.operands = operands;
+      }
+
+      @Override
+      boolean matches(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         for (Predicate operand : operands)
+         {
+            if (operand.matches(message, filterable))
+            {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
+
+   private static final class StringEquals extends Predicate
+   {
+      private final SimpleString key;
+
+      private final SimpleString value;
+
+      private final BooleanExpression fallback;
+
+      StringEquals(final SimpleString key, final SimpleString value, final BooleanExpression fallback)
+      {
+         this.key = key;
+         this.value = value;
+         this.fallback = fallback;
+      }
+
+      @Override
+      boolean matches(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         Object property = message.getTypedProperties().getProperty(key);
+         if (property == null)
+         {
+            return false;
+         }
+         else if (property instanceof SimpleString)
+         {
+            return value.equals(property);
+         }
+         // other types may be converted by the interpreter
+         return fallback.matches(filterable);
+      }
+   }
+
+   private static final class StringIn extends Predicate
+   {
+      private final SimpleString key;
+
+      private final Set<SimpleString> values;
+
+      StringIn(final SimpleString key, final Set<SimpleString> values)
+      {
+         this.key = key;
+         this.values = values;
+      }
+
+      @Override
+      boolean matches(final ServerMessage message, final Filterable filterable)
+      {
+         // IN is never TRUE for anything but a string
+         Object property = message.getTypedProperties().getProperty(key);
+         return property instanceof SimpleString && values.contains(property);
+      }
+   }
+
+   private static final class IntegralComparison extends Predicate
+   {
+      private final SimpleString key;
+
+      private final int operator;
+
+      private final long value;
+
+      private final BooleanExpression fallback;
+
+      IntegralComparison(final SimpleString key, final int operator, final long value, final BooleanExpression fallback)
+      {
+         this.key = key;
+         this.operator = operator;
+         this.value = value;
+         this.fallback = fallback;
+      }
+
+      @Override
+      boolean matches(final ServerMessage message, final Filterable filterable) throws FilterException
+      {
+         TypedProperties properties = message.getTypedProperties();
+         switch (properties.getPropertyType(key))
+         {
+            case DataConstants.BYTE:
+            case DataConstants.SHORT:
+            case DataConstants.INT:
+            case DataConstants.LONG:
+               return compare(properties.getIntegralValue(key));
+            case -1:
+            case DataConstants.NULL:
+               return false;
+            default:
+               // floating point and strings follow the interpreter's conversion rules
+               return fallback.matches(filterable);
+         }
+      }
+
+      private boolean compare(final long property)
+      {
+         switch (operator)
+         {
+            case EQUAL:
+               return property == value;
+            case GREATER_THAN:
+               return property > value;
+            case GREATER_THAN_EQUAL:
+               return property >= value;
+            case LESS_THAN:
+               return property < value;
+            default:
+               return property <= value;
+         }
+      }
+   }
+}
@@ -47,6 +47,7 @@ import org.hornetq.api.core.management.QueueControl;
 import org.hornetq.core.config.BridgeConfiguration;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.config.DivertConfiguration;
+import org.hornetq.core.journal.Journal;
 import org.hornetq.core.messagecounter.MessageCounterManager;
 import org.hornetq.core.messagecounter.impl.MessageCounterManagerImpl;
 import org.hornetq.core.persistence.StorageManager;
@@ -426,6 +427,54 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getJournalCompactedBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         Journal journal = server.getStorageManager().getMessageJournal();
+         return journal == null ? 0 : journal.getCompactedBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalCompactStallTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         Journal journal = server.getStorageManager().getMessageJournal();
+         return journal == null ? 0 : journal.getCompactStallTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalMaxCompactStallTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         Journal journal = server.getStorageManager().getMessageJournal();
+         return journal == null ? 0 : journal.getMaxCompactStallTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isPersistenceEnabled()
    {
       checkStarted();
@@ -1613,6 +1662,8 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       settings.put("expiryDelay", addressSettings.getExpiryDelay());
       settings.put("maxDeliveryAttempts", addressSettings.getMaxDeliveryAttempts());
       settings.put("pageCacheMaxSize", addressSettings.getPageCacheMaxSize());
+      settings.put("pagePrefetchSize", addressSettings.getPagePrefetchSize());
+      settings.put("pageCompression", addressSettings.isPageCompression());
       settings.put("maxSizeBytes", addressSettings.getMaxSizeBytes());
       settings.put("pageSizeBytes", addressSettings.getPageSizeBytes());
       settings.put("redeliveryDelay", addressSettings.getRedeliveryDelay());
@@ -1620,6 +1671,7 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       settings.put("maxRedeliveryDelay", addressSettings.getMaxRedeliveryDelay());
       settings.put("redistributionDelay", addressSettings.getRedistributionDelay());
       settings.put("lastValueQueue", addressSettings.isLastValueQueue());
+      settings.put("deliveryLanes", addressSettings.getDeliveryLanes());
       settings.put("sendToDLAOnNoRoute", addressSettings.isSendToDLAOnNoRoute());
       String policy = addressSettings.getAddressFullMessagePolicy() == AddressFullMessagePolicy.PAGE ? "PAGE"
             : addressSettings.getAddressFullMessagePolicy() == AddressFullMessagePolicy.BLOCK ? "BLOCK"
@@ -13,7 +13,6 @@
 package org.hornetq.core.paging.cursor;
 
 import org.hornetq.core.paging.PagedMessage;
-import org.hornetq.utils.SoftValueHashMap;
 
 /**
  * A PageCache
@@ -22,7 +21,7 @@ import org.hornetq.utils.SoftValueHashMap;
  *
  *
  */
-public interface PageCache extends SoftValueHashMap.ValueCache
+public interface PageCache
 {
    long getPageId();
 
@@ -55,6 +54,9 @@ public interface PageCache extends SoftValueHashMap.ValueCache
     */
    void unlock();
 
+   /**
+    * Called when the cache is evicted or the page deleted, releasing any resources held
+    */
    void close();
 
 }
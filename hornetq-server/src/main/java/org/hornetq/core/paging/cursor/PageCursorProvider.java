@@ -65,6 +65,14 @@ public interface PageCursorProvider
 
    void setCacheMaxSize(int size);
 
+   /**
+    * Reads the pages following pageId asynchronously, up to the prefetch size, so they are cached
+    * when the subscriptions get to them.
+    */
+   void prefetch(long pageId);
+
+   void setPrefetchSize(int size);
+
    /**
     * @param pageCursorImpl
     */
@@ -87,6 +87,11 @@ public interface PageSubscription
     */
    long getFirstPage();
 
+   /**
+    * @return the page of the last message read by the subscription, or -1 if it hasn't read any
+    */
+   long getReadingPage();
+
    // Reload operations
 
    /**
@@ -15,12 +15,28 @@ package org.hornetq.core.paging.cursor.impl;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.PageCursorProvider;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.utils.DataConstants;
 
 /**
  * The caching associated to a single page.
+ * <p>
+ * The page is kept off-heap with its records as they are on the file, and the messages are decoded
+ * every time they are requested. Large messages are the exception: they are decoded when the page is
+ * read and kept, as their delayed deletion is tracked by the instance. Compressed blocks are kept
+ * compressed, the last block inflated is kept for the messages following on the same block.
+ * <p>
+ * The memory is released when the cache is closed by the {@link PageCursorProvider}, after which the
+ * messages are requested again from the provider.
  *
  * @author <a href="mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  *
@@ -31,44 +47,124 @@ class PageCacheImpl implements PageCache
 
    // Constants -----------------------------------------------------
 
+   private static final Page.Records NO_RECORDS = new Page.Records();
+
    // Attributes ----------------------------------------------------
 
    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-   private PagedMessage[] messages;
-
    private final Page page;
 
+   private final StorageManager storageManager;
+
+   private final PageCursorProvider cursorProvider;
+
+   /**
+    * The records of the page, null once the cache is closed
+    */
+   private ByteBuf buffer;
+
+   private Page.Records records = NO_RECORDS;
+
+   private volatile InflatedBlock lastBlock;
+
+   private PagedMessage[] largeMessages;
+
+   /**
+    * Used instead of the buffer when the messages were set already decoded
+    */
+   private PagedMessage[] messages;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
 
-   public PageCacheImpl(final Page page)
+   public PageCacheImpl(final Page page, final StorageManager storageManager, final PageCursorProvider cursorProvider)
    {
       this.page = page;
+      this.storageManager = storageManager;
+      this.cursorProvider = cursorProvider;
    }
 
    // Public --------------------------------------------------------
 
+   /**
+    * Reads the records of an open page into direct memory. This has to be called holding {@link #lock()}.
+    */
+   public void read(final Page openPage) throws Exception
+   {
+      int size = openPage.getSize();
+      ByteBuf newBuffer = Unpooled.directBuffer(size, size);
+      try
+      {
+         Page.Records newRecords = openPage.read(newBuffer.nioBuffer(0, size));
+         newBuffer.writerIndex(size);
+
+         PagedMessage[] newLargeMessages = null;
+         for (int i = 0; i < newRecords.size(); i++)
+         {
+            HornetQBuffer recordBuffer = getRecordBuffer(newBuffer, newRecords, i);
+            // the large message flag follows the transaction id
+            if (recordBuffer.getByte(newRecords.getPosition(i) + DataConstants.SIZE_LONG) != 0)
+            {
+               if (newLargeMessages == null)
+               {
+                  newLargeMessages = new PagedMessage[newRecords.size()];
+               }
+               newLargeMessages[i] = page.decodeMessage(recordBuffer, newRecords.getPosition(i), storageManager);
+            }
+         }
+
+         buffer = newBuffer;
+         records = newRecords;
+         largeMessages = newLargeMessages;
+      }
+      catch (Exception e)
+      {
+         newBuffer.release();
+         throw e;
+      }
+   }
+
    @Override
    public PagedMessage getMessage(final int messageNumber)
    {
       lock.readLock().lock();
       try
       {
-         if (messageNumber < messages.length)
+         if (messages != null)
          {
-            return messages[messageNumber];
+            return messageNumber < messages.length ? messages[messageNumber] : null;
          }
-         else
+
+         if (messageNumber >= records.size())
          {
             return null;
          }
+
+         if (largeMessages != null && largeMessages[messageNumber] != null)
+         {
+            return largeMessages[messageNumber];
+         }
+
+         if (buffer != null)
+         {
+            return page.decodeMessage(getRecordBuffer(buffer, records, messageNumber),
+                                      records.getPosition(messageNumber),
+                                      storageManager);
+         }
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
       }
       finally
       {
          lock.readLock().unlock();
       }
+
+      // The cache was evicted after it was looked up
+      return cursorProvider.getMessage(new PagePositionImpl(getPageId(), messageNumber));
    }
 
    public long getPageId()
@@ -96,7 +192,7 @@ class PageCacheImpl implements PageCache
       lock.readLock().lock();
       try
       {
-         return messages.length;
+         return messages != null ? messages.length : records.size();
       }
       finally
       {
@@ -104,8 +200,25 @@ class PageCacheImpl implements PageCache
       }
    }
 
+   /**
+    * Releases the memory of the page
+    */
    public void close()
    {
+      lock.writeLock().lock();
+      try
+      {
+         if (buffer != null)
+         {
+            buffer.release();
+            buffer = null;
+         }
+         lastBlock = null;
+      }
+      finally
+      {
+         lock.writeLock().unlock();
+      }
    }
 
    @Override
@@ -117,12 +230,60 @@ class PageCacheImpl implements PageCache
    @Override
    public String toString()
    {
-      return "PageCacheImpl::page=" + page.getPageId() + " numberOfMessages = " + messages.length;
+      return "PageCacheImpl::page=" + page.getPageId() + " numberOfMessages = " + getNumberOfMessages();
    }
 
    @Override
    public PagedMessage[] getMessages()
    {
-      return messages;
+      if (messages != null)
+      {
+         return messages;
+      }
+
+      PagedMessage[] decoded = new PagedMessage[getNumberOfMessages()];
+      for (int i = 0; i < decoded.length; i++)
+      {
+         decoded[i] = getMessage(i);
+      }
+      return decoded;
+   }
+
+   private static ChannelBufferWrapper wrap(final ByteBuf records)
+   {
+      return new ChannelBufferWrapper(records.duplicate());
+   }
+
+   /**
+    * @return the buffer the record is on, the page buffer or its compressed block once inflated
+    */
+   private HornetQBuffer getRecordBuffer(final ByteBuf pageBuffer, final Page.Records pageRecords, final int recordNumber) throws Exception
+   {
+      int block = pageRecords.getBlock(recordNumber);
+      if (block < 0)
+      {
+         return wrap(pageBuffer);
+      }
+
+      InflatedBlock inflated = lastBlock;
+      if (inflated == null || inflated.position != block)
+      {
+         inflated = new InflatedBlock(block, Page.inflateBlock(wrap(pageBuffer), block));
+         lastBlock = inflated;
+      }
+      return HornetQBuffers.wrappedBuffer(inflated.records);
+   }
+
+   private static final class InflatedBlock
+   {
+      private final int position;
+
+      private final byte[] records;
+
+      private InflatedBlock(final int position, final byte[] records)
+      {
+         this.position = position;
+         this.records = records;
+      }
    }
 }
@@ -13,7 +13,9 @@
 package org.hornetq.core.paging.cursor.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -35,7 +37,6 @@ import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.FutureLatch;
-import org.hornetq.utils.SoftValueHashMap;
 /**
  * A PageProviderIMpl
  *
@@ -68,7 +69,23 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   /**
+    * The caches in least recently used order. Non live caches are closed when evicted, releasing the
+    * memory of their page, so the memory used is bounded by maxCacheSize pages.
+    */
+   private final LinkedHashMap<Long, PageCache> caches = new LinkedHashMap<Long, PageCache>(16, 0.75f, true);
+
+   private int maxCacheSize;
+
+   // The executor reading the pages ahead of the subscriptions, so the delivery doesn't wait on the disk
+   private final Executor readExecutor;
+
+   private volatile int prefetchSize;
+
+   /**
+    * The pages being read ahead. It is the read-ahead budget shared by every subscription of the store.
+    */
+   private final AtomicInteger pendingPrefetches = new AtomicInteger(0);
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
@@ -80,11 +97,21 @@ public class PageCursorProviderImpl implements PageCursorProvider
                                  final StorageManager storageManager,
                                  final Executor executor,
                                  final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, executor, maxCacheSize);
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final Executor readExecutor,
+                                 final int maxCacheSize)
    {
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.readExecutor = readExecutor;
+      this.maxCacheSize = maxCacheSize;
    }
 
    // Public --------------------------------------------------------
@@ -136,16 +163,17 @@ public class PageCursorProviderImpl implements PageCursorProvider
    {
       try
       {
-         boolean needToRead = false;
+         PageCacheImpl newCache = null;
          PageCache cache = null;
-         synchronized (softCache)
+         List<PageCache> evicted = null;
+         synchronized (caches)
          {
             if (pageId > pagingStore.getCurrentWritingPage())
             {
                return null;
             }
 
-            cache = softCache.get(pageId);
+            cache = caches.get(pageId);
             if (cache == null)
             {
                if (!pagingStore.checkPageFileExists((int)pageId))
@@ -153,8 +181,8 @@ public class PageCursorProviderImpl implements PageCursorProvider
                   return null;
                }
 
-               cache = createPageCache(pageId);
-               needToRead = true;
+               newCache = createPageCache(pageId);
+               cache = newCache;
                // anyone reading from this cache will have to wait reading to finish first
                // we also want only one thread reading this cache
                cache.lock();
@@ -162,13 +190,17 @@ public class PageCursorProviderImpl implements PageCursorProvider
                {
                   HornetQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
                }
-               softCache.put(pageId, cache);
+               caches.put(pageId, cache);
+               // the new cache is not read yet, it can't be evicted
+               evicted = checkCacheSize(pageId);
             }
          }
 
+         close(evicted);
+
          // Reading is done outside of the synchronized block, however
          // the page stays locked until the entire reading is finished
-         if (needToRead)
+         if (newCache != null)
          {
             Page page = null;
             try
@@ -178,8 +210,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
                storageManager.beforePageRead();
                page.open();
 
-               List<PagedMessage> pgdMessages = page.read(storageManager);
-               cache.setMessages(pgdMessages.toArray(new PagedMessage[pgdMessages.size()]));
+               newCache.read(page);
             }
             finally
             {
@@ -206,32 +237,116 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
    }
 
+   public void prefetch(final long pageId)
+   {
+      int budget;
+      synchronized (caches)
+      {
+         // the page being delivered has to stay on the cache with the pages read ahead
+         budget = Math.min(prefetchSize, maxCacheSize - 1);
+      }
+
+      for (long nextPage = pageId + 1; nextPage <= pageId + budget; nextPage++)
+      {
+         // the current writing page is live, there's nothing to read
+         if (nextPage >= pagingStore.getCurrentWritingPage())
+         {
+            return;
+         }
+
+         synchronized (caches)
+         {
+            if (caches.containsKey(nextPage))
+            {
+               continue;
+            }
+         }
+
+         if (pendingPrefetches.incrementAndGet() > budget)
+         {
+            pendingPrefetches.decrementAndGet();
+            return;
+         }
+
+         final long prefetchPage = nextPage;
+
+         readExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  if (pagingStore.isStarted())
+                  {
+                     // a concurrent read of the same page will wait on the cache being read here
+                     getPageCache(prefetchPage);
+                  }
+               }
+               catch (Throwable e)
+               {
+                  HornetQServerLogger.LOGGER.errorPrefetchingPage(e, prefetchPage, pagingStore.getAddress());
+               }
+               finally
+               {
+                  pendingPrefetches.decrementAndGet();
+               }
+            }
+         });
+      }
+   }
+
+   public void setPrefetchSize(final int size)
+   {
+      prefetchSize = size;
+   }
+
    public void addPageCache(PageCache cache)
    {
-      synchronized (softCache)
+      PageCache replaced;
+      List<PageCache> evicted;
+      synchronized (caches)
+      {
+         replaced = caches.put(cache.getPageId(), cache);
+         evicted = checkCacheSize(cache.getPageId());
+      }
+      if (replaced != null && replaced != cache && !replaced.isLive())
       {
-         softCache.put(cache.getPageId(), cache);
+         replaced.close();
       }
+      close(evicted);
    }
 
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      List<PageCache> evicted;
+      synchronized (caches)
+      {
+         maxCacheSize = size;
+         evicted = checkCacheSize(-1);
+      }
+      close(evicted);
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
+      synchronized (caches)
       {
-         return softCache.size();
+         return caches.size();
       }
    }
 
    public void clearCache()
    {
-      synchronized (softCache)
+      synchronized (caches)
       {
-         softCache.clear();
+         for (PageCache cache : caches.values())
+         {
+            if (!cache.isLive())
+            {
+               cache.close();
+            }
+         }
+         caches.clear();
       }
    }
 
@@ -275,17 +390,29 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
 
       waitForFuture();
+
+      if (readExecutor != executor)
+      {
+         waitForFuture(readExecutor);
+      }
+
+      clearCache();
    }
 
    private void waitForFuture()
+   {
+      waitForFuture(executor);
+   }
+
+   private void waitForFuture(final Executor executorToWait)
    {
       FutureLatch future = new FutureLatch();
 
-      executor.execute(future);
+      executorToWait.execute(future);
 
       while (!future.await(10000))
       {
-         HornetQServerLogger.LOGGER.timedOutStoppingPagingCursor(future, executor);
+         HornetQServerLogger.LOGGER.timedOutStoppingPagingCursor(future, executorToWait);
       }
    }
 
@@ -496,9 +623,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
          {
             PageCache cache;
             PagedMessage[] pgdMessages;
-            synchronized (softCache)
+            synchronized (caches)
             {
-               cache = softCache.get((long)depagedPage.getPageId());
+               cache = caches.get((long)depagedPage.getPageId());
             }
 
             if (isTrace)
@@ -542,9 +669,13 @@ public class PageCursorProviderImpl implements PageCursorProvider
             depagedPage.delete(pgdMessages);
             onDeletePage(depagedPage);
 
-            synchronized (softCache)
+            synchronized (caches)
             {
-               softCache.remove((long)depagedPage.getPageId());
+               PageCache removed = caches.remove((long)depagedPage.getPageId());
+               if (removed != null && !removed.isLive())
+               {
+                  removed.close();
+               }
             }
          }
       }
@@ -633,7 +764,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      for (PageCache cache : caches.values())
       {
          System.out.println("Cache " + cache);
       }
@@ -646,11 +777,127 @@ public class PageCursorProviderImpl implements PageCursorProvider
    /* Protected as we may let test cases to instrument the test */
    protected PageCacheImpl createPageCache(final long pageId) throws Exception
    {
-      return new PageCacheImpl(pagingStore.createPage((int)pageId));
+      return new PageCacheImpl(pagingStore.createPage((int)pageId), storageManager, this);
    }
 
    // Private -------------------------------------------------------
 
+   /**
+    * Removes the caches over maxCacheSize. Live caches are still being written, they are never evicted
+    * and don't count for the limit. This has to be called holding the lock on caches.
+    * <p>
+    * The subscriptions read the pages in order, so the cache evicted is the one whose page is the
+    * furthest from the closest subscription still to read it, and any page behind every subscription
+    * goes first. The pages between the subscriptions are kept, so subscriptions lagging at different
+    * pages are served from the same read of each page instead of evicting each other's pages. The least
+    * recently used cache goes first between pages at the same distance.
+    * @param keepPageId a page that can't be evicted, or -1
+    * @return the evicted caches, to be closed once the lock is released as they may still being read
+    */
+   private List<PageCache> checkCacheSize(final long keepPageId)
+   {
+      if (maxCacheSize <= 0 || caches.size() <= maxCacheSize)
+      {
+         return null;
+      }
+
+      int cached = 0;
+      for (PageCache cache : caches.values())
+      {
+         if (!cache.isLive())
+         {
+            cached++;
+         }
+      }
+
+      long[] readingPages = getReadingPages();
+
+      List<PageCache> evicted = null;
+      while (cached > maxCacheSize)
+      {
+         PageCache cache = null;
+         long cacheDistance = -1;
+         // the caches are iterated in least recently used order, only a larger distance replaces the candidate
+         for (PageCache candidate : caches.values())
+         {
+            if (!candidate.isLive() && candidate.getPageId() != keepPageId)
+            {
+               long distance = distanceToReader(readingPages, candidate.getPageId());
+               if (distance > cacheDistance)
+               {
+                  cache = candidate;
+                  cacheDistance = distance;
+               }
+            }
+         }
+
+         if (cache == null)
+         {
+            break;
+         }
+
+         caches.remove(cache.getPageId());
+         cached--;
+         if (isTrace)
+         {
+            HornetQServerLogger.LOGGER.trace("Evicting " + cache + " from the page cache of " + pagingStore.getAddress());
+         }
+         if (evicted == null)
+         {
+            evicted = new ArrayList<PageCache>();
+         }
+         evicted.add(cache);
+      }
+      return evicted;
+   }
+
+   /**
+    * @return the pages the subscriptions are reading, sorted
+    */
+   private long[] getReadingPages()
+   {
+      long[] readingPages = new long[activeCursors.size()];
+      int size = 0;
+      for (PageSubscription cursor : activeCursors.values())
+      {
+         long readingPage = cursor.getReadingPage();
+         if (readingPage >= 0 && size < readingPages.length)
+         {
+            readingPages[size++] = readingPage;
+         }
+      }
+      readingPages = Arrays.copyOf(readingPages, size);
+      Arrays.sort(readingPages);
+      return readingPages;
+   }
+
+   /**
+    * @return how many pages the closest subscription at or before pageId is from it, or Long.MAX_VALUE
+    *         if no subscription will read it
+    */
+   private static long distanceToReader(final long[] readingPages, final long pageId)
+   {
+      int index = Arrays.binarySearch(readingPages, pageId);
+      if (index >= 0)
+      {
+         return 0;
+      }
+
+      int insertionPoint = -index - 1;
+      return insertionPoint == 0 ? Long.MAX_VALUE : pageId - readingPages[insertionPoint - 1];
+   }
+
+   private static void close(final List<PageCache> evicted)
+   {
+      if (evicted != null)
+      {
+         for (PageCache cache : evicted)
+         {
+            cache.close();
+         }
+      }
+   }
+
    /**
     * This method is synchronized because we want it to be atomic with the cursors being used
     */
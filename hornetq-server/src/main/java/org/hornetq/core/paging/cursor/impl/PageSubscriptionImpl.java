@@ -14,14 +14,13 @@ package org.hornetq.core.paging.cursor.impl;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Executor;
@@ -49,7 +48,7 @@ import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.TransactionOperationAbstract;
 import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
-import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentBitSet;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.LinkedListIterator;
 
@@ -95,6 +94,8 @@ final class PageSubscriptionImpl implements PageSubscription
 
    private final AtomicLong deliveredCount = new AtomicLong(0);
 
+   private volatile long readingPage = -1;
+
    // We only store the position for redeliveries. They will be read from the SoftCache again during delivery.
    private final java.util.Queue<PagePosition> redeliveries = new LinkedList<PagePosition>();
 
@@ -320,22 +321,18 @@ final class PageSubscriptionImpl implements PageSubscription
          }
 
          // it will delete the page ack records
-         for (PagePosition pos : infoPG.acks)
+         for (long recordID : infoPG.getAckRecordIDs())
          {
-            if (pos.getRecordID() >= 0)
+            store.deleteCursorAcknowledgeTransactional(tx.getID(), recordID);
+            if (!persist)
             {
-               store.deleteCursorAcknowledgeTransactional(tx.getID(), pos.getRecordID());
-               if (!persist)
-               {
-                  // only need to set it once
-                  tx.setContainsPersistent();
-                  persist = true;
-               }
+               // only need to set it once
+               tx.setContainsPersistent();
+               persist = true;
             }
          }
 
-         infoPG.acks.clear();
-         infoPG.removedReferences.clear();
+         infoPG.clearACKs();
       }
 
       tx.addOperation(new TransactionOperationAbstract()
@@ -407,10 +404,17 @@ final class PageSubscriptionImpl implements PageSubscription
       }
       else
       {
+         if (retPos.getMessageNr() == 0 && !cache.isLive())
+         {
+            // starting on a page, the next ones are read while this one is delivered
+            cursorProvider.prefetch(retPos.getPageNr());
+         }
+
          PagedMessage serverMessage = cache.getMessage(retPos.getMessageNr());
 
          if (serverMessage != null)
          {
+            readingPage = retPos.getPageNr();
             return cursorProvider.newReference(retPos, serverMessage, this);
          }
          else
@@ -550,6 +554,11 @@ final class PageSubscriptionImpl implements PageSubscription
       });
    }
 
+   public long getReadingPage()
+   {
+      return readingPage;
+   }
+
    @Override
    public long getFirstPage()
    {
@@ -683,13 +692,10 @@ final class PageSubscriptionImpl implements PageSubscription
          {
             for (PageCursorInfo cursor : consumedPages.values())
             {
-               for (PagePosition info : cursor.acks)
+               for (long recordID : cursor.getAckRecordIDs())
                {
-                  if (info.getRecordID() >= 0)
-                  {
-                     isPersistent = true;
-                     store.deleteCursorAcknowledgeTransactional(tx, info.getRecordID());
-                  }
+                  isPersistent = true;
+                  store.deleteCursorAcknowledgeTransactional(tx, recordID);
                }
                PagePosition completeInfo = cursor.getCompleteInfo();
                if (completeInfo != null && completeInfo.getRecordID() >= 0)
@@ -825,21 +831,18 @@ final class PageSubscriptionImpl implements PageSubscription
             }
             info.setCompleteInfo(null);
          }
-         for (PagePosition deleteInfo : info.acks)
+         for (long recordID : info.getAckRecordIDs())
          {
-            if (deleteInfo.getRecordID() >= 0)
+            try
             {
-               try
-               {
-                  store.deleteCursorAcknowledge(deleteInfo.getRecordID());
-               }
-               catch (Exception e)
-               {
-                  HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
-               }
+               store.deleteCursorAcknowledge(recordID);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
             }
          }
-         info.acks.clear();
+         info.clearACKs();
       }
    }
 
@@ -1007,12 +1010,18 @@ final class PageSubscriptionImpl implements PageSubscription
 
       private final long pageId;
 
-      // Confirmed ACKs on this page
-      private final Set<PagePosition> acks = Collections.synchronizedSet(new LinkedHashSet<PagePosition>());
+      // Confirmed ACKs on this page, by message number
+      private final ConcurrentBitSet acks;
+
+      // The journal records of the confirmed ACKs, to be deleted with the page
+      private long[] ackRecordIDs;
+
+      private int ackRecordCount;
 
       private WeakReference<PageCache> cache;
 
-      private final Set<PagePosition> removedReferences = new ConcurrentHashSet<PagePosition>();
+      // Removed references on this page, by message number
+      private final ConcurrentBitSet removedReferences;
 
       // The page was live at the time of the creation
       private final boolean wasLive;
@@ -1038,7 +1047,7 @@ final class PageSubscriptionImpl implements PageSubscription
       public boolean isAck(PagePosition position)
       {
          return completePage != null ||
-                acks.contains(position);
+                position.getMessageNr() >= 0 && acks.get(position.getMessageNr());
       }
 
       @Override
@@ -1057,6 +1066,8 @@ final class PageSubscriptionImpl implements PageSubscription
       {
          this.pageId = pageId;
          this.numberOfMessages = numberOfMessages;
+         this.acks = new ConcurrentBitSet(numberOfMessages);
+         this.removedReferences = new ConcurrentBitSet(numberOfMessages);
          if (cache != null)
          {
             wasLive = cache.isLive();
@@ -1117,12 +1128,15 @@ final class PageSubscriptionImpl implements PageSubscription
 
       public boolean isRemoved(final PagePosition pos)
       {
-         return removedReferences.contains(pos);
+         return pos.getMessageNr() >= 0 && removedReferences.get(pos.getMessageNr());
       }
 
       public void remove(final PagePosition position)
       {
-         removedReferences.add(position);
+         if (position.getMessageNr() >= 0)
+         {
+            removedReferences.set(position.getMessageNr());
+         }
       }
 
       public void addACK(final PagePosition posACK)
@@ -1159,8 +1173,73 @@ final class PageSubscriptionImpl implements PageSubscription
 
       private boolean internalAddACK(final PagePosition posACK)
       {
-         removedReferences.add(posACK);
-         return acks.add(posACK);
+         boolean added;
+
+         // Negative could mean a bookmark on the first element for the page, which only has a record
+         if (posACK.getMessageNr() >= 0)
+         {
+            removedReferences.set(posACK.getMessageNr());
+            added = acks.set(posACK.getMessageNr());
+         }
+         else
+         {
+            added = posACK.getRecordID() < 0 || !containsAckRecordID(posACK.getRecordID());
+         }
+
+         if (added && posACK.getRecordID() >= 0)
+         {
+            addAckRecordID(posACK.getRecordID());
+         }
+
+         return added;
+      }
+
+      private synchronized boolean containsAckRecordID(final long recordID)
+      {
+         for (int i = 0; i < ackRecordCount; i++)
+         {
+            if (ackRecordIDs[i] == recordID)
+            {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      private synchronized void addAckRecordID(final long recordID)
+      {
+         if (ackRecordIDs == null)
+         {
+            ackRecordIDs = new long[16];
+         }
+         else if (ackRecordCount == ackRecordIDs.length)
+         {
+            ackRecordIDs = Arrays.copyOf(ackRecordIDs, ackRecordCount * 2);
+         }
+
+         ackRecordIDs[ackRecordCount++] = recordID;
+      }
+
+      public synchronized long[] getAckRecordIDs()
+      {
+         if (ackRecordIDs == null)
+         {
+            return new long[0];
+         }
+
+         return Arrays.copyOf(ackRecordIDs, ackRecordCount);
+      }
+
+      public void clearACKs()
+      {
+         acks.clear();
+         removedReferences.clear();
+
+         synchronized (this)
+         {
+            ackRecordIDs = null;
+            ackRecordCount = 0;
+         }
       }
 
       /**
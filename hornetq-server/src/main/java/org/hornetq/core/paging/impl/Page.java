@@ -14,9 +14,13 @@ package org.hornetq.core.paging.impl;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -48,6 +52,26 @@ public final class Page implements Comparable<Page>
 
    private static final byte END_BYTE = (byte) '}';
 
+   /**
+    * A block of records compressed with deflate: the start byte, the compressed and uncompressed
+    * sizes, the compressed records and the end byte
+    */
+   private static final byte START_BLOCK_BYTE = (byte) '[';
+
+   private static final byte END_BLOCK_BYTE = (byte) ']';
+
+   private static final int SIZE_BLOCK_HEADER = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + DataConstants.SIZE_INT;
+
+   /**
+    * Fills the space reserved by a record whose message failed to be encoded: the filler byte and
+    * the number of bytes to skip after the header
+    */
+   private static final byte FILLER_BYTE = (byte) '_';
+
+   private static final int SIZE_FILLER_HEADER = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT;
+
+   private static final int WRITE_BUFFER_SIZE = 100 * 1024;
+
    // Attributes ----------------------------------------------------
 
    private final int pageId;
@@ -71,6 +95,26 @@ public final class Page implements Comparable<Page>
 
    private final SimpleString storeName;
 
+   /**
+    * The records reserved by the writers and not written to the file yet, the writers encode them
+    * concurrently on their own slice of the buffer
+    */
+   private ByteBuffer writeBuffer;
+
+   private int writePosition;
+
+   /**
+    * The records on the write buffer, written to the file together. Null while the buffer is empty.
+    */
+   private WriteBatch batch;
+
+   /**
+    * If the records are written in compressed blocks
+    */
+   private boolean compressed;
+
+   private Deflater deflater;
+
    /**
     * A list of subscriptions containing pending counters (with non tx adds) on this page
     */
@@ -99,78 +143,50 @@ public final class Page implements Comparable<Page>
       this.pageCache = pageCache;
    }
 
+   /**
+    * Writes the following records in compressed blocks, a block for each batch of records written
+    * together. Pages with compressed blocks are read whatever this setting is.
+    */
+   public synchronized void setCompressed(final boolean compressed)
+   {
+      this.compressed = compressed;
+   }
+
    public synchronized List<PagedMessage> read(StorageManager storage) throws Exception
    {
-      if (isDebug)
-      {
-         HornetQServerLogger.LOGGER.debug("reading page " + this.pageId + " on address = " + storeName);
-      }
+      ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
 
-      if (!file.isOpen())
+      if (file.isOpen())
       {
-         throw HornetQMessageBundle.BUNDLE.invalidPageIO();
+         flushWrites();
       }
 
-      ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
-
-      size.set((int) file.size());
       // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
       ByteBuffer directBuffer = storage.allocateDirectBuffer((int) file.size());
       HornetQBuffer fileBuffer = null;
       try
       {
-
-         file.position(0);
-         file.read(directBuffer);
-
-         directBuffer.rewind();
+         Records records = read(directBuffer);
 
          fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
          fileBuffer.writerIndex(fileBuffer.capacity());
 
-         while (fileBuffer.readable())
+         int block = -1;
+         HornetQBuffer blockBuffer = null;
+         for (int i = 0; i < records.size(); i++)
          {
-            final int position = fileBuffer.readerIndex();
-
-            byte byteRead = fileBuffer.readByte();
-
-            if (byteRead == Page.START_BYTE)
+            if (records.getBlock(i) < 0)
             {
-               if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
-               {
-                  int messageSize = fileBuffer.readInt();
-                  int oldPos = fileBuffer.readerIndex();
-                  if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() &&
-                     fileBuffer.getByte(oldPos + messageSize) == Page.END_BYTE)
-                  {
-                     PagedMessage msg = new PagedMessageImpl();
-                     msg.decode(fileBuffer);
-                     byte b = fileBuffer.readByte();
-                     if (b != Page.END_BYTE)
-                     {
-                        // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
-                        // this
-                        // constraint was already checked
-                        throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
-                     }
-                     msg.initMessage(storage);
-                     if (isTrace)
-                     {
-                        HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
-                     }
-                     messages.add(msg);
-                  }
-                  else
-                  {
-                     markFileAsSuspect(file.getFileName(), position, messages.size());
-                     break;
-                  }
-               }
+               messages.add(decodeMessage(fileBuffer, records.getPosition(i), storage));
             }
             else
             {
-               markFileAsSuspect(file.getFileName(), position, messages.size());
-               break;
+               if (records.getBlock(i) != block)
+               {
+                  block = records.getBlock(i);
+                  blockBuffer = HornetQBuffers.wrappedBuffer(inflateBlock(fileBuffer, block));
+               }
+               messages.add(decodeMessage(blockBuffer, records.getPosition(i), storage));
             }
          }
       }
@@ -183,52 +199,546 @@ public final class Page implements Comparable<Page>
          storage.freeDirectBuffer(directBuffer);
       }
 
-      numberOfMessages.set(messages.size());
-
       return messages;
    }
 
-   public synchronized void write(final PagedMessage message) throws Exception
+   /**
+    * Reads the records of the page into the buffer, which must have room for the whole file,
+    * without decoding the messages. The compressed blocks are inflated to locate their records, and
+    * kept compressed on the buffer.
+    * <p>
+    * The following writes go after the last valid record, over anything left after it: the zeros
+    * of a mapped file that wasn't closed, or a damaged record.
+    * @return the position of every message, to be decoded with {@link #decodeMessage}
+    */
+   public synchronized Records read(final ByteBuffer buffer) throws Exception
    {
-      if (!file.isOpen())
+      if (isDebug)
       {
+         HornetQServerLogger.LOGGER.debug("reading page " + this.pageId + " on address = " + storeName);
+      }
 
-         return;
+      if (!file.isOpen())
+      {
+         throw HornetQMessageBundle.BUNDLE.invalidPageIO();
       }
 
-      ByteBuffer buffer = fileFactory.newBuffer(message.getEncodeSize() + Page.SIZE_RECORD);
+      flushWrites();
 
-      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
-      wrap.clear();
+      int fileSize = (int) file.size();
 
-      wrap.writeByte(Page.START_BYTE);
-      wrap.writeInt(0);
-      int startIndex = wrap.writerIndex();
-      message.encode(wrap);
-      int endIndex = wrap.writerIndex();
-      wrap.setInt(1, endIndex - startIndex); // The encoded length
-      wrap.writeByte(Page.END_BYTE);
+      file.position(0);
+      file.read(buffer);
 
       buffer.rewind();
 
-      file.writeDirect(buffer, false);
+      HornetQBuffer fileBuffer = HornetQBuffers.wrappedBuffer(buffer);
+      fileBuffer.writerIndex(fileSize);
 
-      if (pageCache != null)
+      Records records = new Records();
+
+      // the end of the last valid record, where the next records are written
+      int validSize = 0;
+
+      // the size of the records before compression, see getSize()
+      int recordsSize = 0;
+
+      while (fileBuffer.readable())
       {
-         pageCache.addLiveMessage(message);
+         final int position = fileBuffer.readerIndex();
+
+         byte byteRead = fileBuffer.readByte();
+
+         if (byteRead == Page.START_BYTE)
+         {
+            int recordPosition = readRecord(fileBuffer);
+            if (recordPosition < 0)
+            {
+               markFileAsSuspect(file.getFileName(), position, records.size());
+               break;
+            }
+            records.add(recordPosition, -1);
+         }
+         else if (byteRead == Page.FILLER_BYTE)
+         {
+            if (!skipFiller(fileBuffer))
+            {
+               markFileAsSuspect(file.getFileName(), position, records.size());
+               break;
+            }
+         }
+         else if (byteRead == Page.START_BLOCK_BYTE)
+         {
+            if (!readBlock(fileBuffer, position, records))
+            {
+               markFileAsSuspect(file.getFileName(), position, records.size());
+               break;
+            }
+            // counting the records of the block before compression
+            recordsSize += fileBuffer.getInt(position + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT);
+            validSize = fileBuffer.readerIndex();
+            continue;
+         }
+         else if (byteRead == 0 && isZeroFilled(fileBuffer, position))
+         {
+            // the end of a mapped region that wasn't written, left in place by a crash
+            break;
+         }
+         else
+         {
+            markFileAsSuspect(file.getFileName(), position, records.size());
+            break;
+         }
+
+         recordsSize += fileBuffer.readerIndex() - position;
+         validSize = fileBuffer.readerIndex();
       }
 
-      numberOfMessages.incrementAndGet();
-      size.addAndGet(buffer.limit());
+      numberOfMessages.set(records.size());
+
+      size.set(recordsSize);
+
+      // writing after the valid records, and not after the unused or damaged end of the file
+      file.position(validSize);
 
-      storageManager.pageWrite(message, pageId);
+      return records.trim();
+   }
+
+   /**
+    * Inflates the compressed block at a position returned by {@link Records#getBlock(int)}, the
+    * positions of its records are on the inflated block.
+    */
+   public static byte[] inflateBlock(final HornetQBuffer fileBuffer, final int blockPosition) throws Exception
+   {
+      int compressedSize = fileBuffer.getInt(blockPosition + DataConstants.SIZE_BYTE);
+      byte[] compressed = new byte[compressedSize];
+      fileBuffer.getBytes(blockPosition + SIZE_BLOCK_HEADER, compressed);
+
+      byte[] records = new byte[fileBuffer.getInt(blockPosition + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT)];
+
+      Inflater inflater = new Inflater();
+      try
+      {
+         inflater.setInput(compressed);
+         int inflated = 0;
+         while (inflated < records.length && !inflater.finished())
+         {
+            int read = inflater.inflate(records, inflated, records.length - inflated);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            {
+               break;
+            }
+            inflated += read;
+         }
+
+         if (inflated != records.length)
+         {
+            throw new DataFormatException("Compressed block at " + blockPosition + " inflated to " + inflated +
+                                             " bytes, " + records.length + " were expected");
+         }
+      }
+      finally
+      {
+         inflater.end();
+      }
+
+      return records;
+   }
+
+   /**
+    * Reads the record whose start byte was just read.
+    * @return the position of the record, or -1 if it is not valid
+    */
+   private static int readRecord(final HornetQBuffer buffer)
+   {
+      final int limit = buffer.writerIndex();
+
+      if (buffer.readerIndex() + DataConstants.SIZE_INT >= limit)
+      {
+         return -1;
+      }
+
+      int messageSize = buffer.readInt();
+      int recordPosition = buffer.readerIndex();
+      if (messageSize < 0 || recordPosition + messageSize >= limit ||
+         buffer.getByte(recordPosition + messageSize) != Page.END_BYTE)
+      {
+         return -1;
+      }
+
+      buffer.readerIndex(recordPosition + messageSize + DataConstants.SIZE_BYTE);
+      return recordPosition;
+   }
+
+   /**
+    * @return if the buffer holds nothing but zeros from the position to its end
+    */
+   private static boolean isZeroFilled(final HornetQBuffer buffer, final int position)
+   {
+      for (int i = position; i < buffer.writerIndex(); i++)
+      {
+         if (buffer.getByte(i) != 0)
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Skips the filler whose filler byte was just read.
+    * @return false if the filler is not valid
+    */
+   private static boolean skipFiller(final HornetQBuffer buffer)
+   {
+      final int limit = buffer.writerIndex();
+
+      if (buffer.readerIndex() + DataConstants.SIZE_INT > limit)
+      {
+         return false;
+      }
+
+      int fillerSize = buffer.readInt();
+      if (fillerSize < 0 || buffer.readerIndex() + fillerSize > limit)
+      {
+         return false;
+      }
+
+      buffer.readerIndex(buffer.readerIndex() + fillerSize);
+      return true;
+   }
+
+   /**
+    * Reads the compressed block whose start byte was just read, adding its records.
+    * @return false if the block is not valid
+    */
+   private static boolean readBlock(final HornetQBuffer fileBuffer, final int blockPosition, final Records records)
+   {
+      final int limit = fileBuffer.writerIndex();
+
+      if (blockPosition + SIZE_BLOCK_HEADER >= limit)
+      {
+         return false;
+      }
+
+      int compressedSize = fileBuffer.readInt();
+      fileBuffer.readInt();
+      int endPosition = blockPosition + SIZE_BLOCK_HEADER + compressedSize;
+      if (compressedSize < 0 || endPosition >= limit || fileBuffer.getByte(endPosition) != Page.END_BLOCK_BYTE)
+      {
+         return false;
+      }
+
+      HornetQBuffer blockBuffer;
+      try
+      {
+         blockBuffer = HornetQBuffers.wrappedBuffer(inflateBlock(fileBuffer, blockPosition));
+      }
+      catch (Exception e)
+      {
+         return false;
+      }
+
+      while (blockBuffer.readable())
+      {
+         byte byteRead = blockBuffer.readByte();
+
+         if (byteRead == Page.FILLER_BYTE)
+         {
+            if (!skipFiller(blockBuffer))
+            {
+               return false;
+            }
+            continue;
+         }
+
+         if (byteRead != Page.START_BYTE)
+         {
+            return false;
+         }
+
+         int recordPosition = readRecord(blockBuffer);
+         if (recordPosition < 0)
+         {
+            return false;
+         }
+         records.add(recordPosition, blockPosition);
+      }
+
+      fileBuffer.readerIndex(endPosition + DataConstants.SIZE_BYTE);
+      return true;
+   }
+
+   /**
+    * Decodes the message at a position returned by {@link #read(ByteBuffer)}.
+    * The message doesn't keep any reference to the buffer.
+    */
+   public PagedMessage decodeMessage(final HornetQBuffer fileBuffer,
+                                     final int position,
+                                     final StorageManager storage) throws Exception
+   {
+      fileBuffer.readerIndex(position);
+      PagedMessage msg = new PagedMessageImpl();
+      msg.decode(fileBuffer);
+      byte b = fileBuffer.readByte();
+      if (b != Page.END_BYTE)
+      {
+         // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
+         // this
+         // constraint was already checked
+         throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
+      }
+      msg.initMessage(storage);
+      if (isTrace)
+      {
+         HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
+      }
+      return msg;
+   }
+
+   /**
+    * Writes the message at the end of the page. The record is reserved in order, and then encoded
+    * concurrently with the other writers of the page, the last writer of the batch to finish writes
+    * all its records to the file at once.
+    * <p>
+    * The messages of the batch are added to the page, and to its live cache, once the batch is
+    * written, in the order of the file. If the write fails every writer of the batch gets the
+    * failure, and none of its messages is added. If the message fails to be encoded its record is
+    * replaced by a filler, which the readers skip, and it isn't added.
+    */
+   public void write(final PagedMessage message) throws Exception
+   {
+      final int recordSize = message.getEncodeSize() + Page.SIZE_RECORD;
+
+      PendingRecord pending;
+
+      synchronized (this)
+      {
+         if (!file.isOpen())
+         {
+            return;
+         }
+
+         pending = reserveRecord(message, recordSize);
+
+         size.addAndGet(recordSize);
+      }
+
+      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(pending.record);
+
+      boolean encoded = false;
+
+      try
+      {
+         wrap.clear();
+
+         wrap.writeByte(Page.START_BYTE);
+         wrap.writeInt(0);
+         int startIndex = wrap.writerIndex();
+         message.encode(wrap);
+         int endIndex = wrap.writerIndex();
+         wrap.setInt(1, endIndex - startIndex); // The encoded length
+         wrap.writeByte(Page.END_BYTE);
+
+         encoded = true;
+      }
+      finally
+      {
+         if (!encoded)
+         {
+            // the space is already reserved on the file, between the records of the other writers
+            wrap.clear();
+            wrap.writeByte(Page.FILLER_BYTE);
+            wrap.writeInt(recordSize - SIZE_FILLER_HEADER);
+         }
+
+         completeRecord(pending, encoded);
+      }
    }
 
    public void sync() throws Exception
    {
+      synchronized (this)
+      {
+         flushWrites();
+      }
+
       file.sync();
    }
 
+   /**
+    * @return the record reserved at the end of the write buffer and its batch, where the message is encoded
+    */
+   private PendingRecord reserveRecord(final PagedMessage message, final int recordSize) throws Exception
+   {
+      if (writeBuffer == null || writeBuffer.capacity() < recordSize)
+      {
+         flushWrites();
+         writeBuffer = fileFactory.newBuffer(Math.max(WRITE_BUFFER_SIZE, recordSize));
+      }
+
+      while (writePosition + recordSize > writeBuffer.capacity())
+      {
+         flushWrites();
+      }
+
+      ByteBuffer record = writeBuffer.duplicate();
+      record.clear();
+      record.position(writePosition);
+      record.limit(writePosition + recordSize);
+
+      writePosition += recordSize;
+
+      if (batch == null)
+      {
+         batch = new WriteBatch();
+      }
+
+      PendingRecord pending = new PendingRecord(message, record.slice(), batch);
+      batch.records.add(pending);
+      batch.encoding++;
+      return pending;
+   }
+
+   /**
+    * Writes the batch of the record once all its records are encoded, and waits for the batch to be
+    * written.
+    */
+   private synchronized void completeRecord(final PendingRecord pending, final boolean encoded) throws Exception
+   {
+      pending.encoded = encoded;
+
+      final WriteBatch recordBatch = pending.batch;
+
+      recordBatch.encoding--;
+
+      if (recordBatch.encoding == 0 && recordBatch == batch)
+      {
+         flushWrites();
+      }
+
+      while (!recordBatch.written && recordBatch.failure == null)
+      {
+         wait();
+      }
+
+      if (recordBatch.failure != null)
+      {
+         throw recordBatch.failure;
+      }
+   }
+
+   /**
+    * Writes the reserved records to the file once their writers have encoded them, and then adds
+    * their messages to the page. To be called holding the lock on the page.
+    */
+   private void flushWrites() throws Exception
+   {
+      while (batch != null && batch.encoding > 0)
+      {
+         wait();
+      }
+
+      if (batch == null)
+      {
+         return;
+      }
+
+      final WriteBatch writing = batch;
+
+      batch = null;
+
+      ByteBuffer buffer = writeBuffer.duplicate();
+      buffer.clear();
+      buffer.limit(writePosition);
+
+      writePosition = 0;
+
+      try
+      {
+         if (compressed)
+         {
+            ByteBuffer block = compress(buffer);
+            if (block != null)
+            {
+               buffer = block;
+            }
+         }
+
+         file.writeDirect(buffer, false);
+      }
+      catch (Exception e)
+      {
+         writing.failure = e;
+         notifyAll();
+         throw e;
+      }
+
+      try
+      {
+         for (PendingRecord record : writing.records)
+         {
+            if (record.encoded)
+            {
+               if (pageCache != null)
+               {
+                  pageCache.addLiveMessage(record.message);
+               }
+
+               numberOfMessages.incrementAndGet();
+
+               storageManager.pageWrite(record.message, pageId);
+            }
+         }
+      }
+      finally
+      {
+         writing.written = true;
+         notifyAll();
+      }
+   }
+
+   /**
+    * @return the records compressed in a block, or null if they don't get any smaller
+    */
+   private ByteBuffer compress(final ByteBuffer records)
+   {
+      int recordsSize = records.remaining();
+      byte[] input = new byte[recordsSize];
+      records.duplicate().get(input);
+
+      byte[] compressed = new byte[recordsSize];
+      int compressedSize = 0;
+
+      if (deflater == null)
+      {
+         deflater = new Deflater(Deflater.BEST_SPEED);
+      }
+
+      deflater.reset();
+      deflater.setInput(input);
+      deflater.finish();
+      while (!deflater.finished() && compressedSize < compressed.length)
+      {
+         compressedSize += deflater.deflate(compressed, compressedSize, compressed.length - compressedSize);
+      }
+
+      if (!deflater.finished() || compressedSize + SIZE_BLOCK_HEADER + DataConstants.SIZE_BYTE >= recordsSize)
+      {
+         return null;
+      }
+
+      ByteBuffer block = fileFactory.newBuffer(compressedSize + SIZE_BLOCK_HEADER + DataConstants.SIZE_BYTE);
+      block.clear();
+      block.put(Page.START_BLOCK_BYTE);
+      block.putInt(compressedSize);
+      block.putInt(recordsSize);
+      block.put(compressed, 0, compressedSize);
+      block.put(Page.END_BLOCK_BYTE);
+      block.flip();
+      return block;
+   }
+
    public void open() throws Exception
    {
       if (!file.isOpen())
@@ -241,6 +751,19 @@ public final class Page implements Comparable<Page>
 
    public synchronized void close() throws Exception
    {
+      if (file.isOpen())
+      {
+         flushWrites();
+      }
+
+      writeBuffer = null;
+
+      if (deflater != null)
+      {
+         deflater.end();
+         deflater = null;
+      }
+
       if (storageManager != null)
       {
          storageManager.pageClosed(storeName, pageId);
@@ -248,7 +771,7 @@ public final class Page implements Comparable<Page>
       if (pageCache != null)
       {
          pageCache.close();
-         // leave it to the soft cache to decide when to release it now
+         // leave it to the page cache to decide when to release it now
          pageCache = null;
       }
       file.close();
@@ -322,6 +845,11 @@ public final class Page implements Comparable<Page>
       return numberOfMessages.intValue();
    }
 
+   /**
+    * @return the size of the records written on the page. The compressed records are counted before
+    *         compression, so the page size bounds the records once inflated, and a page with
+    *         compressed blocks is larger than its file.
+    */
    public int getSize()
    {
       return size.intValue();
@@ -419,4 +947,118 @@ public final class Page implements Comparable<Page>
 
       return pendingCounters;
    }
+
+   /**
+    * A record reserved on the write buffer by a writer
+    */
+   private static final class PendingRecord
+   {
+      final PagedMessage message;
+
+      final ByteBuffer record;
+
+      final WriteBatch batch;
+
+      /**
+       * If the writer encoded the message on the record
+       */
+      boolean encoded;
+
+      PendingRecord(final PagedMessage message, final ByteBuffer record, final WriteBatch batch)
+      {
+         this.message = message;
+         this.record = record;
+         this.batch = batch;
+      }
+   }
+
+   /**
+    * The records written to the file together, in file order
+    */
+   private static final class WriteBatch
+   {
+      final List<PendingRecord> records = new ArrayList<PendingRecord>();
+
+      /**
+       * The number of records whose writer is still encoding the message
+       */
+      int encoding;
+
+      boolean written;
+
+      /**
+       * Why the records couldn't be written, thrown to each of their writers
+       */
+      Exception failure;
+   }
+
+   /**
+    * The records read from a page. The records of a compressed block are located on the block once
+    * inflated by {@link Page#inflateBlock}.
+    */
+   public static final class Records
+   {
+      private int[] positions = new int[16];
+
+      /**
+       * The position of the compressed block of each record, null while no record is compressed
+       */
+      private int[] blocks;
+
+      private int size;
+
+      public int size()
+      {
+         return size;
+      }
+
+      public int getPosition(final int recordNumber)
+      {
+         return positions[recordNumber];
+      }
+
+      /**
+       * @return the position on the file of the compressed block holding the record, or -1 if the
+       *         record is not compressed
+       */
+      public int getBlock(final int recordNumber)
+      {
+         return blocks == null ? -1 : blocks[recordNumber];
+      }
+
+      private void add(final int position, final int block)
+      {
+         if (size == positions.length)
+         {
+            positions = Arrays.copyOf(positions, size * 2);
+            if (blocks != null)
+            {
+               blocks = Arrays.copyOf(blocks, size * 2);
+            }
+         }
+
+         if (block >= 0 && blocks == null)
+         {
+            blocks = new int[positions.length];
+            Arrays.fill(blocks, 0, size, -1);
+         }
+
+         positions[size] = position;
+         if (blocks != null)
+         {
+            blocks[size] = block;
+         }
+         size++;
+      }
+
+      private Records trim()
+      {
+         positions = Arrays.copyOf(positions, size);
+         if (blocks != null)
+         {
+            blocks = Arrays.copyOf(blocks, size);
+         }
+         return this;
+      }
+   }
 }
@@ -44,7 +44,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -87,6 +89,8 @@ public class PagingStoreImpl implements PagingStore
 
    private long pageSize;
 
+   private volatile boolean compressPages;
+
    private volatile AddressFullMessagePolicy addressFullMessagePolicy;
 
    private boolean printedDropMessagesWarning;
@@ -131,6 +135,36 @@ public class PagingStoreImpl implements PagingStore
                           final AddressSettings addressSettings,
                           final Executor executor,
                           final boolean syncNonTransactional)
+   {
+      this(address,
+           scheduledExecutor,
+           syncTimeout,
+           pagingManager,
+           storageManager,
+           fileFactory,
+           storeFactory,
+           storeName,
+           addressSettings,
+           executor,
+           executor,
+           syncNonTransactional);
+   }
+
+   /**
+    * @param readExecutor the executor reading the pages ahead of the subscriptions
+    */
+   public PagingStoreImpl(final SimpleString address,
+                          final ScheduledExecutorService scheduledExecutor,
+                          final long syncTimeout,
+                          final PagingManager pagingManager,
+                          final StorageManager storageManager,
+                          final SequentialFileFactory fileFactory,
+                          final PagingStoreFactory storeFactory,
+                          final SimpleString storeName,
+                          final AddressSettings addressSettings,
+                          final Executor executor,
+                          final Executor readExecutor,
+                          final boolean syncNonTransactional)
    {
       if (pagingManager == null)
       {
@@ -177,8 +211,11 @@ public class PagingStoreImpl implements PagingStore
       this.cursorProvider = new PageCursorProviderImpl(this,
          this.storageManager,
          executor,
+         readExecutor,
          addressSettings.getPageCacheMaxSize());
 
+      cursorProvider.setPrefetchSize(addressSettings.getPagePrefetchSize());
+
    }
 
    /**
@@ -195,7 +232,10 @@ public class PagingStoreImpl implements PagingStore
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
+         cursorProvider.setPrefetchSize(addressSettings.getPagePrefetchSize());
       }
+
+      compressPages = addressSettings.isPageCompression();
    }
 
    @Override
@@ -590,6 +630,8 @@ public class PagingStoreImpl implements PagingStore
 
       Page page = new Page(storeName, storageManager, fileFactory, file, pageNumber);
 
+      page.setCompressed(compressPages);
+
       // To create the file
       file.open();
 
@@ -881,67 +923,81 @@ public class PagingStoreImpl implements PagingStore
       managerLock.lock();
       try
       {
-         lock.writeLock().lock();
-
-         try
+         // The producers write concurrently on the current page, holding the read lock, and only the one filling the
+         // page takes the write lock to open a new page
+         while (true)
          {
-            if (!paging)
-            {
-               return false;
-            }
+            Page page;
+
+            lock.readLock().lock();
 
-            if (!message.isDurable())
+            try
             {
-               // The address should never be transient when paging (even for non-persistent messages when paging)
-               // This will force everything to be persisted
-               message.forceAddress(address);
-            }
+               if (!paging)
+               {
+                  return false;
+               }
 
-            final long transactionID = tx == null ? -1 : tx.getID();
-            PagedMessage pagedMessage = new PagedMessageImpl(message, routeQueues(tx, listCtx), transactionID);
+               if (!message.isDurable())
+               {
+                  // The address should never be transient when paging (even for non-persistent messages when paging)
+                  // This will force everything to be persisted
+                  message.forceAddress(address);
+               }
 
-            if (message.isLargeMessage())
-            {
-               ((LargeServerMessage) message).setPaged();
-            }
+               final long transactionID = tx == null ? -1 : tx.getID();
+               PagedMessage pagedMessage = new PagedMessageImpl(message, getQueueIDs(listCtx), transactionID);
 
-            int bytesToWrite = pagedMessage.getEncodeSize() + Page.SIZE_RECORD;
+               int bytesToWrite = pagedMessage.getEncodeSize() + Page.SIZE_RECORD;
 
-            if (currentPageSize.addAndGet(bytesToWrite) > pageSize && currentPage.getNumberOfMessages() > 0)
-            {
-               // Make sure nothing is currently validating or using currentPage
-               openNewPage();
-               currentPageSize.addAndGet(bytesToWrite);
-            }
+               page = currentPage;
 
-            if (tx != null)
-            {
-               installPageTransaction(tx, listCtx);
-            }
+               final int newPageSize = currentPageSize.addAndGet(bytesToWrite);
+
+               // the first message of a page is written whatever its size. Not checking the messages of the page,
+               // which are only added once written, while other producers may be writing on it
+               if (newPageSize <= pageSize || newPageSize == bytesToWrite)
+               {
+                  if (message.isLargeMessage())
+                  {
+                     ((LargeServerMessage) message).setPaged();
+                  }
+
+                  if (tx != null)
+                  {
+                     installPageTransaction(tx, listCtx);
+                  }
 
-            // the apply counter will make sure we write a record on journal
-            // especially on the case for non transactional sends and paging
-            // doing this will give us a possibility of recovering the page counters
-            applyPageCounters(tx, getCurrentPage(), listCtx);
+                  // the apply counter will make sure we write a record on journal
+                  // especially on the case for non transactional sends and paging
+                  // doing this will give us a possibility of recovering the page counters
+                  applyPageCounters(tx, page, listCtx);
 
-            currentPage.write(pagedMessage);
+                  page.write(pagedMessage);
 
-            if (tx == null && syncNonTransactional && message.isDurable())
-            {
-               sync();
-            }
+                  // the subscriptions are notified once the message is on the page, and not if it failed to be written
+                  routeQueues(tx, listCtx);
+
+                  if (tx == null && syncNonTransactional && message.isDurable())
+                  {
+                     sync();
+                  }
+
+                  if (isTrace)
+                  {
+                     HornetQServerLogger.LOGGER.trace("Paging message " + pagedMessage + " on pageStore " + this.getStoreName() +
+                        " pageId=" + page.getPageId());
+                  }
 
-            if (isTrace)
+                  return true;
+               }
+            }
+            finally
             {
-               HornetQServerLogger.LOGGER.trace("Paging message " + pagedMessage + " on pageStore " + this.getStoreName() +
-                  " pageId=" + currentPage.getPageId());
+               lock.readLock().unlock();
             }
 
-            return true;
-         }
-         finally
-         {
-            lock.writeLock().unlock();
+            openNewPage(page);
          }
       }
       finally
@@ -967,7 +1023,7 @@ public class PagingStoreImpl implements PagingStore
       getCursorProvider().resumeCleanup();
    }
 
-   private long[] routeQueues(Transaction tx, RouteContextList ctx) throws Exception
+   private static long[] getQueueIDs(RouteContextList ctx)
    {
       List<org.hornetq.core.server.Queue> durableQueues = ctx.getDurableQueues();
       List<org.hornetq.core.server.Queue> nonDurableQueues = ctx.getNonDurableQueues();
@@ -976,19 +1032,30 @@ public class PagingStoreImpl implements PagingStore
 
       for (org.hornetq.core.server.Queue q : durableQueues)
       {
-         q.getPageSubscription().notEmpty();
          ids[i++] = q.getID();
       }
 
       for (org.hornetq.core.server.Queue q : nonDurableQueues)
       {
-         q.getPageSubscription().getCounter().increment(tx, 1);
-         q.getPageSubscription().notEmpty();
          ids[i++] = q.getID();
       }
       return ids;
    }
 
+   private void routeQueues(Transaction tx, RouteContextList ctx) throws Exception
+   {
+      for (org.hornetq.core.server.Queue q : ctx.getDurableQueues())
+      {
+         q.getPageSubscription().notEmpty();
+      }
+
+      for (org.hornetq.core.server.Queue q : ctx.getNonDurableQueues())
+      {
+         q.getPageSubscription().getCounter().increment(tx, 1);
+         q.getPageSubscription().notEmpty();
+      }
+   }
+
    /**
     * This is done to prevent non tx to get out of sync in case of failures
     * @param tx
@@ -1138,6 +1205,26 @@ public class PagingStoreImpl implements PagingStore
 
    }
 
+   /**
+    * Opens a new page unless another producer has already replaced the full page.
+    */
+   private void openNewPage(final Page fullPage) throws Exception
+   {
+      lock.writeLock().lock();
+
+      try
+      {
+         if (paging && currentPage == fullPage)
+         {
+            openNewPage();
+         }
+      }
+      finally
+      {
+         lock.writeLock().unlock();
+      }
+   }
+
    private void openNewPage() throws Exception
    {
       lock.writeLock().lock();
@@ -1222,6 +1309,7 @@ public class PagingStoreImpl implements PagingStore
       lock.writeLock().lock();
       try
       {
+         Map<Long, SequentialFile> files = new LinkedHashMap<Long, SequentialFile>();
          for (Integer id : pageIds)
          {
             SequentialFile sFile = fileFactory.createSequentialFile(createFileName(id), 1);
@@ -1229,8 +1317,9 @@ public class PagingStoreImpl implements PagingStore
             {
                continue;
             }
-            replicator.syncPages(sFile, id, getAddress());
+            files.put(Long.valueOf(id), sFile);
          }
+         replicator.syncPages(getAddress(), files);
       }
       finally
       {
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.persistence;
+
+import java.util.List;
+
+import org.hornetq.api.core.Pair;
+
+/**
+ * A fixed size ring with the persisted duplicate IDs of one address, kept out of the message
+ * journal.
+ * <p>
+ * The slots of the store are the positions of the {@link org.hornetq.core.postoffice.DuplicateIDCache}
+ * it belongs to. Each ID is saved with a sequence taken from the ID generator, so the IDs on the
+ * store can be ordered with the duplicate IDs on the journal.
+ */
+public interface DuplicateIDStore
+{
+   /**
+    * @return whether the ID is small enough to be kept on a slot
+    */
+   boolean fits(byte[] duplID);
+
+   /**
+    * Reads the IDs saved on the store, in one pass over the file.
+    *
+    * @return pairs of ID and sequence, in no particular order
+    */
+   List<Pair<byte[], Long>> load() throws Exception;
+
+   /**
+    * Replaces the content of the store, the ID and sequence at index {@code i} going to slot
+    * {@code i}. A {@code null} element leaves its slot empty.
+    */
+   void reset(List<Pair<byte[], Long>> slots) throws Exception;
+
+   void write(int slot, byte[] duplID, long sequence);
+
+   void clear(int slot);
+
+   /**
+    * Makes the writes done so far durable, completing the context once they are.
+    */
+   void sync(OperationContext context);
+
+   void close() throws Exception;
+}
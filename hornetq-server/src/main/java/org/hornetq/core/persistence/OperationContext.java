@@ -35,6 +35,10 @@ public interface OperationContext extends IOCompletion
 
    void pageSyncDone();
 
+   void duplicateIDSyncLineUp();
+
+   void duplicateIDSyncDone();
+
    void waitCompletion() throws Exception;
 
    /**
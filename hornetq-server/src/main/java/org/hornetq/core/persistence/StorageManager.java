@@ -182,6 +182,12 @@ public interface StorageManager extends IDGenerator, HornetQComponent
 
    void deleteDuplicateID(long recordID) throws Exception;
 
+   /**
+    * @return the store for the persisted duplicate IDs of the address, or {@code null} if they
+    * go to the journal
+    */
+   DuplicateIDStore getDuplicateIDStore(SimpleString address, int size) throws Exception;
+
    void storeMessageTransactional(long txID, ServerMessage message) throws Exception;
 
    void storeReferenceTransactional(long txID, long queueID, long messageID) throws Exception;
@@ -48,6 +48,7 @@ import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageUpdat
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PendingLargeMessageEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.ScheduledDeliveryEncoding;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.ShardedCommitEncoding;
 import org.hornetq.core.server.LargeServerMessage;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.ServerMessageImpl;
@@ -72,6 +73,7 @@ import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.PAGE_TR
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.QUEUE_BINDING_RECORD;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.SECURITY_RECORD;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.SET_SCHEDULED_DELIVERY_TIME;
+import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.SHARDED_COMMIT;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.UPDATE_DELIVERY_COUNT;
 
 /**
@@ -612,6 +614,13 @@ public final class DescribeJournal
             return encoding;
          }
 
+         case SHARDED_COMMIT:
+         {
+            ShardedCommitEncoding encoding = new ShardedCommitEncoding();
+            encoding.decode(buffer);
+            return encoding;
+         }
+
          case QUEUE_BINDING_RECORD:
             return JournalStorageManager.newBindingEncoding(id, buffer);
 
@@ -78,4 +78,9 @@ public final class JournalRecordIds
    public static final byte PAGE_CURSOR_COMPLETE = 42;
 
    public static final byte PAGE_CURSOR_PENDING_COUNTER = 43;
+
+   /**
+    * Decides the commit of a transaction with records on several message journals.
+    */
+   public static final byte SHARDED_COMMIT = 44;
 }
@@ -23,6 +23,8 @@ import java.security.MessageDigest;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -32,7 +34,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -50,6 +54,7 @@ import org.hornetq.api.core.Message;
 import org.hornetq.api.core.Pair;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.config.Configuration;
+import org.hornetq.core.config.HAPolicyConfiguration;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.journal.EncodingSupport;
 import org.hornetq.core.journal.IOAsyncTask;
@@ -64,7 +69,9 @@ import org.hornetq.core.journal.TransactionFailureCallback;
 import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.SimpleWaitIOCallback;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
@@ -75,6 +82,7 @@ import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.paging.cursor.PagedReferenceImpl;
 import org.hornetq.core.paging.cursor.impl.PagePositionImpl;
 import org.hornetq.core.paging.impl.PageTransactionInfoImpl;
+import org.hornetq.core.persistence.DuplicateIDStore;
 import org.hornetq.core.persistence.GroupingInfo;
 import org.hornetq.core.persistence.OperationContext;
 import org.hornetq.core.persistence.QueueBindingInfo;
@@ -142,6 +150,18 @@ public class JournalStorageManager implements StorageManager
 {
    private static final long CHECKPOINT_BATCH_SIZE = Integer.MAX_VALUE;
 
+   private static final String DUPLICATE_IDS_DIRECTORY = "duplicate-ids";
+
+   private static final String SHARD_DIRECTORY_PREFIX = "shard-";
+
+   private static final Comparator<RecordInfo> RECORD_ID_ORDER = new Comparator<RecordInfo>()
+   {
+      public int compare(final RecordInfo record1, final RecordInfo record2)
+      {
+         return record1.id < record2.id ? -1 : record1.id == record2.id ? 0 : 1;
+      }
+   };
+
    private final Semaphore pageMaxConcurrentIO;
 
    private final BatchingIDGenerator idGenerator;
@@ -179,6 +199,31 @@ public class JournalStorageManager implements StorageManager
 
    private final Journal originalMessageJournal;
 
+   /**
+    * The journals the messages are spread on, by their IDs. The first one is the original message
+    * journal, which also keeps every record that isn't of a message, and it is the only one unless
+    * {@link Configuration#getJournalShards()} is greater than 1.
+    */
+   private final Journal[] messageShards;
+
+   /**
+    * The number of journals the IDs of new messages are spread on, there may be more journals left
+    * by a greater number on a previous configuration, which are still loaded.
+    */
+   private final int messageShardCount;
+
+   /**
+    * The journals of the reloaded messages that aren't on the journal of their ID, as the number of
+    * journals was changed
+    */
+   private final Map<Long, Integer> relocatedMessages = new ConcurrentHashMap<Long, Integer>();
+
+   /**
+    * The journals each open transaction has records on, when there are several journals
+    */
+   private final ConcurrentMap<Long, ShardedTransaction> shardedTransactions =
+      new ConcurrentHashMap<Long, ShardedTransaction>();
+
    private final Journal originalBindingsJournal;
 
    private final SequentialFileFactory largeMessagesFactory;
@@ -221,6 +266,13 @@ public class JournalStorageManager implements StorageManager
 
    private final Set<Long> largeMessagesToDelete = new HashSet<Long>();
 
+   // the stores are only used when the journal is not replicated, as the backup wouldn't get them
+   private final boolean duplicateIDStoreEnabled;
+
+   private Map<SimpleString, File> duplicateIDFiles;
+
+   private final List<MappedDuplicateIDStore> duplicateIDStores = new ArrayList<MappedDuplicateIDStore>();
+
    public JournalStorageManager(final Configuration config, final ExecutorFactory executorFactory)
    {
       this(config, executorFactory, null);
@@ -233,7 +285,8 @@ public class JournalStorageManager implements StorageManager
 
       executor = executorFactory.getExecutor();
 
-      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO)
+      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO &&
+         config.getJournalType() != JournalType.MAPPED)
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournal();
       }
@@ -250,14 +303,16 @@ public class JournalStorageManager implements StorageManager
 
       SequentialFileFactory bindingsFF = new NIOSequentialFileFactory(bindingsDir, criticalErrorListener);
 
-      Journal localBindings = new JournalImpl(1024 * 1024,
-                                              2,
-                                              config.getJournalCompactMinFiles(),
-                                              config.getJournalCompactPercentage(),
-                                              bindingsFF,
-                                              "hornetq-bindings",
-                                              "bindings",
-                                              1);
+      JournalImpl localBindings = new JournalImpl(1024 * 1024,
+                                                  2,
+                                                  config.getJournalCompactMinFiles(),
+                                                  config.getJournalCompactPercentage(),
+                                                  bindingsFF,
+                                                  "hornetq-bindings",
+                                                  "bindings",
+                                                  1);
+      localBindings.setCompactMaxFiles(config.getJournalCompactMaxFiles());
+      localBindings.setLoadThreads(config.getJournalLoadThreads());
 
       bindingsJournal = localBindings;
       originalBindingsJournal = localBindings;
@@ -276,49 +331,69 @@ public class JournalStorageManager implements StorageManager
       if (config.getJournalType() == JournalType.ASYNCIO)
       {
          HornetQServerLogger.LOGGER.journalUseAIO();
-
-         journalFF = new AIOSequentialFileFactory(journalDir,
-                                                  config.getJournalBufferSize_AIO(),
-                                                  config.getJournalBufferTimeout_AIO(),
-                                                  config.isLogJournalWriteRate(),
-                                                  criticalErrorListener);
       }
       else if (config.getJournalType() == JournalType.NIO)
       {
          HornetQServerLogger.LOGGER.journalUseNIO();
-         journalFF = new NIOSequentialFileFactory(journalDir,
-                                                  true,
-                                                  config.getJournalBufferSize_NIO(),
-                                                  config.getJournalBufferTimeout_NIO(),
-                                                  config.isLogJournalWriteRate(),
-                                                  criticalErrorListener);
       }
-      else
+      else if (config.getJournalType() == JournalType.MAPPED)
       {
-         throw HornetQMessageBundle.BUNDLE.invalidJournalType2(config.getJournalType());
+         HornetQServerLogger.LOGGER.journalUseMapped();
       }
 
+      journalFF = newJournalFactory(config, journalDir, criticalErrorListener);
+
       idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, this);
 
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
-                                             config.getJournalMinFiles(),
-                                             config.getJournalCompactMinFiles(),
-                                             config.getJournalCompactPercentage(),
-                                             journalFF,
-                                             "hornetq-data",
-                                             "hq",
-                                             config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
-                                                : config.getJournalMaxIO_NIO());
+      JournalImpl localMessage = newMessageJournal(config, journalFF);
 
       messageJournal = localMessage;
       originalMessageJournal = localMessage;
 
+      HAPolicyConfiguration haPolicy = config.getHAPolicyConfiguration();
+
+      boolean replicated = haPolicy != null && (haPolicy.getType() == HAPolicyConfiguration.TYPE.REPLICATED ||
+         haPolicy.getType() == HAPolicyConfiguration.TYPE.REPLICA ||
+         haPolicy.getType() == HAPolicyConfiguration.TYPE.COLOCATED);
+
+      if (replicated)
+      {
+         // the backup only receives the first journal
+         if (config.getJournalShards() > 1)
+         {
+            HornetQServerLogger.LOGGER.journalShardsReplicated();
+         }
+         messageShardCount = 1;
+         messageShards = new Journal[]{localMessage};
+      }
+      else
+      {
+         messageShardCount = config.getJournalShards();
+
+         int shards = Math.max(messageShardCount, countShardDirectories(journalDir));
+
+         if (shards > 1)
+         {
+            HornetQServerLogger.LOGGER.journalUseShards(shards);
+         }
+
+         messageShards = new Journal[shards];
+         messageShards[0] = localMessage;
+         for (int shard = 1; shard < shards; shard++)
+         {
+            messageShards[shard] = newMessageJournal(config,
+                                                     newJournalFactory(config, getShardDirectory(shard), criticalErrorListener));
+         }
+      }
+
       largeMessagesDirectory = config.getLargeMessagesDirectory();
 
       largeMessagesFactory = new NIOSequentialFileFactory(largeMessagesDirectory, false, criticalErrorListener);
 
       perfBlastPages = config.getJournalPerfBlastPages();
 
+      duplicateIDStoreEnabled = config.isIDCacheMappedStore() && !replicated;
+
       if (config.getPageMaxConcurrentIO() != 1)
       {
          pageMaxConcurrentIO = new Semaphore(config.getPageMaxConcurrentIO());
@@ -329,6 +404,242 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   private static SequentialFileFactory newJournalFactory(final Configuration config,
+                                                          final String directory,
+                                                          final IOCriticalErrorListener criticalErrorListener)
+   {
+      if (config.getJournalType() == JournalType.ASYNCIO)
+      {
+         return new AIOSequentialFileFactory(directory,
+                                             config.getJournalBufferSize_AIO(),
+                                             config.getJournalBufferTimeout_AIO(),
+                                             config.isLogJournalWriteRate(),
+                                             criticalErrorListener);
+      }
+      else if (config.getJournalType() == JournalType.NIO)
+      {
+         return new NIOSequentialFileFactory(directory,
+                                             true,
+                                             config.getJournalBufferSize_NIO(),
+                                             config.getJournalBufferTimeout_NIO(),
+                                             config.isLogJournalWriteRate(),
+                                             criticalErrorListener);
+      }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         // the NIO settings apply, the records are buffered the same way
+         return new MappedSequentialFileFactory(directory,
+                                                true,
+                                                config.getJournalBufferSize_NIO(),
+                                                config.getJournalBufferTimeout_NIO(),
+                                                config.isLogJournalWriteRate(),
+                                                criticalErrorListener);
+      }
+      else
+      {
+         throw HornetQMessageBundle.BUNDLE.invalidJournalType2(config.getJournalType());
+      }
+   }
+
+   private static JournalImpl newMessageJournal(final Configuration config, final SequentialFileFactory fileFactory)
+   {
+      JournalImpl journal = new JournalImpl(config.getJournalFileSize(),
+                                            config.getJournalMinFiles(),
+                                            config.getJournalCompactMinFiles(),
+                                            config.getJournalCompactPercentage(),
+                                            fileFactory,
+                                            "hornetq-data",
+                                            "hq",
+                                            config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
+                                               : config.getJournalMaxIO_NIO());
+      journal.setCompactMaxFiles(config.getJournalCompactMaxFiles());
+      journal.setLoadThreads(config.getJournalLoadThreads());
+      return journal;
+   }
+
+   private String getShardDirectory(final int shard)
+   {
+      return new File(journalDir, SHARD_DIRECTORY_PREFIX + shard).getPath();
+   }
+
+   /**
+    * @return the number of journals with files on the journal directory, so the journals left by a
+    * greater {@link Configuration#getJournalShards()} are still loaded
+    */
+   private static int countShardDirectories(final String journalDir)
+   {
+      int shards = 1;
+      File[] directories = new File(journalDir).listFiles();
+      if (directories != null)
+      {
+         for (File directory : directories)
+         {
+            String name = directory.getName();
+            if (directory.isDirectory() && name.startsWith(SHARD_DIRECTORY_PREFIX))
+            {
+               String[] files = directory.list();
+               if (files == null || files.length == 0)
+               {
+                  continue;
+               }
+               try
+               {
+                  shards = Math.max(shards, Integer.parseInt(name.substring(SHARD_DIRECTORY_PREFIX.length())) + 1);
+               }
+               catch (NumberFormatException e)
+               {
+                  // not a journal
+               }
+            }
+         }
+      }
+      return shards;
+   }
+
+   private int shardOf(final long messageID)
+   {
+      if (!relocatedMessages.isEmpty())
+      {
+         Integer shard = relocatedMessages.get(messageID);
+         if (shard != null)
+         {
+            return shard;
+         }
+      }
+      return (int) ((messageID & Long.MAX_VALUE) % messageShardCount);
+   }
+
+   /**
+    * @return the journal keeping the records of a message
+    */
+   private Journal messageJournal(final long messageID)
+   {
+      if (messageShards.length == 1)
+      {
+         return messageJournal;
+      }
+      return messageShards[shardOf(messageID)];
+   }
+
+   /**
+    * @return the journal keeping the records of a message, enlisting it on the transaction
+    */
+   private Journal messageJournal(final long txID, final long messageID)
+   {
+      if (messageShards.length == 1)
+      {
+         return messageJournal;
+      }
+      int shard = shardOf(messageID);
+      getShardedTransaction(txID).enlist(shard);
+      return messageShards[shard];
+   }
+
+   /**
+    * @return the journal keeping the records of a transaction that aren't of a message
+    */
+   private Journal transactionJournal(final long txID)
+   {
+      if (messageShards.length > 1)
+      {
+         getShardedTransaction(txID).enlist(0);
+      }
+      return messageJournal;
+   }
+
+   private ShardedTransaction getShardedTransaction(final long txID)
+   {
+      ShardedTransaction tx = shardedTransactions.get(txID);
+      if (tx == null)
+      {
+         tx = new ShardedTransaction(messageShards.length);
+         ShardedTransaction previous = shardedTransactions.putIfAbsent(txID, tx);
+         if (previous != null)
+         {
+            tx = previous;
+         }
+      }
+      return tx;
+   }
+
+   /**
+    * Prepares a transaction on each of its journals and waits for the prepare records to be written,
+    * so the record deciding the transaction is never written before them.
+    */
+   private void prepareShards(final ShardedTransaction tx,
+                              final long txID,
+                              final EncodingSupport data,
+                              final boolean includeFirst) throws Exception
+   {
+      List<SimpleWaitIOCallback> callbacks = new ArrayList<SimpleWaitIOCallback>();
+      for (int shard = includeFirst ? 0 : 1; shard < messageShards.length; shard++)
+      {
+         if (tx.contains(shard))
+         {
+            SimpleWaitIOCallback callback = new SimpleWaitIOCallback();
+            messageShards[shard].appendPrepareRecord(txID, data, true, callback);
+            callbacks.add(callback);
+         }
+      }
+      for (SimpleWaitIOCallback callback : callbacks)
+      {
+         callback.waitCompletion();
+      }
+   }
+
+   /**
+    * Commits a transaction with records on several journals.
+    * <p/>
+    * Once the transaction is prepared on all of them a {@link JournalRecordIds#SHARDED_COMMIT}
+    * record is written on the first journal. If the server stops before the transaction is
+    * committed everywhere, the transaction is committed when loading if that record is found, and
+    * rolled back otherwise. The record is deleted once all the commit records are written.
+    */
+   private void commitShards(final ShardedTransaction tx, final long txID, final boolean lineUpContext) throws Exception
+   {
+      if (!tx.isPrepared())
+      {
+         prepareShards(tx, txID, new ShardedCommitEncoding(txID), true);
+      }
+
+      final long recordID = generateID();
+
+      messageJournal.appendAddRecord(recordID, JournalRecordIds.SHARDED_COMMIT, new ShardedCommitEncoding(txID), true);
+
+      // the context waits for every commit, even when they aren't synced, so the decision is only deleted after them
+      OperationContext context = getContext(true);
+
+      boolean lineUp = lineUpContext;
+
+      for (int shard = 0; shard < messageShards.length; shard++)
+      {
+         if (tx.contains(shard))
+         {
+            messageShards[shard].appendCommitRecord(txID, syncTransactional, context, lineUp);
+            lineUp = true;
+         }
+      }
+
+      context.executeOnCompletion(new IOAsyncTask()
+      {
+         public void done()
+         {
+            try
+            {
+               messageJournal.appendDeleteRecord(recordID, false);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.errorDeletingShardedCommit(e, recordID);
+            }
+         }
+
+         public void onError(final int errorCode, final String errorMessage)
+         {
+         }
+      });
+   }
+
    public void clearContext()
    {
       OperationContextImpl.clearContext();
@@ -376,7 +687,10 @@ public class JournalStorageManager implements StorageManager
 
       // We first do a compact without any locks, to avoid copying unnecessary data over the network.
       // We do this without holding the storageManager lock, so the journal stays open while compact is being done
-      originalMessageJournal.scheduleCompactAndBlock(-1);
+      for (Journal journal : messageShards)
+      {
+         journal.scheduleCompactAndBlock(-1);
+      }
       originalBindingsJournal.scheduleCompactAndBlock(-1);
 
       JournalFile[] messageFiles = null;
@@ -584,6 +898,7 @@ public class JournalStorageManager implements StorageManager
 
    private void sendLargeMessageFiles(final Map<Long, Pair<String, Long>> pendingLargeMessages) throws Exception
    {
+      Map<Long, Pair<SequentialFile, Long>> files = new HashMap<Long, Pair<SequentialFile, Long>>();
       Iterator<Entry<Long, Pair<String, Long>>> iter = pendingLargeMessages.entrySet().iterator();
       while (started && iter.hasNext())
       {
@@ -594,7 +909,11 @@ public class JournalStorageManager implements StorageManager
          SequentialFile seqFile = largeMessagesFactory.createSequentialFile(fileName, 1);
          if (!seqFile.exists())
             continue;
-         replicator.syncLargeMessageFile(seqFile, size, id);
+         files.put(id, new Pair<SequentialFile, Long>(seqFile, size));
+      }
+      if (started)
+      {
+         replicator.syncLargeMessageFiles(files);
       }
    }
 
@@ -867,9 +1186,9 @@ public class JournalStorageManager implements StorageManager
       try
       {
          installLargeMessageConfirmationOnTX(tx, recordID);
-         messageJournal.appendDeleteRecordTransactional(tx.getID(), recordID,
-                                                        new DeleteEncoding(JournalRecordIds.ADD_LARGE_MESSAGE_PENDING,
-                                                                           messageID));
+         transactionJournal(tx.getID()).appendDeleteRecordTransactional(tx.getID(), recordID,
+                                                                        new DeleteEncoding(JournalRecordIds.ADD_LARGE_MESSAGE_PENDING,
+                                                                                           messageID));
       }
       finally
       {
@@ -909,14 +1228,19 @@ public class JournalStorageManager implements StorageManager
 
          if (message.isLargeMessage())
          {
-            messageJournal.appendAddRecord(message.getMessageID(), JournalRecordIds.ADD_LARGE_MESSAGE,
-                                           new LargeMessageEncoding((LargeServerMessage) message), false,
-                                           getContext(false));
+            messageJournal(message.getMessageID()).appendAddRecord(message.getMessageID(),
+                                                                   JournalRecordIds.ADD_LARGE_MESSAGE,
+                                                                   new LargeMessageEncoding((LargeServerMessage) message),
+                                                                   false,
+                                                                   getContext(false));
          }
          else
          {
-            messageJournal.appendAddRecord(message.getMessageID(), JournalRecordIds.ADD_MESSAGE, message, false,
-                                           getContext(false));
+            messageJournal(message.getMessageID()).appendAddRecord(message.getMessageID(),
+                                                                   JournalRecordIds.ADD_MESSAGE,
+                                                                   message,
+                                                                   false,
+                                                                   getContext(false));
          }
       }
       finally
@@ -930,7 +1254,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecord(messageID, JournalRecordIds.ADD_REF, new RefEncoding(queueID), last &&
+         messageJournal(messageID).appendUpdateRecord(messageID, JournalRecordIds.ADD_REF, new RefEncoding(queueID), last &&
             syncNonTransactional, getContext(last && syncNonTransactional));
       }
       finally
@@ -956,8 +1280,8 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecord(messageID, JournalRecordIds.ACKNOWLEDGE_REF, new RefEncoding(queueID),
-                                           syncNonTransactional, getContext(syncNonTransactional));
+         messageJournal(messageID).appendUpdateRecord(messageID, JournalRecordIds.ACKNOWLEDGE_REF, new RefEncoding(queueID),
+                                                      syncNonTransactional, getContext(syncNonTransactional));
       }
       finally
       {
@@ -993,7 +1317,12 @@ public class JournalStorageManager implements StorageManager
          // If these deletes are synchronized, we would build up messages on the Executor
          // increasing chances of losing deletes.
          // The StorageManager should verify messages without references
-         messageJournal.appendDeleteRecord(messageID, false, getContext(false));
+         messageJournal(messageID).appendDeleteRecord(messageID, false, getContext(false));
+
+         if (!relocatedMessages.isEmpty())
+         {
+            relocatedMessages.remove(messageID);
+         }
       }
       finally
       {
@@ -1008,11 +1337,11 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecord(ref.getMessage().getMessageID(),
-                                           JournalRecordIds.SET_SCHEDULED_DELIVERY_TIME,
-                                           encoding,
-                                           syncNonTransactional,
-                                           getContext(syncNonTransactional));
+         messageJournal(ref.getMessage().getMessageID()).appendUpdateRecord(ref.getMessage().getMessageID(),
+                                                                            JournalRecordIds.SET_SCHEDULED_DELIVERY_TIME,
+                                                                            encoding,
+                                                                            syncNonTransactional,
+                                                                            getContext(syncNonTransactional));
       }
       finally
       {
@@ -1052,6 +1381,35 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   public synchronized DuplicateIDStore getDuplicateIDStore(final SimpleString address, final int size) throws Exception
+   {
+      if (!duplicateIDStoreEnabled)
+      {
+         return null;
+      }
+
+      if (duplicateIDFiles == null)
+      {
+         duplicateIDFiles = MappedDuplicateIDStore.listFiles(new File(journalDir, DUPLICATE_IDS_DIRECTORY));
+      }
+
+      File file = duplicateIDFiles.get(address);
+
+      if (file == null)
+      {
+         file = MappedDuplicateIDStore.newFile(new File(journalDir, DUPLICATE_IDS_DIRECTORY), duplicateIDFiles.values());
+         duplicateIDFiles.put(address, file);
+      }
+
+      MappedDuplicateIDStore store = new MappedDuplicateIDStore(file,
+                                                                address,
+                                                                size,
+                                                                syncNonTransactional,
+                                                                executorFactory.getExecutor());
+      duplicateIDStores.add(store);
+      return store;
+   }
+
    // Transactional operations
 
    public void storeMessageTransactional(final long txID, final ServerMessage message) throws Exception
@@ -1066,15 +1424,15 @@ public class JournalStorageManager implements StorageManager
       {
          if (message.isLargeMessage())
          {
-            messageJournal.appendAddRecordTransactional(txID, message.getMessageID(),
-                                                        JournalRecordIds.ADD_LARGE_MESSAGE,
-                                                        new LargeMessageEncoding(((LargeServerMessage) message)));
+            messageJournal(txID, message.getMessageID()).appendAddRecordTransactional(txID, message.getMessageID(),
+                                                                                      JournalRecordIds.ADD_LARGE_MESSAGE,
+                                                                                      new LargeMessageEncoding(((LargeServerMessage) message)));
          }
          else
          {
-            messageJournal.appendAddRecordTransactional(txID, message.getMessageID(),
-                                                        JournalRecordIds.ADD_MESSAGE,
-                                                        message);
+            messageJournal(txID, message.getMessageID()).appendAddRecordTransactional(txID, message.getMessageID(),
+                                                                                      JournalRecordIds.ADD_MESSAGE,
+                                                                                      message);
          }
 
       }
@@ -1090,8 +1448,8 @@ public class JournalStorageManager implements StorageManager
       try
       {
          pageTransaction.setRecordID(generateID());
-         messageJournal.appendAddRecordTransactional(txID, pageTransaction.getRecordID(),
-                                                     JournalRecordIds.PAGE_TRANSACTION, pageTransaction);
+         transactionJournal(txID).appendAddRecordTransactional(txID, pageTransaction.getRecordID(),
+                                                               JournalRecordIds.PAGE_TRANSACTION, pageTransaction);
       }
       finally
       {
@@ -1104,10 +1462,10 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecordTransactional(txID, pageTransaction.getRecordID(),
-                                                        JournalRecordIds.PAGE_TRANSACTION,
-                                                        new PageUpdateTXEncoding(pageTransaction.getTransactionID(),
-                                                                                 depages));
+         transactionJournal(txID).appendUpdateRecordTransactional(txID, pageTransaction.getRecordID(),
+                                                                  JournalRecordIds.PAGE_TRANSACTION,
+                                                                  new PageUpdateTXEncoding(pageTransaction.getTransactionID(),
+                                                                                           depages));
       }
       finally
       {
@@ -1136,8 +1494,8 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecordTransactional(txID, messageID, JournalRecordIds.ADD_REF,
-                                                        new RefEncoding(queueID));
+         messageJournal(txID, messageID).appendUpdateRecordTransactional(txID, messageID, JournalRecordIds.ADD_REF,
+                                                                         new RefEncoding(queueID));
       }
       finally
       {
@@ -1150,8 +1508,8 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecordTransactional(txID, messageID, JournalRecordIds.ACKNOWLEDGE_REF,
-                                                        new RefEncoding(queueID));
+         messageJournal(txID, messageID).appendUpdateRecordTransactional(txID, messageID, JournalRecordIds.ACKNOWLEDGE_REF,
+                                                                         new RefEncoding(queueID));
       }
       finally
       {
@@ -1166,10 +1524,10 @@ public class JournalStorageManager implements StorageManager
       {
          long ackID = idGenerator.generateID();
          position.setRecordID(ackID);
-         messageJournal.appendAddRecordTransactional(txID,
-                                                     ackID,
-                                                     JournalRecordIds.ACKNOWLEDGE_CURSOR,
-                                                     new CursorAckRecordEncoding(queueID, position));
+         transactionJournal(txID).appendAddRecordTransactional(txID,
+                                                               ackID,
+                                                               JournalRecordIds.ACKNOWLEDGE_CURSOR,
+                                                               new CursorAckRecordEncoding(queueID, position));
       }
       finally
       {
@@ -1181,10 +1539,10 @@ public class JournalStorageManager implements StorageManager
    {
       long recordID = idGenerator.generateID();
       position.setRecordID(recordID);
-      messageJournal.appendAddRecordTransactional(txID,
-                                                  recordID,
-                                                  JournalRecordIds.PAGE_CURSOR_COMPLETE,
-                                                  new CursorAckRecordEncoding(queueID, position));
+      transactionJournal(txID).appendAddRecordTransactional(txID,
+                                                            recordID,
+                                                            JournalRecordIds.PAGE_CURSOR_COMPLETE,
+                                                            new CursorAckRecordEncoding(queueID, position));
    }
 
    public void deletePageComplete(long ackID) throws Exception
@@ -1197,7 +1555,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendDeleteRecordTransactional(txID, ackID);
+         transactionJournal(txID).appendDeleteRecordTransactional(txID, ackID);
       }
       finally
       {
@@ -1265,10 +1623,10 @@ public class JournalStorageManager implements StorageManager
       try
       {
 
-         messageJournal.appendUpdateRecordTransactional(txID,
-                                                        ref.getMessage().getMessageID(),
-                                                        JournalRecordIds.SET_SCHEDULED_DELIVERY_TIME,
-                                                        encoding);
+         messageJournal(txID, ref.getMessage().getMessageID()).appendUpdateRecordTransactional(txID,
+                                                                                               ref.getMessage().getMessageID(),
+                                                                                               JournalRecordIds.SET_SCHEDULED_DELIVERY_TIME,
+                                                                                               encoding);
       }
       finally
       {
@@ -1281,6 +1639,14 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
+         if (messageShards.length > 1)
+         {
+            // the other journals are prepared first, the transaction is in doubt once it is prepared on the first one
+            ShardedTransaction tx = getShardedTransaction(txID);
+            prepareShards(tx, txID, new XidEncoding(xid), false);
+            tx.enlist(0);
+            tx.setPrepared();
+         }
          messageJournal.appendPrepareRecord(txID, new XidEncoding(xid), syncTransactional, getContext(syncTransactional));
       }
       finally
@@ -1310,7 +1676,15 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendCommitRecord(txID, syncTransactional, getContext(syncTransactional), lineUpContext);
+         ShardedTransaction tx = messageShards.length > 1 ? shardedTransactions.remove(txID) : null;
+         if (tx != null && tx.getShardCount() > 1)
+         {
+            commitShards(tx, txID, lineUpContext);
+            return;
+         }
+
+         Journal journal = tx == null ? messageJournal : messageShards[tx.getFirstShard()];
+         journal.appendCommitRecord(txID, syncTransactional, getContext(syncTransactional), lineUpContext);
          if (!lineUpContext && !syncTransactional)
          {
             /**
@@ -1334,7 +1708,21 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendRollbackRecord(txID, syncTransactional, getContext(syncTransactional));
+         ShardedTransaction tx = messageShards.length > 1 ? shardedTransactions.remove(txID) : null;
+         if (tx == null)
+         {
+            messageJournal.appendRollbackRecord(txID, syncTransactional, getContext(syncTransactional));
+         }
+         else
+         {
+            for (int shard = 0; shard < messageShards.length; shard++)
+            {
+               if (tx.contains(shard))
+               {
+                  messageShards[shard].appendRollbackRecord(txID, syncTransactional, getContext(syncTransactional));
+               }
+            }
+         }
       }
       finally
       {
@@ -1353,7 +1741,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendAddRecordTransactional(txID, recordID, JournalRecordIds.DUPLICATE_ID, encoding);
+         transactionJournal(txID).appendAddRecordTransactional(txID, recordID, JournalRecordIds.DUPLICATE_ID, encoding);
       }
       finally
       {
@@ -1371,7 +1759,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecordTransactional(txID, recordID, JournalRecordIds.DUPLICATE_ID, encoding);
+         transactionJournal(txID).appendUpdateRecordTransactional(txID, recordID, JournalRecordIds.DUPLICATE_ID, encoding);
       }
       finally
       {
@@ -1384,7 +1772,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendDeleteRecordTransactional(txID, recordID);
+         transactionJournal(txID).appendDeleteRecordTransactional(txID, recordID);
       }
       finally
       {
@@ -1410,10 +1798,10 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendUpdateRecord(ref.getMessage().getMessageID(),
-                                           JournalRecordIds.UPDATE_DELIVERY_COUNT,
-                                           updateInfo,
-                                           syncNonTransactional, getContext(syncNonTransactional));
+         messageJournal(ref.getMessage().getMessageID()).appendUpdateRecord(ref.getMessage().getMessageID(),
+                                                                            JournalRecordIds.UPDATE_DELIVERY_COUNT,
+                                                                            updateInfo,
+                                                                            syncNonTransactional, getContext(syncNonTransactional));
       }
       finally
       {
@@ -1541,6 +1929,11 @@ public class JournalStorageManager implements StorageManager
                                                            preparedTransactions,
                                                            new LargeMessageTXFailureCallback(messages));
 
+         if (messageShards.length > 1)
+         {
+            loadShards(records, preparedTransactions, new LargeMessageTXFailureCallback(messages));
+         }
+
          ArrayList<LargeServerMessage> largeMessages = new ArrayList<LargeServerMessage>();
 
          Map<Long, Map<Long, AddMessageRecord>> queueMap = new HashMap<Long, Map<Long, AddMessageRecord>>();
@@ -1887,6 +2280,15 @@ public class JournalStorageManager implements StorageManager
          records.clear();
          records = null;
 
+         if (messageShards.length > 1)
+         {
+            // the journals were loaded one after the other, the messages are sent in the order of their IDs
+            for (Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
+            {
+               entry.setValue(new LinkedHashMap<Long, AddMessageRecord>(new TreeMap<Long, AddMessageRecord>(entry.getValue())));
+            }
+         }
+
          journalLoader.handleAddMessage(queueMap);
 
          loadPreparedTransactions(postOffice,
@@ -1938,6 +2340,167 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * Loads the records of the journals after the first one, and completes the transactions that
+    * were being committed on several journals.
+    *
+    * @param records         the records of the first journal, the records of the others are added to them
+    * @param preparedTransactions the transactions prepared on the first journal, and by a
+    *                        {@link Xid}, the records they have on the other journals are added to them
+    */
+   private void loadShards(final List<RecordInfo> records,
+                           final List<PreparedTransactionInfo> preparedTransactions,
+                           final TransactionFailureCallback failureCallback) throws Exception
+   {
+      // the transactions decided on the first journal, and the records deciding them
+      Map<Long, Long> decisions = new HashMap<Long, Long>();
+
+      Iterator<RecordInfo> recordIterator = records.iterator();
+      while (recordIterator.hasNext())
+      {
+         RecordInfo record = recordIterator.next();
+         if (record.getUserRecordType() == JournalRecordIds.SHARDED_COMMIT)
+         {
+            ShardedCommitEncoding encoding = new ShardedCommitEncoding();
+            encoding.decode(HornetQBuffers.wrappedBuffer(record.data));
+            decisions.put(encoding.txID, record.id);
+            recordIterator.remove();
+         }
+      }
+
+      relocateMessages(records, 0);
+
+      Map<Long, PreparedTransactionInfo> xaTransactions = new HashMap<Long, PreparedTransactionInfo>();
+
+      Set<PreparedTransactionInfo> mergedTransactions = new HashSet<PreparedTransactionInfo>();
+
+      Iterator<PreparedTransactionInfo> preparedIterator = preparedTransactions.iterator();
+      while (preparedIterator.hasNext())
+      {
+         PreparedTransactionInfo prepared = preparedIterator.next();
+         if (completeShardedTransaction(prepared, 0, decisions, records))
+         {
+            preparedIterator.remove();
+         }
+         else
+         {
+            relocateMessages(prepared.records, 0);
+            xaTransactions.put(prepared.id, prepared);
+            ShardedTransaction tx = getShardedTransaction(prepared.id);
+            tx.enlist(0);
+            tx.setPrepared();
+         }
+      }
+
+      for (int shard = 1; shard < messageShards.length; shard++)
+      {
+         List<RecordInfo> shardRecords = new ArrayList<RecordInfo>();
+         List<PreparedTransactionInfo> shardPrepared = new ArrayList<PreparedTransactionInfo>();
+
+         messageShards[shard].load(shardRecords, shardPrepared, failureCallback);
+
+         relocateMessages(shardRecords, shard);
+         records.addAll(shardRecords);
+
+         for (PreparedTransactionInfo prepared : shardPrepared)
+         {
+            if (completeShardedTransaction(prepared, shard, decisions, records))
+            {
+               continue;
+            }
+
+            relocateMessages(prepared.records, shard);
+
+            PreparedTransactionInfo xaTransaction = xaTransactions.get(prepared.id);
+            if (xaTransaction == null)
+            {
+               // the transaction wasn't prepared on the first journal yet
+               messageShards[shard].appendRollbackRecord(prepared.id, true);
+            }
+            else
+            {
+               xaTransaction.records.addAll(prepared.records);
+               xaTransaction.recordsToDelete.addAll(prepared.recordsToDelete);
+               getShardedTransaction(prepared.id).enlist(shard);
+               mergedTransactions.add(xaTransaction);
+            }
+         }
+      }
+
+      // the records were merged one journal after the other, the messages are put back in the order of their IDs,
+      // which is the order they were sent in. The sort is stable so the records of a message keep their order.
+      for (PreparedTransactionInfo xaTransaction : mergedTransactions)
+      {
+         Collections.sort(xaTransaction.records, RECORD_ID_ORDER);
+      }
+
+      for (Long recordID : decisions.values())
+      {
+         messageJournal.appendDeleteRecord(recordID, false);
+      }
+   }
+
+   /**
+    * Commits a transaction prepared on a journal if it was decided on the first journal, or rolls it
+    * back if it was prepared to be committed on several journals but wasn't decided.
+    *
+    * @return {@code true} if the transaction is completed, {@code false} if it was prepared by a {@link Xid}
+    */
+   private boolean completeShardedTransaction(final PreparedTransactionInfo prepared,
+                                              final int shard,
+                                              final Map<Long, Long> decisions,
+                                              final List<RecordInfo> records) throws Exception
+   {
+      if (decisions.containsKey(prepared.id))
+      {
+         messageShards[shard].appendCommitRecord(prepared.id, true);
+
+         relocateMessages(prepared.records, shard);
+
+         Set<Long> deleted = new HashSet<Long>();
+         for (RecordInfo record : prepared.recordsToDelete)
+         {
+            deleted.add(record.id);
+         }
+         if (!deleted.isEmpty())
+         {
+            Iterator<RecordInfo> iterator = records.iterator();
+            while (iterator.hasNext())
+            {
+               if (deleted.contains(iterator.next().id))
+               {
+                  iterator.remove();
+               }
+            }
+         }
+         records.addAll(prepared.records);
+         return true;
+      }
+      else if (prepared.extraData.length == ShardedCommitEncoding.ENCODE_SIZE)
+      {
+         // the data of a transaction prepared by a Xid is always longer
+         messageShards[shard].appendRollbackRecord(prepared.id, true);
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * Keeps the journal of the messages that aren't on the journal of their ID.
+    */
+   private void relocateMessages(final List<RecordInfo> records, final int shard)
+   {
+      for (RecordInfo record : records)
+      {
+         byte type = record.getUserRecordType();
+         if ((type == JournalRecordIds.ADD_MESSAGE || type == JournalRecordIds.ADD_LARGE_MESSAGE) && !record.isUpdate &&
+            (record.id & Long.MAX_VALUE) % messageShardCount != shard)
+         {
+            relocatedMessages.put(record.id, shard);
+         }
+      }
+   }
+
    /**
     * @param queueID
     * @param pageSubscriptions
@@ -2043,8 +2606,8 @@ public class JournalStorageManager implements StorageManager
       try
       {
          long recordID = idGenerator.generateID();
-         messageJournal.appendAddRecordTransactional(txID, recordID, JournalRecordIds.PAGE_CURSOR_COUNTER_INC,
-                                                     new PageCountRecordInc(queueID, value));
+         transactionJournal(txID).appendAddRecordTransactional(txID, recordID, JournalRecordIds.PAGE_CURSOR_COUNTER_INC,
+                                                               new PageCountRecordInc(queueID, value));
          return recordID;
       }
       finally
@@ -2079,8 +2642,8 @@ public class JournalStorageManager implements StorageManager
       try
       {
          final long recordID = idGenerator.generateID();
-         messageJournal.appendAddRecordTransactional(txID, recordID, JournalRecordIds.PAGE_CURSOR_COUNTER_VALUE,
-                                                     new PageCountRecord(queueID, value));
+         transactionJournal(txID).appendAddRecordTransactional(txID, recordID, JournalRecordIds.PAGE_CURSOR_COUNTER_VALUE,
+                                                               new PageCountRecord(queueID, value));
          return recordID;
       }
       finally
@@ -2113,7 +2676,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendDeleteRecordTransactional(txID, recordID);
+         transactionJournal(txID).appendDeleteRecordTransactional(txID, recordID);
       }
       finally
       {
@@ -2126,7 +2689,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendDeleteRecordTransactional(txID, recordID);
+         transactionJournal(txID).appendDeleteRecordTransactional(txID, recordID);
       }
       finally
       {
@@ -2139,7 +2702,7 @@ public class JournalStorageManager implements StorageManager
       readLock();
       try
       {
-         messageJournal.appendDeleteRecordTransactional(txID, recordID);
+         transactionJournal(txID).appendDeleteRecordTransactional(txID, recordID);
       }
       finally
       {
@@ -2227,6 +2790,11 @@ public class JournalStorageManager implements StorageManager
 
       checkAndCreateDir(largeMessagesDirectory, createJournalDir);
 
+      for (int shard = 1; shard < messageShards.length; shard++)
+      {
+         checkAndCreateDir(getShardDirectory(shard), createJournalDir);
+      }
+
       cleanupIncompleteFiles();
 
       singleThreadExecutor = Executors.newSingleThreadExecutor(new HornetQThreadFactory("HornetQ-IO-SingleThread",
@@ -2235,7 +2803,10 @@ public class JournalStorageManager implements StorageManager
 
       bindingsJournal.start();
 
-      messageJournal.start();
+      for (Journal journal : messageShards)
+      {
+         journal.start();
+      }
 
       started = true;
    }
@@ -2303,10 +2874,34 @@ public class JournalStorageManager implements StorageManager
          }
          replicatorInUse.stop();
       }
+
+      for (MappedDuplicateIDStore store : duplicateIDStores)
+      {
+         try
+         {
+            store.close();
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.errorClosingDuplicateIDStore(e, store.toString());
+         }
+      }
+      duplicateIDStores.clear();
+      duplicateIDFiles = null;
+
       bindingsJournal.stop();
 
       messageJournal.stop();
 
+      for (int shard = 1; shard < messageShards.length; shard++)
+      {
+         messageShards[shard].stop();
+      }
+
+      relocatedMessages.clear();
+
+      shardedTransactions.clear();
+
       singleThreadExecutor.shutdown();
 
       journalLoaded = false;
@@ -2331,6 +2926,11 @@ public class JournalStorageManager implements StorageManager
          info[0] = bindingsJournal.loadInternalOnly();
          info[1] = messageJournal.loadInternalOnly();
 
+         for (int shard = 1; shard < messageShards.length; shard++)
+         {
+            messageShards[shard].loadInternalOnly();
+         }
+
          return info;
       }
       finally
@@ -2379,6 +2979,14 @@ public class JournalStorageManager implements StorageManager
       return bindingsJournal;
    }
 
+   /**
+    * @return the journals the messages are spread on, the first one being the message journal
+    */
+   Journal[] getMessageShards()
+   {
+      return messageShards;
+   }
+
    // Package protected ---------------------------------------------
 
    private void confirmLargeMessage(final LargeServerMessage largeServerMessage)
@@ -2875,6 +3483,14 @@ public class JournalStorageManager implements StorageManager
       public void pageSyncDone()
       {
       }
+
+      public void duplicateIDSyncLineUp()
+      {
+      }
+
+      public void duplicateIDSyncDone()
+      {
+      }
    }
 
    /**
@@ -2910,6 +3526,107 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * The journals a transaction has records on.
+    */
+   private static final class ShardedTransaction
+   {
+      private final boolean[] shards;
+
+      private boolean prepared;
+
+      ShardedTransaction(final int shardCount)
+      {
+         shards = new boolean[shardCount];
+      }
+
+      synchronized void enlist(final int shard)
+      {
+         shards[shard] = true;
+      }
+
+      synchronized boolean contains(final int shard)
+      {
+         return shards[shard];
+      }
+
+      synchronized int getShardCount()
+      {
+         int count = 0;
+         for (boolean shard : shards)
+         {
+            if (shard)
+            {
+               count++;
+            }
+         }
+         return count;
+      }
+
+      synchronized int getFirstShard()
+      {
+         for (int i = 0; i < shards.length; i++)
+         {
+            if (shards[i])
+            {
+               return i;
+            }
+         }
+         return 0;
+      }
+
+      synchronized boolean isPrepared()
+      {
+         return prepared;
+      }
+
+      synchronized void setPrepared()
+      {
+         prepared = true;
+      }
+   }
+
+   /**
+    * The transaction of a {@link JournalRecordIds#SHARDED_COMMIT} record, also used as the data of
+    * the prepare records of the transactions committed on several journals.
+    */
+   public static class ShardedCommitEncoding implements EncodingSupport
+   {
+      static final int ENCODE_SIZE = DataConstants.SIZE_LONG;
+
+      public long txID;
+
+      public ShardedCommitEncoding(final long txID)
+      {
+         this.txID = txID;
+      }
+
+      public ShardedCommitEncoding()
+      {
+      }
+
+      public void decode(final HornetQBuffer buffer)
+      {
+         txID = buffer.readLong();
+      }
+
+      public void encode(final HornetQBuffer buffer)
+      {
+         buffer.writeLong(txID);
+      }
+
+      public int getEncodeSize()
+      {
+         return ENCODE_SIZE;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "ShardedCommitEncoding [txID=" + txID + "]";
+      }
+   }
+
    protected static class HeuristicCompletionEncoding implements EncodingSupport
    {
       public Xid xid;
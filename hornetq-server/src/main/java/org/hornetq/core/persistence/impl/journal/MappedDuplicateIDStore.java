@@ -0,0 +1,401 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.persistence.impl.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.DuplicateIDStore;
+import org.hornetq.core.persistence.OperationContext;
+
+/**
+ * A {@link DuplicateIDStore} on a memory mapped file.
+ * <p/>
+ * The file starts with a header holding the address, padded to a whole slot, followed by the
+ * slots. A slot has the sequence, the length and a checksum of the ID, then the ID itself. The
+ * slots are as large as a divisor of the page size, so none of them straddles two pages.
+ * <p/>
+ * The writes go to the mapping only, and the syncs requested while the file is being forced are
+ * completed by the next force.
+ */
+public final class MappedDuplicateIDStore implements DuplicateIDStore
+{
+   public static final String FILE_PREFIX = "hornetq-duplicate-ids-";
+
+   public static final String FILE_EXTENSION = ".dup";
+
+   static final int SLOT_SIZE = 128;
+
+   // sequence, length and checksum
+   private static final int SLOT_HEADER_SIZE = 16;
+
+   static final int MAX_ID_SIZE = SLOT_SIZE - SLOT_HEADER_SIZE;
+
+   private static final int MAGIC = 0x48514944;
+
+   private static final int VERSION = 1;
+
+   // magic, version, slots, slot size and address length
+   private static final int FILE_HEADER_SIZE = 20;
+
+   private final File file;
+
+   private final SimpleString address;
+
+   private final int slots;
+
+   private final int headerSize;
+
+   private final boolean syncEnabled;
+
+   private final Executor executor;
+
+   private final List<OperationContext> pendingSyncs = new ArrayList<OperationContext>();
+
+   private boolean pendingFlush;
+
+   private final Runnable flusher = new Runnable()
+   {
+      public void run()
+      {
+         flush();
+      }
+   };
+
+   private RandomAccessFile randomFile;
+
+   private volatile MappedByteBuffer buffer;
+
+   /**
+    * @param syncEnabled whether {@link #sync(OperationContext)} forces the file, as
+    * {@code journal-sync-non-transactional} does for the journal
+    */
+   public MappedDuplicateIDStore(final File file,
+                                 final SimpleString address,
+                                 final int slots,
+                                 final boolean syncEnabled,
+                                 final Executor executor)
+   {
+      this.file = file;
+      this.address = address;
+      this.slots = slots;
+      this.headerSize = headerSize(address.getData().length);
+      this.syncEnabled = syncEnabled;
+      this.executor = executor;
+
+      if (headerSize + (long) slots * SLOT_SIZE > Integer.MAX_VALUE)
+      {
+         throw new IllegalArgumentException("Duplicate ID store for " + address + " can't map " + slots + " slots");
+      }
+   }
+
+   /**
+    * Reads the address of every store on the directory, creating the directory if it doesn't exist.
+    */
+   public static Map<SimpleString, File> listFiles(final File directory) throws IOException
+   {
+      Map<SimpleString, File> files = new HashMap<SimpleString, File>();
+
+      if (!directory.exists() && !directory.mkdirs())
+      {
+         throw new IOException("Could not create directory " + directory);
+      }
+
+      File[] list = directory.listFiles();
+
+      if (list != null)
+      {
+         for (File file : list)
+         {
+            if (file.getName().startsWith(FILE_PREFIX) && file.getName().endsWith(FILE_EXTENSION))
+            {
+               try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"))
+               {
+                  ByteBuffer mapped = randomFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomFile.length());
+                  readHeader(mapped, file);
+                  byte[] addressBytes = new byte[mapped.getInt(FILE_HEADER_SIZE - 4)];
+                  mapped.position(FILE_HEADER_SIZE);
+                  mapped.get(addressBytes);
+                  files.put(new SimpleString(addressBytes), file);
+               }
+            }
+         }
+      }
+
+      return files;
+   }
+
+   /**
+    * @return a file on the directory with a name none of the {@code existing} files have
+    */
+   public static File newFile(final File directory, final Collection<File> existing)
+   {
+      long next = 0;
+
+      for (File file : existing)
+      {
+         String name = file.getName();
+         try
+         {
+            next = Math.max(next, Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_EXTENSION.length())) + 1);
+         }
+         catch (NumberFormatException e)
+         {
+            // not one of our names, it can't clash
+         }
+      }
+
+      return new File(directory, FILE_PREFIX + next + FILE_EXTENSION);
+   }
+
+   public boolean fits(final byte[] duplID)
+   {
+      return duplID.length > 0 && duplID.length <= MAX_ID_SIZE;
+   }
+
+   public List<Pair<byte[], Long>> load() throws Exception
+   {
+      List<Pair<byte[], Long>> ids = new ArrayList<Pair<byte[], Long>>();
+
+      if (!file.exists())
+      {
+         return ids;
+      }
+
+      try (RandomAccessFile randomFile = new RandomAccessFile(file, "r"))
+      {
+         ByteBuffer mapped = randomFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomFile.length());
+
+         int fileSlots = readHeader(mapped, file);
+
+         int fileHeaderSize = headerSize(mapped.getInt(FILE_HEADER_SIZE - 4));
+
+         for (int i = 0; i < fileSlots; i++)
+         {
+            int offset = fileHeaderSize + i * SLOT_SIZE;
+
+            if (offset + SLOT_SIZE > mapped.limit())
+            {
+               break;
+            }
+
+            long sequence = mapped.getLong(offset);
+            int length = mapped.getInt(offset + 8);
+
+            // an empty slot, or one that was being written when the server stopped
+            if (length <= 0 || length > MAX_ID_SIZE)
+            {
+               continue;
+            }
+
+            byte[] duplID = new byte[length];
+            mapped.position(offset + SLOT_HEADER_SIZE);
+            mapped.get(duplID);
+
+            if (mapped.getInt(offset + 12) == checksum(duplID, sequence))
+            {
+               ids.add(new Pair<byte[], Long>(duplID, sequence));
+            }
+         }
+      }
+
+      return ids;
+   }
+
+   public synchronized void reset(final List<Pair<byte[], Long>> content) throws Exception
+   {
+      closeFile();
+
+      // written aside and moved over the store, so a failure here doesn't lose what was on it
+      File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+      try (RandomAccessFile tmpFile = new RandomAccessFile(tmp, "rw"))
+      {
+         tmpFile.setLength(0);
+         tmpFile.setLength(headerSize + (long) slots * SLOT_SIZE);
+
+         MappedByteBuffer tmpBuffer = tmpFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, tmpFile.length());
+
+         byte[] addressBytes = address.getData();
+         tmpBuffer.putInt(MAGIC);
+         tmpBuffer.putInt(VERSION);
+         tmpBuffer.putInt(slots);
+         tmpBuffer.putInt(SLOT_SIZE);
+         tmpBuffer.putInt(addressBytes.length);
+         tmpBuffer.put(addressBytes);
+
+         for (int i = 0; i < content.size() && i < slots; i++)
+         {
+            Pair<byte[], Long> id = content.get(i);
+            if (id != null)
+            {
+               writeSlot(tmpBuffer, i, id.getA(), id.getB());
+            }
+         }
+
+         tmpBuffer.force();
+      }
+
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      randomFile = new RandomAccessFile(file, "rw");
+      buffer = randomFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomFile.length());
+   }
+
+   public void write(final int slot, final byte[] duplID, final long sequence)
+   {
+      writeSlot(buffer, slot, duplID, sequence);
+   }
+
+   public void clear(final int slot)
+   {
+      MappedByteBuffer mapped = buffer;
+      int offset = headerSize + slot * SLOT_SIZE;
+      mapped.putInt(offset + 8, 0);
+      mapped.putLong(offset, 0);
+      mapped.putInt(offset + 12, 0);
+   }
+
+   public void sync(final OperationContext context)
+   {
+      if (!syncEnabled)
+      {
+         return;
+      }
+
+      context.duplicateIDSyncLineUp();
+
+      synchronized (this)
+      {
+         pendingSyncs.add(context);
+         if (!pendingFlush)
+         {
+            pendingFlush = true;
+            executor.execute(flusher);
+         }
+      }
+   }
+
+   public synchronized void close() throws Exception
+   {
+      flush();
+      closeFile();
+   }
+
+   private void flush()
+   {
+      OperationContext[] contexts;
+      MappedByteBuffer mapped;
+
+      synchronized (this)
+      {
+         pendingFlush = false;
+         contexts = pendingSyncs.toArray(new OperationContext[pendingSyncs.size()]);
+         pendingSyncs.clear();
+         mapped = buffer;
+      }
+
+      try
+      {
+         if (mapped != null)
+         {
+            mapped.force();
+         }
+      }
+      catch (Exception e)
+      {
+         for (OperationContext context : contexts)
+         {
+            context.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+         }
+      }
+      finally
+      {
+         for (OperationContext context : contexts)
+         {
+            context.duplicateIDSyncDone();
+         }
+      }
+   }
+
+   private void closeFile() throws IOException
+   {
+      buffer = null;
+      if (randomFile != null)
+      {
+         randomFile.close();
+         randomFile = null;
+      }
+   }
+
+   private void writeSlot(final ByteBuffer mapped, final int slot, final byte[] duplID, final long sequence)
+   {
+      int offset = headerSize + slot * SLOT_SIZE;
+
+      // the ID goes before the slot header, which is only valid once its checksum matches the ID
+      ByteBuffer view = mapped.duplicate();
+      view.position(offset + SLOT_HEADER_SIZE);
+      view.put(duplID);
+
+      mapped.putLong(offset, sequence);
+      mapped.putInt(offset + 8, duplID.length);
+      mapped.putInt(offset + 12, checksum(duplID, sequence));
+   }
+
+   private static int readHeader(final ByteBuffer mapped, final File file) throws IOException
+   {
+      if (mapped.limit() < FILE_HEADER_SIZE || mapped.getInt(0) != MAGIC)
+      {
+         throw new IOException(file + " is not a duplicate ID store");
+      }
+      if (mapped.getInt(4) != VERSION || mapped.getInt(12) != SLOT_SIZE)
+      {
+         throw new IOException(file + " has an unknown duplicate ID store version");
+      }
+      return mapped.getInt(8);
+   }
+
+   private static int headerSize(final int addressLength)
+   {
+      return (FILE_HEADER_SIZE + addressLength + SLOT_SIZE - 1) / SLOT_SIZE * SLOT_SIZE;
+   }
+
+   private static int checksum(final byte[] duplID, final long sequence)
+   {
+      CRC32 crc = new CRC32();
+      crc.update(duplID);
+      return (int) crc.getValue() ^ (int) sequence ^ (int) (sequence >>> 32) ^ duplID.length;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedDuplicateIDStore [address=" + address + ", file=" + file + "]";
+   }
+}
@@ -82,14 +82,17 @@ public class OperationContextImpl implements OperationContext
    private long minimalStore = Long.MAX_VALUE;
    private long minimalReplicated = Long.MAX_VALUE;
    private long minimalPage = Long.MAX_VALUE;
+   private long minimalDuplicateID = Long.MAX_VALUE;
 
    private final AtomicLong storeLineUp = new AtomicLong(0);
    private final AtomicLong replicationLineUp = new AtomicLong(0);
    private final AtomicLong pageLineUp = new AtomicLong(0);
+   private final AtomicLong duplicateIDLineUp = new AtomicLong(0);
 
    private long stored = 0;
    private long replicated = 0;
    private long paged = 0;
+   private long duplicateIDSynced = 0;
 
    private int errorCode = -1;
 
@@ -116,6 +119,17 @@ public class OperationContextImpl implements OperationContext
       checkTasks();
    }
 
+   public void duplicateIDSyncLineUp()
+   {
+      duplicateIDLineUp.incrementAndGet();
+   }
+
+   public synchronized void duplicateIDSyncDone()
+   {
+      duplicateIDSynced++;
+      checkTasks();
+   }
+
    public void storeLineUp()
    {
       storeLineUp.incrementAndGet();
@@ -150,11 +164,12 @@ public class OperationContextImpl implements OperationContext
             minimalReplicated = replicationLineUp.intValue();
             minimalStore = storeLineUp.intValue();
             minimalPage = pageLineUp.intValue();
+            minimalDuplicateID = duplicateIDLineUp.intValue();
          }
 
          // On this case, we can just execute the context directly
          if (replicationLineUp.intValue() == replicated && storeLineUp.intValue() == stored &&
-                  pageLineUp.intValue() == paged)
+                  pageLineUp.intValue() == paged && duplicateIDLineUp.intValue() == duplicateIDSynced)
          {
             // We want to avoid the executor if everything is complete...
             // However, we can't execute the context if there are executions pending
@@ -192,13 +207,15 @@ public class OperationContextImpl implements OperationContext
 
    private void checkTasks()
    {
-      if (stored >= minimalStore && replicated >= minimalReplicated && paged >= minimalPage)
+      if (stored >= minimalStore && replicated >= minimalReplicated && paged >= minimalPage &&
+         duplicateIDSynced >= minimalDuplicateID)
       {
          Iterator<TaskHolder> iter = tasks.iterator();
          while (iter.hasNext())
          {
             TaskHolder holder = iter.next();
-            if (stored >= holder.storeLined && replicated >= holder.replicationLined && paged >= holder.pageLined)
+            if (stored >= holder.storeLined && replicated >= holder.replicationLined && paged >= holder.pageLined &&
+               duplicateIDSynced >= holder.duplicateIDLined)
             {
                // If set, we use an executor to avoid the server being single threaded
                execute(holder.task);
@@ -285,6 +302,8 @@ public class OperationContextImpl implements OperationContext
                 replicationLined +
                 ", pageLined=" +
                 pageLined +
+                ", duplicateIDLined=" +
+                duplicateIDLined +
                 ", task=" +
                 task +
                 "]";
@@ -293,6 +312,7 @@ public class OperationContextImpl implements OperationContext
       final int storeLined;
       final int replicationLined;
       final int pageLined;
+      final int duplicateIDLined;
 
       final IOAsyncTask task;
 
@@ -301,6 +321,7 @@ public class OperationContextImpl implements OperationContext
          storeLined = storeLineUp.intValue();
          replicationLined = replicationLineUp.intValue();
          pageLined = pageLineUp.intValue();
+         duplicateIDLined = duplicateIDLineUp.intValue();
          this.task = task;
       }
    }
@@ -357,6 +378,12 @@ public class OperationContextImpl implements OperationContext
              minimalPage +
              ", pageLineUp=" +
              pageLineUp +
+             ", duplicateIDSynced=" +
+             duplicateIDSynced +
+             ", minimalDuplicateID=" +
+             minimalDuplicateID +
+             ", duplicateIDLineUp=" +
+             duplicateIDLineUp +
              ", errorCode=" +
              errorCode +
              ", errorMessage=" +
@@ -33,6 +33,7 @@ import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.paging.cursor.PagePosition;
+import org.hornetq.core.persistence.DuplicateIDStore;
 import org.hornetq.core.persistence.GroupingInfo;
 import org.hornetq.core.persistence.OperationContext;
 import org.hornetq.core.persistence.QueueBindingInfo;
@@ -113,6 +114,16 @@ public class NullStorageManager implements StorageManager
       {
       }
 
+      @Override
+      public void duplicateIDSyncLineUp()
+      {
+      }
+
+      @Override
+      public void duplicateIDSyncDone()
+      {
+      }
+
       @Override
       public void executeOnCompletion(final IOAsyncTask runnable)
       {
@@ -329,6 +340,12 @@ public class NullStorageManager implements StorageManager
    {
    }
 
+   @Override
+   public DuplicateIDStore getDuplicateIDStore(final SimpleString address, final int size)
+   {
+      return null;
+   }
+
    @Override
    public void pageClosed(final SimpleString storeName, final int pageNumber)
    {
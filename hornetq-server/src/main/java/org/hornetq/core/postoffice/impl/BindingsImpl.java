@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
@@ -61,6 +62,18 @@ public final class BindingsImpl implements Bindings
 
    private final List<Binding> exclusiveBindings = new CopyOnWriteArrayList<Binding>();
 
+   /**
+    * Incremented every time {@link #routingNameBindingMap} changes, to know when {@link #selectorIndex} is stale
+    */
+   private final AtomicLong routingNamesVersion = new AtomicLong(0);
+
+   private volatile SelectorIndex selectorIndex;
+
+   /**
+    * The version for which there is nothing to index, so we don't try to build the index on every route
+    */
+   private volatile long notIndexedVersion = -1;
+
    private volatile boolean routeWhenNoConsumers;
 
    private final GroupingHandler groupingHandler;
@@ -123,6 +136,8 @@ public final class BindingsImpl implements Bindings
          }
 
          bindings.add(binding);
+
+         routingNamesVersion.incrementAndGet();
       }
 
       bindingsMap.put(binding.getID(), binding);
@@ -155,6 +170,8 @@ public final class BindingsImpl implements Bindings
                routingNameBindingMap.remove(routingName);
             }
          }
+
+         routingNamesVersion.incrementAndGet();
       }
 
       bindingsMap.remove(binding.getID());
@@ -328,24 +345,34 @@ public final class BindingsImpl implements Bindings
             {
                HornetQServerLogger.LOGGER.trace("Routing message " + message + " on binding=" + this);
             }
-            for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
-            {
-               SimpleString routingName = entry.getKey();
 
-               List<Binding> bindings = entry.getValue();
+            SelectorIndex index = getSelectorIndex();
 
-               if (bindings == null)
+            if (index != null)
+            {
+               routeUsingIndex(message, context, index);
+            }
+            else
+            {
+               for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
                {
-                  // The value can become null if it's concurrently removed while we're iterating - this is expected
-                  // ConcurrentHashMap behaviour!
-                  continue;
-               }
+                  SimpleString routingName = entry.getKey();
 
-               Binding theBinding = getNextBinding(message, routingName, bindings);
+                  List<Binding> bindings = entry.getValue();
 
-               if (theBinding != null)
-               {
-                  theBinding.route(message, context);
+                  if (bindings == null)
+                  {
+                     // The value can become null if it's concurrently removed while we're iterating - this is expected
+                     // ConcurrentHashMap behaviour!
+                     continue;
+                  }
+
+                  Binding theBinding = getNextBinding(message, routingName, bindings);
+
+                  if (theBinding != null)
+                  {
+                     theBinding.route(message, context);
+                  }
                }
             }
          }
@@ -358,6 +385,70 @@ public final class BindingsImpl implements Bindings
       return "BindingsImpl [name=" + name + "]";
    }
 
+   /**
+    * @return the index of the current routing names, or null if none of them can be indexed
+    */
+   private SelectorIndex getSelectorIndex()
+   {
+      long version = routingNamesVersion.get();
+
+      if (version == notIndexedVersion)
+      {
+         return null;
+      }
+
+      SelectorIndex index = selectorIndex;
+
+      if (index == null || index.getVersion() != version)
+      {
+         index = SelectorIndex.build(version, routingNameBindingMap);
+
+         if (index == null)
+         {
+            notIndexedVersion = version;
+         }
+
+         selectorIndex = index;
+      }
+
+      return index;
+   }
+
+   /**
+    * Only routes to the routing names whose filter may match the message according to the index,
+    * instead of evaluating the filter of every routing name
+    */
+   private void routeUsingIndex(final ServerMessage message, final RoutingContext context, final SelectorIndex index) throws Exception
+   {
+      routeToRoutingNames(message, context, index.getUnindexed());
+
+      for (SimpleString property : index.getIndexedProperties())
+      {
+         routeToRoutingNames(message, context, index.getCandidates(property, message));
+      }
+   }
+
+   private void routeToRoutingNames(final ServerMessage message, final RoutingContext context, final SimpleString[] routingNames) throws Exception
+   {
+      for (SimpleString routingName : routingNames)
+      {
+         List<Binding> bindings = routingNameBindingMap.get(routingName);
+
+         if (bindings == null)
+         {
+            // removed since the index was built
+            continue;
+         }
+
+         Binding theBinding = getNextBinding(message, routingName, bindings);
+
+         if (theBinding != null)
+         {
+            theBinding.route(message, context);
+         }
+      }
+   }
+
    /**
     * This code has a race on the assigned value to routing names.
     * <p/>
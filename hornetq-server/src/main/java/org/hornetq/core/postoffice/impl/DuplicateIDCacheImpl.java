@@ -13,12 +13,16 @@
 package org.hornetq.core.postoffice.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.hornetq.api.core.Pair;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.DuplicateIDStore;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.DuplicateIDCache;
 import org.hornetq.core.server.HornetQServerLogger;
@@ -30,6 +34,15 @@ import org.hornetq.core.transaction.TransactionOperationAbstract;
  * A DuplicateIDCacheImpl
  *
  * A fixed size rotating cache of last X duplicate ids.
+ * <p/>
+ * The ids are kept on a ring of arrays, and an open addressing table maps the hash of each id to
+ * its position on the ring. Every slot of the table holds the hash on its high int and the
+ * position + 1 on its low int, so {@link #contains(byte[])} doesn't take any lock. Changes to the
+ * cache are still made one at a time.
+ * <p/>
+ * When the storage manager has a {@link DuplicateIDStore} for the address, the ids of non
+ * transactional sends are kept on it, on the slot of their position, instead of on the journal.
+ * Transactional ids always go to the journal, as they have to be committed with the transaction.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  *
@@ -37,23 +50,39 @@ import org.hornetq.core.transaction.TransactionOperationAbstract;
  */
 public class DuplicateIDCacheImpl implements DuplicateIDCache
 {
-   // ByteHolder, position
-   private final Map<ByteArrayHolder, Integer> cache = new ConcurrentHashMap<ByteArrayHolder, Integer>();
+   private static final long EMPTY = 0;
+
+   // a slot whose id was removed, lookups go past it
+   private static final long DELETED = -1;
 
    private final SimpleString address;
 
-   // Note - deliberately typed as ArrayList since we want to ensure fast indexed
-   // based array access
-   private final ArrayList<Pair<ByteArrayHolder, Long>> ids;
+   private final int cacheSize;
+
+   // The ids on the cache, indexed by their position on the ring
+   private final AtomicReferenceArray<byte[]> ids;
+
+   // The record of each id on the journal, -1 if it isn't persisted, or the value returned by
+   // storedRecord if it is on the store. Guarded by this
+   private final long[] recordIDs;
+
+   // Replaced by a new table when there are too many deleted slots on it
+   private volatile AtomicLongArray index;
+
+   // Slots of the index which are not empty, including the deleted ones
+   private int usedSlots;
 
    private int pos;
 
-   private final int cacheSize;
+   // Number of positions of the ring which were used at least once
+   private int filled;
 
    private final StorageManager storageManager;
 
    private final boolean persist;
 
+   private final DuplicateIDStore store;
+
    public DuplicateIDCacheImpl(final SimpleString address,
                                final int size,
                                final StorageManager storageManager,
@@ -61,94 +90,74 @@ public class DuplicateIDCacheImpl implements DuplicateIDCache
    {
       this.address = address;
 
-      cacheSize = size;
+      cacheSize = Math.max(size, 1);
 
-      ids = new ArrayList<Pair<ByteArrayHolder, Long>>(size);
+      ids = new AtomicReferenceArray<byte[]>(cacheSize);
+
+      recordIDs = new long[cacheSize];
+
+      Arrays.fill(recordIDs, -1);
+
+      index = newIndex();
 
       this.storageManager = storageManager;
 
       this.persist = persist;
+
+      store = openStore();
    }
 
    public void load(final List<Pair<byte[], Long>> theIds) throws Exception
    {
-      int count = 0;
-
-      long txID = -1;
-
-      for (Pair<byte[], Long> id : theIds)
+      synchronized (this)
       {
-         if (count < cacheSize)
-         {
-            ByteArrayHolder bah = new ByteArrayHolder(id.getA());
-
-            Pair<ByteArrayHolder, Long> pair = new Pair<ByteArrayHolder, Long>(bah, id.getB());
-
-            cache.put(bah, ids.size());
+         // the ids read from the store are merged with the ones on the journal
+         List<Pair<byte[], Long>> entries = getEntries();
 
-            ids.add(pair);
-         }
-         else
+         for (Pair<byte[], Long> id : theIds)
          {
-            // cache size has been reduced in config - delete the extra records
-            if (txID == -1)
-            {
-               txID = storageManager.generateID();
-            }
-
-            storageManager.deleteDuplicateIDTransactional(txID, id.getB());
+            entries.add(new Pair<byte[], Long>(id.getA(), id.getB() == null ? -1 : id.getB()));
          }
 
-         count++;
-      }
-
-      if (txID != -1)
-      {
-         storageManager.commit(txID);
-      }
-
-      pos = ids.size();
-
-      if (pos == cacheSize)
-      {
-         pos = 0;
+         reload(entries, store);
       }
-
    }
 
 
-   public void deleteFromCache(byte[] duplicateID) throws Exception
+   public synchronized void deleteFromCache(byte[] duplicateID) throws Exception
    {
-      ByteArrayHolder bah = new ByteArrayHolder(duplicateID);
+      AtomicLongArray table = index;
 
-      Integer posUsed = cache.remove(bah);
+      int slot = find(table, duplicateID, hash(duplicateID));
 
-      if (posUsed != null)
+      if (slot >= 0)
       {
-         Pair<ByteArrayHolder, Long> id;
+         int posUsed = position(table.get(slot));
 
-         synchronized (this)
-         {
-            id = ids.get(posUsed.intValue());
+         table.set(slot, DELETED);
+         ids.set(posUsed, null);
 
-            if (id.getA().equals(bah))
-            {
-               id.setA(null);
-               storageManager.deleteDuplicateID(id.getB());
-               id.setB(null);
-            }
+         if (recordIDs[posUsed] >= 0)
+         {
+            storageManager.deleteDuplicateID(recordIDs[posUsed]);
+         }
+         else if (isStored(recordIDs[posUsed]) && store != null)
+         {
+            store.clear(posUsed);
+            store.sync(storageManager.getContext());
          }
-      }
 
+         recordIDs[posUsed] = -1;
+      }
    }
 
 
    public boolean contains(final byte[] duplID)
    {
-      return cache.get(new ByteArrayHolder(duplID)) != null;
+      return find(index, duplID, hash(duplID)) >= 0;
    }
 
-   public synchronized void addToCache(final byte[] duplID, final Transaction tx) throws Exception
+   public void addToCache(final byte[] duplID, final Transaction tx) throws Exception
    {
       long recordID = -1;
 
@@ -157,6 +166,15 @@ public class DuplicateIDCacheImpl implements DuplicateIDCache
          if (persist)
          {
             recordID = storageManager.generateID();
+
+            if (store != null && store.fits(duplID))
+            {
+               // the generated id is only used to order the ids on the store with the journal ones
+               addToCacheInMemory(duplID, storedRecord(recordID));
+               store.sync(storageManager.getContext());
+               return;
+            }
+
             storageManager.storeDuplicateID(address, duplID, recordID);
          }
 
@@ -185,54 +203,57 @@ public class DuplicateIDCacheImpl implements DuplicateIDCache
 
    private synchronized void addToCacheInMemory(final byte[] duplID, final long recordID)
    {
-      ByteArrayHolder holder = new ByteArrayHolder(duplID);
+      if ((usedSlots + 1) * 4L > index.length() * 3L)
+      {
+         rebuildIndex();
+      }
 
-      cache.put(holder, pos);
+      byte[] old = ids.get(pos);
 
-      Pair<ByteArrayHolder, Long> id;
+      long oldRecord = recordIDs[pos];
 
-      if (pos < ids.size())
+      // The id here might be null if it was explicit deleted
+      if (old != null)
       {
-         // Need fast array style access here -hence ArrayList typing
-         id = ids.get(pos);
-
-         // The id here might be null if it was explicit deleted
-         if (id.getA() != null)
-         {
-            cache.remove(id.getA());
+         removeFromIndex(old, pos);
 
-            // Record already exists - we delete the old one and add the new one
-            // Note we can't use update since journal update doesn't let older records get
-            // reclaimed
+         // Record already exists - we delete the old one and add the new one
+         // Note we can't use update since journal update doesn't let older records get
+         // reclaimed
 
-            if (id.getB() != null)
+         if (oldRecord >= 0)
+         {
+            try
             {
-               try
-               {
-                  storageManager.deleteDuplicateID(id.getB());
-               }
-               catch (Exception e)
-               {
-                  HornetQServerLogger.LOGGER.errorDeletingDuplicateCache(e);
-               }
+               storageManager.deleteDuplicateID(oldRecord);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.errorDeletingDuplicateCache(e);
             }
          }
+      }
 
-         id.setA(holder);
+      ids.set(pos, duplID);
 
-         // The recordID could be negative if the duplicateCache is configured to not persist,
-         // -1 would mean null on this case
-         id.setB(recordID >= 0 ? recordID : null);
+      // The recordID could be negative if the duplicateCache is configured to not persist,
+      // -1 would mean null on this case
+      recordIDs[pos] = recordID;
 
-         holder.pos = pos;
+      if (isStored(recordID))
+      {
+         store.write(pos, duplID, sequence(recordID));
       }
-      else
+      else if (isStored(oldRecord) && store != null)
       {
-         id = new Pair<ByteArrayHolder, Long>(holder, recordID >= 0 ? recordID : null);
+         store.clear(pos);
+      }
 
-         ids.add(id);
+      addToIndex(index, hash(duplID), pos);
 
-         holder.pos = pos;
+      if (filled < cacheSize)
+      {
+         filled++;
       }
 
       if (pos++ == cacheSize - 1)
@@ -245,123 +266,351 @@ public class DuplicateIDCacheImpl implements DuplicateIDCache
    {
       synchronized (this)
       {
-         if (ids.size() > 0)
+         long tx = -1;
+         boolean stored = false;
+         for (int i = 0; i < filled; i++)
          {
-            long tx = storageManager.generateID();
-            for (Pair<ByteArrayHolder, Long> id : ids)
+            if (ids.get(i) != null && recordIDs[i] >= 0)
             {
-               storageManager.deleteDuplicateIDTransactional(tx, id.getB());
+               if (tx == -1)
+               {
+                  tx = storageManager.generateID();
+               }
+               storageManager.deleteDuplicateIDTransactional(tx, recordIDs[i]);
             }
+            else if (ids.get(i) != null && isStored(recordIDs[i]) && store != null)
+            {
+               store.clear(i);
+               stored = true;
+            }
+            ids.set(i, null);
+            recordIDs[i] = -1;
+         }
+         if (tx != -1)
+         {
             storageManager.commit(tx);
          }
+         if (stored)
+         {
+            store.sync(storageManager.getContext());
+         }
 
-         ids.clear();
-         cache.clear();
+         index = newIndex();
+         usedSlots = 0;
+         filled = 0;
          pos = 0;
       }
    }
 
    @Override
-   public List<Pair<byte[], Long>> getMap()
+   public synchronized List<Pair<byte[], Long>> getMap()
    {
-      List<Pair<byte[], Long>> list = new ArrayList<>();
-      for (Pair<ByteArrayHolder, Long> id : ids)
+      List<Pair<byte[], Long>> list = getEntries();
+      for (Pair<byte[], Long> id : list)
       {
-         list.add(new Pair<>(id.getA().bytes, id.getB()));
+         id.setB(id.getB() >= 0 ? id.getB() : null);
       }
       return list;
    }
 
-   private final class AddDuplicateIDOperation extends TransactionOperationAbstract
+   /**
+    * @return the ids on the cache with their records, from the oldest to the newest, so loading
+    * them keeps the order the ids are replaced in
+    */
+   private List<Pair<byte[], Long>> getEntries()
    {
-      final byte[] duplID;
+      List<Pair<byte[], Long>> list = new ArrayList<>(filled);
+      int first = filled < cacheSize ? 0 : pos;
+      for (int i = 0; i < filled; i++)
+      {
+         int position = (first + i) % cacheSize;
+         byte[] id = ids.get(position);
+         if (id != null)
+         {
+            list.add(new Pair<>(id, recordIDs[position]));
+         }
+      }
+      return list;
+   }
 
-      final long recordID;
+   private DuplicateIDStore openStore()
+   {
+      if (!persist)
+      {
+         return null;
+      }
 
-      volatile boolean done;
+      DuplicateIDStore idStore = null;
 
-      AddDuplicateIDOperation(final byte[] duplID, final long recordID)
+      try
       {
-         this.duplID = duplID;
-         this.recordID = recordID;
+         idStore = storageManager.getDuplicateIDStore(address, cacheSize);
+
+         if (idStore != null)
+         {
+            List<Pair<byte[], Long>> entries = new ArrayList<Pair<byte[], Long>>();
+            for (Pair<byte[], Long> id : idStore.load())
+            {
+               entries.add(new Pair<byte[], Long>(id.getA(), storedRecord(id.getB())));
+            }
+            reload(entries, idStore);
+         }
+
+         return idStore;
+      }
+      catch (Exception e)
+      {
+         HornetQServerLogger.LOGGER.errorOpeningDuplicateIDStore(e, address);
+         return null;
       }
+   }
 
-      private void process()
+   /**
+    * Replaces the ids on the cache by the newest ones on the list, and the content of the store by
+    * the ids which are kept on it. The list has the ids with their records.
+    */
+   private void reload(final List<Pair<byte[], Long>> entries, final DuplicateIDStore targetStore) throws Exception
+   {
+      Collections.sort(entries, new Comparator<Pair<byte[], Long>>()
       {
-         if (!done)
+         public int compare(final Pair<byte[], Long> id1, final Pair<byte[], Long> id2)
          {
-            addToCacheInMemory(duplID, recordID);
+            return Long.compare(age(id1.getB()), age(id2.getB()));
+         }
+      });
 
-            done = true;
+      int first = Math.max(0, entries.size() - cacheSize);
+
+      long txID = -1;
+
+      for (int i = 0; i < first; i++)
+      {
+         // cache size has been reduced in config - delete the extra records
+         if (entries.get(i).getB() >= 0)
+         {
+            if (txID == -1)
+            {
+               txID = storageManager.generateID();
+            }
+
+            storageManager.deleteDuplicateIDTransactional(txID, entries.get(i).getB());
          }
       }
 
-      @Override
-      public void afterCommit(final Transaction tx)
+      for (int i = 0; i < cacheSize; i++)
       {
-         process();
+         ids.set(i, null);
+         recordIDs[i] = -1;
       }
 
-      @Override
-      public List<MessageReference> getRelatedMessageReferences()
+      AtomicLongArray table = newIndex();
+      usedSlots = 0;
+      filled = 0;
+
+      List<Pair<byte[], Long>> slots = new ArrayList<Pair<byte[], Long>>(entries.size() - first);
+
+      for (int i = first; i < entries.size(); i++)
       {
-         return null;
+         Pair<byte[], Long> entry = entries.get(i);
+         ids.set(filled, entry.getA());
+         recordIDs[filled] = entry.getB();
+         addToIndex(table, hash(entry.getA()), filled);
+         slots.add(isStored(entry.getB()) ? new Pair<byte[], Long>(entry.getA(), sequence(entry.getB())) : null);
+         filled++;
+      }
+
+      index = table;
+      pos = filled == cacheSize ? 0 : filled;
+
+      if (targetStore != null)
+      {
+         targetStore.reset(slots);
+      }
+
+      if (txID != -1)
+      {
+         storageManager.commit(txID);
       }
    }
 
-   private static final class ByteArrayHolder
+   /**
+    * @return the slot of the index where the id is, or -1 if it isn't on the cache
+    */
+   private int find(final AtomicLongArray table, final byte[] duplID, final int hash)
    {
-      ByteArrayHolder(final byte[] bytes)
+      int mask = table.length() - 1;
+
+      int slot = hash & mask;
+
+      for (int probes = 0; probes <= mask; probes++)
       {
-         this.bytes = bytes;
+         long entry = table.get(slot);
+
+         if (entry == EMPTY)
+         {
+            return -1;
+         }
+
+         // the id is read after the slot, so it can only be a newer id on that position
+         if (entry != DELETED && (int) (entry >>> 32) == hash && Arrays.equals(ids.get(position(entry)), duplID))
+         {
+            return slot;
+         }
+
+         slot = (slot + 1) & mask;
       }
 
-      final byte[] bytes;
+      return -1;
+   }
 
-      int hash;
+   private void addToIndex(final AtomicLongArray table, final int hash, final int position)
+   {
+      int mask = table.length() - 1;
 
-      int pos;
+      int slot = hash & mask;
 
-      @Override
-      public boolean equals(final Object other)
+      while (true)
       {
-         if (other instanceof ByteArrayHolder)
+         long entry = table.get(slot);
+
+         if (entry == EMPTY)
          {
-            ByteArrayHolder s = (ByteArrayHolder) other;
+            usedSlots++;
+            break;
+         }
 
-            if (bytes.length != s.bytes.length)
-            {
-               return false;
-            }
+         if (entry == DELETED)
+         {
+            break;
+         }
 
-            for (int i = 0; i < bytes.length; i++)
-            {
-               if (bytes[i] != s.bytes[i])
-               {
-                  return false;
-               }
-            }
+         slot = (slot + 1) & mask;
+      }
+
+      table.set(slot, ((long) hash << 32) | (position + 1));
+   }
+
+   private void removeFromIndex(final byte[] duplID, final int position)
+   {
+      AtomicLongArray table = index;
 
-            return true;
+      int mask = table.length() - 1;
+
+      int slot = hash(duplID) & mask;
+
+      for (int probes = 0; probes <= mask; probes++)
+      {
+         long entry = table.get(slot);
+
+         if (entry == EMPTY)
+         {
+            return;
          }
-         else
+
+         if (entry != DELETED && position(entry) == position)
          {
-            return false;
+            table.set(slot, DELETED);
+            return;
          }
+
+         slot = (slot + 1) & mask;
       }
+   }
 
-      @Override
-      public int hashCode()
+   /**
+    * Replaces the index by one without deleted slots. Lookups running on the old index still get
+    * right answers, as the ids are always checked against the ring.
+    */
+   private void rebuildIndex()
+   {
+      AtomicLongArray table = newIndex();
+      usedSlots = 0;
+
+      for (int i = 0; i < filled; i++)
       {
-         if (hash == 0)
+         byte[] id = ids.get(i);
+         if (id != null)
          {
-            for (byte b : bytes)
-            {
-               hash = 31 * hash + b;
-            }
+            addToIndex(table, hash(id), i);
          }
+      }
 
-         return hash;
+      index = table;
+   }
+
+   // at most half full with the whole ring on it
+   private AtomicLongArray newIndex()
+   {
+      return new AtomicLongArray(Integer.highestOneBit(Math.max(cacheSize, 8) - 1) << 2);
+   }
+
+   // the records of the ids kept on the store, which are not on the journal
+   private static long storedRecord(final long sequence)
+   {
+      return -2 - sequence;
+   }
+
+   private static boolean isStored(final long record)
+   {
+      return record < -1;
+   }
+
+   private static long sequence(final long record)
+   {
+      return -2 - record;
+   }
+
+   // journal records and store sequences both come from the ID generator
+   private static long age(final long record)
+   {
+      return isStored(record) ? sequence(record) : record;
+   }
+
+   private static int position(final long entry)
+   {
+      return (int) entry - 1;
+   }
+
+   private static int hash(final byte[] duplID)
+   {
+      int hash = Arrays.hashCode(duplID);
+      return hash ^ (hash >>> 16);
+   }
+
+   private final class AddDuplicateIDOperation extends TransactionOperationAbstract
+   {
+      final byte[] duplID;
+
+      final long recordID;
+
+      volatile boolean done;
+
+      AddDuplicateIDOperation(final byte[] duplID, final long recordID)
+      {
+         this.duplID = duplID;
+         this.recordID = recordID;
+      }
+
+      private void process()
+      {
+         if (!done)
+         {
+            addToCacheInMemory(duplID, recordID);
+
+            done = true;
+         }
+      }
+
+      @Override
+      public void afterCommit(final Transaction tx)
+      {
+         process();
+      }
+
+      @Override
+      public List<MessageReference> getRelatedMessageReferences()
+      {
+         return null;
       }
    }
 }
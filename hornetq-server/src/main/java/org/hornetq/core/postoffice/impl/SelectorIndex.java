@@ -0,0 +1,203 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * An immutable inverted index of the routing names of an address, keyed by the (property, value)
+ * pairs their filters require (see {@link FilterImpl#getRequiredProperty()}).
+ * <p>
+ * Only routing names with a single binding are indexed, which is the usual case for topic
+ * subscriptions: when a routing name load balances between several bindings each of them may
+ * have a different filter. Candidates returned by the index still have to be matched against
+ * their filter, the index only discards routing names that can't match.
+ * <p>
+ * The index is a snapshot of the bindings at the given {@link #getVersion() version}, it is
+ * rebuilt by {@link BindingsImpl} after bindings are added or removed.
+ */
+final class SelectorIndex
+{
+   private static final SimpleString[] EMPTY = new SimpleString[0];
+
+   private final long version;
+
+   /**
+    * Routing names that are not indexed and have to be evaluated for every message
+    */
+   private final SimpleString[] unindexed;
+
+   /**
+    * property -> value -> routing names requiring that value
+    */
+   private final Map<SimpleString, Map<SimpleString, SimpleString[]>> indexed;
+
+   /**
+    * property -> all the routing names indexed on it, for messages whose property is not a string
+    */
+   private final Map<SimpleString, SimpleString[]> byProperty;
+
+   private SelectorIndex(final long version,
+                         final SimpleString[] unindexed,
+                         final Map<SimpleString, Map<SimpleString, SimpleString[]>> indexed,
+                         final Map<SimpleString, SimpleString[]> byProperty)
+   {
+      this.version = version;
+      this.unindexed = unindexed;
+      this.indexed = indexed;
+      this.byProperty = byProperty;
+   }
+
+   /**
+    * @return the index or {@code null} if no routing name can be indexed
+    */
+   static SelectorIndex build(final long version, final Map<SimpleString, List<Binding>> routingNameBindingMap)
+   {
+      List<SimpleString> unindexed = new ArrayList<SimpleString>();
+      Map<SimpleString, Map<SimpleString, List<SimpleString>>> indexed = new HashMap<SimpleString, Map<SimpleString, List<SimpleString>>>();
+      Map<SimpleString, List<SimpleString>> byProperty = new HashMap<SimpleString, List<SimpleString>>();
+
+      for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
+      {
+         SimpleString routingName = entry.getKey();
+         Pair<SimpleString, Set<SimpleString>> required = getRequiredProperty(entry.getValue());
+         if (required == null)
+         {
+            unindexed.add(routingName);
+            continue;
+         }
+
+         Map<SimpleString, List<SimpleString>> values = indexed.get(required.getA());
+         if (values == null)
+         {
+            values = new HashMap<SimpleString, List<SimpleString>>();
+            indexed.put(required.getA(), values);
+            byProperty.put(required.getA(), new ArrayList<SimpleString>());
+         }
+         for (SimpleString value : required.getB())
+         {
+            List<SimpleString> names = values.get(value);
+            if (names == null)
+            {
+               names = new ArrayList<SimpleString>();
+               values.put(value, names);
+            }
+            names.add(routingName);
+         }
+         byProperty.get(required.getA()).add(routingName);
+      }
+
+      if (indexed.isEmpty())
+      {
+         return null;
+      }
+
+      Map<SimpleString, Map<SimpleString, SimpleString[]>> indexedArrays = new HashMap<SimpleString, Map<SimpleString, SimpleString[]>>();
+      for (Map.Entry<SimpleString, Map<SimpleString, List<SimpleString>>> entry : indexed.entrySet())
+      {
+         Map<SimpleString, SimpleString[]> values = new HashMap<SimpleString, SimpleString[]>();
+         for (Map.Entry<SimpleString, List<SimpleString>> valueEntry : entry.getValue().entrySet())
+         {
+            values.put(valueEntry.getKey(), toArray(valueEntry.getValue()));
+         }
+         indexedArrays.put(entry.getKey(), values);
+      }
+
+      Map<SimpleString, SimpleString[]> byPropertyArrays = new HashMap<SimpleString, SimpleString[]>();
+      for (Map.Entry<SimpleString, List<SimpleString>> entry : byProperty.entrySet())
+      {
+         byPropertyArrays.put(entry.getKey(), toArray(entry.getValue()));
+      }
+
+      return new SelectorIndex(version, toArray(unindexed), indexedArrays, byPropertyArrays);
+   }
+
+   long getVersion()
+   {
+      return version;
+   }
+
+   SimpleString[] getUnindexed()
+   {
+      return unindexed;
+   }
+
+   Set<SimpleString> getIndexedProperties()
+   {
+      return indexed.keySet();
+   }
+
+   /**
+    * @return the routing names indexed on {@code property} whose filter may match the message
+    */
+   SimpleString[] getCandidates(final SimpleString property, final ServerMessage message)
+   {
+      Object value = message.getObjectProperty(property);
+      if (value == null)
+      {
+         return EMPTY;
+      }
+      else if (value instanceof SimpleString)
+      {
+         SimpleString[] names = indexed.get(property).get(value);
+         return names == null ? EMPTY : names;
+      }
+      else
+      {
+         // the filters may convert other types, let them decide
+         return byProperty.get(property);
+      }
+   }
+
+   private static Pair<SimpleString, Set<SimpleString>> getRequiredProperty(final List<Binding> bindings)
+   {
+      if (bindings.size() != 1)
+      {
+         return null;
+      }
+
+      Binding binding;
+      try
+      {
+         binding = bindings.get(0);
+      }
+      catch (IndexOutOfBoundsException e)
+      {
+         // removed concurrently
+         return null;
+      }
+
+      Filter filter = binding.getFilter();
+      if (filter instanceof FilterImpl)
+      {
+         return ((FilterImpl) filter).getRequiredProperty();
+      }
+      return null;
+   }
+
+   private static SimpleString[] toArray(final List<SimpleString> list)
+   {
+      return list.toArray(new SimpleString[list.size()]);
+   }
+}
@@ -22,6 +22,7 @@ import static org.hornetq.core.protocol.core.impl.PacketImpl.QUORUM_VOTE;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.QUORUM_VOTE_REPLY;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_APPEND;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_APPEND_TX;
+import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_BATCH;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_COMMIT_ROLLBACK;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_DELETE;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_DELETE_TX;
@@ -51,6 +52,10 @@ import org.hornetq.core.protocol.core.impl.wireformat.QuorumVoteReplyMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationLiveIsStoppingMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncDigestMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncDigestResponseMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncReuseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -127,6 +132,11 @@ public class ServerPacketDecoder extends ClientPacketDecoder
             packet = new ReplicationCommitMessage();
             break;
          }
+         case REPLICATION_BATCH:
+         {
+            packet = new ReplicationBatchMessage();
+            break;
+         }
          case REPLICATION_RESPONSE:
          {
             packet = new ReplicationResponseMessage();
@@ -177,6 +187,21 @@ public class ServerPacketDecoder extends ClientPacketDecoder
             packet = new ReplicationSyncFileMessage();
             break;
          }
+         case PacketImpl.REPLICATION_SYNC_DIGEST:
+         {
+            packet = new ReplicationSyncDigestMessage();
+            break;
+         }
+         case PacketImpl.REPLICATION_SYNC_DIGEST_RESPONSE:
+         {
+            packet = new ReplicationSyncDigestResponseMessage();
+            break;
+         }
+         case PacketImpl.REPLICATION_SYNC_REUSE:
+         {
+            packet = new ReplicationSyncReuseMessage();
+            break;
+         }
          case PacketImpl.REPLICATION_SCHEDULED_FAILOVER:
          {
             packet = new ReplicationLiveIsStoppingMessage();
@@ -12,6 +12,9 @@
  */
 package org.hornetq.core.protocol.core.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.Packet;
@@ -22,6 +25,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveContinuation
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveLargeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
 import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.ServerConsumer;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.spi.core.protocol.ProtocolManager;
@@ -82,6 +86,23 @@ public final class CoreSessionCallback implements SessionCallback
       return size;
    }
 
+   public int sendMessages(List<MessageReference> references, ServerConsumer consumer)
+   {
+      List<Packet> packets = new ArrayList<Packet>(references.size());
+
+      for (MessageReference reference : references)
+      {
+         packets.add(new SessionReceiveMessage(consumer.getID(), reference.getMessage(), reference.getDeliveryCount()));
+      }
+
+      // one write for all of them, either they are all sent or none is
+      int size = channel.send(packets);
+
+      references.clear();
+
+      return size;
+   }
+
    public void sendProducerCreditsMessage(int credits, SimpleString address)
    {
       Packet packet = new SessionProducerCreditsMessage(credits, address);
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Carries several journal records to the backup in a single packet, which is confirmed by a single
+ * {@link ReplicationResponseMessage}.
+ * <p/>
+ * The records are encoded as they are added, in the thread replicating them, so the data they
+ * point to may change once {@link #addRecord(PacketImpl)} returns.
+ */
+public final class ReplicationBatchMessage extends PacketImpl
+{
+   private static final int INITIAL_BATCH_SIZE = 1500;
+
+   private int recordCount;
+
+   /** records encoded on the live, each one prefixed by its packet type */
+   private HornetQBuffer recordsBuffer;
+
+   /** records decoded on the backup */
+   private List<PacketImpl> records;
+
+   public ReplicationBatchMessage()
+   {
+      super(PacketImpl.REPLICATION_BATCH);
+   }
+
+   /**
+    * Encodes a journal record at the end of the batch.
+    *
+    * @param record one of the journal replication messages
+    */
+   public void addRecord(final PacketImpl record)
+   {
+      if (recordsBuffer == null)
+      {
+         recordsBuffer = HornetQBuffers.dynamicBuffer(INITIAL_BATCH_SIZE);
+      }
+      recordsBuffer.writeByte(record.getType());
+      record.encodeRest(recordsBuffer);
+      recordCount++;
+   }
+
+   public int getRecordCount()
+   {
+      return recordCount;
+   }
+
+   /**
+    * @return the number of bytes of the records added so far
+    */
+   public int getRecordsSize()
+   {
+      return recordsBuffer == null ? 0 : recordsBuffer.writerIndex();
+   }
+
+   /**
+    * @return the records decoded from the batch, in the order they were added on the live
+    */
+   public List<PacketImpl> getRecords()
+   {
+      return records;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(recordCount);
+      if (recordsBuffer != null)
+      {
+         buffer.writeBytes(recordsBuffer, 0, recordsBuffer.writerIndex());
+      }
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      recordCount = buffer.readInt();
+      records = new ArrayList<PacketImpl>(recordCount);
+      for (int i = 0; i < recordCount; i++)
+      {
+         PacketImpl record = newRecord(buffer.readByte());
+         record.decodeRest(buffer);
+         records.add(record);
+      }
+   }
+
+   private static PacketImpl newRecord(final byte type)
+   {
+      switch (type)
+      {
+         case REPLICATION_APPEND:
+            return new ReplicationAddMessage();
+         case REPLICATION_APPEND_TX:
+            return new ReplicationAddTXMessage();
+         case REPLICATION_DELETE:
+            return new ReplicationDeleteMessage();
+         case REPLICATION_DELETE_TX:
+            return new ReplicationDeleteTXMessage();
+         case REPLICATION_PREPARE:
+            return new ReplicationPrepareMessage();
+         case REPLICATION_COMMIT_ROLLBACK:
+            return new ReplicationCommitMessage();
+         default:
+            throw new IllegalArgumentException("Invalid record type on a replication batch: " + type);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", recordCount=" + recordCount + "]";
+   }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Asks the backup which of the given page or large message files it kept from a previous
+ * synchronization. The backup answers with a {@link ReplicationSyncDigestResponseMessage}.
+ */
+public final class ReplicationSyncDigestMessage extends PacketImpl
+{
+   /**
+    * The page store of the files, or {@code null} for large messages.
+    */
+   private SimpleString pageStoreName;
+
+   private long[] fileIds;
+
+   public ReplicationSyncDigestMessage()
+   {
+      super(REPLICATION_SYNC_DIGEST);
+   }
+
+   public ReplicationSyncDigestMessage(final SimpleString pageStoreName, final long[] fileIds)
+   {
+      this();
+      this.pageStoreName = pageStoreName;
+      this.fileIds = fileIds;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeNullableSimpleString(pageStoreName);
+      buffer.writeInt(fileIds.length);
+      for (long id : fileIds)
+      {
+         buffer.writeLong(id);
+      }
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      pageStoreName = buffer.readNullableSimpleString();
+      fileIds = new long[buffer.readInt()];
+      for (int i = 0; i < fileIds.length; i++)
+      {
+         fileIds[i] = buffer.readLong();
+      }
+   }
+
+   public SimpleString getPageStore()
+   {
+      return pageStoreName;
+   }
+
+   public long[] getFileIds()
+   {
+      return fileIds;
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", pageStore=" + pageStoreName + ", files=" + fileIds.length + "]";
+   }
+}
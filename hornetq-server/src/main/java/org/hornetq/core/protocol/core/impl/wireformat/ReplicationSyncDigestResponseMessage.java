@@ -0,0 +1,95 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * The files the backup kept from a previous synchronization, with their size and digest, in
+ * answer to a {@link ReplicationSyncDigestMessage}.
+ * <p/>
+ * It takes the place of the {@link ReplicationResponseMessage} of the digest, so it goes to the
+ * channel handler of the live like any other replication response.
+ */
+public final class ReplicationSyncDigestResponseMessage extends PacketImpl
+{
+   private long[] fileIds;
+
+   private long[] sizes;
+
+   private byte[][] digests;
+
+   public ReplicationSyncDigestResponseMessage()
+   {
+      super(REPLICATION_SYNC_DIGEST_RESPONSE);
+   }
+
+   public ReplicationSyncDigestResponseMessage(final long[] fileIds, final long[] sizes, final byte[][] digests)
+   {
+      this();
+      this.fileIds = fileIds;
+      this.sizes = sizes;
+      this.digests = digests;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(fileIds.length);
+      for (int i = 0; i < fileIds.length; i++)
+      {
+         buffer.writeLong(fileIds[i]);
+         buffer.writeLong(sizes[i]);
+         buffer.writeInt(digests[i].length);
+         buffer.writeBytes(digests[i]);
+      }
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      int count = buffer.readInt();
+      fileIds = new long[count];
+      sizes = new long[count];
+      digests = new byte[count][];
+      for (int i = 0; i < count; i++)
+      {
+         fileIds[i] = buffer.readLong();
+         sizes[i] = buffer.readLong();
+         digests[i] = new byte[buffer.readInt()];
+         buffer.readBytes(digests[i]);
+      }
+   }
+
+   public long[] getFileIds()
+   {
+      return fileIds;
+   }
+
+   public long[] getSizes()
+   {
+      return sizes;
+   }
+
+   public byte[][] getDigests()
+   {
+      return digests;
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", files=" + fileIds.length + "]";
+   }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Tells the backup to take the first bytes of some page or large message files from the copies it
+ * kept from a previous synchronization. The rest of each file follows as
+ * {@link ReplicationSyncFileMessage}s.
+ */
+public final class ReplicationSyncReuseMessage extends PacketImpl
+{
+   /**
+    * The page store of the files, or {@code null} for large messages.
+    */
+   private SimpleString pageStoreName;
+
+   private long[] fileIds;
+
+   private long[] sizes;
+
+   public ReplicationSyncReuseMessage()
+   {
+      super(REPLICATION_SYNC_REUSE);
+   }
+
+   public ReplicationSyncReuseMessage(final SimpleString pageStoreName, final long[] fileIds, final long[] sizes)
+   {
+      this();
+      this.pageStoreName = pageStoreName;
+      this.fileIds = fileIds;
+      this.sizes = sizes;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeNullableSimpleString(pageStoreName);
+      buffer.writeInt(fileIds.length);
+      for (int i = 0; i < fileIds.length; i++)
+      {
+         buffer.writeLong(fileIds[i]);
+         buffer.writeLong(sizes[i]);
+      }
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      pageStoreName = buffer.readNullableSimpleString();
+      int count = buffer.readInt();
+      fileIds = new long[count];
+      sizes = new long[count];
+      for (int i = 0; i < count; i++)
+      {
+         fileIds[i] = buffer.readLong();
+         sizes[i] = buffer.readLong();
+      }
+   }
+
+   public SimpleString getPageStore()
+   {
+      return pageStoreName;
+   }
+
+   public long[] getFileIds()
+   {
+      return fileIds;
+   }
+
+   public long[] getSizes()
+   {
+      return sizes;
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", pageStore=" + pageStoreName + ", files=" + fileIds.length + "]";
+   }
+}
@@ -13,6 +13,7 @@
 package org.hornetq.core.remoting.impl.invm;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -158,6 +159,15 @@ public class InVMConnection implements Connection
       write(buffer, false, false, null);
    }
 
+   public void write(final List<HornetQBuffer> buffers)
+   {
+      // the handler on the other side reads one packet per buffer
+      for (HornetQBuffer buffer : buffers)
+      {
+         write(buffer, false, false, null);
+      }
+   }
+
    public void write(final HornetQBuffer buffer, final boolean flush, final boolean batch)
    {
       write(buffer, flush, batch, null);
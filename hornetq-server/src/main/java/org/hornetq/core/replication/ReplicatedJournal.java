@@ -545,6 +545,24 @@ public class ReplicatedJournal implements Journal
       localJournal.scheduleCompactAndBlock(timeout);
    }
 
+   @Override
+   public long getCompactedBytes()
+   {
+      return localJournal.getCompactedBytes();
+   }
+
+   @Override
+   public long getCompactStallTime()
+   {
+      return localJournal.getCompactStallTime();
+   }
+
+   @Override
+   public long getMaxCompactStallTime()
+   {
+      return localJournal.getMaxCompactStallTime();
+   }
+
    @Override
    public void replicationSyncPreserveOldFiles()
    {
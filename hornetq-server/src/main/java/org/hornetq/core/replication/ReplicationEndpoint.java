@@ -12,13 +12,18 @@
  */
 package org.hornetq.core.replication;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -53,6 +58,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -66,11 +72,15 @@ import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPrepareMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage.SyncDataType;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncDigestMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncDigestResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncReuseMessage;
 import org.hornetq.core.replication.ReplicationManager.ADD_OPERATION_TYPE;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.JournalType;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.cluster.qourum.SharedNothingBackupQuorum;
 import org.hornetq.core.server.impl.HornetQServerImpl;
@@ -117,6 +127,18 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
    private final ConcurrentMap<Long, ReplicatedLargeMessage> largeMessages =
       new ConcurrentHashMap<Long, ReplicatedLargeMessage>();
 
+   /**
+    * Where the data of a previous synchronization was moved to, {@code null} if there was none.
+    */
+   private File previousPagingDirectory;
+
+   private File previousLargeMessagesDirectory;
+
+   /**
+    * Page store directories of the previous synchronization, by address. Read on the first digest.
+    */
+   private Map<SimpleString, File> previousPageStores;
+
    // Used on tests, to simulate failures on delete pages
    private boolean deletePages = true;
    private volatile boolean started;
@@ -137,6 +159,20 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
 
    // Public --------------------------------------------------------
 
+   /**
+    * Sets where the data this backup had before it started was moved to. Page and large message
+    * files found there are offered to the live, which only sends what they are missing.
+    *
+    * @param pagingDirectory
+    * @param largeMessagesDirectory
+    */
+   public synchronized void setPreviousDataDirectories(final File pagingDirectory, final File largeMessagesDirectory)
+   {
+      this.previousPagingDirectory = pagingDirectory;
+      this.previousLargeMessagesDirectory = largeMessagesDirectory;
+      this.previousPageStores = null;
+   }
+
    public synchronized void registerJournal(final byte id, final Journal journal)
    {
       if (journals == null || id >= journals.length)
@@ -169,29 +205,13 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
             return;
          }
 
-         if (type == PacketImpl.REPLICATION_APPEND)
-         {
-            handleAppendAddRecord((ReplicationAddMessage) packet);
-         }
-         else if (type == PacketImpl.REPLICATION_APPEND_TX)
-         {
-            handleAppendAddTXRecord((ReplicationAddTXMessage) packet);
-         }
-         else if (type == PacketImpl.REPLICATION_DELETE)
-         {
-            handleAppendDelete((ReplicationDeleteMessage) packet);
-         }
-         else if (type == PacketImpl.REPLICATION_DELETE_TX)
+         if (type == PacketImpl.REPLICATION_BATCH)
          {
-            handleAppendDeleteTX((ReplicationDeleteTXMessage) packet);
+            handleBatch((ReplicationBatchMessage) packet);
          }
-         else if (type == PacketImpl.REPLICATION_PREPARE)
+         else if (isJournalRecord(type))
          {
-            handlePrepare((ReplicationPrepareMessage) packet);
-         }
-         else if (type == PacketImpl.REPLICATION_COMMIT_ROLLBACK)
-         {
-            handleCommitRollback((ReplicationCommitMessage) packet);
+            handleJournalRecord(packet);
          }
          else if (type == PacketImpl.REPLICATION_PAGE_WRITE)
          {
@@ -221,6 +241,14 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
          {
             handleReplicationSynchronization((ReplicationSyncFileMessage) packet);
          }
+         else if (type == PacketImpl.REPLICATION_SYNC_DIGEST)
+         {
+            response = handleSyncDigest((ReplicationSyncDigestMessage) packet);
+         }
+         else if (type == PacketImpl.REPLICATION_SYNC_REUSE)
+         {
+            handleSyncReuse((ReplicationSyncReuseMessage) packet);
+         }
          else if (type == PacketImpl.REPLICATION_SCHEDULED_FAILOVER)
          {
             handleLiveStopping((ReplicationLiveIsStoppingMessage) packet);
@@ -248,6 +276,57 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       channel.send(response);
    }
 
+   private static boolean isJournalRecord(final byte type)
+   {
+      return type == PacketImpl.REPLICATION_APPEND || type == PacketImpl.REPLICATION_APPEND_TX ||
+         type == PacketImpl.REPLICATION_DELETE || type == PacketImpl.REPLICATION_DELETE_TX ||
+         type == PacketImpl.REPLICATION_PREPARE || type == PacketImpl.REPLICATION_COMMIT_ROLLBACK;
+   }
+
+   /**
+    * Applies the journal records of a batch in the order they were replicated. The whole batch is
+    * confirmed to the live by the single response sent from {@link #handlePacket(Packet)}.
+    *
+    * @param packet
+    * @throws Exception
+    */
+   private void handleBatch(final ReplicationBatchMessage packet) throws Exception
+   {
+      for (PacketImpl record : packet.getRecords())
+      {
+         handleJournalRecord(record);
+      }
+   }
+
+   private void handleJournalRecord(final Packet packet) throws Exception
+   {
+      final byte type = packet.getType();
+      if (type == PacketImpl.REPLICATION_APPEND)
+      {
+         handleAppendAddRecord((ReplicationAddMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_APPEND_TX)
+      {
+         handleAppendAddTXRecord((ReplicationAddTXMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_DELETE)
+      {
+         handleAppendDelete((ReplicationDeleteMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_DELETE_TX)
+      {
+         handleAppendDeleteTX((ReplicationDeleteTXMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_PREPARE)
+      {
+         handlePrepare((ReplicationPrepareMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_COMMIT_ROLLBACK)
+      {
+         handleCommitRollback((ReplicationCommitMessage) packet);
+      }
+   }
+
    /**
     * @param packet
     */
@@ -296,7 +375,8 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                                                             config.getJournalBufferSize_NIO(),
                                                             server.getScheduledPool(),
                                                             server.getExecutorFactory(),
-                                                            config.isJournalSyncNonTransactional(), criticalErrorListener),
+                                                            config.isJournalSyncNonTransactional(), criticalErrorListener,
+                                                            config.getJournalType() == JournalType.MAPPED),
                                   server.getAddressSettingsRepository());
 
          pageManager.start();
@@ -504,14 +584,12 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       {
          case LARGE_MESSAGE:
          {
-            ReplicatedLargeMessage largeMessage = lookupLargeMessage(id, false);
-            if (!(largeMessage instanceof LargeServerMessageInSync))
+            channel1 = getLargeMessageSyncFile(id);
+            if (channel1 == null)
             {
                HornetQServerLogger.LOGGER.largeMessageIncompatible();
                return;
             }
-            LargeServerMessageInSync largeMessageInSync = (LargeServerMessageInSync) largeMessage;
-            channel1 = largeMessageInSync.getSyncFile();
             break;
          }
          case PAGE:
@@ -549,6 +627,191 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       channel1.writeDirect(ByteBuffer.wrap(data), true);
    }
 
+   /**
+    * @return the file a large message is synchronized into, or {@code null} if the message is not
+    * being synchronized
+    */
+   private SequentialFile getLargeMessageSyncFile(final long id) throws Exception
+   {
+      ReplicatedLargeMessage largeMessage = lookupLargeMessage(id, false);
+      if (!(largeMessage instanceof LargeServerMessageInSync))
+      {
+         return null;
+      }
+      return ((LargeServerMessageInSync) largeMessage).getSyncFile();
+   }
+
+   /**
+    * @param pageStore the page store of the file, or {@code null} for a large message
+    * @return the file being synchronized, or {@code null} if there is none
+    */
+   private SequentialFile getSyncFile(final SimpleString pageStore, final long id) throws Exception
+   {
+      if (pageStore == null)
+      {
+         return getLargeMessageSyncFile(id);
+      }
+      return getPage(pageStore, (int) id).getFile();
+   }
+
+   /**
+    * @return the copy of a file kept from the previous synchronization, or {@code null}
+    */
+   private File getPreviousFile(final SimpleString pageStore, final SequentialFile syncFile) throws Exception
+   {
+      File directory;
+      if (pageStore == null)
+      {
+         directory = previousLargeMessagesDirectory;
+      }
+      else
+      {
+         directory = getPreviousPageStores().get(pageStore);
+      }
+      if (directory == null)
+      {
+         return null;
+      }
+      File file = new File(directory, syncFile.getFileName());
+      return file.isFile() ? file : null;
+   }
+
+   private Map<SimpleString, File> getPreviousPageStores() throws IOException
+   {
+      if (previousPageStores == null)
+      {
+         previousPageStores = new HashMap<SimpleString, File>();
+         File[] storeDirectories = previousPagingDirectory == null ? null : previousPagingDirectory.listFiles();
+         if (storeDirectories != null)
+         {
+            for (File storeDirectory : storeDirectories)
+            {
+               File addressFile = new File(storeDirectory, PagingStoreFactoryNIO.ADDRESS_FILE);
+               if (!addressFile.isFile())
+               {
+                  continue;
+               }
+               BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(addressFile)));
+               try
+               {
+                  String address = reader.readLine();
+                  if (address != null)
+                  {
+                     previousPageStores.put(new SimpleString(address), storeDirectory);
+                  }
+               }
+               finally
+               {
+                  reader.close();
+               }
+            }
+         }
+      }
+      return previousPageStores;
+   }
+
+   /**
+    * Answers which of the files the live is about to send were kept from the previous
+    * synchronization, with their size and digest.
+    *
+    * @param packet
+    * @return the response to the live
+    * @throws Exception
+    */
+   private synchronized ReplicationSyncDigestResponseMessage handleSyncDigest(final ReplicationSyncDigestMessage packet) throws Exception
+   {
+      List<Long> foundIds = new ArrayList<Long>();
+      List<Long> foundSizes = new ArrayList<Long>();
+      List<byte[]> foundDigests = new ArrayList<byte[]>();
+      if (started && (previousPagingDirectory != null || previousLargeMessagesDirectory != null))
+      {
+         for (long id : packet.getFileIds())
+         {
+            SequentialFile syncFile = getSyncFile(packet.getPageStore(), id);
+            File previous = syncFile == null ? null : getPreviousFile(packet.getPageStore(), syncFile);
+            if (previous != null && previous.length() > 0)
+            {
+               long size = previous.length();
+               byte[] digest = SyncFileChecksum.digest(previous, size);
+               if (digest != null)
+               {
+                  foundIds.add(id);
+                  foundSizes.add(size);
+                  foundDigests.add(digest);
+               }
+            }
+         }
+      }
+
+      long[] ids = new long[foundIds.size()];
+      long[] sizes = new long[foundIds.size()];
+      for (int i = 0; i < ids.length; i++)
+      {
+         ids[i] = foundIds.get(i);
+         sizes[i] = foundSizes.get(i);
+      }
+      return new ReplicationSyncDigestResponseMessage(ids, sizes, foundDigests.toArray(new byte[foundDigests.size()][]));
+   }
+
+   /**
+    * Copies the beginning of files from the previous synchronization, the live sends the rest of
+    * them afterwards.
+    *
+    * @param packet
+    * @throws Exception
+    */
+   private synchronized void handleSyncReuse(final ReplicationSyncReuseMessage packet) throws Exception
+   {
+      if (!started)
+      {
+         return;
+      }
+      ByteBuffer buffer = null;
+      for (int i = 0; i < packet.getFileIds().length; i++)
+      {
+         SequentialFile syncFile = getSyncFile(packet.getPageStore(), packet.getFileIds()[i]);
+         File previous = syncFile == null ? null : getPreviousFile(packet.getPageStore(), syncFile);
+         if (previous == null)
+         {
+            throw new IOException("No previous copy of file " + packet.getFileIds()[i] + " to reuse");
+         }
+         if (buffer == null)
+         {
+            buffer = ByteBuffer.allocate(1 << 17);
+         }
+         if (!syncFile.isOpen())
+         {
+            syncFile.open(1, false);
+         }
+         FileInputStream fis = new FileInputStream(previous);
+         try
+         {
+            FileChannel channel = fis.getChannel();
+            long remaining = packet.getSizes()[i];
+            while (remaining > 0)
+            {
+               buffer.clear();
+               if (remaining < buffer.capacity())
+               {
+                  buffer.limit((int) remaining);
+               }
+               int bytesRead = channel.read(buffer);
+               if (bytesRead <= 0)
+               {
+                  throw new IOException("Previous copy of " + previous + " is shorter than " + packet.getSizes()[i]);
+               }
+               buffer.flip();
+               syncFile.writeDirect(buffer, true);
+               remaining -= bytesRead;
+            }
+         }
+         finally
+         {
+            fis.close();
+         }
+      }
+   }
+
    /**
     * Reserves files (with the given fileID) in the specified journal, and places a
     * {@link FileWrapperJournal} in place to store messages while synchronization is going on.
@@ -15,13 +15,22 @@ package org.hornetq.core.replication;
 import java.io.FileInputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.hornetq.api.config.HornetQDefaultConfiguration;
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQExceptionType;
@@ -43,6 +52,7 @@ import org.hornetq.core.protocol.core.impl.ChannelImpl.CHANNEL_ID;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -55,7 +65,10 @@ import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPageEventMessag
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPageWriteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationPrepareMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncDigestMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncDigestResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncFileMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationSyncReuseMessage;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.spi.core.protocol.RemotingConnection;
@@ -67,6 +80,12 @@ import org.omg.CORBA.portable.ResponseHandler;
  * use case).
  * <p/>
  * Its equivalent in the backup server is {@link ReplicationEndpoint}.
+ * <p/>
+ * Journal records are not sent one by one: they are encoded into a {@link ReplicationBatchMessage}
+ * which is sent once it reaches the batch size, or once the batch timeout expires (right after the
+ * records were added if there is no timeout). The backup confirms each batch with a single
+ * response, which completes the replication of every record in it. Any other packet sends the
+ * pending batch first, so the backup always sees the records in the order they were replicated.
  *
  * @author <mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @see ReplicationEndpoint
@@ -110,10 +129,39 @@ public final class ReplicationManager implements HornetQComponent
 
    private final Object replicationLock = new Object();
 
-   private final Queue<OperationContext> pendingTokens = new ConcurrentLinkedQueue<OperationContext>();
+   /**
+    * The contexts of each packet sent and not yet confirmed by the backup, in the order the packets
+    * were sent. A batch has one entry per record.
+    */
+   private final Queue<List<OperationContext>> pendingTokens = new ConcurrentLinkedQueue<List<OperationContext>>();
+
+   /**
+    * Answers of the backup to {@link ReplicationSyncDigestMessage}s, only used by the thread
+    * synchronizing the backup.
+    */
+   private final Queue<ReplicationSyncDigestResponseMessage> digestResponses = new ConcurrentLinkedQueue<ReplicationSyncDigestResponseMessage>();
 
    private final ExecutorFactory executorFactory;
 
+   private final Executor batchExecutor;
+
+   private final ScheduledExecutorService scheduledExecutor;
+
+   private final int batchSize;
+
+   private final long batchTimeout;
+
+   private final Runnable batchFlusher = new BatchFlusher();
+
+   /** guarded by replicationLock */
+   private ReplicationBatchMessage batch;
+
+   /** guarded by replicationLock */
+   private List<OperationContext> batchTokens;
+
+   /** guarded by replicationLock */
+   private boolean batchFlushPending;
+
    private SessionFailureListener failureListener;
 
    private CoreRemotingConnection remotingConnection;
@@ -124,8 +172,34 @@ public final class ReplicationManager implements HornetQComponent
     * @param remotingConnection
     */
    public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory)
+   {
+      this(remotingConnection,
+           executorFactory,
+           null,
+           HornetQDefaultConfiguration.getDefaultReplicationBatchSize(),
+           HornetQDefaultConfiguration.getDefaultReplicationBatchTimeout());
+   }
+
+   /**
+    * @param remotingConnection
+    * @param executorFactory
+    * @param scheduledExecutor used to send batches after {@code batchTimeout}, may be {@code null}
+    *                          when there is no timeout
+    * @param batchSize         journal records are sent once their batch has this many bytes, {@code 0}
+    *                          sends every record on its own packet
+    * @param batchTimeout      nanoseconds a batch waits for more records before it is sent
+    */
+   public ReplicationManager(CoreRemotingConnection remotingConnection,
+                             final ExecutorFactory executorFactory,
+                             final ScheduledExecutorService scheduledExecutor,
+                             final int batchSize,
+                             final long batchTimeout)
    {
       this.executorFactory = executorFactory;
+      this.batchExecutor = executorFactory.getExecutor();
+      this.scheduledExecutor = scheduledExecutor;
+      this.batchSize = batchSize;
+      this.batchTimeout = scheduledExecutor == null ? 0 : batchTimeout;
       this.replicatingChannel = remotingConnection.getChannel(CHANNEL_ID.REPLICATION.id, -1);
       this.remotingConnection = remotingConnection;
    }
@@ -136,7 +210,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddMessage(journalID, operation, id, recordType, record));
+         sendReplicateRecord(new ReplicationAddMessage(journalID, operation, id, recordType, record));
       }
    }
 
@@ -144,7 +218,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteMessage(journalID, id));
+         sendReplicateRecord(new ReplicationDeleteMessage(journalID, id));
       }
    }
 
@@ -156,7 +230,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record));
+         sendReplicateRecord(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record));
       }
    }
 
@@ -164,7 +238,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, false, txID), lineUp);
+         sendReplicateRecord(new ReplicationCommitMessage(journalID, false, txID), lineUp);
       }
    }
 
@@ -175,7 +249,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, record));
+         sendReplicateRecord(new ReplicationDeleteTXMessage(journalID, txID, id, record));
       }
    }
 
@@ -183,7 +257,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance));
+         sendReplicateRecord(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance));
       }
    }
 
@@ -192,7 +266,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationPrepareMessage(journalID, txID, transactionData));
+         sendReplicateRecord(new ReplicationPrepareMessage(journalID, txID, transactionData));
       }
    }
 
@@ -200,7 +274,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, true, txID));
+         sendReplicateRecord(new ReplicationCommitMessage(journalID, true, txID));
       }
    }
 
@@ -317,15 +391,28 @@ public final class ReplicationManager implements HornetQComponent
       {
          while (!pendingTokens.isEmpty())
          {
-            OperationContext ctx = pendingTokens.poll();
-            try
-            {
-               ctx.replicationDone();
-            }
-            catch (Throwable e)
-            {
-               HornetQServerLogger.LOGGER.errorCompletingCallbackOnReplicationManager(e);
-            }
+            completeTokens(pendingTokens.poll());
+         }
+         if (batchTokens != null)
+         {
+            completeTokens(batchTokens);
+            batch = null;
+            batchTokens = null;
+         }
+      }
+   }
+
+   private static void completeTokens(final List<OperationContext> tokens)
+   {
+      for (OperationContext ctx : tokens)
+      {
+         try
+         {
+            ctx.replicationDone();
+         }
+         catch (Throwable e)
+         {
+            HornetQServerLogger.LOGGER.errorCompletingCallbackOnReplicationManager(e);
          }
       }
    }
@@ -341,9 +428,17 @@ public final class ReplicationManager implements HornetQComponent
       // The same context will be replicated on the pending tokens...
       // as the multiple operations will be replicated on the same context
 
-      for (OperationContext ctx : pendingTokens)
+      for (List<OperationContext> tokens : pendingTokens)
       {
-         activeContexts.add(ctx);
+         activeContexts.addAll(tokens);
+      }
+
+      synchronized (replicationLock)
+      {
+         if (batchTokens != null)
+         {
+            activeContexts.addAll(batchTokens);
+         }
       }
 
       return activeContexts;
@@ -371,7 +466,8 @@ public final class ReplicationManager implements HornetQComponent
       {
          if (enabled)
          {
-            pendingTokens.add(repliToken);
+            flushBatch();
+            pendingTokens.add(Collections.singletonList(repliToken));
             replicatingChannel.send(packet);
          }
          else
@@ -391,6 +487,91 @@ public final class ReplicationManager implements HornetQComponent
       return repliToken;
    }
 
+   /**
+    * Adds a journal record to the current batch, sending the batch if it is full.
+    */
+   private void sendReplicateRecord(final PacketImpl record)
+   {
+      sendReplicateRecord(record, true);
+   }
+
+   private void sendReplicateRecord(final PacketImpl record, boolean lineUp)
+   {
+      if (batchSize <= 0)
+      {
+         sendReplicatePacket(record, lineUp);
+         return;
+      }
+      if (!enabled)
+      {
+         return;
+      }
+      boolean runItNow = false;
+
+      OperationContext repliToken = OperationContextImpl.getContext(executorFactory);
+      if (lineUp)
+      {
+         repliToken.replicationLineUp();
+      }
+
+      synchronized (replicationLock)
+      {
+         if (enabled)
+         {
+            if (batch == null)
+            {
+               batch = new ReplicationBatchMessage();
+               batchTokens = new ArrayList<OperationContext>();
+            }
+            batch.addRecord(record);
+            batchTokens.add(repliToken);
+
+            if (batch.getRecordsSize() >= batchSize)
+            {
+               flushBatch();
+            }
+            else if (!batchFlushPending)
+            {
+               batchFlushPending = true;
+               if (batchTimeout > 0)
+               {
+                  scheduledExecutor.schedule(batchFlusher, batchTimeout, TimeUnit.NANOSECONDS);
+               }
+               else
+               {
+                  batchExecutor.execute(batchFlusher);
+               }
+            }
+         }
+         else
+         {
+            // Already replicating channel failed, so just play the action now
+            runItNow = true;
+         }
+      }
+
+      // Execute outside lock
+
+      if (runItNow)
+      {
+         repliToken.replicationDone();
+      }
+   }
+
+   /**
+    * Sends the records batched so far. Must be called holding {@link #replicationLock}.
+    */
+   private void flushBatch()
+   {
+      if (batch != null)
+      {
+         pendingTokens.add(batchTokens);
+         replicatingChannel.send(batch);
+         batch = null;
+         batchTokens = null;
+      }
+   }
+
    /**
     * @throws IllegalStateException By default, all replicated packets generate a replicated
     *                               response. If your packets are triggering this exception, it may be because the
@@ -398,14 +579,17 @@ public final class ReplicationManager implements HornetQComponent
     */
    private void replicated()
    {
-      OperationContext ctx = pendingTokens.poll();
+      List<OperationContext> tokens = pendingTokens.poll();
 
-      if (ctx == null)
+      if (tokens == null)
       {
          throw new IllegalStateException("Missing replication token on the queue.");
       }
 
-      ctx.replicationDone();
+      for (OperationContext ctx : tokens)
+      {
+         ctx.replicationDone();
+      }
    }
 
    // Inner classes -------------------------------------------------
@@ -446,6 +630,21 @@ public final class ReplicationManager implements HornetQComponent
       }
    }
 
+   private final class BatchFlusher implements Runnable
+   {
+      public void run()
+      {
+         synchronized (replicationLock)
+         {
+            batchFlushPending = false;
+            if (enabled)
+            {
+               flushBatch();
+            }
+         }
+      }
+   }
+
    private final class ResponseHandler implements ChannelHandler
    {
       public void handlePacket(final Packet packet)
@@ -454,6 +653,11 @@ public final class ReplicationManager implements HornetQComponent
          {
             replicated();
          }
+         else if (packet.getType() == PacketImpl.REPLICATION_SYNC_DIGEST_RESPONSE)
+         {
+            digestResponses.add((ReplicationSyncDigestResponseMessage) packet);
+            replicated();
+         }
       }
 
    }
@@ -492,7 +696,7 @@ public final class ReplicationManager implements HornetQComponent
       try
       {
          HornetQServerLogger.LOGGER.journalSynch(jf, file.size(), file);
-         sendLargeFile(content, null, jf.getFileID(), file, Long.MAX_VALUE);
+         sendLargeFile(content, null, jf.getFileID(), file, 0, Long.MAX_VALUE);
       }
       finally
       {
@@ -501,18 +705,134 @@ public final class ReplicationManager implements HornetQComponent
       }
    }
 
-   public void syncLargeMessageFile(SequentialFile file, long size, long id) throws Exception
+   /**
+    * Sends large message files to the backup, skipping what the backup kept of them from a previous
+    * synchronization.
+    *
+    * @param files the file and the number of bytes to send of each message, by message id
+    * @throws Exception
+    */
+   public void syncLargeMessageFiles(Map<Long, Pair<SequentialFile, Long>> files) throws Exception
    {
-      if (enabled)
+      if (!enabled)
+      {
+         return;
+      }
+      Map<Long, Long> reused = reuseBackupFiles(null, files);
+      for (Entry<Long, Pair<SequentialFile, Long>> entry : files.entrySet())
+      {
+         if (!enabled)
+         {
+            return;
+         }
+         Long offset = reused.get(entry.getKey());
+         sendLargeFile(null, null, entry.getKey(), entry.getValue().getA(), offset == null ? 0 : offset,
+                       entry.getValue().getB());
+      }
+   }
+
+   /**
+    * Sends the page files of a store to the backup, skipping what the backup kept of them from a
+    * previous synchronization.
+    *
+    * @param storeName
+    * @param files     page files by page number
+    * @throws Exception
+    */
+   public void syncPages(SimpleString storeName, Map<Long, SequentialFile> files) throws Exception
+   {
+      if (!enabled)
+      {
+         return;
+      }
+      Map<Long, Pair<SequentialFile, Long>> toSend = new HashMap<Long, Pair<SequentialFile, Long>>();
+      for (Entry<Long, SequentialFile> entry : files.entrySet())
+      {
+         toSend.put(entry.getKey(), new Pair<SequentialFile, Long>(entry.getValue(), Long.MAX_VALUE));
+      }
+      Map<Long, Long> reused = reuseBackupFiles(storeName, toSend);
+      for (Entry<Long, SequentialFile> entry : files.entrySet())
       {
-         sendLargeFile(null, null, id, file, size);
+         if (!enabled)
+         {
+            return;
+         }
+         Long offset = reused.get(entry.getKey());
+         sendLargeFile(null, storeName, entry.getKey(), entry.getValue(), offset == null ? 0 : offset,
+                       Long.MAX_VALUE);
       }
    }
 
-   public void syncPages(SequentialFile file, long id, SimpleString queueName) throws Exception
+   /**
+    * Asks the backup for the page or large message files it kept from a previous synchronization,
+    * and tells it to reuse those that are the beginning of ours.
+    * <p/>
+    * Pages are never written once they are synchronized, and large messages only get appends, so
+    * a file of the backup whose digest matches the same number of bytes of ours can be kept and
+    * completed with the rest of our file.
+    *
+    * @param pageStore the page store of the files, or {@code null} for large messages
+    * @param files     the files and the number of bytes that will be sent of each, by id
+    * @return the number of bytes the backup reuses, by file id
+    * @throws Exception
+    */
+   private Map<Long, Long> reuseBackupFiles(SimpleString pageStore, Map<Long, Pair<SequentialFile, Long>> files) throws Exception
    {
-      if (enabled)
-         sendLargeFile(null, queueName, id, file, Long.MAX_VALUE);
+      Map<Long, Long> reused = new HashMap<Long, Long>();
+      if (files.isEmpty())
+      {
+         return reused;
+      }
+
+      long[] ids = new long[files.size()];
+      int i = 0;
+      for (Long id : files.keySet())
+      {
+         ids[i++] = id;
+      }
+
+      digestResponses.clear();
+      OperationContext token = sendReplicatePacket(new ReplicationSyncDigestMessage(pageStore, ids));
+      if (token == null)
+      {
+         return reused;
+      }
+      token.waitCompletion();
+
+      // a backup that does not know about digests answers with a plain response
+      ReplicationSyncDigestResponseMessage digest = digestResponses.poll();
+      if (digest == null)
+      {
+         return reused;
+      }
+
+      for (i = 0; i < digest.getFileIds().length; i++)
+      {
+         Pair<SequentialFile, Long> file = files.get(digest.getFileIds()[i]);
+         long size = digest.getSizes()[i];
+         if (file != null && size > 0 && size <= file.getB())
+         {
+            byte[] ours = SyncFileChecksum.digest(file.getA().getJavaFile(), size);
+            if (ours != null && MessageDigest.isEqual(ours, digest.getDigests()[i]))
+            {
+               reused.put(digest.getFileIds()[i], size);
+            }
+         }
+      }
+
+      if (!reused.isEmpty())
+      {
+         long[] reusedIds = new long[reused.size()];
+         long[] reusedSizes = new long[reused.size()];
+         i = 0;
+         for (Entry<Long, Long> entry : reused.entrySet())
+         {
+            reusedIds[i] = entry.getKey();
+            reusedSizes[i++] = entry.getValue();
+         }
+         sendReplicatePacket(new ReplicationSyncReuseMessage(pageStore, reusedIds, reusedSizes));
+      }
+      return reused;
    }
 
    /**
@@ -522,11 +842,12 @@ public final class ReplicationManager implements HornetQComponent
     * @param pageStore      page store name for pages, or {@code null} otherwise
     * @param id             journal file id or (large) message id
     * @param file
-    * @param maxBytesToSend maximum number of bytes to read and send from the file
+    * @param offset         position of the first byte to send, the backup already has the ones before
+    * @param maxBytesToSend maximum number of bytes to read from the file, counting from its start
     * @throws Exception
     */
    private void sendLargeFile(JournalContent content, SimpleString pageStore, final long id, SequentialFile file,
-                              long maxBytesToSend) throws Exception
+                              long offset, long maxBytesToSend) throws Exception
    {
       if (!enabled)
          return;
@@ -542,6 +863,11 @@ public final class ReplicationManager implements HornetQComponent
             final FileChannel channel = fis.getChannel();
             try
             {
+               if (offset > 0)
+               {
+                  channel.position(offset);
+                  maxBytesToSend -= offset;
+               }
                // We can afford having a single buffer here for this entire loop
                // because sendReplicatePacket will encode the packet as a NettyBuffer
                // through HornetQBuffer class leaving this buffer free to be reused on the next copy
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.replication;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digests the beginning of page and large message files, so the live and the backup can tell
+ * whether the backup already has some of a file before it is synchronized.
+ * <p/>
+ * A file found equal is kept by the backup as it is, so this uses a cryptographic digest rather
+ * than a CRC, which files with different contents can share.
+ */
+final class SyncFileChecksum
+{
+   private static final int BUFFER_SIZE = 1 << 17;
+
+   private static final String ALGORITHM = "SHA-256";
+
+   private SyncFileChecksum()
+   {
+   }
+
+   /**
+    * @param file
+    * @param size number of bytes to digest from the start of the file
+    * @return the SHA-256 digest of the first {@code size} bytes, or {@code null} if the file is shorter
+    * @throws IOException
+    */
+   static byte[] digest(final File file, final long size) throws IOException
+   {
+      if (file.length() < size)
+      {
+         return null;
+      }
+      MessageDigest digest;
+      try
+      {
+         digest = MessageDigest.getInstance(ALGORITHM);
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         // every Java platform is required to support SHA-256
+         throw new IllegalStateException(e);
+      }
+      FileInputStream fis = new FileInputStream(file);
+      try
+      {
+         FileChannel channel = fis.getChannel();
+         ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+         long remaining = size;
+         while (remaining > 0)
+         {
+            buffer.clear();
+            if (remaining < BUFFER_SIZE)
+            {
+               buffer.limit((int) remaining);
+            }
+            int bytesRead = channel.read(buffer);
+            if (bytesRead <= 0)
+            {
+               return null;
+            }
+            digest.update(buffer.array(), 0, bytesRead);
+            remaining -= bytesRead;
+         }
+      }
+      finally
+      {
+         fis.close();
+      }
+      return digest.digest();
+   }
+}
@@ -48,6 +48,17 @@ public interface Consumer
     */
    void proceedDeliver(MessageReference reference) throws Exception;
 
+   /**
+    * Proceeds with the delivery of several references accepted by {@link #handle(MessageReference)},
+    * in the order they were handled.
+    * This lets the queue hand over the references it handled while holding its lock in one go.
+    * The references delivered are taken off the list, so if the delivery fails the list holds the ones that
+    * weren't, and the queue puts only those back.
+    * The readLock of every reference must be released, even if the delivery of one of them fails.
+    * @throws Exception
+    */
+   void proceedDeliver(List<MessageReference> references) throws Exception;
+
    Filter getFilter();
 
    /**
@@ -292,6 +292,14 @@ public interface HornetQServerLogger extends BasicLogger
    @Message(id = 221050, value = "Activating Shared Store Slave", format = Message.Format.MESSAGE_FORMAT)
    void activatingSharedStoreSlave();
 
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221051, value = "Using Mapped Journal", format = Message.Format.MESSAGE_FORMAT)
+   void journalUseMapped();
+
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221052, value = "Spreading the messages on {0} journals", format = Message.Format.MESSAGE_FORMAT)
+   void journalUseShards(int shards);
+
    @LogMessage(level = Logger.Level.WARN)
    @Message(id = 222000, value = "HornetQServer is being finalized and has not been stopped. Please remember to stop the server before letting it go out of scope",
             format = Message.Format.MESSAGE_FORMAT)
@@ -1112,6 +1120,30 @@ public interface HornetQServerLogger extends BasicLogger
          format = Message.Format.MESSAGE_FORMAT)
    void disallowedProtocol(String protocol);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222191, value = "Could not open the duplicate ID store of address {0}, its duplicate IDs will be stored on the journal",
+            format = Message.Format.MESSAGE_FORMAT)
+   void errorOpeningDuplicateIDStore(@Cause Exception e, SimpleString address);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222192, value = "Error closing duplicate ID store {0}", format = Message.Format.MESSAGE_FORMAT)
+   void errorClosingDuplicateIDStore(@Cause Exception e, String store);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222193, value = "journal-shards is ignored as the journal is replicated, the messages are kept on a single journal",
+            format = Message.Format.MESSAGE_FORMAT)
+   void journalShardsReplicated();
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222194, value = "Error deleting the commit record {0} of a transaction on several journals, it will be deleted on the next restart",
+            format = Message.Format.MESSAGE_FORMAT)
+   void errorDeletingShardedCommit(@Cause Exception e, long recordID);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222195, value = "Error reading ahead the page {0} on address {1}, the page will be read when a subscription gets to it",
+            format = Message.Format.MESSAGE_FORMAT)
+   void errorPrefetchingPage(@Cause Throwable e, long pageId, SimpleString address);
+
    @LogMessage(level = Logger.Level.ERROR)
    @Message(id = 224000, value = "Failure in initialisation", format = Message.Format.MESSAGE_FORMAT)
    void initializationError(@Cause Throwable e);
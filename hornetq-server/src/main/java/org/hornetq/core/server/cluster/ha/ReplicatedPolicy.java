@@ -27,6 +27,10 @@ public class ReplicatedPolicy implements HAPolicy<LiveActivation>
 
    private String clusterName;
 
+   private int replicationBatchSize = HornetQDefaultConfiguration.getDefaultReplicationBatchSize();
+
+   private long replicationBatchTimeout = HornetQDefaultConfiguration.getDefaultReplicationBatchTimeout();
+
    /*
    * these are only set by the ReplicaPolicy after failover to decide if the live server can failback, these should not
    * be exposed in configuration.
@@ -101,6 +105,26 @@ public class ReplicatedPolicy implements HAPolicy<LiveActivation>
       this.clusterName = clusterName;
    }
 
+   public int getReplicationBatchSize()
+   {
+      return replicationBatchSize;
+   }
+
+   public void setReplicationBatchSize(int replicationBatchSize)
+   {
+      this.replicationBatchSize = replicationBatchSize;
+   }
+
+   public long getReplicationBatchTimeout()
+   {
+      return replicationBatchTimeout;
+   }
+
+   public void setReplicationBatchTimeout(long replicationBatchTimeout)
+   {
+      this.replicationBatchTimeout = replicationBatchTimeout;
+   }
+
    public ReplicaPolicy getReplicaPolicy()
    {
       return replicaPolicy;
@@ -619,6 +619,11 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
       // no op
    }
 
+   public void proceedDeliver(List<MessageReference> refs)
+   {
+      // no op
+   }
+
    public void connectionFailed(final HornetQException me, boolean failedOver)
    {
       connectionFailed(me, failedOver, null);
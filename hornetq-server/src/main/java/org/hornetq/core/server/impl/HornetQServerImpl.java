@@ -1482,7 +1482,8 @@ public class HornetQServerImpl implements HornetQServer
                                                              scheduledPool,
                                                              executorFactory,
                                                              configuration.isJournalSyncNonTransactional(),
-                                                             shutdownOnCriticalIO),
+                                                             shutdownOnCriticalIO,
+                                                             configuration.getJournalType() == JournalType.MAPPED),
                                    addressSettingsRepository);
    }
 
@@ -2265,8 +2266,11 @@ public class HornetQServerImpl implements HornetQServer
     * <p/>
     * Use case is a server, upon restarting, finding a former backup running in its place. It will
     * move any older data away and log a warning about it.
+    *
+    * @return where each data directory was moved, by its configured path, empty if there was no
+    * data to move
     */
-   void moveServerData()
+   Map<String, File> moveServerData()
    {
       String[] dataDirs =
          new String[]{configuration.getBindingsDirectory(),
@@ -2302,8 +2306,9 @@ public class HornetQServerImpl implements HornetQServer
             }
          }
       }
+      Map<String, File> moved = new HashMap<String, File>();
       if (allEmpty)
-         return;
+         return moved;
 
       for (String dir0 : dataDirs)
       {
@@ -2317,6 +2322,7 @@ public class HornetQServerImpl implements HornetQServer
             }
 
             HornetQServerLogger.LOGGER.backupMovingDataAway(dir0, newPath.getPath());
+            moved.put(dir0, newPath);
          }
          /*
          * sometimes OS's can hold on to file handles for a while so we need to check this actually qorks and then wait
@@ -2341,5 +2347,6 @@ public class HornetQServerImpl implements HornetQServer
             }
          }
       }
+      return moved;
    }
 }
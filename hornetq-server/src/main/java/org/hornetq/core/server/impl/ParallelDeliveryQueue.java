@@ -0,0 +1,87 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.server.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.paging.cursor.PageSubscription;
+import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.core.postoffice.PostOffice;
+import org.hornetq.core.settings.HierarchicalRepository;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.utils.ExecutorFactory;
+
+/**
+ * A queue delivering to its consumers on several lanes in parallel.
+ * <p>
+ * The consumers are spread over the lanes, and each lane delivers to its own consumers on its own
+ * executor. The lock on the queue is only held while a lane selects and hands a reference to a
+ * consumer, the messages are sent out of it, so the consumers of different lanes are sent their
+ * messages by different threads. Producers add to the queue without taking any lock, as they
+ * never deliver to the consumers on their own thread.
+ * <p>
+ * While the address is paging the lanes deliver on the executor of the page subscription, one at
+ * a time.
+ */
+public class ParallelDeliveryQueue extends QueueImpl
+{
+   public ParallelDeliveryQueue(final long persistenceID,
+                                final SimpleString address,
+                                final SimpleString name,
+                                final Filter filter,
+                                final PageSubscription pageSubscription,
+                                final boolean durable,
+                                final boolean temporary,
+                                final ScheduledExecutorService scheduledExecutor,
+                                final PostOffice postOffice,
+                                final StorageManager storageManager,
+                                final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                                final ExecutorFactory executorFactory,
+                                final int lanes)
+   {
+      super(persistenceID,
+            address,
+            name,
+            filter,
+            pageSubscription,
+            durable,
+            temporary,
+            scheduledExecutor,
+            postOffice,
+            storageManager,
+            addressSettingsRepository,
+            executorFactory.getExecutor(),
+            createLaneExecutors(executorFactory, lanes));
+   }
+
+   private static Executor[] createLaneExecutors(final ExecutorFactory executorFactory, final int lanes)
+   {
+      Executor[] executors = new Executor[lanes];
+
+      for (int i = 0; i < lanes; i++)
+      {
+         executors[i] = executorFactory.getExecutor();
+      }
+
+      return executors;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ParallelDeliveryQueue[name=" + getName() + "]@" + Integer.toHexString(System.identityHashCode(this));
+   }
+}
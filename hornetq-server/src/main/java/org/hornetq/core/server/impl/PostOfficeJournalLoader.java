@@ -13,13 +13,22 @@
 package org.hornetq.core.server.impl;
 
 import javax.transaction.xa.Xid;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.hornetq.api.config.HornetQDefaultConfiguration;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.Pair;
 import org.hornetq.api.core.SimpleString;
@@ -54,6 +63,7 @@ import org.hornetq.core.server.management.ManagementService;
 import org.hornetq.core.transaction.ResourceManager;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
+import org.hornetq.utils.HornetQThreadFactory;
 
 public class PostOfficeJournalLoader implements JournalLoader
 {
@@ -165,57 +175,118 @@ public class PostOfficeJournalLoader implements JournalLoader
       }
    }
 
+   /**
+    * The queues are independent from each other, so their messages are added by several threads. The
+    * messages of each queue are still added in order by a single thread.
+    */
    public void handleAddMessage(Map<Long, Map<Long, AddMessageRecord>> queueMap) throws Exception
    {
-      for (Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
+      final long currentTime = System.currentTimeMillis();
+
+      int loadThreads = configuration == null ? HornetQDefaultConfiguration.getDefaultJournalLoadThreads()
+         : configuration.getJournalLoadThreads();
+
+      int threads = Math.min(loadThreads, queueMap.size());
+
+      if (threads <= 1)
       {
-         long queueID = entry.getKey();
+         for (Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
+         {
+            loadQueue(entry.getKey(), entry.getValue(), currentTime);
+         }
+         return;
+      }
 
-         Map<Long, AddMessageRecord> queueRecords = entry.getValue();
+      ExecutorService executor = Executors.newFixedThreadPool(threads, new HornetQThreadFactory("HornetQ-journal-loader",
+                                                                                                 true,
+                                                                                                 getThisClassLoader()));
+      try
+      {
+         List<Future<?>> futures = new ArrayList<Future<?>>(queueMap.size());
 
-         Queue queue = this.queues.get(queueID);
+         for (final Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
+         {
+            futures.add(executor.submit(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  loadQueue(entry.getKey(), entry.getValue(), currentTime);
+                  return null;
+               }
+            }));
+         }
 
-         if (queue == null)
+         for (Future<?> future : futures)
          {
-            if (queueRecords.values().size() != 0)
+            try
+            {
+               future.get();
+            }
+            catch (ExecutionException e)
             {
-               HornetQServerLogger.LOGGER.journalCannotFindQueueForMessage(queueID);
+               if (e.getCause() instanceof Exception)
+               {
+                  throw (Exception) e.getCause();
+               }
+               throw e;
             }
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
 
-            continue;
+   private void loadQueue(final long queueID, final Map<Long, AddMessageRecord> queueRecords, final long currentTime) throws Exception
+   {
+      Queue queue = this.queues.get(queueID);
+
+      if (queue == null)
+      {
+         if (queueRecords.values().size() != 0)
+         {
+            HornetQServerLogger.LOGGER.journalCannotFindQueueForMessage(queueID);
          }
 
-         // Redistribution could install a Redistributor while we are still loading records, what will be an issue with
-         // prepared ACKs
-         // We make sure te Queue is paused before we reroute values.
-         queue.pause();
+         return;
+      }
 
-         Collection<AddMessageRecord> valueRecords = queueRecords.values();
+      // Redistribution could install a Redistributor while we are still loading records, what will be an issue with
+      // prepared ACKs
+      // We make sure te Queue is paused before we reroute values.
+      queue.pause();
 
-         long currentTime = System.currentTimeMillis();
+      Collection<AddMessageRecord> valueRecords = queueRecords.values();
 
-         for (AddMessageRecord record : valueRecords)
+      for (AddMessageRecord record : valueRecords)
+      {
+         ServerMessage message = record.getMessage();
+
+         // A message routed to several queues is shared by their loading threads, and its properties
+         // are changed while rerouting scheduled deliveries
+         synchronized (message)
          {
             long scheduledDeliveryTime = record.getScheduledDeliveryTime();
 
             if (scheduledDeliveryTime != 0 && scheduledDeliveryTime <= currentTime)
             {
                scheduledDeliveryTime = 0;
-               record.getMessage().removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
+               message.removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
             }
 
             if (scheduledDeliveryTime != 0)
             {
-               record.getMessage().putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, scheduledDeliveryTime);
+               message.putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, scheduledDeliveryTime);
             }
 
-            MessageReference ref = postOffice.reroute(record.getMessage(), queue, null);
+            MessageReference ref = postOffice.reroute(message, queue, null);
 
             ref.setDeliveryCount(record.getDeliveryCount());
 
             if (scheduledDeliveryTime != 0)
             {
-               record.getMessage().removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
+               message.removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
             }
          }
       }
@@ -503,4 +574,15 @@ public class PostOfficeJournalLoader implements JournalLoader
       }
       return perAddressMap;
    }
+
+   private static ClassLoader getThisClassLoader()
+   {
+      return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>()
+      {
+         public ClassLoader run()
+         {
+            return PostOfficeJournalLoader.class.getClassLoader();
+         }
+      });
+   }
 }
@@ -91,6 +91,22 @@ public class QueueFactoryImpl implements QueueFactory
                                     addressSettingsRepository,
                                     executorFactory.getExecutor());
       }
+      else if (addressSettings.getDeliveryLanes() > 1)
+      {
+         queue = new ParallelDeliveryQueue(persistenceID,
+                                           address,
+                                           name,
+                                           filter,
+                                           pageSubscription,
+                                           durable,
+                                           temporary,
+                                           scheduledExecutor,
+                                           postOffice,
+                                           storageManager,
+                                           addressSettingsRepository,
+                                           executorFactory,
+                                           addressSettings.getDeliveryLanes());
+      }
       else
       {
          queue = new QueueImpl(persistenceID,
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -105,6 +106,12 @@ public class QueueImpl implements Queue
 
    public static final int MAX_DELIVERIES_IN_LOOP = 1000;
 
+   /**
+    * How many handled references the delivery loop of a queue with several lanes accumulates before
+    * releasing them to their consumers. A queue with a single lane releases every reference once handled.
+    */
+   public static final int DELIVERY_BATCH_SIZE = 32;
+
    public static final int CHECK_QUEUE_SIZE_PERIOD = 100;
 
    /**
@@ -151,16 +158,17 @@ public class QueueImpl implements Queue
    // The estimate of memory being consumed by this queue. Used to calculate instances of messages to depage
    private final AtomicInteger queueMemorySize = new AtomicInteger(0);
 
-   // used to control if we should recalculate certain positions inside deliverAsync
-   private volatile boolean consumersChanged = true;
-
+   // The consumers of every lane
    private final List<ConsumerHolder> consumerList = new CopyOnWriteArrayList<ConsumerHolder>();
 
+   // The consumers are spread over the lanes, a queue created without lane executors has a single one
+   private final DeliveryLane[] lanes;
+
    private final ScheduledDeliveryHandler scheduledDeliveryHandler;
 
-   private long messagesAdded;
+   private final AtomicLong messagesAdded = new AtomicLong(0);
 
-   private long messagesAcknowledged;
+   private final AtomicLong messagesAcknowledged = new AtomicLong(0);
 
    protected final AtomicInteger deliveringCount = new AtomicInteger(0);
 
@@ -168,13 +176,6 @@ public class QueueImpl implements Queue
 
    private static final int MAX_SCHEDULED_RUNNERS = 2;
 
-   // We don't ever need more than two DeliverRunner on the executor's list
-   // that is getting the worse scenario possible when one runner is almost finishing before the second started
-   // for that we keep a counter of scheduled instances
-   private final AtomicInteger scheduledRunners = new AtomicInteger(0);
-
-   private final Runnable deliverRunner = new DeliverRunner();
-
    private volatile boolean depagePending = false;
 
    private final StorageManager storageManager;
@@ -201,8 +202,6 @@ public class QueueImpl implements Queue
 
    private volatile SimpleString expiryAddress;
 
-   private int pos;
-
    private final Executor executor;
 
    private boolean internalQueue;
@@ -343,6 +342,39 @@ public class QueueImpl implements Queue
                     final StorageManager storageManager,
                     final HierarchicalRepository<AddressSettings> addressSettingsRepository,
                     final Executor executor)
+   {
+      this(id,
+           address,
+           name,
+           filter,
+           pageSubscription,
+           durable,
+           temporary,
+           scheduledExecutor,
+           postOffice,
+           storageManager,
+           addressSettingsRepository,
+           executor,
+           null);
+   }
+
+   /**
+    * @param laneExecutors the consumers are spread over as many delivery lanes, each one delivering
+    *                      on its executor. With null the queue has a single lane on its executor.
+    */
+   protected QueueImpl(final long id,
+                       final SimpleString address,
+                       final SimpleString name,
+                       final Filter filter,
+                       final PageSubscription pageSubscription,
+                       final boolean durable,
+                       final boolean temporary,
+                       final ScheduledExecutorService scheduledExecutor,
+                       final PostOffice postOffice,
+                       final StorageManager storageManager,
+                       final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                       final Executor executor,
+                       final Executor[] laneExecutors)
    {
       this.id = id;
 
@@ -390,6 +422,19 @@ public class QueueImpl implements Queue
 
       this.executor = executor;
 
+      if (laneExecutors == null)
+      {
+         lanes = new DeliveryLane[]{new DeliveryLane(null)};
+      }
+      else
+      {
+         lanes = new DeliveryLane[laneExecutors.length];
+
+         for (int i = 0; i < lanes.length; i++)
+         {
+            lanes[i] = new DeliveryLane(laneExecutors[i]);
+         }
+      }
    }
 
    // Bindable implementation -------------------------------------------------------------------------------------
@@ -539,7 +584,7 @@ public class QueueImpl implements Queue
 
       directDeliver = false;
 
-      messagesAdded++;
+      messagesAdded.incrementAndGet();
    }
 
    public void addTail(final MessageReference ref)
@@ -551,44 +596,44 @@ public class QueueImpl implements Queue
    {
       if (scheduledDeliveryHandler.checkAndSchedule(ref, true))
       {
-         synchronized (this)
-         {
-            messagesAdded++;
-         }
+         messagesAdded.incrementAndGet();
 
          return;
       }
 
-      synchronized (directDeliveryGuard)
+      // The producers never deliver on their own thread to the lanes of a queue with several ones, nor take any lock here
+      if (direct && lanes.length == 1)
       {
-         // The checkDirect flag is periodically set to true, if the delivery is specified as direct then this causes the
-         // directDeliver flag to be re-computed resulting in direct delivery if the queue is empty
-         // We don't recompute it on every delivery since executing isEmpty is expensive for a ConcurrentQueue
-         if (!directDeliver &&
-            direct &&
-            System.currentTimeMillis() - lastDirectDeliveryCheck > CHECK_QUEUE_SIZE_PERIOD)
+         synchronized (directDeliveryGuard)
          {
-            lastDirectDeliveryCheck = System.currentTimeMillis();
-
-            if (intermediateMessageReferences.isEmpty() &&
-               messageReferences.isEmpty() &&
-               !pageIterator.hasNext() &&
-               !pageSubscription.isPaging())
+            // The checkDirect flag is periodically set to true, if the delivery is specified as direct then this causes the
+            // directDeliver flag to be re-computed resulting in direct delivery if the queue is empty
+            // We don't recompute it on every delivery since executing isEmpty is expensive for a ConcurrentQueue
+            if (!directDeliver &&
+               System.currentTimeMillis() - lastDirectDeliveryCheck > CHECK_QUEUE_SIZE_PERIOD)
             {
-               // We must block on the executor to ensure any async deliveries have completed or we might get out of order
-               // deliveries
-               if (flushExecutor() && flushDeliveriesInTransit())
+               lastDirectDeliveryCheck = System.currentTimeMillis();
+
+               if (intermediateMessageReferences.isEmpty() &&
+                  messageReferences.isEmpty() &&
+                  !pageIterator.hasNext() &&
+                  !pageSubscription.isPaging())
                {
-                  // Go into direct delivery mode
-                  directDeliver = true;
+                  // We must block on the executor to ensure any async deliveries have completed or we might get out of order
+                  // deliveries
+                  if (flushExecutor() && flushDeliveriesInTransit())
+                  {
+                     // Go into direct delivery mode
+                     directDeliver = true;
+                  }
                }
             }
          }
-      }
 
-      if (direct && directDeliver && deliveriesInTransit.getCount() == 0 && deliverDirect(ref))
-      {
-         return;
+         if (directDeliver && deliveriesInTransit.getCount() == 0 && deliverDirect(ref))
+         {
+            return;
+         }
       }
 
       // We only add queueMemorySize if not being delivered directly
@@ -648,22 +693,37 @@ public class QueueImpl implements Queue
 
    public void deliverAsync()
    {
-      if (scheduledRunners.get() < MAX_SCHEDULED_RUNNERS)
+      boolean scheduled = false;
+
+      for (DeliveryLane lane : lanes)
       {
-         scheduledRunners.incrementAndGet();
-         try
+         // The first lane also moves the references added into the queue, the others only deliver to their consumers
+         if (lane != lanes[0] && lane.consumerList.isEmpty())
          {
-            getExecutor().execute(deliverRunner);
+            continue;
          }
-         catch (RejectedExecutionException ignored)
+
+         if (lane.scheduledRunners.get() < MAX_SCHEDULED_RUNNERS)
          {
-            // no-op
-            scheduledRunners.decrementAndGet();
+            lane.scheduledRunners.incrementAndGet();
+            try
+            {
+               lane.getExecutor().execute(lane.deliverRunner);
+            }
+            catch (RejectedExecutionException ignored)
+            {
+               // no-op
+               lane.scheduledRunners.decrementAndGet();
+            }
+
+            scheduled = true;
          }
+      }
 
+      if (scheduled)
+      {
          checkDepage();
       }
-
    }
 
    public void close() throws Exception
@@ -730,11 +790,15 @@ public class QueueImpl implements Queue
 
    private boolean internalFlushExecutor(long timeout)
    {
-      FutureLatch future = new FutureLatch();
-
-      getExecutor().execute(future);
+      boolean result = awaitExecutor(getExecutor(), timeout);
 
-      boolean result = future.await(timeout);
+      for (DeliveryLane lane : lanes)
+      {
+         if (lane.executor != null)
+         {
+            result = awaitExecutor(lane.getExecutor(), timeout) && result;
+         }
+      }
 
       if (!result)
       {
@@ -743,6 +807,15 @@ public class QueueImpl implements Queue
       return result;
    }
 
+   private static boolean awaitExecutor(final Executor executor, final long timeout)
+   {
+      FutureLatch future = new FutureLatch();
+
+      executor.execute(future);
+
+      return future.await(timeout);
+   }
+
    public void addConsumer(final Consumer consumer) throws Exception
    {
       if (HornetQServerLogger.LOGGER.isDebugEnabled())
@@ -754,11 +827,9 @@ public class QueueImpl implements Queue
       {
          flushDeliveriesInTransit();
 
-         consumersChanged = true;
-
          cancelRedistributor();
 
-         consumerList.add(new ConsumerHolder(consumer));
+         addConsumerHolder(consumer);
 
          consumerSet.add(consumer);
 
@@ -774,8 +845,6 @@ public class QueueImpl implements Queue
    {
       synchronized (this)
       {
-         consumersChanged = true;
-
          for (ConsumerHolder holder : consumerList)
          {
             if (holder.consumer == consumer)
@@ -785,15 +854,21 @@ public class QueueImpl implements Queue
                   holder.iter.close();
                }
                consumerList.remove(holder);
+
+               DeliveryLane lane = holder.lane;
+
+               lane.consumerList.remove(holder);
+
+               lane.consumersChanged = true;
+
+               if (lane.pos > 0 && lane.pos >= lane.consumerList.size())
+               {
+                  lane.pos = lane.consumerList.size() - 1;
+               }
                break;
             }
          }
 
-         if (pos > 0 && pos >= consumerList.size())
-         {
-            pos = consumerList.size() - 1;
-         }
-
          consumerSet.remove(consumer);
 
          LinkedList<SimpleString> groupsToRemove = null;
@@ -828,6 +903,30 @@ public class QueueImpl implements Queue
       }
    }
 
+   /**
+    * Adds the consumer to the lane with the fewest consumers. The caller must hold the lock on the queue.
+    */
+   private void addConsumerHolder(final Consumer consumer)
+   {
+      DeliveryLane lane = lanes[0];
+
+      for (DeliveryLane other : lanes)
+      {
+         if (other.consumerList.size() < lane.consumerList.size())
+         {
+            lane = other;
+         }
+      }
+
+      ConsumerHolder holder = new ConsumerHolder(consumer, lane);
+
+      consumerList.add(holder);
+
+      lane.consumerList.add(holder);
+
+      lane.consumersChanged = true;
+   }
+
    public synchronized void addRedistributor(final long delay)
    {
       if (redistributorFuture != null)
@@ -1076,7 +1175,7 @@ public class QueueImpl implements Queue
          postAcknowledge(ref);
       }
 
-      messagesAcknowledged++;
+      messagesAcknowledged.incrementAndGet();
 
    }
 
@@ -1104,7 +1203,7 @@ public class QueueImpl implements Queue
          getRefsOperation(tx).addAck(ref);
       }
 
-      messagesAcknowledged++;
+      messagesAcknowledged.incrementAndGet();
    }
 
    public void reacknowledge(final Transaction tx, final MessageReference ref) throws Exception
@@ -1121,7 +1220,7 @@ public class QueueImpl implements Queue
       // https://issues.jboss.org/browse/HORNETQ-609
       incDelivering();
 
-      messagesAcknowledged++;
+      messagesAcknowledged.incrementAndGet();
    }
 
    private RefsOperation getRefsOperation(final Transaction tx)
@@ -1212,7 +1311,7 @@ public class QueueImpl implements Queue
 
    public void incrementMesssagesAdded()
    {
-      messagesAdded++;
+      messagesAdded.incrementAndGet();
    }
 
    @Override
@@ -1225,17 +1324,17 @@ public class QueueImpl implements Queue
    {
       if (pageSubscription != null)
       {
-         return messagesAdded + pageSubscription.getCounter().getValue() - pagedReferences.get();
+         return messagesAdded.get() + pageSubscription.getCounter().getValue() - pagedReferences.get();
       }
       else
       {
-         return messagesAdded;
+         return messagesAdded.get();
       }
    }
 
    public long getMessagesAcknowledged()
    {
-      return messagesAcknowledged;
+      return messagesAcknowledged.get();
    }
 
    public int deleteAllReferences() throws Exception
@@ -1959,7 +2058,7 @@ public class QueueImpl implements Queue
       {
          internalAddTail(ref);
 
-         messagesAdded++;
+         messagesAdded.incrementAndGet();
          if (added++ > MAX_DELIVERIES_IN_LOOP)
          {
             // if we just keep polling from the intermediate we could starve in case there's a sustained load
@@ -1973,7 +2072,7 @@ public class QueueImpl implements Queue
     * This method will deliver as many messages as possible until all consumers are busy or there
     * are no more matching or available messages.
     */
-   private void deliver()
+   private void deliver(final DeliveryLane lane)
    {
       if (HornetQServerLogger.LOGGER.isDebugEnabled())
       {
@@ -1993,6 +2092,16 @@ public class QueueImpl implements Queue
 
       long timeout = System.currentTimeMillis() + DELIVERY_TIMEOUT;
 
+      // The references handled by each consumer, their delivery proceeds once the batch is full or the loop is done
+      Map<Consumer, List<MessageReference>> batch = new LinkedHashMap<Consumer, List<MessageReference>>();
+
+      int batchSize = 0;
+
+      // a single lane is delivered on the thread selecting the references, which doesn't hold them back
+      final int maxBatchSize = lanes.length > 1 ? DELIVERY_BATCH_SIZE : 1;
+
+      boolean stopped = false;
+
       while (true)
       {
          if (handled == MAX_DELIVERIES_IN_LOOP)
@@ -2000,6 +2109,8 @@ public class QueueImpl implements Queue
             // Schedule another one - we do this to prevent a single thread getting caught up in this loop for too
             // long
 
+            proceedDeliver(batch);
+
             deliverAsync();
 
             return;
@@ -2012,23 +2123,29 @@ public class QueueImpl implements Queue
                HornetQServerLogger.LOGGER.trace("delivery has been running for too long. Scheduling another delivery task now");
             }
 
+            proceedDeliver(batch);
+
             deliverAsync();
 
             return;
          }
 
-
          MessageReference ref;
 
          Consumer handledconsumer = null;
 
+         // The consumers may be busy only because their credits are reserved by the batch
+         boolean retryAfterBatch = false;
+
          synchronized (this)
          {
 
             // Need to do these checks inside the synchronized
-            if (paused || consumerList.isEmpty())
+            if (paused || lane.consumerList.isEmpty())
             {
-               return;
+               stopped = true;
+
+               break;
             }
 
             if (messageReferences.size() == 0)
@@ -2036,13 +2153,13 @@ public class QueueImpl implements Queue
                break;
             }
 
-            if (endPos < 0 || consumersChanged)
+            if (endPos < 0 || lane.consumersChanged)
             {
-               consumersChanged = false;
+               lane.consumersChanged = false;
 
-               size = consumerList.size();
+               size = lane.consumerList.size();
 
-               endPos = pos - 1;
+               endPos = lane.pos - 1;
 
                if (endPos < 0)
                {
@@ -2051,7 +2168,7 @@ public class QueueImpl implements Queue
                }
             }
 
-            ConsumerHolder holder = consumerList.get(pos);
+            ConsumerHolder holder = lane.consumerList.get(lane.pos);
 
             Consumer consumer = holder.consumer;
             Consumer groupConsumer = null;
@@ -2110,7 +2227,17 @@ public class QueueImpl implements Queue
                   }
                }
 
-               HandleStatus status = handle(ref, consumer);
+               HandleStatus status;
+
+               if (groupConsumer != null && !lane.delivers(groupConsumer))
+               {
+                  // The lane of the group's consumer delivers the references of the group
+                  status = HandleStatus.NO_MATCH;
+               }
+               else
+               {
+                  status = handle(ref, consumer);
+               }
 
                if (status == HandleStatus.HANDLED)
                {
@@ -2142,7 +2269,7 @@ public class QueueImpl implements Queue
                }
             }
 
-            if (pos == endPos)
+            if (lane.pos == endPos)
             {
                // Round robin'd all
 
@@ -2154,6 +2281,10 @@ public class QueueImpl implements Queue
                      // however I'm keeping this as an assertion case future developers ever change the logic here on this class
                      HornetQServerLogger.LOGGER.warn("Internal error! Delivery logic has identified a non delivery and still handled a consumer!");
                   }
+                  else if (batchSize > 0)
+                  {
+                     retryAfterBatch = true;
+                  }
                   else
                   {
                      if (HornetQServerLogger.LOGGER.isDebugEnabled())
@@ -2171,22 +2302,48 @@ public class QueueImpl implements Queue
             // When using group we don't need to load balance to the next position
             if (groupConsumer == null)
             {
-               pos++;
+               lane.pos++;
             }
 
-            if (pos >= size)
+            if (lane.pos >= size)
             {
-               pos = 0;
+               lane.pos = 0;
             }
          }
 
          if (handledconsumer != null)
          {
-            proceedDeliver(handledconsumer, ref);
+            List<MessageReference> refs = batch.get(handledconsumer);
+            if (refs == null)
+            {
+               refs = new ArrayList<MessageReference>();
+               batch.put(handledconsumer, refs);
+            }
+            refs.add(ref);
+            batchSize++;
+
+            if (batchSize >= maxBatchSize)
+            {
+               proceedDeliver(batch);
+
+               batchSize = 0;
+            }
+         }
+
+         if (retryAfterBatch)
+         {
+            proceedDeliver(batch);
+
+            batchSize = 0;
          }
       }
 
-      checkDepage();
+      proceedDeliver(batch);
+
+      if (!stopped)
+      {
+         checkDepage();
+      }
    }
 
    private void checkDepage()
@@ -2337,9 +2494,7 @@ public class QueueImpl implements Queue
                                            executor,
                                            QueueImpl.REDISTRIBUTOR_BATCH_SIZE);
 
-         consumerList.add(new ConsumerHolder(redistributor));
-
-         consumersChanged = true;
+         addConsumerHolder(redistributor);
 
          redistributor.start();
 
@@ -2663,9 +2818,12 @@ public class QueueImpl implements Queue
     */
    private boolean deliverDirect(final MessageReference ref)
    {
+      // Only a queue with a single lane delivers directly, see addTail
+      final DeliveryLane lane = lanes[0];
+
       synchronized (this)
       {
-         if (paused || consumerList.isEmpty())
+         if (paused || lane.consumerList.isEmpty())
          {
             return false;
          }
@@ -2675,13 +2833,13 @@ public class QueueImpl implements Queue
             return true;
          }
 
-         int startPos = pos;
+         int startPos = lane.pos;
 
-         int size = consumerList.size();
+         int size = lane.consumerList.size();
 
          while (true)
          {
-            ConsumerHolder holder = consumerList.get(pos);
+            ConsumerHolder holder = lane.consumerList.get(lane.pos);
 
             Consumer consumer = holder.consumer;
 
@@ -2704,12 +2862,12 @@ public class QueueImpl implements Queue
             // Only move onto the next position if the consumer on the current position was used.
             if (groupConsumer == null)
             {
-               pos++;
+               lane.pos++;
             }
 
-            if (pos == size)
+            if (lane.pos == size)
             {
-               pos = 0;
+               lane.pos = 0;
             }
 
             HandleStatus status = handle(ref, consumer);
@@ -2721,14 +2879,14 @@ public class QueueImpl implements Queue
                   groups.put(groupID, consumer);
                }
 
-               messagesAdded++;
+               messagesAdded.incrementAndGet();
 
                deliveriesInTransit.countUp();
                proceedDeliver(consumer, ref);
                return true;
             }
 
-            if (pos == startPos)
+            if (lane.pos == startPos)
             {
                // Tried them all
                break;
@@ -2738,6 +2896,66 @@ public class QueueImpl implements Queue
       }
    }
 
+   /**
+    * Proceeds with the delivery of the references handled by each consumer and clears the batch. This
+    * must be called without holding the lock on the queue.
+    */
+   private void proceedDeliver(final Map<Consumer, List<MessageReference>> batch)
+   {
+      for (Map.Entry<Consumer, List<MessageReference>> entry : batch.entrySet())
+      {
+         Consumer consumer = entry.getKey();
+
+         List<MessageReference> references = entry.getValue();
+
+         if (references.size() == 1)
+         {
+            proceedDeliver(consumer, references.get(0));
+
+            continue;
+         }
+
+         int inTransit = references.size();
+
+         try
+         {
+            consumer.proceedDeliver(references);
+         }
+         catch (Throwable t)
+         {
+            HornetQServerLogger.LOGGER.removingBadConsumer(t, consumer, references.isEmpty() ? null : references.get(0));
+
+            synchronized (this)
+            {
+               // If the consumer throws an exception we remove the consumer
+               try
+               {
+                  removeConsumer(consumer);
+               }
+               catch (Exception e)
+               {
+                  HornetQServerLogger.LOGGER.errorRemovingConsumer(e);
+               }
+
+               // The consumer took the ones it delivered off the list, like a single failed delivery the rest go back
+               for (int i = references.size() - 1; i >= 0; i--)
+               {
+                  addHead(references.get(i));
+               }
+            }
+         }
+         finally
+         {
+            for (int i = 0; i < inTransit; i++)
+            {
+               deliveriesInTransit.countDown();
+            }
+         }
+      }
+
+      batch.clear();
+   }
+
    private void proceedDeliver(Consumer consumer, MessageReference reference)
    {
       try
@@ -2920,23 +3138,24 @@ public class QueueImpl implements Queue
 
    public synchronized void resetMessagesAdded()
    {
-      messagesAdded = 0;
+      messagesAdded.set(0);
    }
 
    public synchronized void resetMessagesAcknowledged()
    {
-      messagesAcknowledged = 0;
+      messagesAcknowledged.set(0);
    }
 
    public float getRate()
    {
+      long added = messagesAdded.get();
       float timeSlice = ((System.currentTimeMillis() - queueRateCheckTime.getAndSet(System.currentTimeMillis())) / 1000.0f);
       if (timeSlice == 0)
       {
-         messagesAddedSnapshot.getAndSet(messagesAdded);
+         messagesAddedSnapshot.getAndSet(added);
          return 0.0f;
       }
-      return BigDecimal.valueOf((messagesAdded - messagesAddedSnapshot.getAndSet(messagesAdded)) / timeSlice).setScale(2, BigDecimal.ROUND_UP).floatValue();
+      return BigDecimal.valueOf((added - messagesAddedSnapshot.getAndSet(added)) / timeSlice).setScale(2, BigDecimal.ROUND_UP).floatValue();
    }
 
    // Inner classes
@@ -2944,13 +3163,17 @@ public class QueueImpl implements Queue
 
    private static class ConsumerHolder
    {
-      ConsumerHolder(final Consumer consumer)
+      ConsumerHolder(final Consumer consumer, final DeliveryLane lane)
       {
          this.consumer = consumer;
+
+         this.lane = lane;
       }
 
       final Consumer consumer;
 
+      final DeliveryLane lane;
+
       LinkedListIterator<MessageReference> iter;
 
    }
@@ -2976,12 +3199,80 @@ public class QueueImpl implements Queue
    }
 
    /**
-    * There's no need of having multiple instances of this class. a Single instance per QueueImpl should be more than sufficient.
+    * The consumers of a lane only get references from the lane's {@link DeliverRunner}, which runs on
+    * the executor of the lane. The lanes select the references holding the lock on the queue, and
+    * deliver them to their consumers in parallel.
+    */
+   private final class DeliveryLane
+   {
+      final List<ConsumerHolder> consumerList = new CopyOnWriteArrayList<ConsumerHolder>();
+
+      // null for the executor of the queue
+      final Executor executor;
+
+      // We don't ever need more than two DeliverRunner on the executor's list
+      // that is getting the worse scenario possible when one runner is almost finishing before the second started
+      // for that we keep a counter of scheduled instances
+      final AtomicInteger scheduledRunners = new AtomicInteger(0);
+
+      final Runnable deliverRunner = new DeliverRunner(this);
+
+      // used to control if we should recalculate certain positions inside deliverAsync
+      volatile boolean consumersChanged = true;
+
+      int pos;
+
+      DeliveryLane(final Executor executor)
+      {
+         this.executor = executor;
+      }
+
+      Executor getExecutor()
+      {
+         // When in page mode every lane delivers on the executor of the page subscription
+         if (executor == null || pageSubscription != null && pageSubscription.isPaging())
+         {
+            return QueueImpl.this.getExecutor();
+         }
+         else
+         {
+            return executor;
+         }
+      }
+
+      boolean delivers(final Consumer consumer)
+      {
+         if (lanes.length == 1)
+         {
+            return true;
+         }
+
+         for (ConsumerHolder holder : consumerList)
+         {
+            if (holder.consumer == consumer)
+            {
+               return true;
+            }
+         }
+
+         return false;
+      }
+   }
+
+   /**
+    * There's no need of having multiple instances of this class. a Single instance per DeliveryLane should be more than sufficient.
     * previous versions of this class were using a synchronized object. The current version is using the deliverRunner
-    * instance, and to avoid confusion on the implementation I'm requesting to keep this single instanced per QueueImpl.
+    * instance, and to avoid confusion on the implementation I'm requesting to keep this single instanced per DeliveryLane.
     */
    private final class DeliverRunner implements Runnable
    {
+      private final DeliveryLane lane;
+
+      DeliverRunner(final DeliveryLane lane)
+      {
+         this.lane = lane;
+      }
+
       public void run()
       {
          try
@@ -2991,9 +3282,9 @@ public class QueueImpl implements Queue
             // this will avoid that possibility
             // We will be using the deliverRunner instance as the guard object to avoid multiple threads executing
             // an asynchronous delivery
-            synchronized (QueueImpl.this.deliverRunner)
+            synchronized (this)
             {
-               deliver();
+               deliver(lane);
             }
          }
          catch (Exception e)
@@ -3002,7 +3293,7 @@ public class QueueImpl implements Queue
          }
          finally
          {
-            scheduledRunners.decrementAndGet();
+            lane.scheduledRunners.decrementAndGet();
          }
       }
    }
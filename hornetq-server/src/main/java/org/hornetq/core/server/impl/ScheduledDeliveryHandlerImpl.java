@@ -13,16 +13,19 @@
 package org.hornetq.core.server.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.server.HornetQServerLogger;
@@ -32,6 +35,15 @@ import org.hornetq.core.server.ScheduledDeliveryHandler;
 
 /**
  * Handles scheduling deliveries to a queue at the correct time.
+ * <p/>
+ * The scheduled references are kept on a hierarchical timing wheel: the first level has one bucket
+ * per millisecond and every other level has buckets as wide as the whole level below it. When a
+ * bucket expires its references are either delivered or moved down to a finer level. A delivery is
+ * scheduled on the executor per bucket rather than per distinct delivery time.
+ * <p/>
+ * Adding a reference takes no lock, it is queued and put on the wheel by the next delivery, which
+ * is scheduled no later than the expiration of the bucket it goes to. Only the deliveries and the
+ * management operations lock the wheel.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
@@ -43,14 +55,35 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 {
    private static final boolean trace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   /** number of buckets on each level of the wheel */
+   private static final int WHEEL_SIZE = 64;
+
+   /** returned by {@link TimingWheel#add(RefScheduled)} when the reference is due already */
+   private static final long DUE = -1;
+
+   /** returned by {@link TimingWheel#add(RefScheduled)} when the bucket was scheduled already */
+   private static final long SCHEDULED = 0;
+
+   private static final MessageReferenceComparator COMPARATOR = new MessageReferenceComparator();
+
    private final ScheduledExecutorService scheduledExecutor;
 
 
    private final Map<Long, Runnable> runnables = new ConcurrentHashMap<>();
 
-   // This contains RefSchedules which are delegates to the real references
-   // just adding some information to keep it in order accordingly to the initial operations
-   private final TreeSet<RefScheduled> scheduledReferences = new TreeSet<>(new MessageReferenceComparator());
+   // This is also the lock for dueReferences
+   private final TimingWheel wheel = new TimingWheel(1, System.currentTimeMillis());
+
+   // references added and not yet on the wheel
+   private final java.util.Queue<RefScheduled> incoming = new ConcurrentLinkedQueue<>();
+
+   // references whose delivery time had passed when they were put on the wheel, they go on the next delivery
+   private List<RefScheduled> dueReferences = new ArrayList<>();
+
+   // keeps the order of the operations between references with the same delivery time
+   private final AtomicLong sequence = new AtomicLong();
+
+   private final AtomicInteger scheduledCount = new AtomicInteger();
 
    public ScheduledDeliveryHandlerImpl(final ScheduledExecutorService scheduledExecutor)
    {
@@ -68,9 +101,9 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
             HornetQServerLogger.LOGGER.trace("Scheduling delivery for " + ref + " to occur at " + deliveryTime);
          }
 
-         addInPlace(deliveryTime, ref, tail);
+         add(ref, tail);
 
-         scheduleDelivery(deliveryTime);
+         scheduleDelivery(bucketExpiration(deliveryTime, System.currentTimeMillis()));
 
          return true;
       }
@@ -80,71 +113,192 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
    public void addInPlace(final long deliveryTime, final MessageReference ref, final boolean tail)
    {
-      synchronized (scheduledReferences)
-      {
-         scheduledReferences.add(new RefScheduled(ref, tail));
-      }
+      add(ref, tail);
    }
 
    public int getScheduledCount()
    {
-      synchronized (scheduledReferences)
-      {
-         return scheduledReferences.size();
-      }
+      return scheduledCount.get();
    }
 
    public List<MessageReference> getScheduledReferences()
    {
-      List<MessageReference> refs = new LinkedList<MessageReference>();
+      List<RefScheduled> scheduled = new ArrayList<RefScheduled>();
 
-      synchronized (scheduledReferences)
+      List<Long> expirations = new ArrayList<Long>();
+
+      synchronized (wheel)
       {
-         for (RefScheduled ref : scheduledReferences)
+         drainIncoming(dueReferences, expirations);
+         scheduled.addAll(dueReferences);
+         for (TimingWheel level = wheel; level != null; level = level.overflow)
          {
-            refs.add(ref.getRef());
+            for (List<RefScheduled> bucket : level.buckets)
+            {
+               scheduled.addAll(bucket);
+            }
          }
       }
+
+      scheduleDeliveries(expirations);
+
+      Collections.sort(scheduled, COMPARATOR);
+
+      List<MessageReference> refs = new LinkedList<MessageReference>();
+      for (RefScheduled ref : scheduled)
+      {
+         refs.add(ref.getRef());
+      }
       return refs;
    }
 
    public List<MessageReference> cancel(final Filter filter)
    {
-      List<MessageReference> refs = new ArrayList<MessageReference>();
+      List<RefScheduled> cancelled = new ArrayList<RefScheduled>();
 
-      synchronized (scheduledReferences)
-      {
-         Iterator<RefScheduled> iter = scheduledReferences.iterator();
+      List<Long> expirations = new ArrayList<Long>();
 
-         while (iter.hasNext())
+      synchronized (wheel)
+      {
+         drainIncoming(dueReferences, expirations);
+         cancel(dueReferences, filter, cancelled);
+         for (TimingWheel level = wheel; level != null; level = level.overflow)
          {
-            MessageReference ref = iter.next().getRef();
-            if (filter == null || filter.match(ref.getMessage()))
+            for (List<RefScheduled> bucket : level.buckets)
             {
-               iter.remove();
-               refs.add(ref);
+               cancel(bucket, filter, cancelled);
             }
          }
+         scheduledCount.addAndGet(-cancelled.size());
+      }
+
+      scheduleDeliveries(expirations);
+
+      Collections.sort(cancelled, COMPARATOR);
+
+      List<MessageReference> refs = new ArrayList<MessageReference>(cancelled.size());
+      for (RefScheduled ref : cancelled)
+      {
+         refs.add(ref.getRef());
       }
       return refs;
    }
 
    public MessageReference removeReferenceWithID(final long id)
    {
-      synchronized (scheduledReferences)
+      MessageReference ref;
+
+      List<Long> expirations = new ArrayList<Long>();
+
+      synchronized (wheel)
       {
-         Iterator<RefScheduled> iter = scheduledReferences.iterator();
-         while (iter.hasNext())
+         drainIncoming(dueReferences, expirations);
+         ref = removeReferenceWithID(dueReferences, id);
+         for (TimingWheel level = wheel; ref == null && level != null; level = level.overflow)
          {
-            MessageReference ref = iter.next().getRef();
-            if (ref.getMessage().getMessageID() == id)
+            for (int i = 0; ref == null && i < WHEEL_SIZE; i++)
             {
-               iter.remove();
-               return ref;
+               ref = removeReferenceWithID(level.buckets[i], id);
             }
          }
+         if (ref != null)
+         {
+            scheduledCount.decrementAndGet();
+         }
+      }
+
+      scheduleDeliveries(expirations);
+
+      return ref;
+   }
+
+   private void add(final MessageReference ref, final boolean tail)
+   {
+      scheduledCount.incrementAndGet();
+      incoming.add(new RefScheduled(ref, tail, sequence.getAndIncrement()));
+   }
+
+   /**
+    * Puts the references added since the last call on the wheel, must be called holding its lock.
+    *
+    * @param due         where the references that are due already go
+    * @param expirations where the expirations of the buckets needing a delivery go
+    */
+   private void drainIncoming(final List<RefScheduled> due, final List<Long> expirations)
+   {
+      RefScheduled ref;
+      while ((ref = incoming.poll()) != null)
+      {
+         place(ref, due, expirations);
+      }
+   }
+
+   private void place(final RefScheduled ref, final List<RefScheduled> due, final List<Long> expirations)
+   {
+      long expiration = wheel.add(ref);
+      if (expiration == DUE)
+      {
+         due.add(ref);
+      }
+      else if (expiration != SCHEDULED)
+      {
+         expirations.add(expiration);
+      }
+   }
+
+   /**
+    * @return the expiration of the bucket a reference with this delivery time goes to if it is put
+    * on the wheel at {@code now}, or an earlier time, never later than the delivery time
+    */
+   private static long bucketExpiration(final long deliveryTime, final long now)
+   {
+      long tick = 1;
+      while (deliveryTime - now >= tick * WHEEL_SIZE && tick <= Long.MAX_VALUE / WHEEL_SIZE / WHEEL_SIZE)
+      {
+         tick *= WHEEL_SIZE;
+      }
+      return deliveryTime - deliveryTime % tick;
+   }
+
+   private void scheduleDeliveries(final List<Long> expirations)
+   {
+      if (scheduledExecutor == null)
+      {
+         return;
+      }
+      for (Long expiration : expirations)
+      {
+         scheduleDelivery(expiration);
+      }
+   }
+
+   private static void cancel(final List<RefScheduled> bucket, final Filter filter, final List<RefScheduled> cancelled)
+   {
+      Iterator<RefScheduled> iter = bucket.iterator();
+
+      while (iter.hasNext())
+      {
+         RefScheduled ref = iter.next();
+         if (filter == null || filter.match(ref.getRef().getMessage()))
+         {
+            iter.remove();
+            cancelled.add(ref);
+         }
       }
+   }
 
+   private static MessageReference removeReferenceWithID(final List<RefScheduled> bucket, final long id)
+   {
+      Iterator<RefScheduled> iter = bucket.iterator();
+      while (iter.hasNext())
+      {
+         MessageReference ref = iter.next().getRef();
+         if (ref.getMessage().getMessageID() == id)
+         {
+            iter.remove();
+            return ref;
+         }
+      }
       return null;
    }
 
@@ -224,42 +378,54 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
             HornetQServerLogger.LOGGER.trace("Is it " + System.currentTimeMillis() + " now and we are running deliveryTime = " + deliveryTime);
          }
 
-         synchronized (scheduledReferences)
+         List<RefScheduled> due;
+
+         List<Long> expirations = new ArrayList<Long>();
+
+         synchronized (wheel)
          {
+            due = dueReferences;
+            dueReferences = new ArrayList<>();
 
-            Iterator<RefScheduled> iter = scheduledReferences.iterator();
-            while (iter.hasNext())
+            // the references of the buckets that expired are either due or go down to a finer level
+            List<RefScheduled> expired = new ArrayList<RefScheduled>();
+            wheel.expire(now, expired);
+            for (RefScheduled ref : expired)
             {
-               MessageReference reference = iter.next().getRef();
-               if (reference.getScheduledDeliveryTime() > now)
-               {
-                  // We will delivery as long as there are messages to be delivered
-                  break;
-               }
+               place(ref, due, expirations);
+            }
+            drainIncoming(due, expirations);
+            scheduledCount.addAndGet(-due.size());
+         }
 
-               iter.remove();
+         scheduleDeliveries(expirations);
 
-               reference.setScheduledDeliveryTime(0);
+         Collections.sort(due, COMPARATOR);
 
-               LinkedList<MessageReference> references = refs.get(reference.getQueue());
+         for (RefScheduled scheduled : due)
+         {
+            MessageReference reference = scheduled.getRef();
 
-               if (references == null)
-               {
-                  references = new LinkedList<MessageReference>();
-                  refs.put(reference.getQueue(), references);
-               }
+            reference.setScheduledDeliveryTime(0);
 
-               if (ScheduledDeliveryHandlerImpl.trace)
-               {
-                  HornetQServerLogger.LOGGER.trace("sending message " + reference + " to delivery, deliveryTime =  " + deliveryTime);
-               }
+            LinkedList<MessageReference> references = refs.get(reference.getQueue());
 
-               references.addFirst(reference);
+            if (references == null)
+            {
+               references = new LinkedList<MessageReference>();
+               refs.put(reference.getQueue(), references);
             }
+
             if (ScheduledDeliveryHandlerImpl.trace)
             {
-               HornetQServerLogger.LOGGER.trace("Finished loop on deliveryTime = " + deliveryTime);
+               HornetQServerLogger.LOGGER.trace("sending message " + reference + " to delivery, deliveryTime =  " + deliveryTime);
             }
+
+            references.addFirst(reference);
+         }
+         if (ScheduledDeliveryHandlerImpl.trace)
+         {
+            HornetQServerLogger.LOGGER.trace("Finished loop on deliveryTime = " + deliveryTime);
          }
 
          for (Map.Entry<Queue, LinkedList<MessageReference>> entry : refs.entrySet())
@@ -279,18 +445,113 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
       }
    }
 
+   /**
+    * One level of the timing wheel, with {@link #WHEEL_SIZE} buckets of {@code tick} milliseconds.
+    * The references too far in the future for this level go to the overflow level, which is
+    * created when it is first needed.
+    */
+   private static final class TimingWheel
+   {
+      private final long tick;
+
+      private final long interval;
+
+      private final List<RefScheduled>[] buckets;
+
+      private final long[] expirations = new long[WHEEL_SIZE];
+
+      private long currentTime;
+
+      private TimingWheel overflow;
+
+      @SuppressWarnings("unchecked")
+      TimingWheel(final long tick, final long currentTime)
+      {
+         this.tick = tick;
+         this.interval = tick > Long.MAX_VALUE / WHEEL_SIZE ? Long.MAX_VALUE : tick * WHEEL_SIZE;
+         this.currentTime = currentTime - currentTime % tick;
+         buckets = new List[WHEEL_SIZE];
+         for (int i = 0; i < WHEEL_SIZE; i++)
+         {
+            buckets[i] = new ArrayList<RefScheduled>();
+         }
+      }
+
+      long add(final RefScheduled ref)
+      {
+         long time = ref.getRef().getScheduledDeliveryTime();
+         long delta = time - currentTime;
+
+         if (delta < tick)
+         {
+            return DUE;
+         }
+
+         if (delta < interval)
+         {
+            long virtualId = time / tick;
+            int index = (int) (virtualId % WHEEL_SIZE);
+            List<RefScheduled> bucket = buckets[index];
+            bucket.add(ref);
+            if (bucket.size() == 1)
+            {
+               expirations[index] = virtualId * tick;
+               return expirations[index];
+            }
+            return SCHEDULED;
+         }
+
+         if (overflow == null)
+         {
+            overflow = new TimingWheel(interval, currentTime);
+         }
+         return overflow.add(ref);
+      }
+
+      /**
+       * Moves the wheel to {@code now}, removing the references of every bucket that started.
+       */
+      void expire(final long now, final List<RefScheduled> expired)
+      {
+         long nowTick = now / tick;
+         long fromTick = currentTime / tick;
 
-   // We need a treeset ordered, but we need to order tail operations as well.
-   // So, this will serve as a delegate to the object
-   class RefScheduled
+         if (nowTick >= fromTick)
+         {
+            long ticks = Math.min(nowTick - fromTick + 1, WHEEL_SIZE);
+            for (long i = 0; i < ticks; i++)
+            {
+               int index = (int) ((fromTick + i) % WHEEL_SIZE);
+               if (!buckets[index].isEmpty() && expirations[index] <= now)
+               {
+                  expired.addAll(buckets[index]);
+                  // a new list, so a bucket that was once crowded doesn't hold on to its capacity
+                  buckets[index] = new ArrayList<RefScheduled>();
+               }
+            }
+            currentTime = nowTick * tick;
+         }
+
+         if (overflow != null)
+         {
+            overflow.expire(now, expired);
+         }
+      }
+   }
+
+   // The references are ordered by delivery time, and by the order of the operations when they
+   // have the same delivery time. So, this will serve as a delegate to the object
+   static final class RefScheduled
    {
       private final MessageReference ref;
       private final boolean tail;
+      private final long sequence;
 
-      RefScheduled(MessageReference ref, boolean tail)
+      RefScheduled(MessageReference ref, boolean tail, long sequence)
       {
          this.ref = ref;
          this.tail = tail;
+         this.sequence = sequence;
       }
 
       public MessageReference getRef()
@@ -303,6 +564,10 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
          return tail;
       }
 
+      public long getSequence()
+      {
+         return sequence;
+      }
    }
 
    static class MessageReferenceComparator implements Comparator<RefScheduled>
@@ -339,11 +604,12 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
             }
             if (!ref1.isTail() && !ref2.isTail())
             {
-               return -1;
+               // the last one added to the head goes first
+               return Long.compare(ref2.getSequence(), ref1.getSequence());
             }
             else
             {
-               return 1;
+               return Long.compare(ref1.getSequence(), ref2.getSequence());
             }
          }
       }
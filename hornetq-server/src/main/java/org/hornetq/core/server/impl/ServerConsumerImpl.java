@@ -13,6 +13,7 @@
 package org.hornetq.core.server.impl;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -92,12 +93,21 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
    /**
     * We get a readLock when a message is handled, and return the readLock when the message is finally delivered
     * When stopping the consumer we need to get a writeLock to make sure we had all delivery finished
-    * otherwise a rollback may get message sneaking in
+    * otherwise a rollback may get message sneaking in.
+    * <p>
+    * The writeLock is taken before {@link #lock}: a queue delivering a batch holds the readLock of the
+    * references it handled while it offers the consumer the next one.
     */
    private final ReadWriteLock lockDelivery = new ReentrantReadWriteLock();
 
    private volatile AtomicInteger availableCredits = new AtomicInteger(0);
 
+   /**
+    * Credits reserved by references handled but not delivered yet, so a batch of handled references
+    * can't go over the credits of the consumer
+    */
+   private final AtomicInteger pendingCredits = new AtomicInteger(0);
+
    private boolean started;
 
    private volatile LargeMessageDeliverer largeMessageDeliverer = null;
@@ -286,7 +296,7 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
    public HandleStatus handle(final MessageReference ref) throws Exception
    {
-      if (callback != null && !callback.hasCredits(this) || availableCredits != null && availableCredits.get() <= 0)
+      if (callback != null && !callback.hasCredits(this) || availableCredits != null && availableCredits.get() - pendingCredits.get() <= 0)
       {
          if (HornetQServerLogger.LOGGER.isDebugEnabled())
          {
@@ -339,6 +349,14 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
             return HandleStatus.NO_MATCH;
          }
 
+         // Only a consumer being stopped holds the writeLock, while it waits on the lock held here. A reference is
+         // never handled then, it goes back into the queue for delivery later.
+         // The readLock is reentrant for the queue holding the ones it handled before on a batch
+         if (!lockDelivery.readLock().tryLock())
+         {
+            return HandleStatus.BUSY;
+         }
+
          if (HornetQServerLogger.LOGGER.isTraceEnabled())
          {
             HornetQServerLogger.LOGGER.trace("Handling reference " + ref);
@@ -387,7 +405,10 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
             largeMessageDeliverer = new LargeMessageDeliverer((LargeServerMessage) message, ref);
          }
 
-         lockDelivery.readLock().lock();
+         if (availableCredits != null && !(message.isLargeMessage() && supportLargeMessage))
+         {
+            pendingCredits.addAndGet(message.getEncodeSize());
+         }
 
          return HandleStatus.HANDLED;
       }
@@ -401,16 +422,7 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
          if (message.isLargeMessage() && supportLargeMessage)
          {
-            if (largeMessageDeliverer == null)
-            {
-               // This can't really happen as handle had already crated the deliverer
-               // instead of throwing an exception in weird cases there is no problem on just go ahead and create it
-               // again here
-               largeMessageDeliverer = new LargeMessageDeliverer((LargeServerMessage) message, reference);
-            }
-            // The deliverer was prepared during handle, as we can't have more than one pending large message
-            // as it would return busy if there is anything pending
-            largeMessageDeliverer.deliver();
+            deliverLargeMessage(reference, message);
          }
          else
          {
@@ -418,6 +430,54 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
          }
       }
       finally
+      {
+         releaseDelivery(reference);
+      }
+   }
+
+   public void proceedDeliver(final List<MessageReference> references) throws Exception
+   {
+      // The references delivered leave the list, the ones left on it still hold their readLock
+      try
+      {
+         // handle returns busy while a large message is pending, so it can only be the last one
+         ServerMessage last = references.get(references.size() - 1).getMessage();
+
+         int standardMessages = last.isLargeMessage() && supportLargeMessage ? references.size() - 1 : references.size();
+
+         if (standardMessages > 0)
+         {
+            deliverStandardMessages(references.subList(0, standardMessages));
+         }
+
+         if (!references.isEmpty())
+         {
+            deliverLargeMessage(references.get(0), last);
+
+            releaseDelivery(references.remove(0));
+         }
+      }
+      finally
+      {
+         for (MessageReference reference : references)
+         {
+            releaseDelivery(reference);
+         }
+      }
+   }
+
+   private void releaseDelivery(final MessageReference reference)
+   {
+      try
+      {
+         ServerMessage message = reference.getMessage();
+
+         if (availableCredits != null && !(message.isLargeMessage() && supportLargeMessage))
+         {
+            pendingCredits.addAndGet(-message.getEncodeSize());
+         }
+      }
+      finally
       {
          lockDelivery.readLock().unlock();
       }
@@ -618,19 +678,19 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
    public void setStarted(final boolean started)
    {
-      synchronized (lock)
+      // This is to make sure that the delivery process has finished any pending delivery
+      // otherwise a message may sneak in on the client while we are trying to stop the consumer
+      lockDelivery.writeLock().lock();
+      try
       {
-         // This is to make sure that the delivery process has finished any pending delivery
-         // otherwise a message may sneak in on the client while we are trying to stop the consumer
-         lockDelivery.writeLock().lock();
-         try
+         synchronized (lock)
          {
             this.started = browseOnly || started;
          }
-         finally
-         {
-            lockDelivery.writeLock().unlock();
-         }
+      }
+      finally
+      {
+         lockDelivery.writeLock().unlock();
       }
 
       // Outside the lock
@@ -642,19 +702,19 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
    public void setTransferring(final boolean transferring)
    {
-      synchronized (lock)
+      // This is to make sure that the delivery process has finished any pending delivery
+      // otherwise a message may sneak in on the client while we are trying to stop the consumer
+      lockDelivery.writeLock().lock();
+      try
       {
-         // This is to make sure that the delivery process has finished any pending delivery
-         // otherwise a message may sneak in on the client while we are trying to stop the consumer
-         lockDelivery.writeLock().lock();
-         try
+         synchronized (lock)
          {
             this.transferring = transferring;
          }
-         finally
-         {
-            lockDelivery.writeLock().unlock();
-         }
+      }
+      finally
+      {
+         lockDelivery.writeLock().unlock();
       }
 
       // Outside the lock
@@ -976,6 +1036,55 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
     * @param ref
     * @param message
     */
+   private void deliverLargeMessage(final MessageReference ref, final ServerMessage message) throws Exception
+   {
+      if (largeMessageDeliverer == null)
+      {
+         // This can't really happen as handle had already crated the deliverer
+         // instead of throwing an exception in weird cases there is no problem on just go ahead and create it
+         // again here
+         largeMessageDeliverer = new LargeMessageDeliverer((LargeServerMessage) message, ref);
+      }
+      // The deliverer was prepared during handle, as we can't have more than one pending large message
+      // as it would return busy if there is anything pending
+      largeMessageDeliverer.deliver();
+   }
+
+   /**
+    * Sends the messages in one write to the client. The callback takes the references it sent off the list.
+    */
+   private void deliverStandardMessages(final List<MessageReference> references)
+   {
+      List<MessageReference> sending = new ArrayList<MessageReference>(references);
+
+      try
+      {
+         int packetSize = callback.sendMessages(references, ServerConsumerImpl.this);
+
+         if (availableCredits != null)
+         {
+            availableCredits.addAndGet(-packetSize);
+
+            if (HornetQServerLogger.LOGGER.isTraceEnabled())
+            {
+               HornetQServerLogger.LOGGER.trace(this + "::FlowControl::delivery of " +
+                                                   sending.size() +
+                                                   " standard messages taking " +
+                                                   packetSize +
+                                                   " from credits, available now is " +
+                                                   availableCredits);
+            }
+         }
+      }
+      finally
+      {
+         for (int i = 0; i < sending.size() - references.size(); i++)
+         {
+            releaseDelivery(sending.get(i));
+         }
+      }
+   }
+
    private void deliverStandardMessage(final MessageReference ref, final ServerMessage message)
    {
       int packetSize = callback.sendMessage(message, ServerConsumerImpl.this, ref.getDeliveryCount());
@@ -1001,19 +1110,28 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
    {
       public void run()
       {
-         synchronized (lock)
+         // the deliverer takes the readLock, which has to be taken before the lock
+         lockDelivery.readLock().lock();
+         try
          {
-            try
+            synchronized (lock)
             {
-               if (largeMessageDeliverer == null || largeMessageDeliverer.deliver())
+               try
                {
-                  forceDelivery();
+                  if (largeMessageDeliverer == null || largeMessageDeliverer.deliver())
+                  {
+                     forceDelivery();
+                  }
+               }
+               catch (Exception e)
+               {
+                  HornetQServerLogger.LOGGER.errorRunningLargeMessageDeliverer(e);
                }
             }
-            catch (Exception e)
-            {
-               HornetQServerLogger.LOGGER.errorRunningLargeMessageDeliverer(e);
-            }
+         }
+         finally
+         {
+            lockDelivery.readLock().unlock();
          }
       }
    };
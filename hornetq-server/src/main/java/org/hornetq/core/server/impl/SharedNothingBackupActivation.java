@@ -40,6 +40,7 @@ import org.hornetq.core.server.group.GroupingHandler;
 import org.hornetq.core.server.management.ManagementService;
 import org.hornetq.utils.ReusableLatch;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -99,7 +100,7 @@ public final class SharedNothingBackupActivation extends Activation
          }
          // move all data away:
          hornetQServer.getNodeManager().stop();
-         hornetQServer.moveServerData();
+         Map<String, File> movedData = hornetQServer.moveServerData();
          hornetQServer.getNodeManager().start();
          synchronized (this)
          {
@@ -146,6 +147,13 @@ public final class SharedNothingBackupActivation extends Activation
 
          replicationEndpoint.setBackupQuorum(backupQuorum);
          replicationEndpoint.setExecutor(hornetQServer.getExecutorFactory().getExecutor());
+         if (!movedData.isEmpty())
+         {
+            // pages and large messages we had may be reused instead of copied again from the live
+            Configuration configuration = hornetQServer.getConfiguration();
+            replicationEndpoint.setPreviousDataDirectories(movedData.get(configuration.getPagingDirectory()),
+                                                           movedData.get(configuration.getLargeMessagesDirectory()));
+         }
          EndpointConnector endpointConnector = new EndpointConnector();
 
          HornetQServerLogger.LOGGER.backupServerStarted(hornetQServer.getVersion().getFullVersion(), hornetQServer.getNodeManager().getNodeId());
@@ -170,7 +170,11 @@ public class SharedNothingLiveActivation extends LiveActivation
          ReplicationFailureListener listener = new ReplicationFailureListener();
          rc.addCloseListener(listener);
          rc.addFailureListener(listener);
-         replicationManager = new ReplicationManager(rc, hornetQServer.getExecutorFactory());
+         replicationManager = new ReplicationManager(rc,
+                                                     hornetQServer.getExecutorFactory(),
+                                                     hornetQServer.getScheduledPool(),
+                                                     replicatedPolicy.getReplicationBatchSize(),
+                                                     replicatedPolicy.getReplicationBatchTimeout());
          replicationManager.start();
          Thread t = new Thread(new Runnable()
          {
@@ -44,6 +44,10 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final int DEFAULT_PAGE_MAX_CACHE = 5;
 
+   public static final int DEFAULT_PAGE_PREFETCH_SIZE = 1;
+
+   public static final boolean DEFAULT_PAGE_COMPRESSION = false;
+
    public static final int DEFAULT_MESSAGE_COUNTER_HISTORY_DAY_LIMIT = 0;
 
    public static final long DEFAULT_REDELIVER_DELAY = 0L;
@@ -52,6 +56,8 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final boolean DEFAULT_LAST_VALUE_QUEUE = false;
 
+   public static final int DEFAULT_DELIVERY_LANES = 1;
+
    public static final long DEFAULT_REDISTRIBUTION_DELAY = -1;
 
    public static final long DEFAULT_EXPIRY_DELAY = -1;
@@ -102,6 +108,12 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    private SlowConsumerPolicy slowConsumerPolicy = null;
 
+   private Integer pagePrefetchSize = null;
+
+   private Boolean pageCompression = null;
+
+   private Integer deliveryLanes = null;
+
    public AddressSettings(AddressSettings other)
    {
       this.addressFullMessagePolicy = other.addressFullMessagePolicy;
@@ -123,6 +135,9 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.slowConsumerThreshold = other.slowConsumerThreshold;
       this.slowConsumerCheckPeriod = other.slowConsumerCheckPeriod;
       this.slowConsumerPolicy = other.slowConsumerPolicy;
+      this.pagePrefetchSize = other.pagePrefetchSize;
+      this.pageCompression = other.pageCompression;
+      this.deliveryLanes = other.deliveryLanes;
    }
 
    public AddressSettings()
@@ -140,6 +155,16 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.lastValueQueue = lastValueQueue;
    }
 
+   public int getDeliveryLanes()
+   {
+      return deliveryLanes != null ? deliveryLanes : AddressSettings.DEFAULT_DELIVERY_LANES;
+   }
+
+   public void setDeliveryLanes(final int deliveryLanes)
+   {
+      this.deliveryLanes = deliveryLanes;
+   }
+
    public AddressFullMessagePolicy getAddressFullMessagePolicy()
    {
       return addressFullMessagePolicy != null ? addressFullMessagePolicy
@@ -171,6 +196,26 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.pageMaxCache = pageMaxCache;
    }
 
+   public int getPagePrefetchSize()
+   {
+      return pagePrefetchSize != null ? pagePrefetchSize : AddressSettings.DEFAULT_PAGE_PREFETCH_SIZE;
+   }
+
+   public void setPagePrefetchSize(final int pagePrefetchSize)
+   {
+      this.pagePrefetchSize = pagePrefetchSize;
+   }
+
+   public boolean isPageCompression()
+   {
+      return pageCompression != null ? pageCompression : AddressSettings.DEFAULT_PAGE_COMPRESSION;
+   }
+
+   public void setPageCompression(final boolean pageCompression)
+   {
+      this.pageCompression = pageCompression;
+   }
+
    public long getMaxSizeBytes()
    {
       return maxSizeBytes != null ? maxSizeBytes : AddressSettings.DEFAULT_MAX_SIZE_BYTES;
@@ -394,6 +439,18 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          slowConsumerPolicy = merged.slowConsumerPolicy;
       }
+      if (pagePrefetchSize == null)
+      {
+         pagePrefetchSize = merged.pagePrefetchSize;
+      }
+      if (pageCompression == null)
+      {
+         pageCompression = merged.pageCompression;
+      }
+      if (deliveryLanes == null)
+      {
+         deliveryLanes = merged.deliveryLanes;
+      }
    }
 
    @Override
@@ -454,6 +511,13 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          slowConsumerPolicy = null;
       }
+
+      // the settings stored before the prefetch size existed end here
+      pagePrefetchSize = buffer.readable() ? BufferHelper.readNullableInteger(buffer) : null;
+
+      pageCompression = buffer.readable() ? BufferHelper.readNullableBoolean(buffer) : null;
+
+      deliveryLanes = buffer.readable() ? BufferHelper.readNullableInteger(buffer) : null;
    }
 
    @Override
@@ -478,7 +542,10 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
          BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute) +
          BufferHelper.sizeOfNullableLong(slowConsumerCheckPeriod) +
          BufferHelper.sizeOfNullableLong(slowConsumerThreshold) +
-         BufferHelper.sizeOfNullableSimpleString(slowConsumerPolicy != null ? slowConsumerPolicy.toString() : null);
+         BufferHelper.sizeOfNullableSimpleString(slowConsumerPolicy != null ? slowConsumerPolicy.toString() : null) +
+         BufferHelper.sizeOfNullableInteger(pagePrefetchSize) +
+         BufferHelper.sizeOfNullableBoolean(pageCompression) +
+         BufferHelper.sizeOfNullableInteger(deliveryLanes);
    }
 
    @Override
@@ -522,6 +589,12 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       BufferHelper.writeNullableLong(buffer, slowConsumerCheckPeriod);
 
       buffer.writeNullableSimpleString(slowConsumerPolicy != null ? new SimpleString(slowConsumerPolicy.toString()) : null);
+
+      BufferHelper.writeNullableInteger(buffer, pagePrefetchSize);
+
+      BufferHelper.writeNullableBoolean(buffer, pageCompression);
+
+      BufferHelper.writeNullableInteger(buffer, deliveryLanes);
    }
 
    /* (non-Javadoc)
@@ -552,6 +625,9 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       result = prime * result + ((slowConsumerThreshold == null) ? 0 : slowConsumerThreshold.hashCode());
       result = prime * result + ((slowConsumerCheckPeriod == null) ? 0 : slowConsumerCheckPeriod.hashCode());
       result = prime * result + ((slowConsumerPolicy == null) ? 0 : slowConsumerPolicy.hashCode());
+      result = prime * result + ((pagePrefetchSize == null) ? 0 : pagePrefetchSize.hashCode());
+      result = prime * result + ((pageCompression == null) ? 0 : pageCompression.hashCode());
+      result = prime * result + ((deliveryLanes == null) ? 0 : deliveryLanes.hashCode());
       return result;
    }
 
@@ -701,6 +777,27 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       }
       else if (!slowConsumerPolicy.equals(other.slowConsumerPolicy))
          return false;
+      if (pagePrefetchSize == null)
+      {
+         if (other.pagePrefetchSize != null)
+            return false;
+      }
+      else if (!pagePrefetchSize.equals(other.pagePrefetchSize))
+         return false;
+      if (pageCompression == null)
+      {
+         if (other.pageCompression != null)
+            return false;
+      }
+      else if (!pageCompression.equals(other.pageCompression))
+         return false;
+      if (deliveryLanes == null)
+      {
+         if (other.deliveryLanes != null)
+            return false;
+      }
+      else if (!deliveryLanes.equals(other.deliveryLanes))
+         return false;
       return true;
    }
 
@@ -747,6 +844,12 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
          slowConsumerCheckPeriod +
          ", slowConsumerPolicy=" +
          slowConsumerPolicy +
+         ", pagePrefetchSize=" +
+         pagePrefetchSize +
+         ", pageCompression=" +
+         pageCompression +
+         ", deliveryLanes=" +
+         deliveryLanes +
          "]";
    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.spi.core.protocol;
+
+import java.util.List;
+
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.ServerConsumer;
+
+/**
+ * A {@link SessionCallback} sending the messages of several references one at a time, for the
+ * protocols that have no way of writing them at once.
+ */
+public abstract class AbstractSessionCallback implements SessionCallback
+{
+   public int sendMessages(final List<MessageReference> references, final ServerConsumer consumer)
+   {
+      int size = 0;
+      int sent = 0;
+      try
+      {
+         for (MessageReference reference : references)
+         {
+            size += sendMessage(reference.getMessage(), consumer, reference.getDeliveryCount());
+            sent++;
+         }
+      }
+      finally
+      {
+         references.subList(0, sent).clear();
+      }
+      return size;
+   }
+}
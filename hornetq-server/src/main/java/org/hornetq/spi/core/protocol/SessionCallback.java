@@ -12,7 +12,10 @@
  */
 package org.hornetq.spi.core.protocol;
 
+import java.util.List;
+
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.ServerConsumer;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.spi.core.remoting.ReadyListener;
@@ -35,6 +38,13 @@ public interface SessionCallback
 
    int sendMessage(ServerMessage message, ServerConsumer consumerID, int deliveryCount);
 
+   /**
+    * Sends the messages of several references at once, in order.
+    * The references sent are taken off the list, so if the send fails the list holds the ones that weren't.
+    * @return the total size of what was sent, as {@link #sendMessage(ServerMessage, ServerConsumer, int)} does
+    */
+   int sendMessages(List<MessageReference> references, ServerConsumer consumerID);
+
    int sendLargeMessage(ServerMessage message, ServerConsumer consumerID, long bodySize, int deliveryCount);
 
    int sendLargeMessageContinuation(ServerConsumer consumerID, byte[] body, boolean continues, boolean requiresResponse);
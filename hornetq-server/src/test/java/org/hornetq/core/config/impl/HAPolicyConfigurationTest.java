@@ -126,6 +126,8 @@ public class HAPolicyConfigurationTest extends UnitTestCase
          assertEquals(replicatedPolicy.getGroupName(), "purple");
          assertTrue(replicatedPolicy.isCheckForLiveServer());
          assertEquals(replicatedPolicy.getClusterName(), "abcdefg");
+         assertEquals(65536, replicatedPolicy.getReplicationBatchSize());
+         assertEquals(500000, replicatedPolicy.getReplicationBatchTimeout());
       }
       finally
       {
@@ -12,6 +12,9 @@
  */
 package org.hornetq.core.filter.impl;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQInvalidFilterExpressionException;
 import org.hornetq.api.core.SimpleString;
@@ -199,6 +202,61 @@ public class FilterTest extends SilentTestCase
       Assert.assertFalse(filter.match(message));
    }
 
+   @Test
+   public void testConcurrentMatch() throws Exception
+   {
+      filter = FilterImpl.createFilter(new SimpleString("region = 'EU' AND HQPriority > 3 AND desk LIKE 'F%'"));
+
+      final ServerMessage matching = new ServerMessageImpl(1, 1000);
+      matching.putStringProperty(new SimpleString("region"), new SimpleString("EU"));
+      matching.putStringProperty(new SimpleString("desk"), new SimpleString("FX"));
+      matching.setPriority((byte) 5);
+
+      final ServerMessage notMatching = new ServerMessageImpl(2, 1000);
+      notMatching.putStringProperty(new SimpleString("region"), new SimpleString("US"));
+      notMatching.putStringProperty(new SimpleString("desk"), new SimpleString("FX"));
+      notMatching.setPriority((byte) 5);
+
+      final AtomicInteger errors = new AtomicInteger(0);
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] threads = new Thread[10];
+      for (int i = 0; i < threads.length; i++)
+      {
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  for (int j = 0; j < 10000; j++)
+                  {
+                     if (!filter.match(matching) || filter.match(notMatching))
+                     {
+                        errors.incrementAndGet();
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  errors.incrementAndGet();
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread t : threads)
+      {
+         t.join();
+      }
+
+      Assert.assertEquals(0, errors.get());
+   }
+
    @Test
    public void testBooleanFalse() throws Exception
    {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.filter.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.selector.SelectorParser;
+import org.hornetq.tests.util.SilentTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that compiled selectors always give the same result as the interpreted expression tree.
+ */
+public class SelectorCompilerTest extends SilentTestCase
+{
+   private static final String[] COMPILED = {
+      "region = 'EU'",
+      "'EU' = region",
+      "region = 'EU' AND desk = 'FX'",
+      "region = 'EU' OR region = 'US' OR desk = 'FX'",
+      "region IN ('EU', 'US')",
+      "region IN ('EU', 'US', 'APAC', 'LATAM', 'MEA', 'JP')",
+      "amount = 5",
+      "amount > 5",
+      "amount >= 5",
+      "amount < 5",
+      "amount <= 5",
+      "5 < amount",
+      "amount BETWEEN 2 AND 8",
+      "amount > 4294967296",
+      "region = 'EU' AND amount > 3 AND NOT (desk = 'FX')",
+      "(region = 'EU' AND amount > 3) OR HQPriority = 4"
+   };
+
+   private static final String[] INTERPRETED = {
+      "NOT (region = 'EU')",
+      "region <> 'EU'",
+      "region IS NULL",
+      "region LIKE 'E%'",
+      "HQPriority = 4",
+      "amount = 5.0",
+      "region NOT IN ('EU', 'US')"
+   };
+
+   @Test
+   public void testCompiledShapes() throws Exception
+   {
+      for (String selector : COMPILED)
+      {
+         Assert.assertNotNull(selector, SelectorCompiler.compile(SelectorParser.parse(selector)));
+      }
+
+      for (String selector : INTERPRETED)
+      {
+         Assert.assertNull(selector, SelectorCompiler.compile(SelectorParser.parse(selector)));
+      }
+   }
+
+   @Test
+   public void testSameResultAsInterpreter() throws Exception
+   {
+      List<ServerMessage> messages = createMessages();
+
+      List<String> selectors = new ArrayList<String>();
+      for (String selector : COMPILED)
+      {
+         selectors.add(selector);
+      }
+      for (String selector : INTERPRETED)
+      {
+         selectors.add(selector);
+      }
+
+      for (String selector : selectors)
+      {
+         Filter compiled = FilterImpl.createFilter(new SimpleString(selector), true);
+         Filter interpreted = FilterImpl.createFilter(new SimpleString(selector), false);
+         for (ServerMessage message : messages)
+         {
+            Assert.assertEquals(selector + " on " + message.getTypedProperties(),
+                                interpreted.match(message),
+                                compiled.match(message));
+         }
+      }
+   }
+
+   private List<ServerMessage> createMessages()
+   {
+      List<ServerMessage> messages = new ArrayList<ServerMessage>();
+
+      Object[] regions = {null, "EU", "US", "JP", 5, 5L};
+      Object[] desks = {null, "FX", "EQ"};
+      Object[] amounts = {null, 1, 5, 8, 9, (byte) 5, (short) 5, 5L, 4294967297L, 5.0d, 4.5f, "5", true};
+
+      long id = 0;
+      for (Object region : regions)
+      {
+         for (Object desk : desks)
+         {
+            for (Object amount : amounts)
+            {
+               ServerMessage message = new ServerMessageImpl(++id, 1000);
+               message.setPriority((byte) (id % 10));
+               putProperty(message, "region", region);
+               putProperty(message, "desk", desk);
+               putProperty(message, "amount", amount);
+               messages.add(message);
+            }
+         }
+      }
+      return messages;
+   }
+
+   private static void putProperty(final ServerMessage message, final String name, final Object value)
+   {
+      if (value == null)
+      {
+         return;
+      }
+      SimpleString key = new SimpleString(name);
+      if (value instanceof String)
+      {
+         message.putStringProperty(key, new SimpleString((String) value));
+      }
+      else
+      {
+         message.putObjectProperty(key, value);
+      }
+   }
+}
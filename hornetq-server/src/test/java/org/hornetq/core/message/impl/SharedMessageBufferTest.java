@@ -0,0 +1,105 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.message.impl;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.core.protocol.ClientPacketDecoder;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Delivers a message several times and copies it, sharing its buffer, and checks that every
+ * delivery and copy keeps its own content when one of them is changed.
+ */
+public class SharedMessageBufferTest extends UnitTestCase
+{
+   private static final byte[] BODY = new byte[]{1, 2, 3, 4, 5, 6, 7, 8};
+
+   @Test
+   public void testDeliveries() throws Exception
+   {
+      ServerMessage message = createMessage();
+
+      HornetQBuffer first = new SessionReceiveMessage(1, message, 1).encode(null);
+      HornetQBuffer second = new SessionReceiveMessage(2, message, 3).encode(null);
+
+      assertDelivery(second, 2, 3, BODY, 0);
+      assertDelivery(first, 1, 1, BODY, 0);
+
+      // a new encoding doesn't change what was delivered
+      message.putIntProperty("count", 1);
+      HornetQBuffer third = new SessionReceiveMessage(3, message, 1).encode(null);
+
+      assertDelivery(third, 3, 1, BODY, 1);
+      assertDelivery(new SessionReceiveMessage(4, message, 1).encode(null), 4, 1, BODY, 1);
+   }
+
+   @Test
+   public void testCopies() throws Exception
+   {
+      ServerMessage message = createMessage();
+      new SessionReceiveMessage(1, message, 1).encode(null);
+
+      ServerMessage copy = message.copy(2);
+      copy.putIntProperty("count", 2);
+
+      byte[] changedBody = new byte[]{8, 7, 6, 5, 4, 3, 2, 1};
+      message.getBodyBuffer().resetWriterIndex();
+      message.getBodyBuffer().writeBytes(changedBody);
+
+      assertDelivery(new SessionReceiveMessage(1, copy, 1).encode(null), 1, 1, BODY, 2);
+      assertDelivery(new SessionReceiveMessage(1, message, 1).encode(null), 1, 1, changedBody, 0);
+
+      ServerMessage otherCopy = copy.copy(3);
+      otherCopy.getBodyBuffer().writeBytes(changedBody);
+
+      assertDelivery(new SessionReceiveMessage(1, copy, 1).encode(null), 1, 1, BODY, 2);
+      Assert.assertEquals(BODY.length * 2, otherCopy.getBodyBuffer().writerIndex() - otherCopy.getBodyBuffer().readerIndex());
+   }
+
+   private static ServerMessage createMessage()
+   {
+      ServerMessage message = new ServerMessageImpl(1, 1024);
+      message.setAddress(new SimpleString("address"));
+      message.getBodyBuffer().writeBytes(BODY);
+      message.putIntProperty("count", 0);
+      return message;
+   }
+
+   private static void assertDelivery(final HornetQBuffer buffer,
+                                      final long consumerID,
+                                      final int deliveryCount,
+                                      final byte[] body,
+                                      final int count)
+   {
+      HornetQBuffer received = buffer.copy(0, buffer.writerIndex());
+      Assert.assertEquals(received.writerIndex() - 4, received.readInt());
+
+      SessionReceiveMessage packet = (SessionReceiveMessage) ClientPacketDecoder.INSTANCE.decode(received);
+      Assert.assertEquals(consumerID, packet.getConsumerID());
+      Assert.assertEquals(deliveryCount, packet.getDeliveryCount());
+
+      ClientMessage message = (ClientMessage) packet.getMessage();
+      Assert.assertEquals(count, message.getIntProperty("count").intValue());
+
+      byte[] receivedBody = new byte[message.getBodySize()];
+      message.getBodyBuffer().readBytes(receivedBody);
+      Assert.assertArrayEquals(body, receivedBody);
+   }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Depages through caches that are evicted all the time, with two subscriptions reading the same
+ * pages at different moments.
+ */
+public class PageCacheImplTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("pageCacheAddress");
+
+   private static final int NUMBER_OF_MESSAGES = 500;
+
+   private HornetQServer server;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      AddressSettings settings = new AddressSettings();
+      settings.setPageCacheMaxSize(1);
+      Map<String, AddressSettings> addressSettings = new HashMap<String, AddressSettings>();
+      addressSettings.put(ADDRESS.toString(), settings);
+
+      server = createServer(true, createDefaultConfig(false), 10 * 1024, 20 * 1024, addressSettings);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      sf = createSessionFactory(locator);
+   }
+
+   @Test
+   public void testDepageWithEvictedCaches() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, new SimpleString("queue1"), null, true);
+      session.createQueue(ADDRESS, new SimpleString("queue2"), null, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("count", i);
+         message.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(message);
+      }
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+      assertTrue(store.isPaging());
+      assertTrue(store.getNumberOfPages() > 2);
+
+      session.start();
+
+      ClientConsumer consumer1 = session.createConsumer("queue1");
+      for (int i = 0; i < NUMBER_OF_MESSAGES / 2; i++)
+      {
+         receive(consumer1, i);
+      }
+
+      ClientConsumer consumer2 = session.createConsumer("queue2");
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         receive(consumer2, i);
+      }
+
+      for (int i = NUMBER_OF_MESSAGES / 2; i < NUMBER_OF_MESSAGES; i++)
+      {
+         receive(consumer1, i);
+      }
+
+      assertNull(consumer1.receiveImmediate());
+      assertNull(consumer2.receiveImmediate());
+   }
+
+   private static void receive(final ClientConsumer consumer, final int expected) throws Exception
+   {
+      ClientMessage message = consumer.receive(5000);
+      assertNotNull("Expecting message " + expected, message);
+      assertEquals(expected, message.getIntProperty("count").intValue());
+      assertEquals(512, message.getBodySize());
+      message.acknowledge();
+   }
+}
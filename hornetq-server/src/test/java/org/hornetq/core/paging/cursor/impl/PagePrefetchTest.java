@@ -0,0 +1,208 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reads pages ahead of the subscriptions, and depages through the pages read ahead.
+ */
+public class PagePrefetchTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("pagePrefetchAddress");
+
+   private static final SimpleString QUEUE = ADDRESS.concat(".queue");
+
+   private static final int NUMBER_OF_MESSAGES = 200;
+
+   private HornetQServer server;
+
+   private ClientSessionFactory sf;
+
+   private ExecutorService readExecutor;
+
+   private final AtomicInteger reads = new AtomicInteger(0);
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      AddressSettings settings = new AddressSettings();
+      settings.setPagePrefetchSize(2);
+      Map<String, AddressSettings> addressSettings = new HashMap<String, AddressSettings>();
+      addressSettings.put(ADDRESS.toString(), settings);
+
+      server = createServer(true, createDefaultConfig(false), 10 * 1024, 20 * 1024, addressSettings);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setConsumerWindowSize(0);
+      sf = createSessionFactory(locator);
+
+      readExecutor = Executors.newSingleThreadExecutor();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      readExecutor.shutdown();
+      super.tearDown();
+   }
+
+   @Test
+   public void testPrefetchFollowingPages() throws Exception
+   {
+      PagingStore store = sendMessages();
+
+      PageCursorProviderImpl provider = createProvider(store, 5);
+      provider.setPrefetchSize(2);
+
+      long firstPage = store.getFirstPage();
+      provider.prefetch(firstPage);
+      waitForCacheSize(provider, 2);
+      assertEquals(2, reads.get());
+
+      // the pages read ahead are on the cache, they are not read again
+      provider.prefetch(firstPage);
+      provider.prefetch(firstPage + 1);
+      waitForCacheSize(provider, 3);
+      assertEquals(3, reads.get());
+
+      PageCache cache = provider.getPageCache(firstPage + 2);
+      assertNotNull(cache);
+      assertTrue(cache.getNumberOfMessages() > 0);
+      assertEquals(3, provider.getCacheSize());
+
+      provider.stop();
+   }
+
+   @Test
+   public void testPrefetchBoundedByCacheSize() throws Exception
+   {
+      PagingStore store = sendMessages();
+
+      PageCursorProviderImpl provider = createProvider(store, 2);
+      provider.setPrefetchSize(4);
+
+      provider.prefetch(store.getFirstPage());
+      waitForCacheSize(provider, 1);
+      assertEquals(1, reads.get());
+
+      // the live page is never read ahead
+      provider.prefetch(store.getCurrentWritingPage() - 1);
+      assertEquals(1, reads.get());
+
+      provider.setPrefetchSize(0);
+      provider.prefetch(store.getFirstPage() + 2);
+      assertEquals(1, reads.get());
+
+      provider.stop();
+   }
+
+   @Test
+   public void testDepageWithPrefetch() throws Exception
+   {
+      sendMessages();
+
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull("Expecting message " + i, message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+      session.close();
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+      long timeout = System.currentTimeMillis() + 5000;
+      while (store.isPaging() && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      assertFalse(store.isPaging());
+   }
+
+   private PagingStore sendMessages() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, QUEUE, null, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("count", i);
+         message.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(message);
+      }
+      session.close();
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+      assertTrue(store.isPaging());
+      assertTrue(store.getCurrentWritingPage() - store.getFirstPage() > 4);
+      return store;
+   }
+
+   private PageCursorProviderImpl createProvider(final PagingStore store, final int maxCacheSize)
+   {
+      Executor countingExecutor = new Executor()
+      {
+         public void execute(final Runnable command)
+         {
+            reads.incrementAndGet();
+            readExecutor.execute(command);
+         }
+      };
+
+      return new PageCursorProviderImpl(store, server.getStorageManager(), readExecutor, countingExecutor, maxCacheSize);
+   }
+
+   private static void waitForCacheSize(final PageCursorProviderImpl provider, final int size) throws Exception
+   {
+      long timeout = System.currentTimeMillis() + 5000;
+      while (provider.getCacheSize() < size && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      assertEquals(size, provider.getCacheSize());
+   }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.PageSubscription;
+import org.hornetq.core.paging.cursor.PagedReference;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.hornetq.utils.LinkedListIterator;
+import org.junit.Test;
+
+/**
+ * Reads the pages of an address with two subscriptions lagging at different pages, and checks the
+ * page the slowest subscription is on stays cached while the fastest one reads ahead.
+ */
+public class PageSharedReadTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("pageSharedRead");
+
+   private static final SimpleString QUEUE_A = ADDRESS.concat(".a");
+
+   private static final SimpleString QUEUE_B = ADDRESS.concat(".b");
+
+   private static final int NUMBER_OF_MESSAGES = 200;
+
+   @Test
+   public void testPagesOfLaggingSubscriptionsStayCached() throws Exception
+   {
+      HornetQServer server = createServer(true, createDefaultConfig(false), 10 * 1024, 20 * 1024,
+                                          new HashMap<String, AddressSettings>());
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(createInVMNonHALocator());
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, QUEUE_A, null, true);
+      session.createQueue(ADDRESS, QUEUE_B, null, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(message);
+      }
+      session.close();
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+      assertTrue(store.getCurrentWritingPage() - store.getFirstPage() > 4);
+      long firstPage = store.getFirstPage();
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try
+      {
+         // a provider of its own, so the caches are only the ones read here
+         PageCursorProviderImpl provider = new PageCursorProviderImpl(store, server.getStorageManager(), executor, 3);
+
+         PageSubscription slow = provider.createSubscription(server.locateQueue(QUEUE_A).getID(), null, false);
+         PageSubscription fast = provider.createSubscription(server.locateQueue(QUEUE_B).getID(), null, false);
+
+         LinkedListIterator<PagedReference> slowIterator = slow.iterator();
+         assertEquals(firstPage, slowIterator.next().getPosition().getPageNr());
+         assertEquals(firstPage, slow.getReadingPage());
+
+         PageCache slowCache = provider.getPageCache(firstPage);
+         PageCache skippedCache = provider.getPageCache(firstPage + 1);
+
+         LinkedListIterator<PagedReference> fastIterator = fast.iterator();
+         PagedReference reference;
+         do
+         {
+            reference = fastIterator.next();
+         }
+         while (reference.getPosition().getPageNr() < firstPage + 3);
+         assertEquals(firstPage + 3, fast.getReadingPage());
+         assertEquals(3, provider.getCacheSize());
+
+         // the page the slow subscription is on was read least recently, but the page after it went instead
+         assertSame(slowCache, provider.getPageCache(firstPage));
+         assertNotSame(skippedCache, provider.getPageCache(firstPage + 1));
+
+         slowIterator.close();
+         fastIterator.close();
+         provider.stop();
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.HashMap;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Test;
+
+/**
+ * Acknowledges paged messages out of order on two subscriptions of an address, and checks the
+ * acknowledgements kept per page survive a restart and let the pages go.
+ */
+public class PageSubscriptionAckTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("pageSubscriptionAck");
+
+   private static final SimpleString QUEUE_A = ADDRESS.concat(".a");
+
+   private static final SimpleString QUEUE_B = ADDRESS.concat(".b");
+
+   private static final int NUMBER_OF_MESSAGES = 200;
+
+   @Test
+   public void testIndividualAcksSurviveRestart() throws Exception
+   {
+      HornetQServer server = createServer(true, createDefaultConfig(false), 10 * 1024, 20 * 1024,
+                                          new HashMap<String, AddressSettings>());
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setBlockOnDurableSend(true);
+      locator.setBlockOnAcknowledge(true);
+      ClientSessionFactory sf = createSessionFactory(locator);
+
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, QUEUE_A, null, true);
+      session.createQueue(ADDRESS, QUEUE_B, null, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("count", i);
+         message.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(message);
+      }
+
+      assertTrue(server.getPagingManager().getPageStore(ADDRESS).isPaging());
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(QUEUE_A);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+      consumer.close();
+
+      // only the even messages are acknowledged on the second subscription
+      consumer = session.createConsumer(QUEUE_B);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         if (i % 2 == 0)
+         {
+            message.individualAcknowledge();
+         }
+      }
+      session.close();
+      sf.close();
+
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(locator);
+      session = addClientSession(sf.createSession(false, true, true));
+      session.start();
+
+      consumer = session.createConsumer(QUEUE_A);
+      assertNull(consumer.receiveImmediate());
+      consumer.close();
+
+      consumer = session.createConsumer(QUEUE_B);
+      for (int i = 1; i < NUMBER_OF_MESSAGES; i += 2)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull("Expecting message " + i, message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+      session.close();
+
+      long timeout = System.currentTimeMillis() + 5000;
+      while (server.getPagingManager().getPageStore(ADDRESS).isPaging() && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      assertFalse(server.getPagingManager().getPageStore(ADDRESS).isPaging());
+   }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.impl;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.message.impl.MessageImpl;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.impl.LivePageCacheImpl;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Writes on a page from several threads and checks every record is read back, in the order each
+ * thread wrote them. Also checks a message failing to be encoded is left out of the page.
+ */
+public class ConcurrentPageWriteTest extends UnitTestCase
+{
+   private static final int NUMBER_OF_THREADS = 8;
+
+   private static final int MESSAGES_PER_THREAD = 500;
+
+   @Test
+   public void testConcurrentWrites() throws Exception
+   {
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      final Page page = new Page(new SimpleString("address"), new NullStorageManager(), factory, file, 10);
+      page.open();
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+      Thread[] threads = new Thread[NUMBER_OF_THREADS];
+      for (int i = 0; i < NUMBER_OF_THREADS; i++)
+      {
+         final int thread = i;
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  for (int m = 0; m < MESSAGES_PER_THREAD; m++)
+                  {
+                     // the body size varies, so the records are split differently on the write buffer
+                     ServerMessage message = new ServerMessageImpl(thread * MESSAGES_PER_THREAD + m, 1024);
+                     message.setAddress(new SimpleString("address"));
+                     message.getBodyBuffer().writeBytes(new byte[(m % 10) * 100]);
+                     page.write(new PagedMessageImpl(message, new long[]{thread}, -1));
+                  }
+               }
+               catch (Exception e)
+               {
+                  error.set(e);
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      Assert.assertNull(error.get());
+      Assert.assertEquals(NUMBER_OF_THREADS * MESSAGES_PER_THREAD, page.getNumberOfMessages());
+
+      page.sync();
+      page.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      Page reloaded = new Page(new SimpleString("address"), new NullStorageManager(), factory, file, 10);
+      reloaded.open();
+
+      List<PagedMessage> messages = reloaded.read(new NullStorageManager());
+      reloaded.close();
+
+      Assert.assertEquals(NUMBER_OF_THREADS * MESSAGES_PER_THREAD, messages.size());
+
+      long[] lastIDs = new long[NUMBER_OF_THREADS];
+      for (int i = 0; i < NUMBER_OF_THREADS; i++)
+      {
+         lastIDs[i] = i * MESSAGES_PER_THREAD - 1;
+      }
+
+      for (PagedMessage message : messages)
+      {
+         int thread = (int) message.getQueueIDs()[0];
+         long id = message.getMessage().getMessageID();
+         Assert.assertEquals(lastIDs[thread] + 1, id);
+         Assert.assertEquals((id % MESSAGES_PER_THREAD % 10) * 100, message.getMessage().getEndOfBodyPosition() - MessageImpl.BODY_OFFSET);
+         lastIDs[thread] = id;
+      }
+   }
+
+   @Test
+   public void testFailedEncodeIsSkipped() throws Exception
+   {
+      testFailedEncodeIsSkipped(false);
+   }
+
+   @Test
+   public void testFailedEncodeIsSkippedInCompressedBlock() throws Exception
+   {
+      testFailedEncodeIsSkipped(true);
+   }
+
+   private void testFailedEncodeIsSkipped(final boolean compressed) throws Exception
+   {
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+      SequentialFile file = factory.createSequentialFile("00011.page", 1);
+
+      Page page = new Page(new SimpleString("address"), new NullStorageManager(), factory, file, 11);
+      page.open();
+      page.setCompressed(compressed);
+      LivePageCacheImpl cache = new LivePageCacheImpl(page);
+      page.setLiveCache(cache);
+
+      page.write(new PagedMessageImpl(createMessage(1), new long[]{1}, -1));
+
+      try
+      {
+         page.write(new PagedMessageImpl(createMessage(2), new long[]{1}, -1)
+         {
+            @Override
+            public void encode(final HornetQBuffer buffer)
+            {
+               buffer.writeBytes(new byte[10]);
+               throw new IllegalStateException("failed encoding");
+            }
+         });
+         Assert.fail("the write should have failed");
+      }
+      catch (IllegalStateException expected)
+      {
+      }
+
+      page.write(new PagedMessageImpl(createMessage(3), new long[]{1}, -1));
+
+      Assert.assertEquals(2, page.getNumberOfMessages());
+      Assert.assertEquals(2, cache.getNumberOfMessages());
+      Assert.assertEquals(3, cache.getMessage(1).getMessage().getMessageID());
+
+      page.sync();
+      page.close();
+
+      file = factory.createSequentialFile("00011.page", 1);
+      Page reloaded = new Page(new SimpleString("address"), new NullStorageManager(), factory, file, 11);
+      reloaded.open();
+
+      List<PagedMessage> messages = reloaded.read(new NullStorageManager());
+      reloaded.close();
+
+      Assert.assertEquals(2, messages.size());
+      Assert.assertEquals(1, messages.get(0).getMessage().getMessageID());
+      Assert.assertEquals(3, messages.get(1).getMessage().getMessageID());
+   }
+
+   @Test
+   public void testFailedWriteFailsEveryWriterOfTheBatch() throws Exception
+   {
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+      final SequentialFile file = factory.createSequentialFile("00012.page", 1);
+
+      final Page page = new Page(new SimpleString("address"), new NullStorageManager(), factory, file, 12);
+      page.open();
+      LivePageCacheImpl cache = new LivePageCacheImpl(page);
+      page.setLiveCache(cache);
+
+      final CountDownLatch encoding = new CountDownLatch(1);
+      final CountDownLatch releaseEncoding = new CountDownLatch(1);
+      final AtomicReference<Exception> slowError = new AtomicReference<Exception>();
+      final AtomicReference<Exception> fastError = new AtomicReference<Exception>();
+
+      // the first writer holds the batch open while the second one waits for it
+      Thread slowWriter = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               page.write(new PagedMessageImpl(createMessage(1), new long[]{1}, -1)
+               {
+                  @Override
+                  public void encode(final HornetQBuffer buffer)
+                  {
+                     encoding.countDown();
+                     try
+                     {
+                        releaseEncoding.await();
+                     }
+                     catch (InterruptedException e)
+                     {
+                        throw new IllegalStateException(e);
+                     }
+                     super.encode(buffer);
+                  }
+               });
+            }
+            catch (Exception e)
+            {
+               slowError.set(e);
+            }
+         }
+      };
+      slowWriter.start();
+      Assert.assertTrue(encoding.await(10, TimeUnit.SECONDS));
+
+      Thread fastWriter = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               page.write(new PagedMessageImpl(createMessage(2), new long[]{1}, -1));
+            }
+            catch (Exception e)
+            {
+               fastError.set(e);
+            }
+         }
+      };
+      fastWriter.start();
+
+      long timeout = System.currentTimeMillis() + 10000;
+      while (fastWriter.getState() != Thread.State.WAITING && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      Assert.assertEquals(Thread.State.WAITING, fastWriter.getState());
+
+      // failing the write of the batch
+      file.close();
+      releaseEncoding.countDown();
+
+      slowWriter.join();
+      fastWriter.join();
+
+      Assert.assertNotNull(slowError.get());
+      Assert.assertNotNull(fastError.get());
+      Assert.assertEquals(0, page.getNumberOfMessages());
+      Assert.assertEquals(0, cache.getNumberOfMessages());
+   }
+
+   private static ServerMessage createMessage(final long id)
+   {
+      ServerMessage message = new ServerMessageImpl(id, 1024);
+      message.setAddress(new SimpleString("address"));
+      message.getBodyBuffer().writeBytes(new byte[100]);
+      return message;
+   }
+}
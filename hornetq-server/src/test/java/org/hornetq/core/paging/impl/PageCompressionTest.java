@@ -0,0 +1,159 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.paging.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Test;
+
+/**
+ * Writes pages with compressed blocks, and reads them back directly and through depaging.
+ */
+public class PageCompressionTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("pageCompression");
+
+   private static final int NUMBER_OF_MESSAGES = 200;
+
+   private static final String TEXT = "{\"id\": 1, \"name\": \"compressible\", \"values\": [1, 2, 3, 4, 5]}";
+
+   @Test
+   public void testCompressedAndUncompressedRecords() throws Exception
+   {
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page page = new Page(ADDRESS, new NullStorageManager(), factory, file, 10);
+      page.open();
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         page.write(new PagedMessageImpl(createMessage(i), new long[]{1}, -1));
+      }
+      page.sync();
+      long uncompressedSize = file.size();
+
+      page.setCompressed(true);
+      for (int i = NUMBER_OF_MESSAGES; i < NUMBER_OF_MESSAGES * 3; i++)
+      {
+         long fileSize = file.size();
+         page.write(new PagedMessageImpl(createMessage(i), new long[]{1}, -1));
+         // every message reaches the file before the write returns, sync or not
+         assertTrue(file.size() > fileSize);
+      }
+
+      // the compressed records are counted before compression
+      int pageSize = page.getSize();
+      assertTrue(pageSize > file.size());
+
+      page.close();
+
+      // twice as many messages on less than half of the space
+      assertTrue(file.size() - uncompressedSize < uncompressedSize / 2);
+
+      file = factory.createSequentialFile("00010.page", 1);
+      Page reloaded = new Page(ADDRESS, new NullStorageManager(), factory, file, 10);
+      reloaded.open();
+      List<PagedMessage> messages = reloaded.read(new NullStorageManager());
+      assertEquals(pageSize, reloaded.getSize());
+      reloaded.close();
+
+      assertEquals(NUMBER_OF_MESSAGES * 3, messages.size());
+      for (int i = 0; i < messages.size(); i++)
+      {
+         ServerMessage message = messages.get(i).getMessage();
+         assertEquals(i, message.getMessageID());
+         assertEquals(i, message.getIntProperty("count").intValue());
+         assertEquals(TEXT + i, message.getBodyBuffer().readString());
+      }
+   }
+
+   @Test
+   public void testDepageCompressedPages() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setPageCompression(true);
+      Map<String, AddressSettings> addressSettings = new HashMap<String, AddressSettings>();
+      addressSettings.put(ADDRESS.toString(), settings);
+
+      HornetQServer server = createServer(true, createDefaultConfig(false), 10 * 1024, 20 * 1024, addressSettings);
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(createInVMNonHALocator());
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, ADDRESS, null, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES * 2; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("count", i);
+         message.getBodyBuffer().writeString(TEXT + i);
+         message.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(message);
+      }
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+      assertTrue(store.isPaging());
+
+      // restarting, so the pages are read from the files
+      session.close();
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(createInVMNonHALocator());
+      session = addClientSession(sf.createSession(false, true, true));
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES * 2; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull("Expecting message " + i, message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         assertEquals(TEXT + i, message.getBodyBuffer().readString());
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+   }
+
+   private static ServerMessage createMessage(final int count)
+   {
+      ServerMessage message = new ServerMessageImpl(count, 1024);
+      message.setAddress(ADDRESS);
+      message.putIntProperty("count", count);
+      message.getBodyBuffer().writeString(TEXT + count);
+      // a single producer writes each message in a block of its own
+      message.getBodyBuffer().writeBytes(new byte[512]);
+      return message;
+   }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.persistence.impl.journal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hornetq.core.journal.PreparedTransactionInfo;
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compacts the oldest files of a journal, with {@link JournalImpl#setCompactMaxFiles(int)}, and
+ * checks the records that survive a reload.
+ */
+public class IncrementalCompactTest extends UnitTestCase
+{
+   private static final int FILE_SIZE = 10 * 1024;
+
+   private static final int NUMBER_OF_RECORDS = 1000;
+
+   private static final byte RECORD_TYPE = 1;
+
+   private JournalImpl journal;
+
+   @After
+   public void stopJournal() throws Exception
+   {
+      if (journal != null && journal.isStarted())
+      {
+         journal.stop();
+      }
+   }
+
+   @Test
+   public void testCompactOldestFiles() throws Exception
+   {
+      journal = createJournal();
+      journal.loadInternalOnly();
+
+      Set<Long> expected = new TreeSet<Long>();
+      for (long id = 0; id < NUMBER_OF_RECORDS; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, new byte[100], false);
+         expected.add(id);
+      }
+
+      // leave only a few records alive on the oldest files
+      for (long id = 0; id < NUMBER_OF_RECORDS / 2; id++)
+      {
+         if (id % 50 != 0)
+         {
+            journal.appendDeleteRecord(id, false);
+            expected.remove(id);
+         }
+      }
+
+      int filesBefore = journal.getDataFilesCount();
+
+      journal.setCompactMaxFiles(3);
+      journal.scheduleCompactAndBlock(60);
+
+      Assert.assertTrue(journal.getDataFilesCount() < filesBefore);
+      Assert.assertTrue(journal.getCompactedBytes() > 0);
+      Assert.assertTrue(journal.getMaxCompactStallTime() <= journal.getCompactStallTime());
+
+      // the compacted records are still updated and deleted in place
+      journal.appendUpdateRecord(0, RECORD_TYPE, new byte[10], false);
+      journal.appendDeleteRecord(50, false);
+      expected.remove(50L);
+
+      journal.stop();
+
+      Assert.assertEquals(expected, loadIDs());
+   }
+
+   @Test
+   public void testTransactionSpanningFiles() throws Exception
+   {
+      journal = createJournal();
+      journal.loadInternalOnly();
+
+      long txID = NUMBER_OF_RECORDS * 2;
+
+      Set<Long> expected = new TreeSet<Long>();
+      journal.appendAddRecordTransactional(txID, NUMBER_OF_RECORDS, RECORD_TYPE, new byte[100]);
+      expected.add((long) NUMBER_OF_RECORDS);
+
+      for (long id = 0; id < NUMBER_OF_RECORDS; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, new byte[100], false);
+         if (id % 10 != 0)
+         {
+            journal.appendDeleteRecord(id, false);
+         }
+         else
+         {
+            expected.add(id);
+         }
+      }
+
+      journal.appendCommitRecord(txID, false);
+
+      journal.setCompactMaxFiles(3);
+      journal.scheduleCompactAndBlock(60);
+
+      journal.stop();
+
+      Assert.assertEquals(expected, loadIDs());
+   }
+
+   private JournalImpl createJournal() throws Exception
+   {
+      JournalImpl newJournal = new JournalImpl(FILE_SIZE, 2, 0, 0, new NIOSequentialFileFactory(getTestDir()),
+                                               "hornetq-data", "hq", 1);
+      newJournal.start();
+      newJournal.setAutoReclaim(false);
+      return newJournal;
+   }
+
+   private Set<Long> loadIDs() throws Exception
+   {
+      journal = createJournal();
+
+      List<RecordInfo> records = new ArrayList<RecordInfo>();
+      journal.load(records, new ArrayList<PreparedTransactionInfo>(), null);
+
+      Set<Long> ids = new TreeSet<Long>();
+      for (RecordInfo record : records)
+      {
+         ids.add(record.id);
+      }
+      return ids;
+   }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.persistence.impl.journal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.DuplicateIDStore;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
+import org.hornetq.core.postoffice.impl.DuplicateIDCacheImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedDuplicateIDStoreTest extends UnitTestCase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private static final int SLOTS = 10;
+
+   private static final Executor DIRECT_EXECUTOR = new Executor()
+   {
+      public void execute(final Runnable command)
+      {
+         command.run();
+      }
+   };
+
+   @Test
+   public void testWriteLoad() throws Exception
+   {
+      File directory = new File(getTestDir(), "duplicate-ids");
+      Assert.assertTrue(MappedDuplicateIDStore.listFiles(directory).isEmpty());
+
+      File file = MappedDuplicateIDStore.newFile(directory, Collections.<File>emptyList());
+      MappedDuplicateIDStore store = new MappedDuplicateIDStore(file, ADDRESS, SLOTS, true, DIRECT_EXECUTOR);
+      Assert.assertTrue(store.load().isEmpty());
+      store.reset(Collections.<Pair<byte[], Long>>emptyList());
+
+      for (int i = 0; i < SLOTS; i++)
+      {
+         store.write(i, id(i), i);
+      }
+      store.clear(3);
+      store.write(5, id(50), 50);
+      store.close();
+
+      Map<SimpleString, File> files = MappedDuplicateIDStore.listFiles(directory);
+      Assert.assertEquals(file, files.get(ADDRESS));
+      Assert.assertEquals(MappedDuplicateIDStore.FILE_PREFIX + "1" + MappedDuplicateIDStore.FILE_EXTENSION,
+                          MappedDuplicateIDStore.newFile(directory, files.values()).getName());
+
+      List<Pair<byte[], Long>> ids = new MappedDuplicateIDStore(file, ADDRESS, SLOTS, true, DIRECT_EXECUTOR).load();
+      Assert.assertEquals(SLOTS - 1, ids.size());
+      for (Pair<byte[], Long> id : ids)
+      {
+         Assert.assertArrayEquals(id(id.getB().intValue()), id.getA());
+      }
+   }
+
+   @Test
+   public void testTornSlot() throws Exception
+   {
+      File directory = new File(getTestDir(), "duplicate-ids");
+      MappedDuplicateIDStore.listFiles(directory);
+      File file = MappedDuplicateIDStore.newFile(directory, Collections.<File>emptyList());
+
+      MappedDuplicateIDStore store = new MappedDuplicateIDStore(file, ADDRESS, SLOTS, true, DIRECT_EXECUTOR);
+      List<Pair<byte[], Long>> content = new ArrayList<Pair<byte[], Long>>();
+      content.add(new Pair<byte[], Long>(id(1), 1L));
+      content.add(null);
+      content.add(new Pair<byte[], Long>(id(2), 2L));
+      store.reset(content);
+      store.close();
+
+      // damage the last byte of the first id, as a write interrupted by a crash would
+      try (RandomAccessFile randomFile = new RandomAccessFile(file, "rw"))
+      {
+         long offset = randomFile.length() - SLOTS * MappedDuplicateIDStore.SLOT_SIZE + 16 + id(1).length - 1;
+         randomFile.seek(offset);
+         randomFile.writeByte(0);
+      }
+
+      List<Pair<byte[], Long>> ids = new MappedDuplicateIDStore(file, ADDRESS, SLOTS, true, DIRECT_EXECUTOR).load();
+      Assert.assertEquals(1, ids.size());
+      Assert.assertArrayEquals(id(2), ids.get(0).getA());
+   }
+
+   @Test
+   public void testFits() throws Exception
+   {
+      MappedDuplicateIDStore store = new MappedDuplicateIDStore(new File(getTestDir(), "unused"), ADDRESS, SLOTS, true, DIRECT_EXECUTOR);
+      Assert.assertTrue(store.fits(new byte[MappedDuplicateIDStore.MAX_ID_SIZE]));
+      Assert.assertFalse(store.fits(new byte[MappedDuplicateIDStore.MAX_ID_SIZE + 1]));
+      Assert.assertFalse(store.fits(new byte[0]));
+   }
+
+   @Test
+   public void testCacheSurvivesRestart() throws Exception
+   {
+      final File directory = new File(getTestDir(), "duplicate-ids");
+      MappedDuplicateIDStore.listFiles(directory);
+      final File file = MappedDuplicateIDStore.newFile(directory, Collections.<File>emptyList());
+
+      final List<MappedDuplicateIDStore> stores = new ArrayList<MappedDuplicateIDStore>();
+
+      NullStorageManager storageManager = new NullStorageManager()
+      {
+         @Override
+         public DuplicateIDStore getDuplicateIDStore(final SimpleString address, final int size)
+         {
+            MappedDuplicateIDStore store = new MappedDuplicateIDStore(file, address, size, true, DIRECT_EXECUTOR);
+            stores.add(store);
+            return store;
+         }
+      };
+
+      DuplicateIDCache cache = new DuplicateIDCacheImpl(ADDRESS, SLOTS, storageManager, true);
+      for (int i = 0; i < SLOTS + SLOTS / 2; i++)
+      {
+         cache.addToCache(id(i), null);
+      }
+      cache.deleteFromCache(id(SLOTS));
+      stores.get(0).close();
+
+      DuplicateIDCache reloaded = new DuplicateIDCacheImpl(ADDRESS, SLOTS, storageManager, true);
+      reloaded.load(Collections.<Pair<byte[], Long>>emptyList());
+      Assert.assertFalse(reloaded.contains(id(SLOTS / 2 - 1)));
+      Assert.assertFalse(reloaded.contains(id(SLOTS)));
+      for (int i = SLOTS / 2; i < SLOTS + SLOTS / 2; i++)
+      {
+         Assert.assertEquals(i != SLOTS, reloaded.contains(id(i)));
+      }
+
+      // the deleted id left a free slot, then the ids are replaced from the oldest
+      reloaded.addToCache(id(-1), null);
+      Assert.assertTrue(reloaded.contains(id(SLOTS / 2)));
+      reloaded.addToCache(id(-2), null);
+      Assert.assertFalse(reloaded.contains(id(SLOTS / 2)));
+      Assert.assertTrue(reloaded.contains(id(SLOTS / 2 + 1)));
+      stores.get(1).close();
+   }
+
+   private static byte[] id(final int i)
+   {
+      return ("id-" + i).getBytes();
+   }
+}
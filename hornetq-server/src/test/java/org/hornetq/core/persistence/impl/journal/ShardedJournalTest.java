@@ -0,0 +1,306 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.persistence.impl.journal;
+
+import java.io.File;
+
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.journal.Journal;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.ShardedCommitEncoding;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.transaction.impl.XidImpl;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Test;
+
+/**
+ * Spreads the messages on several journals, with transactions committed and rolled back across
+ * them, and reloads them.
+ */
+public class ShardedJournalTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("shardedJournal");
+
+   private static final int SHARDS = 3;
+
+   private static final int NUMBER_OF_MESSAGES = 100;
+
+   // far above the IDs generated by the server, so the records written by the tests never collide with them
+   private static final long FIRST_ID = Long.MAX_VALUE / 2;
+
+   private static final long TX_ID = FIRST_ID - 1;
+
+   private static final long DECISION_ID = FIRST_ID - 2;
+
+   private Configuration config;
+
+   private HornetQServer server;
+
+   private long queueID;
+
+   @Test
+   public void testRestartKeepsMessages() throws Exception
+   {
+      Configuration config = createDefaultConfig(false);
+      config.setJournalShards(SHARDS);
+
+      HornetQServer server = createServer(true, config);
+      server.start();
+
+      for (int shard = 1; shard < SHARDS; shard++)
+      {
+         assertTrue(new File(config.getJournalDirectory(), "shard-" + shard).isDirectory());
+      }
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, ADDRESS, null, true);
+      session.close();
+
+      // non transactional, committed and rolled back sends, all of them on several journals
+      send(sf, 0, NUMBER_OF_MESSAGES, false, true);
+      send(sf, NUMBER_OF_MESSAGES, NUMBER_OF_MESSAGES, true, true);
+      send(sf, 2 * NUMBER_OF_MESSAGES, NUMBER_OF_MESSAGES, true, false);
+
+      // acknowledge the first half in a transaction
+      session = addClientSession(sf.createSession(false, false, false));
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+      session.commit();
+      session.close();
+      sf.close();
+
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(locator);
+      receive(sf, NUMBER_OF_MESSAGES, 2 * NUMBER_OF_MESSAGES);
+
+      // fewer journals, the messages left on the others are still loaded
+      send(sf, 0, NUMBER_OF_MESSAGES, true, true);
+      sf.close();
+      server.stop();
+
+      config.setJournalShards(1);
+      server.start();
+
+      sf = createSessionFactory(locator);
+      receive(sf, 0, NUMBER_OF_MESSAGES);
+      send(sf, NUMBER_OF_MESSAGES, NUMBER_OF_MESSAGES, false, true);
+      sf.close();
+      server.stop();
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+      receive(sf, NUMBER_OF_MESSAGES, 2 * NUMBER_OF_MESSAGES);
+   }
+
+   @Test
+   public void testDecisionWithoutCommitsIsCommitted() throws Exception
+   {
+      startWithQueue();
+
+      JournalStorageManager storage = openStorage();
+      storeMessages(storage);
+      Journal[] shards = storage.getMessageShards();
+      for (Journal shard : shards)
+      {
+         shard.appendPrepareRecord(TX_ID, new ShardedCommitEncoding(TX_ID), true);
+      }
+      // the server stopped right after deciding the transaction
+      shards[0].appendAddRecord(DECISION_ID, JournalRecordIds.SHARDED_COMMIT, new ShardedCommitEncoding(TX_ID), true);
+      storage.stop();
+
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(createInVMNonHALocator());
+      receive(sf, 0, NUMBER_OF_MESSAGES);
+      sf.close();
+
+      // the transaction and its decision are completed, not loaded again
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(createInVMNonHALocator());
+      receive(sf, 0, 0);
+   }
+
+   @Test
+   public void testPreparesWithoutDecisionAreRolledBack() throws Exception
+   {
+      startWithQueue();
+
+      JournalStorageManager storage = openStorage();
+      storeMessages(storage);
+      for (Journal shard : storage.getMessageShards())
+      {
+         shard.appendPrepareRecord(TX_ID, new ShardedCommitEncoding(TX_ID), true);
+      }
+      // the server stopped before deciding the transaction
+      storage.stop();
+
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(createInVMNonHALocator());
+      receive(sf, 0, 0);
+      sf.close();
+
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(createInVMNonHALocator());
+      receive(sf, 0, 0);
+   }
+
+   @Test
+   public void testXATransactionPreparedAcrossShards() throws Exception
+   {
+      startWithQueue();
+
+      Xid xid = new XidImpl("branch".getBytes(), 1, "global".getBytes());
+
+      JournalStorageManager storage = openStorage();
+      storeMessages(storage);
+      storage.prepare(TX_ID, xid);
+      storage.stop();
+
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(createInVMNonHALocator());
+      receive(sf, 0, 0);
+
+      ClientSession session = sf.createSession(true, false, false);
+      Xid[] xids = session.recover(XAResource.TMSTARTRSCAN);
+      assertEquals(1, xids.length);
+      assertEquals(xid, xids[0]);
+      session.commit(xid, false);
+      session.close();
+
+      receive(sf, 0, NUMBER_OF_MESSAGES);
+      sf.close();
+
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(createInVMNonHALocator());
+      receive(sf, 0, 0);
+   }
+
+   private void startWithQueue() throws Exception
+   {
+      config = createDefaultConfig(false);
+      config.setJournalShards(SHARDS);
+
+      server = createServer(true, config);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, ADDRESS, null, true);
+      session.close();
+      sf.close();
+
+      queueID = server.locateQueue(ADDRESS).getID();
+
+      server.stop();
+   }
+
+   private JournalStorageManager openStorage() throws Exception
+   {
+      JournalStorageManager storage = new JournalStorageManager(config, getOrderedExecutor());
+      storage.start();
+      storage.loadInternalOnly();
+      return storage;
+   }
+
+   /**
+    * Stores the messages, and their references, in a transaction spread on every journal.
+    */
+   private void storeMessages(final JournalStorageManager storage) throws Exception
+   {
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ServerMessage message = generateMessage(FIRST_ID + i);
+         message.setAddress(ADDRESS);
+         message.setDurable(true);
+         message.putIntProperty("count", i);
+         storage.storeMessageTransactional(TX_ID, message);
+         storage.storeReferenceTransactional(TX_ID, queueID, message.getMessageID());
+      }
+   }
+
+   private static void send(final ClientSessionFactory sf,
+                            final int start,
+                            final int count,
+                            final boolean transacted,
+                            final boolean commit) throws Exception
+   {
+      ClientSession session = sf.createSession(!transacted, !transacted);
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = start; i < start + count; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("count", i);
+         message.getBodyBuffer().writeBytes(new byte[128]);
+         producer.send(message);
+      }
+      if (transacted)
+      {
+         if (commit)
+         {
+            session.commit();
+         }
+         else
+         {
+            session.rollback();
+         }
+      }
+      session.close();
+   }
+
+   private static void receive(final ClientSessionFactory sf, final int start, final int end) throws Exception
+   {
+      ClientSession session = sf.createSession(false, true, true);
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      for (int i = start; i < end; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull("Expecting message " + i, message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+      session.close();
+   }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.postoffice.impl;
+
+import java.util.List;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
+import org.hornetq.tests.util.SilentTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DuplicateIDCacheImplTest extends SilentTestCase
+{
+   private static final int CACHE_SIZE = 100;
+
+   @Test
+   public void testRotation() throws Exception
+   {
+      DuplicateIDCache cache = newCache();
+
+      // enough rotations to rebuild the index a few times
+      for (int i = 0; i < CACHE_SIZE * 10; i++)
+      {
+         cache.addToCache(id(i), null);
+
+         Assert.assertTrue(cache.contains(id(i)));
+         if (i >= CACHE_SIZE)
+         {
+            Assert.assertFalse(cache.contains(id(i - CACHE_SIZE)));
+            Assert.assertTrue(cache.contains(id(i - CACHE_SIZE + 1)));
+         }
+      }
+
+      List<Pair<byte[], Long>> map = cache.getMap();
+      Assert.assertEquals(CACHE_SIZE, map.size());
+      for (int i = 0; i < CACHE_SIZE; i++)
+      {
+         // oldest first
+         Assert.assertArrayEquals(id(CACHE_SIZE * 9 + i), map.get(i).getA());
+      }
+   }
+
+   @Test
+   public void testDelete() throws Exception
+   {
+      DuplicateIDCache cache = newCache();
+
+      for (int i = 0; i < CACHE_SIZE; i++)
+      {
+         cache.addToCache(id(i), null);
+      }
+
+      cache.deleteFromCache(id(10));
+      cache.deleteFromCache(id(10));
+      Assert.assertFalse(cache.contains(id(10)));
+      Assert.assertTrue(cache.contains(id(11)));
+      Assert.assertEquals(CACHE_SIZE - 1, cache.getMap().size());
+
+      cache.clear();
+      Assert.assertFalse(cache.contains(id(11)));
+      Assert.assertTrue(cache.getMap().isEmpty());
+
+      cache.addToCache(id(11), null);
+      Assert.assertTrue(cache.contains(id(11)));
+   }
+
+   @Test
+   public void testLoad() throws Exception
+   {
+      DuplicateIDCache cache = newCache();
+
+      for (int i = 0; i < CACHE_SIZE + CACHE_SIZE / 2; i++)
+      {
+         cache.addToCache(id(i), null);
+      }
+
+      DuplicateIDCache loaded = newCache();
+      loaded.load(cache.getMap());
+
+      // the oldest id goes first
+      loaded.addToCache(id(-1), null);
+      Assert.assertFalse(loaded.contains(id(CACHE_SIZE / 2)));
+      Assert.assertTrue(loaded.contains(id(CACHE_SIZE / 2 + 1)));
+      Assert.assertTrue(loaded.contains(id(-1)));
+   }
+
+   private static DuplicateIDCache newCache()
+   {
+      return new DuplicateIDCacheImpl(new SimpleString("address"), CACHE_SIZE, new NullStorageManager(), false);
+   }
+
+   private static byte[] id(final int i)
+   {
+      return ("id-" + i).getBytes();
+   }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingType;
+import org.hornetq.core.server.Bindable;
+import org.hornetq.core.server.RoutingContext;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.RoutingContextImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.SilentTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Routing through the selector index must reach exactly the bindings a full scan would.
+ */
+public class SelectorIndexTest extends SilentTestCase
+{
+   private static final String[] REGIONS = {"EU", "US", "APAC"};
+
+   private static final String[] DESKS = {"FX", "EQ", "FI", "CMD"};
+
+   @Test
+   public void testIndexedRouting() throws Exception
+   {
+      BindingsImpl bindings = new BindingsImpl(new SimpleString("address"), null, null);
+
+      List<TestBinding> all = new ArrayList<TestBinding>();
+      int id = 0;
+      for (String region : REGIONS)
+      {
+         for (String desk : DESKS)
+         {
+            all.add(new TestBinding(id++, "region = '" + region + "' AND desk = '" + desk + "'"));
+            all.add(new TestBinding(id++, "desk = '" + desk + "'"));
+         }
+         all.add(new TestBinding(id++, "region IN ('" + region + "', 'JP')"));
+      }
+      // not indexable
+      all.add(new TestBinding(id++, "amount > 5"));
+      all.add(new TestBinding(id++, "region <> 'EU'"));
+      all.add(new TestBinding(id++, null));
+
+      for (TestBinding binding : all)
+      {
+         bindings.addBinding(binding);
+      }
+
+      Object[] regionValues = {null, "EU", "US", "JP", "LATAM", 5};
+      Object[] deskValues = {null, "FX", "CMD", "RATES"};
+      long messageID = 0;
+      for (Object region : regionValues)
+      {
+         for (Object desk : deskValues)
+         {
+            ServerMessage message = new ServerMessageImpl(++messageID, 1000);
+            putProperty(message, "region", region);
+            putProperty(message, "desk", desk);
+            message.putIntProperty(new SimpleString("amount"), (int) messageID % 10);
+
+            for (TestBinding binding : all)
+            {
+               binding.routed = 0;
+            }
+
+            bindings.route(message, new RoutingContextImpl(null));
+
+            for (TestBinding binding : all)
+            {
+               boolean expected = binding.filter == null || binding.filter.match(message);
+               Assert.assertEquals(binding.filter + " on " + message.getTypedProperties(), expected ? 1 : 0, binding.routed);
+            }
+         }
+      }
+   }
+
+   @Test
+   public void testIndexFollowsBindingChanges() throws Exception
+   {
+      BindingsImpl bindings = new BindingsImpl(new SimpleString("address"), null, null);
+
+      TestBinding eu = new TestBinding(1, "region = 'EU'");
+      TestBinding us = new TestBinding(2, "region = 'US'");
+      bindings.addBinding(eu);
+
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+      message.putStringProperty(new SimpleString("region"), new SimpleString("US"));
+
+      bindings.route(message, new RoutingContextImpl(null));
+      Assert.assertEquals(0, us.routed);
+
+      bindings.addBinding(us);
+      bindings.route(message, new RoutingContextImpl(null));
+      Assert.assertEquals(1, us.routed);
+      Assert.assertEquals(0, eu.routed);
+
+      bindings.removeBinding(us);
+      bindings.route(message, new RoutingContextImpl(null));
+      Assert.assertEquals(1, us.routed);
+   }
+
+   private static void putProperty(final ServerMessage message, final String name, final Object value)
+   {
+      if (value instanceof String)
+      {
+         message.putStringProperty(new SimpleString(name), new SimpleString((String) value));
+      }
+      else if (value != null)
+      {
+         message.putObjectProperty(new SimpleString(name), value);
+      }
+   }
+
+   private static final class TestBinding implements Binding
+   {
+      private final long id;
+
+      private final SimpleString name;
+
+      private final Filter filter;
+
+      private int routed;
+
+      TestBinding(final long id, final String filter) throws Exception
+      {
+         this.id = id;
+         this.name = new SimpleString("queue" + id);
+         this.filter = FilterImpl.createFilter(filter);
+      }
+
+      public void unproposed(final SimpleString groupID)
+      {
+      }
+
+      public SimpleString getAddress()
+      {
+         return new SimpleString("address");
+      }
+
+      public Bindable getBindable()
+      {
+         return null;
+      }
+
+      public BindingType getType()
+      {
+         return BindingType.LOCAL_QUEUE;
+      }
+
+      public SimpleString getUniqueName()
+      {
+         return name;
+      }
+
+      public SimpleString getRoutingName()
+      {
+         return name;
+      }
+
+      public SimpleString getClusterName()
+      {
+         return name;
+      }
+
+      public Filter getFilter()
+      {
+         return filter;
+      }
+
+      public boolean isHighAcceptPriority(final ServerMessage message)
+      {
+         return true;
+      }
+
+      public boolean isExclusive()
+      {
+         return false;
+      }
+
+      public long getID()
+      {
+         return id;
+      }
+
+      public int getDistance()
+      {
+         return 0;
+      }
+
+      public void route(final ServerMessage message, final RoutingContext context)
+      {
+         routed++;
+      }
+
+      public void routeWithAck(final ServerMessage message, final RoutingContext context)
+      {
+         routed++;
+      }
+
+      public void close()
+      {
+      }
+
+      public String toManagementString()
+      {
+         return name.toString();
+      }
+
+      public boolean isConnected()
+      {
+         return true;
+      }
+   }
+}
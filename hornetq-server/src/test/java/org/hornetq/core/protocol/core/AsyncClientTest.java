@@ -0,0 +1,220 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientFuture;
+import org.hornetq.api.core.client.ClientFutureListener;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The asynchronous variants of the core client operations.
+ */
+public class AsyncClientTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("asyncAddress");
+
+   private static final int NUMBER_OF_MESSAGES = 100;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      HornetQServer server = createServer(false, createDefaultConfig(false));
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      sf = createSessionFactory(locator);
+   }
+
+   @Test
+   public void testCreateAndDeleteQueueAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+
+      session.createQueueAsync(ADDRESS, ADDRESS, null, false).get(10, TimeUnit.SECONDS);
+      assertTrue(session.queueQuery(ADDRESS).isExists());
+
+      session.deleteQueueAsync(ADDRESS).get(10, TimeUnit.SECONDS);
+      assertFalse(session.queueQuery(ADDRESS).isExists());
+
+      ClientFuture<Void> future = session.deleteQueueAsync(ADDRESS);
+      try
+      {
+         future.get(10, TimeUnit.SECONDS);
+         fail("Expecting the delete of a missing queue to fail");
+      }
+      catch (ExecutionException e)
+      {
+         assertEquals(HornetQExceptionType.QUEUE_DOES_NOT_EXIST, ((HornetQException) e.getCause()).getType());
+      }
+   }
+
+   @Test
+   public void testReceiveAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, ADDRESS, null, false);
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      final CountDownLatch latch = new CountDownLatch(NUMBER_OF_MESSAGES);
+      final AtomicInteger errors = new AtomicInteger();
+      List<ClientFuture<ClientMessage>> futures = new ArrayList<ClientFuture<ClientMessage>>();
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientFuture<ClientMessage> future = consumer.receiveAsync();
+         future.addListener(new ClientFutureListener<ClientMessage>()
+         {
+            public void completed(final ClientMessage message)
+            {
+               latch.countDown();
+            }
+
+            public void failed(final HornetQException exception)
+            {
+               errors.incrementAndGet();
+            }
+         });
+         futures.add(future);
+      }
+
+      try
+      {
+         consumer.receive(1);
+         fail("receive() can't be called while receiveAsync() calls are waiting");
+      }
+      catch (HornetQException expected)
+      {
+      }
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(false);
+         message.putIntProperty("count", i);
+         producer.send(message);
+      }
+
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = futures.get(i).get();
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+
+      ClientFuture<ClientMessage> pending = consumer.receiveAsync();
+      consumer.close();
+      try
+      {
+         pending.get(10, TimeUnit.SECONDS);
+         fail("Expecting the receive to fail once the consumer is closed");
+      }
+      catch (ExecutionException expected)
+      {
+      }
+      assertEquals(0, errors.get());
+   }
+
+   @Test
+   public void testRollbackAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, false, false));
+      session.createQueue(ADDRESS, ADDRESS, null, false);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         producer.sendAsync(session.createMessage(false));
+      }
+      session.rollbackAsync().get(10, TimeUnit.SECONDS);
+
+      producer.sendAsync(session.createMessage(false));
+      session.commitAsync().get(10, TimeUnit.SECONDS);
+
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      ClientMessage message = consumer.receive(5000);
+      assertNotNull(message);
+      message.acknowledge();
+      session.rollbackAsync().get(10, TimeUnit.SECONDS);
+
+      // The rolled back ack makes the message available again
+      message = consumer.receive(5000);
+      assertNotNull(message);
+      message.acknowledge();
+      session.commit();
+      assertNull(consumer.receiveImmediate());
+   }
+
+   @Test
+   public void testRollbackAsyncWithBufferedMessages() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, false));
+      session.createQueue(ADDRESS, ADDRESS, null, false);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(false);
+         message.putIntProperty("count", i);
+         producer.send(message);
+      }
+
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES / 2; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         message.acknowledge();
+      }
+
+      // Not waited for, the messages still in the buffer or on their way must not be handed out twice
+      ClientFuture<Void> rollback = session.rollbackAsync();
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull("Expecting message " + i, message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+      rollback.get(10, TimeUnit.SECONDS);
+      session.commit();
+      assertNull(consumer.receiveImmediate());
+   }
+}
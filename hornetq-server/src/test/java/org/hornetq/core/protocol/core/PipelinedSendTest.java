@@ -0,0 +1,218 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hornetq.api.core.HornetQConnectionTimedOutException;
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQUnBlockedException;
+import org.hornetq.api.core.Interceptor;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientFuture;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Many calls can be waiting for their response on a session, and the responses must be matched
+ * to the calls they answer.
+ */
+public class PipelinedSendTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("pipelinedAddress");
+
+   private static final int NUMBER_OF_MESSAGES = 500;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      HornetQServer server = createServer(true, createDefaultConfig(false));
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      sf = createSessionFactory(locator);
+   }
+
+   @Test
+   public void testSendAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, ADDRESS, null, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      List<ClientFuture<Void>> futures = new ArrayList<ClientFuture<Void>>();
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("count", i);
+         futures.add(producer.sendAsync(message));
+
+         if (i == NUMBER_OF_MESSAGES / 2)
+         {
+            // A blocking call with a different response in the middle of the pipelined sends
+            assertTrue(session.queueQuery(ADDRESS).isExists());
+         }
+      }
+
+      for (ClientFuture<Void> future : futures)
+      {
+         future.get(10, TimeUnit.SECONDS);
+      }
+
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull("Expecting message " + i, message);
+         assertEquals(i, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+   }
+
+   @Test
+   public void testCommitAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, false, false));
+      session.createQueue(ADDRESS, ADDRESS, null, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         producer.sendAsync(session.createMessage(true));
+      }
+      ClientFuture<Void> commit = session.commitAsync();
+
+      // This one belongs to the next transaction and is never committed
+      producer.send(session.createMessage(true));
+
+      commit.get(10, TimeUnit.SECONDS);
+      assertTrue(commit.isDone());
+
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull("Expecting message " + i, message);
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+   }
+
+   @Test
+   public void testFirstCallTimesOut() throws Exception
+   {
+      final CountDownLatch responseHeld = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setCallTimeout(2000);
+      locator.addIncomingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.SESS_QUEUEQUERY_RESP && responseHeld.getCount() > 0)
+            {
+               // Holds back the response to the first query, and so the responses after it
+               responseHeld.countDown();
+               try
+               {
+                  release.await(10, TimeUnit.SECONDS);
+               }
+               catch (InterruptedException e)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+            return true;
+         }
+      });
+
+      final ClientSession session = addClientSession(createSessionFactory(locator).createSession(false, true, true));
+      session.createQueue(ADDRESS, ADDRESS, null, true);
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      final AtomicReference<Exception> queryFailure = new AtomicReference<Exception>();
+      Thread query = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               session.queueQuery(ADDRESS);
+            }
+            catch (Exception e)
+            {
+               queryFailure.set(e);
+            }
+         }
+      };
+      query.start();
+
+      assertTrue(responseHeld.await(10, TimeUnit.SECONDS));
+
+      // These are pipelined behind the query that will time out, the session is used by two threads
+      // on purpose
+      List<ClientFuture<Void>> futures = new ArrayList<ClientFuture<Void>>();
+      for (int i = 0; i < 3; i++)
+      {
+         futures.add(producer.sendAsync(session.createMessage(true)));
+      }
+
+      query.join(10000);
+      assertTrue(queryFailure.get() instanceof HornetQConnectionTimedOutException);
+
+      for (ClientFuture<Void> future : futures)
+      {
+         try
+         {
+            future.get(10, TimeUnit.SECONDS);
+            fail("the call was answered with the response of another one");
+         }
+         catch (ExecutionException e)
+         {
+            assertTrue(e.getCause() instanceof HornetQUnBlockedException);
+         }
+      }
+
+      release.countDown();
+
+      // The late responses are dropped, and the next calls are handed their own
+      producer.send(session.createMessage(true));
+      assertTrue(session.queueQuery(ADDRESS).isExists());
+      assertFalse(session.queueQuery(new SimpleString("doesNotExist")).isExists());
+   }
+}
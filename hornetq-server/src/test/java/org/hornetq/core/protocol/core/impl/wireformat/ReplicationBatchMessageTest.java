@@ -0,0 +1,87 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.util.List;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.replication.ReplicationManager.ADD_OPERATION_TYPE;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReplicationBatchMessageTest extends UnitTestCase
+{
+   @Test
+   public void testEncodeDecode() throws Exception
+   {
+      byte[] data = new byte[]{1, 2, 3, 4, 5};
+      byte[] changedData = data.clone();
+
+      ReplicationBatchMessage batch = new ReplicationBatchMessage();
+      batch.addRecord(new ReplicationAddMessage((byte) 1, ADD_OPERATION_TYPE.ADD, 10, (byte) 31, new ByteArrayEncoding(changedData)));
+      batch.addRecord(new ReplicationDeleteTXMessage((byte) 1, 20, 10, new ByteArrayEncoding(new byte[0])));
+      batch.addRecord(new ReplicationDeleteMessage((byte) 0, 11));
+      batch.addRecord(new ReplicationCommitMessage((byte) 1, false, 20));
+
+      // records are encoded when they are added
+      changedData[0] = 100;
+
+      Assert.assertEquals(4, batch.getRecordCount());
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(batch.getRecordsSize() + 4);
+      batch.encodeRest(buffer);
+
+      ReplicationBatchMessage decoded = new ReplicationBatchMessage();
+      decoded.decodeRest(buffer);
+      Assert.assertEquals(0, buffer.readableBytes());
+
+      List<PacketImpl> records = decoded.getRecords();
+      Assert.assertEquals(4, records.size());
+
+      ReplicationAddMessage add = (ReplicationAddMessage) records.get(0);
+      Assert.assertEquals(1, add.getJournalID());
+      Assert.assertEquals(10, add.getId());
+      Assert.assertEquals(31, add.getJournalRecordType());
+      Assert.assertArrayEquals(data, add.getRecordData());
+
+      ReplicationDeleteTXMessage deleteTX = (ReplicationDeleteTXMessage) records.get(1);
+      Assert.assertEquals(20, deleteTX.getTxId());
+      Assert.assertEquals(10, deleteTX.getId());
+
+      ReplicationDeleteMessage delete = (ReplicationDeleteMessage) records.get(2);
+      Assert.assertEquals(0, delete.getJournalID());
+      Assert.assertEquals(11, delete.getId());
+
+      ReplicationCommitMessage commit = (ReplicationCommitMessage) records.get(3);
+      Assert.assertFalse(commit.isRollback());
+      Assert.assertEquals(20, commit.getTxId());
+   }
+
+   @Test
+   public void testEmptyBatch() throws Exception
+   {
+      ReplicationBatchMessage batch = new ReplicationBatchMessage();
+      Assert.assertEquals(0, batch.getRecordsSize());
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(4);
+      batch.encodeRest(buffer);
+
+      ReplicationBatchMessage decoded = new ReplicationBatchMessage();
+      decoded.decodeRest(buffer);
+      Assert.assertTrue(decoded.getRecords().isEmpty());
+   }
+}
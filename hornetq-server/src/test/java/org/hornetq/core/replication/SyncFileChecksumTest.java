@@ -0,0 +1,65 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.replication;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SyncFileChecksumTest extends UnitTestCase
+{
+   @Test
+   public void testPrefixDigest() throws Exception
+   {
+      byte[] data = new byte[300 * 1024];
+      for (int i = 0; i < data.length; i++)
+      {
+         data[i] = getSamplebyte(i);
+      }
+
+      File backupFile = writeFile("backup.page", data, 200 * 1024 + 7);
+      File liveFile = writeFile("live.page", data, data.length);
+
+      byte[] backupDigest = SyncFileChecksum.digest(backupFile, backupFile.length());
+      Assert.assertEquals(32, backupDigest.length);
+      Assert.assertArrayEquals(backupDigest, SyncFileChecksum.digest(liveFile, backupFile.length()));
+      Assert.assertFalse(Arrays.equals(backupDigest, SyncFileChecksum.digest(liveFile, liveFile.length())));
+
+      // the live file changed after the backup copied it
+      data[10] = (byte) (data[10] + 1);
+      File changedFile = writeFile("changed.page", data, data.length);
+      Assert.assertFalse(Arrays.equals(backupDigest, SyncFileChecksum.digest(changedFile, backupFile.length())));
+
+      Assert.assertNull(SyncFileChecksum.digest(backupFile, liveFile.length()));
+   }
+
+   private File writeFile(final String name, final byte[] data, final int length) throws Exception
+   {
+      File file = new File(getTestDir(), name);
+      file.getParentFile().mkdirs();
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(data, 0, length);
+      }
+      finally
+      {
+         out.close();
+      }
+      return file;
+   }
+}
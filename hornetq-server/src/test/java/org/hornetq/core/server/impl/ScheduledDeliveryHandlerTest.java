@@ -19,6 +19,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -208,6 +209,121 @@ public class ScheduledDeliveryHandlerTest extends Assert
       }
    }
 
+   @Test
+   public void testScheduleOnSeveralLevels() throws Exception
+   {
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+      try
+      {
+         ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduler);
+         FakeQueueForScheduleUnitTest fakeQueue = new FakeQueueForScheduleUnitTest(5);
+
+         long now = System.currentTimeMillis();
+
+         // one millisecond buckets hold 64 milliseconds, so these go to three different levels
+         checkAndSchedule(handler, 4, now + 1500, true, fakeQueue);
+         checkAndSchedule(handler, 2, now + 300, true, fakeQueue);
+         checkAndSchedule(handler, 3, now + 700, true, fakeQueue);
+         checkAndSchedule(handler, 1, now + 70, false, fakeQueue);
+         checkAndSchedule(handler, 0, now + 10, false, fakeQueue);
+
+         assertEquals(5, handler.getScheduledCount());
+         validateSequence(handler);
+
+         assertTrue(fakeQueue.waitCompletion(10, TimeUnit.SECONDS));
+         assertTrue(System.currentTimeMillis() >= now + 1500);
+         assertEquals(0, handler.getScheduledCount());
+
+         // every message was added to the head of the queue, so the last one delivered is the first
+         long expectedID = 4;
+         for (MessageReference ref : fakeQueue.messages)
+         {
+            assertEquals(expectedID--, ref.getMessage().getMessageID());
+            assertEquals(0, ref.getScheduledDeliveryTime());
+         }
+      }
+      finally
+      {
+         scheduler.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testScheduleConcurrentlyOnSeveralLevels() throws Exception
+   {
+      final int NUMBER_OF_MESSAGES = 500;
+      final int NUMBER_OF_THREADS = 10;
+      ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS + 1);
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+      try
+      {
+         final ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduler);
+         final FakeQueueForScheduleUnitTest fakeQueue = new FakeQueueForScheduleUnitTest(NUMBER_OF_MESSAGES * NUMBER_OF_THREADS);
+         final long now = System.currentTimeMillis();
+         final CountDownLatch latchDone = new CountDownLatch(NUMBER_OF_THREADS);
+         final AtomicInteger error = new AtomicInteger(0);
+
+         for (int t = 0; t < NUMBER_OF_THREADS; t++)
+         {
+            final int thread = t;
+            executor.execute(new Runnable()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     Random random = new Random(thread);
+                     for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+                     {
+                        checkAndSchedule(handler, thread * NUMBER_OF_MESSAGES + i, now + random.nextInt(1500), false, fakeQueue);
+                     }
+                  }
+                  catch (Exception e)
+                  {
+                     e.printStackTrace();
+                     error.incrementAndGet();
+                  }
+                  finally
+                  {
+                     latchDone.countDown();
+                  }
+               }
+            });
+         }
+
+         // the management operations put the added references on the wheel while they come
+         executor.execute(new Runnable()
+         {
+            public void run()
+            {
+               while (latchDone.getCount() > 0)
+               {
+                  handler.getScheduledReferences();
+               }
+            }
+         });
+
+         assertTrue(latchDone.await(1, TimeUnit.MINUTES));
+         assertEquals(0, error.get());
+
+         assertTrue(fakeQueue.waitCompletion(10, TimeUnit.SECONDS));
+         assertEquals(0, handler.getScheduledCount());
+         assertTrue(handler.getScheduledReferences().isEmpty());
+
+         Set<Long> ids = new HashSet<Long>();
+         for (MessageReference ref : fakeQueue.messages)
+         {
+            assertTrue(ids.add(ref.getMessage().getMessageID()));
+         }
+         assertEquals(NUMBER_OF_MESSAGES * NUMBER_OF_THREADS, ids.size());
+      }
+      finally
+      {
+         scheduler.shutdownNow();
+         executor.shutdownNow();
+      }
+   }
+
    private void internalSchedule(ExecutorService executor, ScheduledThreadPoolExecutor scheduler) throws Exception
    {
       final int NUMBER_OF_MESSAGES = 200;
@@ -1114,8 +1230,8 @@ public class ScheduledDeliveryHandlerTest extends Assert
 
       private void addFirst(MessageReference ref)
       {
-         expectedElements.countDown();
          this.messages.addFirst(ref);
+         expectedElements.countDown();
       }
 
       @Override
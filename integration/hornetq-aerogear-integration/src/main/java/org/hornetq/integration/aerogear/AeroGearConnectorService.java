@@ -395,6 +395,12 @@ public class AeroGearConnectorService implements ConnectorService, Consumer, Mes
       //noop
    }
 
+   @Override
+   public void proceedDeliver(List<MessageReference> references) throws Exception
+   {
+      //noop
+   }
+
    @Override
    public Filter getFilter()
    {
@@ -296,6 +296,12 @@ public class OutgoingVertxEventHandler implements Consumer, ConnectorService
       // no op
    }
 
+   @Override
+   public void proceedDeliver(List<MessageReference> references) throws Exception
+   {
+      // no op
+   }
+
    @Override
    public Filter getFilter()
    {
@@ -23,6 +23,7 @@ import org.hornetq.api.core.HornetQPropertyConversionException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientFuture;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
@@ -358,6 +359,12 @@ public class AcknowledgeTest extends ServiceTestBase
          return null;
       }
 
+      @Override
+      public ClientFuture<ClientMessage> receiveAsync() throws HornetQException
+      {
+         return null;
+      }
+
       @Override
       public MessageHandler getMessageHandler() throws HornetQException
       {
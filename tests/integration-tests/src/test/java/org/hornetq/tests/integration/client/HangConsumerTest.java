@@ -577,6 +577,31 @@ public class HangConsumerTest extends ServiceTestBase
          }
       }
 
+      @Override
+      public int sendMessages(List<MessageReference> references, ServerConsumer consumer)
+      {
+         inCall.countDown();
+         try
+         {
+            callbackSemaphore.acquire();
+         }
+         catch (InterruptedException e)
+         {
+            inCall.countUp();
+            return -1;
+         }
+
+         try
+         {
+            return targetCallback.sendMessages(references, consumer);
+         }
+         finally
+         {
+            callbackSemaphore.release();
+            inCall.countUp();
+         }
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.spi.core.protocol.SessionCallback#sendLargeMessage(org.hornetq.core.server.ServerMessage, long, long, int)
        */
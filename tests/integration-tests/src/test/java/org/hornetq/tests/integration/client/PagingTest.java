@@ -6493,6 +6493,16 @@ public class PagingTest extends ServiceTestBase
          pageDone.countDown();
       }
 
+      public void duplicateIDSyncLineUp()
+      {
+
+      }
+
+      public void duplicateIDSyncDone()
+      {
+
+      }
+
       public void executeOnCompletion(IOAsyncTask runnable)
       {
 
@@ -15,6 +15,7 @@
  */
 package org.hornetq.tests.integration.cluster.util;
 
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 
 import org.hornetq.api.core.HornetQException;
@@ -24,6 +25,7 @@ import org.hornetq.core.protocol.core.ChannelHandler;
 import org.hornetq.core.protocol.core.CommandConfirmationHandler;
 import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.ResponseHandler;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage;
@@ -251,12 +253,24 @@ public class BackupSyncDelay implements Interceptor
          throw new UnsupportedOperationException();
       }
 
+      @Override
+      public int send(List<? extends Packet> packets)
+      {
+         throw new UnsupportedOperationException();
+      }
+
       @Override
       public Packet sendBlocking(Packet packet, byte expected) throws HornetQException
       {
          throw new UnsupportedOperationException();
       }
 
+      @Override
+      public void sendPipelined(Packet packet, byte expected, ResponseHandler handler) throws HornetQException
+      {
+         throw new UnsupportedOperationException();
+      }
+
       @Override
       public void setHandler(ChannelHandler handler)
       {
@@ -521,6 +521,21 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer) proxy.retrieveAttributeValue("JournalCompactPercentage");
          }
 
+         public long getJournalCompactedBytes()
+         {
+            return (Long) proxy.retrieveAttributeValue("JournalCompactedBytes", Long.class);
+         }
+
+         public long getJournalCompactStallTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("JournalCompactStallTime", Long.class);
+         }
+
+         public long getJournalMaxCompactStallTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("JournalMaxCompactStallTime", Long.class);
+         }
+
          public boolean isPersistenceEnabled()
          {
             return (Boolean) proxy.retrieveAttributeValue("PersistenceEnabled");
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.persistence;
+
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Test;
+
+/**
+ * Reloads a journal spread over many files into several queues sharing the same messages, which
+ * are read ahead and rebuilt by several threads.
+ */
+public class ParallelLoadTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("parallelLoad");
+
+   private static final int NUMBER_OF_QUEUES = 4;
+
+   private static final int NUMBER_OF_MESSAGES = 1000;
+
+   @Test
+   public void testRestartKeepsOrder() throws Exception
+   {
+      Configuration config = createDefaultConfig(false);
+      config.setJournalFileSize(64 * 1024);
+
+      HornetQServer server = createServer(true, config);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      for (int i = 0; i < NUMBER_OF_QUEUES; i++)
+      {
+         session.createQueue(ADDRESS, ADDRESS.concat("-" + i), null, true);
+      }
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("count", i);
+         if (i % 100 == 0)
+         {
+            // already due when reloaded
+            message.putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, System.currentTimeMillis() + 100);
+         }
+         message.getBodyBuffer().writeBytes(new byte[256]);
+         producer.send(message);
+      }
+
+      session.close();
+      sf.close();
+      server.stop();
+
+      Thread.sleep(100);
+
+      server.start();
+      sf = createSessionFactory(locator);
+      session = addClientSession(sf.createSession(false, true, true));
+      session.start();
+
+      for (int q = 0; q < NUMBER_OF_QUEUES; q++)
+      {
+         ClientConsumer consumer = session.createConsumer(ADDRESS.concat("-" + q));
+         int scheduled = 0;
+         int expected = 0;
+         for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+         {
+            ClientMessage message = consumer.receive(5000);
+            assertNotNull("Expecting message " + i + " on queue " + q, message);
+            int count = message.getIntProperty("count").intValue();
+            if (count % 100 == 0)
+            {
+               scheduled++;
+            }
+            else
+            {
+               while (expected % 100 == 0)
+               {
+                  expected++;
+               }
+               assertEquals(expected++, count);
+            }
+            message.acknowledge();
+         }
+         assertEquals(NUMBER_OF_MESSAGES / 100, scheduled);
+         assertNull(consumer.receiveImmediate());
+         consumer.close();
+      }
+   }
+}
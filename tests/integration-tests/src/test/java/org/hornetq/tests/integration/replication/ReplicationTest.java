@@ -952,6 +952,24 @@ public final class ReplicationTest extends ServiceTestBase
       {
       }
 
+      @Override
+      public long getCompactedBytes()
+      {
+         return 0;
+      }
+
+      @Override
+      public long getCompactStallTime()
+      {
+         return 0;
+      }
+
+      @Override
+      public long getMaxCompactStallTime()
+      {
+         return 0;
+      }
+
       @Override
       public void replicationSyncPreserveOldFiles()
       {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates a set of order routing selectors against one message, the way a topic with that many
+ * filtered subscriptions does, comparing compiled selectors with the interpreted expression tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark
+{
+   private static final String[] REGIONS = {"EU", "US", "APAC", "LATAM"};
+
+   private static final String[] DESKS = {"FX", "EQ", "FI", "CMD", "RATES"};
+
+   @Param({"true", "false"})
+   public boolean compile;
+
+   @Param({"400"})
+   public int selectors;
+
+   private Filter[] filters;
+
+   private ServerMessage message;
+
+   @Setup
+   public void setup() throws Exception
+   {
+      filters = new Filter[selectors];
+      for (int i = 0; i < selectors; i++)
+      {
+         String selector;
+         switch (i % 4)
+         {
+            case 0:
+               selector = "region = '" + REGIONS[i % REGIONS.length] + "' AND desk = '" + DESKS[i % DESKS.length] + "'";
+               break;
+            case 1:
+               selector = "desk IN ('" + DESKS[i % DESKS.length] + "', '" + DESKS[(i + 1) % DESKS.length] + "')";
+               break;
+            case 2:
+               selector = "region = '" + REGIONS[i % REGIONS.length] + "' AND quantity BETWEEN " + i + " AND " + (i * 10);
+               break;
+            default:
+               selector = "account = " + i + " OR (desk = '" + DESKS[i % DESKS.length] + "' AND quantity > " + i + ")";
+         }
+         filters[i] = FilterImpl.createFilter(new SimpleString(selector), compile);
+      }
+
+      message = new ServerMessageImpl(1, 1024);
+      message.putStringProperty(new SimpleString("region"), new SimpleString("EU"));
+      message.putStringProperty(new SimpleString("desk"), new SimpleString("FX"));
+      message.putLongProperty(new SimpleString("quantity"), 1000L);
+      message.putIntProperty(new SimpleString("account"), 42);
+   }
+
+   @Benchmark
+   public int matchAll()
+   {
+      int matches = 0;
+      for (Filter filter : filters)
+      {
+         if (filter.match(message))
+         {
+            matches++;
+         }
+      }
+      return matches;
+   }
+}
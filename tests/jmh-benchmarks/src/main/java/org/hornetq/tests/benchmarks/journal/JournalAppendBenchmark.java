@@ -0,0 +1,133 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.journal;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.JournalConstants;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appends records to a journal and deletes them right away, so the files are reclaimed and the
+ * journal keeps a steady size.
+ * <p>
+ * The journal is created on {@code java.io.tmpdir} unless the {@code journal.dir} system property
+ * is set. {@code ASYNCIO} can be passed to the {@code type} parameter where libaio is available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalAppendBenchmark
+{
+   @Param({"NIO", "MAPPED"})
+   public String type;
+
+   @Param({"false", "true"})
+   public boolean sync;
+
+   @Param({"1024"})
+   public int recordSize;
+
+   private File directory;
+
+   private JournalImpl journal;
+
+   private byte[] record;
+
+   private final AtomicLong ids = new AtomicLong();
+
+   @Setup
+   public void setup() throws Exception
+   {
+      directory = File.createTempFile("journal", "", new File(System.getProperty("journal.dir", System.getProperty("java.io.tmpdir"))));
+      directory.delete();
+      directory.mkdirs();
+
+      SequentialFileFactory factory;
+      if (type.equals("ASYNCIO"))
+      {
+         factory = new AIOSequentialFileFactory(directory.getPath(),
+                                                JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_AIO,
+                                                JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_AIO,
+                                                false);
+      }
+      else if (type.equals("MAPPED"))
+      {
+         factory = new MappedSequentialFileFactory(directory.getPath(),
+                                                   true,
+                                                   JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+                                                   JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+                                                   false,
+                                                   null);
+      }
+      else
+      {
+         factory = new NIOSequentialFileFactory(directory.getPath(),
+                                                true,
+                                                JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+                                                JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+                                                false);
+      }
+
+      journal = new JournalImpl(10 * 1024 * 1024, 4, 0, 0, factory, "hornetq-data", "hq", type.equals("ASYNCIO") ? 500 : 1);
+      journal.start();
+      journal.loadInternalOnly();
+
+      record = new byte[recordSize];
+   }
+
+   @TearDown
+   public void tearDown() throws Exception
+   {
+      journal.stop();
+
+      File[] files = directory.listFiles();
+      if (files != null)
+      {
+         for (File file : files)
+         {
+            file.delete();
+         }
+      }
+      directory.delete();
+   }
+
+   @Benchmark
+   public void appendAndDelete() throws Exception
+   {
+      long id = ids.incrementAndGet();
+      journal.appendAddRecord(id, (byte) 1, record, sync);
+      journal.appendDeleteRecord(id, false);
+   }
+}
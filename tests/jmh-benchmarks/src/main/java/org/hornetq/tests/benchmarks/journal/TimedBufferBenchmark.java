@@ -0,0 +1,117 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.journal;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.impl.JournalConstants;
+import org.hornetq.core.journal.impl.TimedBuffer;
+import org.hornetq.core.journal.impl.TimedBufferObserver;
+import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds records to a {@link TimedBuffer} the way a journal file does, with an observer that discards
+ * the flushed buffers, so only the buffering and the flush hand-off are measured.
+ * <p>
+ * Run it with {@code -t} to see the contention between writers on the buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimedBufferBenchmark
+{
+   private static final IOAsyncTask NO_OP_CALLBACK = new IOAsyncTask()
+   {
+      public void done()
+      {
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+      }
+   };
+
+   @Param({"1024"})
+   public int recordSize;
+
+   @Param({"false", "true"})
+   public boolean sync;
+
+   private TimedBuffer timedBuffer;
+
+   private ByteArrayEncoding record;
+
+   @Setup
+   public void setup()
+   {
+      timedBuffer = new TimedBuffer(JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+                                    JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+                                    false);
+      timedBuffer.start();
+      timedBuffer.setObserver(new DiscardingObserver());
+
+      record = new ByteArrayEncoding(new byte[recordSize]);
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      timedBuffer.stop();
+   }
+
+   @Benchmark
+   public void addBytes()
+   {
+      timedBuffer.checkSize(recordSize);
+      timedBuffer.addBytes(record, sync, NO_OP_CALLBACK);
+   }
+
+   private static final class DiscardingObserver implements TimedBufferObserver
+   {
+      public void flushBuffer(final ByteBuffer buffer, final boolean syncRequested, final List<IOAsyncTask> callbacks)
+      {
+         for (IOAsyncTask callback : callbacks)
+         {
+            callback.done();
+         }
+      }
+
+      public int getRemainingBytes()
+      {
+         return Integer.MAX_VALUE;
+      }
+
+      public ByteBuffer newBuffer(final int size, final int limit)
+      {
+         return ByteBuffer.allocate(limit);
+      }
+   }
+}
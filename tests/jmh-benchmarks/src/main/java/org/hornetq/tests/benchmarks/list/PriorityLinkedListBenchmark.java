@@ -0,0 +1,100 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.list;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.utils.LinkedListIterator;
+import org.hornetq.utils.PriorityLinkedListImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds and polls references the way a queue does with its message priorities, keeping a steady
+ * backlog of messages on the list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityLinkedListBenchmark
+{
+   private static final int PRIORITIES = 10;
+
+   @Param({"1000", "100000"})
+   public int backlog;
+
+   @Param({"1", "10"})
+   public int usedPriorities;
+
+   private PriorityLinkedListImpl<Integer> list;
+
+   private int next;
+
+   @Setup
+   public void setup()
+   {
+      list = new PriorityLinkedListImpl<Integer>(PRIORITIES);
+      for (next = 0; next < backlog; next++)
+      {
+         list.addTail(next, next % usedPriorities);
+      }
+   }
+
+   @Benchmark
+   public Integer addTailPoll()
+   {
+      list.addTail(next, next % usedPriorities);
+      next++;
+      return list.poll();
+   }
+
+   @Benchmark
+   public Integer addHeadPoll()
+   {
+      list.addHead(next, next % usedPriorities);
+      next++;
+      return list.poll();
+   }
+
+   @Benchmark
+   public int iterate()
+   {
+      int count = 0;
+      LinkedListIterator<Integer> iterator = list.iterator();
+      try
+      {
+         while (iterator.hasNext() && count < 100)
+         {
+            iterator.next();
+            count++;
+         }
+      }
+      finally
+      {
+         iterator.close();
+      }
+      return count;
+   }
+}
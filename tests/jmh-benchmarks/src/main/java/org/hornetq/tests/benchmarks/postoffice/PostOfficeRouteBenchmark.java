@@ -0,0 +1,118 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.postoffice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.config.impl.ConfigurationImpl;
+import org.hornetq.core.postoffice.PostOffice;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.HornetQServers;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Routes non durable messages through {@link PostOffice#route(ServerMessage, boolean)} on a server
+ * without persistence, to an address with a number of filtered subscriptions.
+ * <p>
+ * The routed references stay on the queues, so every iteration routes a fixed batch of messages
+ * and the queues are emptied between iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = PostOfficeRouteBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = PostOfficeRouteBenchmark.BATCH_SIZE)
+@Fork(1)
+public class PostOfficeRouteBenchmark
+{
+   static final int BATCH_SIZE = 10000;
+
+   private static final SimpleString ADDRESS = new SimpleString("benchmark.orders");
+
+   private static final String[] REGIONS = {"EU", "US", "APAC", "LATAM"};
+
+   @Param({"1", "100"})
+   public int subscriptions;
+
+   private HornetQServer server;
+
+   private PostOffice postOffice;
+
+   private final List<Queue> queues = new ArrayList<Queue>();
+
+   private long messageID;
+
+   @Setup
+   public void setup() throws Exception
+   {
+      Configuration configuration = new ConfigurationImpl();
+      configuration.setPersistenceEnabled(false);
+      configuration.setSecurityEnabled(false);
+      configuration.setJMXManagementEnabled(false);
+
+      server = HornetQServers.newHornetQServer(configuration, false);
+      server.start();
+
+      for (int i = 0; i < subscriptions; i++)
+      {
+         SimpleString filter = subscriptions == 1 ? null : new SimpleString("region = '" + REGIONS[i % REGIONS.length] + "'");
+         queues.add(server.createQueue(ADDRESS, ADDRESS.concat("." + i), filter, false, false));
+      }
+
+      postOffice = server.getPostOffice();
+   }
+
+   @TearDown(Level.Iteration)
+   public void emptyQueues() throws Exception
+   {
+      for (Queue queue : queues)
+      {
+         queue.deleteAllReferences();
+      }
+   }
+
+   @TearDown
+   public void tearDown() throws Exception
+   {
+      server.stop();
+   }
+
+   @Benchmark
+   public void route() throws Exception
+   {
+      ServerMessage message = new ServerMessageImpl(++messageID, 512);
+      message.setAddress(ADDRESS);
+      message.setDurable(false);
+      message.putStringProperty(new SimpleString("region"), new SimpleString(REGIONS[(int) (messageID % REGIONS.length)]));
+      postOffice.route(message, false);
+   }
+}
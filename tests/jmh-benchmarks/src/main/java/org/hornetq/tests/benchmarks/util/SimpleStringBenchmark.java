@@ -0,0 +1,108 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.benchmarks.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.utils.UTF8Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converts, hashes and compares SimpleStrings the way addresses and property names are handled on
+ * every message, and writes and reads Strings through {@link UTF8Util}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleStringBenchmark
+{
+   @Param({"16", "128"})
+   public int length;
+
+   private String string;
+
+   private SimpleString simpleString;
+
+   private SimpleString otherSimpleString;
+
+   private HornetQBuffer utfBuffer;
+
+   private HornetQBuffer encodedUTF;
+
+   @Setup
+   public void setup()
+   {
+      StringBuilder builder = new StringBuilder(length);
+      for (int i = 0; i < length; i++)
+      {
+         builder.append((char) ('a' + i % 26));
+      }
+      string = builder.toString();
+      simpleString = new SimpleString(string);
+      otherSimpleString = new SimpleString(string);
+
+      utfBuffer = HornetQBuffers.fixedBuffer(length * 3 + 2);
+
+      encodedUTF = HornetQBuffers.fixedBuffer(length * 3 + 2);
+      UTF8Util.saveUTF(encodedUTF, string);
+   }
+
+   @Benchmark
+   public int newSimpleStringHashCode()
+   {
+      return new SimpleString(string).hashCode();
+   }
+
+   @Benchmark
+   public boolean simpleStringEquals()
+   {
+      return simpleString.equals(otherSimpleString);
+   }
+
+   @Benchmark
+   public String simpleStringToString()
+   {
+      return new SimpleString(simpleString.getData()).toString();
+   }
+
+   @Benchmark
+   public HornetQBuffer saveUTF()
+   {
+      utfBuffer.clear();
+      UTF8Util.saveUTF(utfBuffer, string);
+      return utfBuffer;
+   }
+
+   @Benchmark
+   public String readUTF()
+   {
+      encodedUTF.readerIndex(0);
+      return UTF8Util.readUTF(encodedUTF);
+   }
+}
@@ -38,6 +38,7 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientFuture;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
@@ -1010,6 +1011,14 @@ public class MessageHeaderTest extends MessageHeaderTestBase
       {
       }
 
+      public ClientFuture<Void> createQueueAsync(final SimpleString address,
+                                                 final SimpleString queueName,
+                                                 final SimpleString filterString,
+                                                 final boolean durable) throws HornetQException
+      {
+         return null;
+      }
+
       public void createQueue(final SimpleString address, final SimpleString queueName, final boolean durable) throws HornetQException
       {
       }
@@ -1071,6 +1080,11 @@ public class MessageHeaderTest extends MessageHeaderTestBase
       {
       }
 
+      public ClientFuture<Void> deleteQueueAsync(final SimpleString queueName) throws HornetQException
+      {
+         return null;
+      }
+
       public void deleteQueue(final String queueName) throws HornetQException
       {
       }
@@ -1243,6 +1257,11 @@ public class MessageHeaderTest extends MessageHeaderTestBase
       {
       }
 
+      public ClientFuture<Void> commitAsync() throws HornetQException
+      {
+         return null;
+      }
+
       public boolean isRollbackOnly()
       {
 
@@ -1257,6 +1276,11 @@ public class MessageHeaderTest extends MessageHeaderTestBase
       {
       }
 
+      public ClientFuture<Void> rollbackAsync() throws HornetQException
+      {
+         return null;
+      }
+
       public void close() throws HornetQException
       {
       }
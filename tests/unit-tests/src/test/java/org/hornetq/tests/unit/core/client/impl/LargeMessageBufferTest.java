@@ -30,6 +30,7 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientFuture;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.MessageHandler;
@@ -813,6 +814,11 @@ public class LargeMessageBufferTest extends UnitTestCase
          return null;
       }
 
+      public ClientFuture<ClientMessage> receiveAsync() throws HornetQException
+      {
+         return null;
+      }
+
       public FakeConsumerInternal setMessageHandler(final MessageHandler handler) throws HornetQException
       {
          return this;
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.unit.core.journal.impl;
+
+import java.io.File;
+
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.tests.unit.core.journal.impl.fakes.SimpleEncoding;
+import org.junit.Test;
+
+/**
+ * Loads journals spread over many files, with the files read ahead by several threads.
+ */
+public class ParallelLoadJournalTest extends JournalImplTestBase
+{
+   @Test
+   public void testLoadRecordsAndTransactionsAcrossFiles() throws Exception
+   {
+      setup(2, 10 * 1024, true);
+      createJournal();
+      ((JournalImpl) journal).setLoadThreads(4);
+      startJournal();
+      load();
+
+      for (long i = 1; i <= 100; i++)
+      {
+         add(i);
+      }
+      update(10, 20, 30);
+      delete(40, 50);
+
+      // transactions with records on several files
+      addTx(1000, 101, 102, 103, 104, 105, 106, 107, 108, 109, 110);
+      updateTx(1000, 1, 2);
+      deleteTx(1000, 3);
+      commit(1000);
+
+      addTx(1001, 111, 112, 113, 114, 115, 116, 117, 118, 119, 120);
+      rollback(1001);
+
+      addTx(1002, 121, 122, 123);
+      deleteTx(1002, 4);
+      prepare(1002, new SimpleEncoding(10, (byte) 0));
+
+      for (long i = 200; i < 260; i++)
+      {
+         add(i);
+      }
+
+      assertTrue(journal.getDataFilesCount() > 8);
+
+      stopJournal();
+      createJournal();
+      ((JournalImpl) journal).setLoadThreads(4);
+      startJournal();
+      loadAndCheck();
+
+      // and the same files read one at a time
+      stopJournal();
+      createJournal();
+      ((JournalImpl) journal).setLoadThreads(1);
+      startJournal();
+      loadAndCheck();
+   }
+
+   @Override
+   protected SequentialFileFactory getFileFactory() throws Exception
+   {
+      File file = new File(getTestDir());
+
+      deleteDirectory(file);
+
+      file.mkdir();
+
+      return new NIOSequentialFileFactory(getTestDir());
+   }
+}
@@ -16,9 +16,15 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
@@ -118,6 +124,9 @@ public class TimedBufferTest extends UnitTestCase
 
          timedBuffer.checkSize(1);
 
+         // the buffer is handed over on the flush thread
+         timedBuffer.flush();
+
          Assert.assertEquals(1, flushTimes.get());
 
          ByteBuffer flushedBuffer = buffers.get(0);
@@ -402,4 +411,126 @@ public class TimedBufferTest extends UnitTestCase
          timedBuffer.stop();
       }
    }
+
+   /**
+    * The records keep going to the other buffer while the observer is still writing the first one,
+    * and the space taken by the buffers not written yet is counted against the file.
+    */
+   @Test
+   public void testAppendWhileFlushing() throws Exception
+   {
+      final List<ByteBuffer> buffers = Collections.synchronizedList(new ArrayList<ByteBuffer>());
+      final AtomicInteger remainingBytes = new AtomicInteger(350);
+      final CountDownLatch writeStarted = new CountDownLatch(1);
+      final CountDownLatch releaseWrite = new CountDownLatch(1);
+      class SlowObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            remainingBytes.addAndGet(-buffer.limit());
+            buffers.add(buffer);
+            writeStarted.countDown();
+            try
+            {
+               releaseWrite.await();
+            }
+            catch (InterruptedException e)
+            {
+               throw new IllegalStateException(e);
+            }
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return remainingBytes.get();
+         }
+      }
+
+      final TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS, false);
+
+      timedBuffer.start();
+
+      ExecutorService appender = Executors.newSingleThreadExecutor();
+
+      try
+      {
+         timedBuffer.setObserver(new SlowObserver());
+
+         // the first buffer is handed over on the 11th record and the second one on the 21st
+         Future<Boolean> appended = appender.submit(appendRecords(timedBuffer, 0, 30));
+         assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+         assertTrue(appended.get(10, TimeUnit.SECONDS));
+         assertEquals(1, buffers.size());
+
+         // both buffers are in flight, so the 31st record waits for the first write
+         Future<Boolean> blocked = appender.submit(appendRecords(timedBuffer, 30, 5));
+         try
+         {
+            blocked.get(200, TimeUnit.MILLISECONDS);
+            fail("both buffers are in flight");
+         }
+         catch (TimeoutException expected)
+         {
+         }
+
+         releaseWrite.countDown();
+         assertTrue(blocked.get(10, TimeUnit.SECONDS));
+
+         // 350 bytes, the file is full
+         assertFalse(timedBuffer.checkSize(10));
+
+         timedBuffer.flush();
+
+         assertEquals(0, remainingBytes.get());
+         assertEquals(4, buffers.size());
+
+         int x = 0;
+         for (ByteBuffer flushedBuffer : buffers)
+         {
+            flushedBuffer.rewind();
+            while (flushedBuffer.hasRemaining())
+            {
+               assertEquals(UnitTestCase.getSamplebyte(x++), flushedBuffer.get());
+            }
+         }
+         assertEquals(350, x);
+      }
+      finally
+      {
+         releaseWrite.countDown();
+         appender.shutdown();
+         timedBuffer.stop();
+      }
+   }
+
+   private Callable<Boolean> appendRecords(final TimedBuffer timedBuffer, final int firstRecord, final int records)
+   {
+      return new Callable<Boolean>()
+      {
+         public Boolean call() throws Exception
+         {
+            for (int i = firstRecord; i < firstRecord + records; i++)
+            {
+               if (!timedBuffer.checkSize(10))
+               {
+                  return false;
+               }
+
+               byte[] bytes = new byte[10];
+               for (int j = 0; j < 10; j++)
+               {
+                  bytes[j] = UnitTestCase.getSamplebyte(i * 10 + j);
+               }
+
+               timedBuffer.addBytes(HornetQBuffers.wrappedBuffer(bytes), false, dummyCallback);
+            }
+            return true;
+         }
+      };
+   }
 }
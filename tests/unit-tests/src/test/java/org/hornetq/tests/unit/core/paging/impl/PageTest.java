@@ -20,6 +20,7 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.impl.Page;
@@ -76,6 +77,70 @@ public class PageTest extends UnitTestCase
       testDamagedPage(new FakeSequentialFileFactory(1, false), 100);
    }
 
+   /**
+    * A mapped page that wasn't closed keeps the zeros of its mapping at the end, the messages added
+    * after reopening it must be written after the records, not after the zeros
+    */
+   @Test
+   public void testAddToMappedPageAfterCrash() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      SequentialFileFactory factory = new MappedSequentialFileFactory(getTestDir());
+
+      SequentialFile crashedFile = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, crashedFile, 10);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      ArrayList<HornetQBuffer> buffers = addPageElements(simpleDestination, impl, 10);
+
+      impl.sync();
+
+      // not closing the page, as a crash
+      Assert.assertTrue(crashedFile.getJavaFile().length() > impl.getSize());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      Assert.assertEquals(10, impl.read(new NullStorageManager()).size());
+
+      buffers.addAll(addPageElements(simpleDestination, impl, 10));
+
+      impl.sync();
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(20, msgs.size());
+
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         Assert.assertEquals(simpleDestination, msgs.get(i).getMessage().getAddress());
+
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msgs.get(i)
+            .getMessage()
+            .getBodyBuffer()
+            .toByteBuffer()
+            .array());
+      }
+
+      impl.delete(null);
+
+      Assert.assertEquals(0, factory.listFiles("page").size());
+
+      Assert.assertEquals(0, factory.listFiles("invalidPage").size());
+
+      crashedFile.close();
+   }
+
    /**
     * Validate if everything we add is recovered
     */
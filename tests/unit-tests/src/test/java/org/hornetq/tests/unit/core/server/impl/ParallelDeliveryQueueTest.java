@@ -0,0 +1,349 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.unit.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.Consumer;
+import org.hornetq.core.server.HandleStatus;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.ParallelDeliveryQueue;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.OrderedExecutorFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Many consumers on one queue, each one taking some time to be sent a message.
+ */
+public class ParallelDeliveryQueueTest extends UnitTestCase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address1");
+
+   private static final SimpleString QUEUE = new SimpleString("queue1");
+
+   private static final int CONSUMERS = 32;
+
+   private static final int MESSAGES = 3200;
+
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService threadPool;
+
+   // the number of consumers being sent a message at a given time, and the highest one
+   private final AtomicInteger sending = new AtomicInteger(0);
+
+   private final AtomicInteger maxSending = new AtomicInteger(0);
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+      threadPool = Executors.newCachedThreadPool();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+      threadPool.shutdownNow();
+      super.tearDown();
+   }
+
+   @Test
+   public void testConsumersAreSentMessagesInParallel() throws Exception
+   {
+      QueueImpl queue = createQueue(4);
+
+      List<SlowConsumer> consumers = deliver(queue);
+
+      Assert.assertTrue("the lanes didn't send in parallel", maxSending.get() > 1);
+
+      assertDeliveredOnceInOrder(consumers);
+   }
+
+   @Test
+   public void testSingleLaneSendsOneAtATime() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      ADDRESS,
+                                      QUEUE,
+                                      null,
+                                      false,
+                                      false,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      new OrderedExecutorFactory(threadPool).getExecutor());
+
+      List<SlowConsumer> consumers = deliver(queue);
+
+      Assert.assertEquals(1, maxSending.get());
+
+      assertDeliveredOnceInOrder(consumers);
+   }
+
+   @Test
+   public void testAddWhileQueueIsLocked() throws Exception
+   {
+      final QueueImpl queue = createQueue(4);
+
+      queue.addConsumer(new SlowConsumer(1, 0));
+
+      final CountDownLatch added = new CountDownLatch(1);
+
+      Thread producer = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            queue.addTail(generateReference(queue, 1), true);
+            added.countDown();
+         }
+      };
+
+      synchronized (queue)
+      {
+         producer.start();
+
+         Assert.assertTrue("the producer waited for the queue lock", added.await(5, TimeUnit.SECONDS));
+      }
+
+      producer.join();
+   }
+
+   @Test
+   public void testGroupStaysOnItsConsumer() throws Exception
+   {
+      QueueImpl queue = createQueue(4);
+
+      List<SlowConsumer> consumers = new ArrayList<SlowConsumer>();
+
+      for (int i = 0; i < 8; i++)
+      {
+         SlowConsumer consumer = new SlowConsumer(MESSAGES, 0);
+         consumers.add(consumer);
+         queue.addConsumer(consumer);
+      }
+
+      for (int i = 0; i < 400; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty(Message.HDR_GROUP_ID, new SimpleString("group" + i % 2));
+         queue.addTail(ref);
+      }
+
+      Assert.assertTrue(queue.flushExecutor());
+
+      Set<String> groups = new HashSet<String>();
+
+      int delivered = 0;
+
+      for (SlowConsumer consumer : consumers)
+      {
+         Set<SimpleString> consumerGroups = new HashSet<SimpleString>();
+
+         for (MessageReference ref : consumer.getDelivered())
+         {
+            consumerGroups.add(ref.getMessage().getSimpleStringProperty(Message.HDR_GROUP_ID));
+         }
+
+         for (SimpleString group : consumerGroups)
+         {
+            Assert.assertTrue(group + " was delivered to more than one consumer", groups.add(group.toString()));
+         }
+
+         delivered += consumer.getDelivered().size();
+      }
+
+      Assert.assertEquals(400, delivered);
+
+      assertDeliveredOnceInOrder(consumers);
+   }
+
+   private QueueImpl createQueue(final int lanes)
+   {
+      return new ParallelDeliveryQueue(1,
+                                       ADDRESS,
+                                       QUEUE,
+                                       null,
+                                       null,
+                                       false,
+                                       false,
+                                       scheduledExecutor,
+                                       null,
+                                       null,
+                                       null,
+                                       new OrderedExecutorFactory(threadPool),
+                                       lanes);
+   }
+
+   private List<SlowConsumer> deliver(final QueueImpl queue) throws Exception
+   {
+      CountDownLatch done = new CountDownLatch(MESSAGES);
+
+      List<SlowConsumer> consumers = new ArrayList<SlowConsumer>();
+
+      for (int i = 0; i < CONSUMERS; i++)
+      {
+         SlowConsumer consumer = new SlowConsumer(done);
+         consumers.add(consumer);
+         queue.addConsumer(consumer);
+      }
+
+      for (int i = 0; i < MESSAGES; i++)
+      {
+         queue.addTail(generateReference(queue, i));
+      }
+
+      Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+
+      return consumers;
+   }
+
+   private void assertDeliveredOnceInOrder(final List<SlowConsumer> consumers)
+   {
+      Set<Long> ids = new HashSet<Long>();
+
+      for (SlowConsumer consumer : consumers)
+      {
+         long last = -1;
+
+         for (MessageReference ref : consumer.getDelivered())
+         {
+            long id = ref.getMessage().getMessageID();
+
+            Assert.assertTrue("delivered out of order", id > last);
+
+            Assert.assertTrue("delivered twice", ids.add(id));
+
+            last = id;
+         }
+      }
+   }
+
+   private final class SlowConsumer implements Consumer
+   {
+      private final List<MessageReference> delivered = Collections.synchronizedList(new ArrayList<MessageReference>());
+
+      private final CountDownLatch done;
+
+      private final long sendNanos;
+
+      SlowConsumer(final CountDownLatch done)
+      {
+         this.done = done;
+         this.sendNanos = TimeUnit.MICROSECONDS.toNanos(200);
+      }
+
+      SlowConsumer(final int messages, final long sendNanos)
+      {
+         this.done = new CountDownLatch(messages);
+         this.sendNanos = sendNanos;
+      }
+
+      List<MessageReference> getDelivered()
+      {
+         return delivered;
+      }
+
+      public HandleStatus handle(final MessageReference reference) throws Exception
+      {
+         reference.getQueue().referenceHandled();
+         return HandleStatus.HANDLED;
+      }
+
+      public void proceedDeliver(final MessageReference reference) throws Exception
+      {
+         int current = sending.incrementAndGet();
+
+         int max;
+         while (current > (max = maxSending.get()) && !maxSending.compareAndSet(max, current))
+         {
+         }
+
+         try
+         {
+            // sending a message takes some time
+            long end = System.nanoTime() + sendNanos;
+            while (System.nanoTime() < end)
+            {
+               Thread.yield();
+            }
+
+            delivered.add(reference);
+         }
+         finally
+         {
+            sending.decrementAndGet();
+         }
+
+         done.countDown();
+      }
+
+      public void proceedDeliver(final List<MessageReference> references) throws Exception
+      {
+         Iterator<MessageReference> iterator = references.iterator();
+         while (iterator.hasNext())
+         {
+            proceedDeliver(iterator.next());
+            iterator.remove();
+         }
+      }
+
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      public List<MessageReference> getDeliveringMessages()
+      {
+         return Collections.emptyList();
+      }
+
+      public String debug()
+      {
+         return toString();
+      }
+
+      public String toManagementString()
+      {
+         return toString();
+      }
+
+      public void disconnect()
+      {
+      }
+   }
+}
@@ -13,6 +13,7 @@
 package org.hornetq.tests.unit.core.server.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -37,6 +38,7 @@ import org.hornetq.core.server.HornetQServers;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ParallelDeliveryQueue;
 import org.hornetq.core.server.impl.QueueImpl;
 import org.hornetq.core.settings.impl.AddressSettings;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakeConsumer;
@@ -45,6 +47,7 @@ import org.hornetq.tests.unit.core.server.impl.fakes.FakePostOffice;
 import org.hornetq.tests.util.UnitTestCase;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.LinkedListIterator;
+import org.hornetq.utils.OrderedExecutorFactory;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -351,6 +354,122 @@ public class QueueImplTest extends UnitTestCase
       Assert.assertEquals(numMessages, queue.getDeliveringCount());
    }
 
+   @Test
+   public void testBatchDelivery() throws Exception
+   {
+      QueueImpl queue = createLaneQueue();
+
+      final int numMessages = QueueImpl.DELIVERY_BATCH_SIZE * 3 + 5;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+
+         refs.add(ref);
+
+         queue.addTail(ref);
+      }
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      queue.deliverNow();
+
+      assertRefListsIdenticalRefs(refs, consumer.getReferences());
+      assertRefListsIdenticalRefs(refs, consumer.getDelivered());
+      Assert.assertEquals(Arrays.asList(QueueImpl.DELIVERY_BATCH_SIZE,
+                                        QueueImpl.DELIVERY_BATCH_SIZE,
+                                        QueueImpl.DELIVERY_BATCH_SIZE,
+                                        5), consumer.getBatches());
+      Assert.assertEquals(numMessages, queue.getDeliveringCount());
+   }
+
+   @Test
+   public void testSingleLaneDeliversEveryReference() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+
+      final int numMessages = QueueImpl.DELIVERY_BATCH_SIZE + 5;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+
+         refs.add(ref);
+
+         queue.addTail(ref);
+      }
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      queue.deliverNow();
+
+      // the references aren't held back in batches when the queue has a single lane
+      assertRefListsIdenticalRefs(refs, consumer.getDelivered());
+      Assert.assertTrue(consumer.getBatches().isEmpty());
+   }
+
+   @Test
+   public void testBatchDeliveryFailingPartway() throws Exception
+   {
+      QueueImpl queue = createLaneQueue();
+
+      final int numMessages = QueueImpl.DELIVERY_BATCH_SIZE;
+
+      final int numDelivered = 10;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+
+         refs.add(ref);
+
+         queue.addTail(ref);
+      }
+
+      FakeConsumer failingConsumer = new FakeConsumer();
+
+      failingConsumer.setFailAfterDeliveries(numDelivered);
+
+      queue.addConsumer(failingConsumer);
+
+      queue.deliverNow();
+
+      // The whole batch was handled, but the consumer failed after delivering some of it and was removed
+      assertRefListsIdenticalRefs(refs, failingConsumer.getReferences());
+      assertRefListsIdenticalRefs(refs.subList(0, numDelivered), failingConsumer.getDelivered());
+      Assert.assertEquals(0, queue.getConsumerCount());
+
+      FakeConsumer consumer = new FakeConsumer();
+
+      queue.addConsumer(consumer);
+
+      queue.deliverNow();
+
+      // Only the ones that were not delivered went back to the queue
+      assertRefListsIdenticalRefs(refs.subList(numDelivered, numMessages), consumer.getReferences());
+      assertRefListsIdenticalRefs(refs.subList(numDelivered, numMessages), consumer.getDelivered());
+   }
+
    @Test
    public void testBusyConsumer() throws Exception
    {
@@ -1664,4 +1783,24 @@ public class QueueImplTest extends UnitTestCase
          server.stop();
       }
    }
+
+   /**
+    * @return a queue with two delivery lanes, which batches the references of its consumers
+    */
+   private QueueImpl createLaneQueue()
+   {
+      return new ParallelDeliveryQueue(1,
+                                       QueueImplTest.address1,
+                                       QueueImplTest.queue1,
+                                       null,
+                                       null,
+                                       false,
+                                       true,
+                                       scheduledExecutor,
+                                       null,
+                                       null,
+                                       null,
+                                       new OrderedExecutorFactory(executor),
+                                       2);
+   }
 }
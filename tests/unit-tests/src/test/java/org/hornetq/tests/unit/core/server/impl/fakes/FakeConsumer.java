@@ -12,7 +12,9 @@
  */
 package org.hornetq.tests.unit.core.server.impl.fakes;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -38,6 +40,12 @@ public class FakeConsumer implements Consumer
 
    private final LinkedList<MessageReference> references = new LinkedList<MessageReference>();
 
+   private final List<MessageReference> delivered = new ArrayList<MessageReference>();
+
+   private final List<Integer> batches = new ArrayList<Integer>();
+
+   private int failAfterDeliveries = -1;
+
    private final Filter filter;
 
    public FakeConsumer()
@@ -100,6 +108,24 @@ public class FakeConsumer implements Consumer
       return references;
    }
 
+   public synchronized List<MessageReference> getDelivered()
+   {
+      return delivered;
+   }
+
+   public synchronized List<Integer> getBatches()
+   {
+      return batches;
+   }
+
+   /**
+    * The delivery fails once this many references were delivered
+    */
+   public synchronized void setFailAfterDeliveries(final int deliveries)
+   {
+      failAfterDeliveries = deliveries;
+   }
+
    public synchronized void clearReferences()
    {
       references.clear();
@@ -153,9 +179,31 @@ public class FakeConsumer implements Consumer
    }
 
    @Override
-   public void proceedDeliver(MessageReference ref) throws Exception
+   public synchronized void proceedDeliver(MessageReference ref) throws Exception
    {
-      // no op
+      deliver(ref);
+   }
+
+   @Override
+   public synchronized void proceedDeliver(List<MessageReference> refs) throws Exception
+   {
+      batches.add(refs.size());
+
+      Iterator<MessageReference> iterator = refs.iterator();
+      while (iterator.hasNext())
+      {
+         deliver(iterator.next());
+         iterator.remove();
+      }
+   }
+
+   private void deliver(final MessageReference ref)
+   {
+      if (delivered.size() == failAfterDeliveries)
+      {
+         throw new IllegalStateException("Failing the delivery of " + ref);
+      }
+      delivered.add(ref);
    }
 
    @Override